@@ -0,0 +1,47 @@
+package neural.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+
+/**
+ * Synthetic inputs shared by the benchmarks, so that they run without the
+ * MNIST files.
+ */
+final class BenchmarkData {
+
+	//Disallow instantiation of this class
+	private BenchmarkData() {}
+
+	/**
+	 * Parse a layer shape such as "784-30-10".
+	 */
+	static List<Integer> shape(final String shape) {
+		List<Integer> sizes = new ArrayList<Integer>();
+		for(String size : shape.split("-")) {
+			sizes.add(Integer.valueOf(size));
+		}
+		return sizes;
+	}
+
+	/**
+	 * Return "count" random images with roughly MNIST's 20% of lit pixels.
+	 */
+	static Dataset dataset(final int count, final long seed) {
+		Random random = new Random(seed);
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			labels[n] = (byte) random.nextInt(10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				if(random.nextInt(5) == 0) {
+					pixels[n * Image.SIZE + i] = (byte) random.nextInt(256);
+				}
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+}
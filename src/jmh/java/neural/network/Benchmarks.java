@@ -0,0 +1,29 @@
+package neural.network;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar.
+ *
+ * Runs every benchmark in this package (or those selected by the usual JMH
+ * command line options) with the GC profiler attached, so that each result
+ * reports allocation rate next to throughput and, in sample mode, latency
+ * percentiles.
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(commandLine);
+		if(commandLine.getIncludes().isEmpty()) {
+			builder.include("neural\\.network\\..*Benchmark");
+		}
+		Options options = builder.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
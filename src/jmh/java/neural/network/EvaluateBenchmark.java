@@ -0,0 +1,72 @@
+package neural.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neural.network.data.Dataset;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.metrics.Evaluation;
+
+/**
+ * Scoring a test set of 10000 images, one at a time through evaluate and in
+ * batches through a Predictor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluateBenchmark {
+
+	@Param({"784-30-10", "784-100-10", "784-512-512-10"})
+	public String shape;
+
+	private Network network;
+	private Dataset testData;
+	private Predictor predictor;
+	private Predictions predictions;
+	private Evaluator evaluator;
+	private Evaluation evaluation;
+
+	@Setup
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		network = new Network(BenchmarkData.shape(shape), 1L);
+		testData = BenchmarkData.dataset(10000, 3L);
+		predictor = new Predictor(network);
+		predictions = new Predictions(testData.size(), 10);
+		evaluator = new Evaluator(network);
+		evaluation = new Evaluation(10);
+	}
+
+	@TearDown
+	public void tearDown() {
+		predictor.shutdown();
+	}
+
+	@Benchmark
+	public int evaluate() throws LayerDoesNotExistException {
+		evaluator.evaluate(testData, evaluation);
+		return evaluation.getCorrect();
+	}
+
+	@Benchmark
+	public Predictions predictBatch() throws LayerDoesNotExistException {
+		predictor.predictBatch(testData, predictions);
+		return predictions;
+	}
+}
@@ -0,0 +1,108 @@
+package neural.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.data.FMatrixRMaj;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.linalg.Backends;
+
+/**
+ * Forward pass, backpropagation and mini batch update for one batch of
+ * images, across layer shapes and batch sizes. Every operation handles the
+ * whole batch, so scores are comparable between the per-image and the
+ * batched variants. Each case runs on every linear algebra backend; the
+ * "vector" one needs -jvmArgsAppend "--add-modules jdk.incubator.vector"
+ * and otherwise measures its scalar fallback.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationsBenchmark {
+
+	@Param({"784-30-10", "784-100-10", "784-512-512-10"})
+	public String shape;
+
+	@Param({"1", "10", "100"})
+	public int batchSize;
+
+	@Param({"ejml", "blocked", "vector"})
+	public String backend;
+
+	private Network network;
+	private Dataset batch;
+	private Image[] images;
+	private FMatrixRMaj input;
+	private FMatrixRMaj[] activations;
+	private TrainingWorkspace workspace;
+
+	@Setup
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		Backends.use(Backends.forName(backend));
+		network = new Network(BenchmarkData.shape(shape), 1L);
+		batch = BenchmarkData.dataset(batchSize, 2L);
+		images = batch.toImages().toArray(new Image[batchSize]);
+		input = new FMatrixRMaj(Image.SIZE, 1);
+		activations = new FMatrixRMaj[network.getNumberOfLayers()];
+		for(int i = 0; i < activations.length; i++) {
+			activations[i] = new FMatrixRMaj(network.getSizeOfLayers().get(i), batchSize);
+		}
+		workspace = new TrainingWorkspace(network, batchSize);
+	}
+
+	@Benchmark
+	public void feedForward(final Blackhole blackhole) throws InvalidInputException, LayerDoesNotExistException {
+		for(int n = 0; n < batchSize; n++) {
+			batch.pack(n, 1, input, null);
+			blackhole.consume(Operations.feedForward(input, network));
+		}
+	}
+
+	@Benchmark
+	public FMatrixRMaj feedForwardBatch() throws LayerDoesNotExistException {
+		batch.pack(0, batchSize, activations[0], null);
+		Operations.feedForwardBatch(network, activations);
+		return activations[activations.length - 1];
+	}
+
+	@Benchmark
+	public void backprop(final Blackhole blackhole) throws LayerDoesNotExistException {
+		for(Image img : images) {
+			blackhole.consume(Operations.backprop(network, img));
+		}
+	}
+
+	@Benchmark
+	public FMatrixRMaj backpropBatch() throws LayerDoesNotExistException {
+		Operations.pack(batch, 0, batchSize, workspace);
+		Operations.backpropBatch(network, workspace);
+		return workspace.getNablaW(0);
+	}
+
+	@Benchmark
+	public Network updateMiniBatch() throws LayerDoesNotExistException {
+		//A tiny learning rate keeps the weights from drifting during the run
+		Operations.updateMiniBatch(network, batch, 0, batchSize, 1e-6f, workspace);
+		return network;
+	}
+}
@@ -0,0 +1,82 @@
+package neural.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.data.FMatrixRMaj;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.quantization.QuantizedNetwork;
+
+/**
+ * Scoring one image at a time with float, int8 and float16 weights. The
+ * float case runs a batch of one through preallocated buffers, so all three
+ * measure the matrix-vector kernels rather than allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantizedBenchmark {
+
+	@Param({"784-30-10", "784-100-10", "784-512-512-10"})
+	public String shape;
+
+	private Network network;
+	private QuantizedNetwork int8;
+	private QuantizedNetwork float16;
+	private FMatrixRMaj[] activations;
+	private float[] sample;
+	private float[] output;
+
+	@Setup
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		network = new Network(BenchmarkData.shape(shape), 1L);
+		int8 = QuantizedNetwork.quantize(network, QuantizedNetwork.Precision.INT8);
+		float16 = QuantizedNetwork.quantize(network, QuantizedNetwork.Precision.FLOAT16);
+		activations = new FMatrixRMaj[network.getNumberOfLayers()];
+		for(int i = 0; i < activations.length; i++) {
+			activations[i] = new FMatrixRMaj(network.getSizeOfLayers().get(i), 1);
+		}
+		Dataset data = BenchmarkData.dataset(1, 2L);
+		data.pack(activations[0], null);
+		sample = activations[0].data.clone();
+		output = new float[network.getSizeOfLayers().get(network.getNumberOfLayers() - 1)];
+	}
+
+	@Benchmark
+	public FMatrixRMaj float32() throws LayerDoesNotExistException {
+		System.arraycopy(sample, 0, activations[0].data, 0, Image.SIZE);
+		Operations.feedForwardBatch(network, activations);
+		return activations[activations.length - 1];
+	}
+
+	@Benchmark
+	public float[] int8() throws InvalidInputException {
+		int8.feedForward(sample, output);
+		return output;
+	}
+
+	@Benchmark
+	public float[] float16() throws InvalidInputException {
+		float16.feedForward(sample, output);
+		return output;
+	}
+}
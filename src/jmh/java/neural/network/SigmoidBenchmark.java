@@ -0,0 +1,76 @@
+package neural.network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.data.FMatrixRMaj;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The allocating sigmoid and sigmoid_prime of Operations against the allocation-free
+ * kernels, for the sizes of an output layer, a hidden layer batch and a wide
+ * layer batch. The kernels write into a separate buffer so that every
+ * invocation sees the same inputs without a per-invocation reset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigmoidBenchmark {
+
+	@Param({"10", "3000", "51200"})
+	public int size;
+
+	private FMatrixRMaj input;
+	private float[] scratch;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(4);
+		input = new FMatrixRMaj(size, 1);
+		for(int i = 0; i < size; i++) {
+			input.data[i] = (float) random.nextGaussian() * 4f;
+		}
+		scratch = new float[size];
+	}
+
+	@Benchmark
+	public FMatrixRMaj sigmoid() {
+		return Operations.sigmoid(input);
+	}
+
+	@Benchmark
+	public FMatrixRMaj sigmoid_prime() {
+		return Operations.sigmoid_prime(input);
+	}
+
+	@Benchmark
+	public float[] sigmoidKernel() {
+		SigmoidKernels.sigmoid(input.data, scratch, size);
+		return scratch;
+	}
+
+	@Benchmark
+	public float[] sigmoidTable() {
+		SigmoidKernels.sigmoidTable(input.data, scratch, size);
+		return scratch;
+	}
+
+	@Benchmark
+	public float[] sigmoidPrimeKernel() {
+		SigmoidKernels.sigmoidPrime(input.data, scratch, size);
+		return scratch;
+	}
+}
@@ -0,0 +1,97 @@
+package neural.network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.data.FMatrixRMaj;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neural.network.data.Image;
+import neural.network.linalg.Backend;
+import neural.network.linalg.Backends;
+import neural.network.linalg.SparseColumns;
+import neural.network.linalg.SparseKernels;
+
+/**
+ * The first layer's share of a training step, its forward product and its
+ * weight gradient, on a batch of 784-pixel inputs of a given density: once
+ * with a dense backend and once compressed and multiplied with
+ * {@link SparseKernels}, the compression included. The crossover densities
+ * are what {@link SparseKernels#densityThreshold} returns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseBenchmark {
+
+	@Param({"0.05", "0.1", "0.2", "0.3", "0.5"})
+	public float density;
+
+	@Param({"30", "100"})
+	public int hidden;
+
+	@Param({"100"})
+	public int batchSize;
+
+	@Param({"ejml", "blocked", "vector"})
+	public String backend;
+
+	private Backend dense;
+	private FMatrixRMaj weights;
+	private FMatrixRMaj inputs;
+	private FMatrixRMaj outputs;
+	private FMatrixRMaj deltas;
+	private FMatrixRMaj gradient;
+	private SparseColumns sparse;
+
+	@Setup
+	public void setUp() {
+		dense = Backends.forName(backend);
+		Random random = new Random(1L);
+		weights = new FMatrixRMaj(hidden, Image.SIZE);
+		gradient = new FMatrixRMaj(hidden, Image.SIZE);
+		inputs = new FMatrixRMaj(Image.SIZE, batchSize);
+		outputs = new FMatrixRMaj(hidden, batchSize);
+		deltas = new FMatrixRMaj(hidden, batchSize);
+		for(int i = 0; i < weights.data.length; i++) {
+			weights.data[i] = (float) random.nextGaussian();
+		}
+		for(int i = 0; i < deltas.data.length; i++) {
+			deltas.data[i] = (float) random.nextGaussian();
+		}
+		for(int i = 0; i < inputs.data.length; i++) {
+			if(random.nextFloat() < density) {
+				inputs.data[i] = 1 + random.nextInt(255);
+			}
+		}
+		sparse = new SparseColumns(Image.SIZE, batchSize, 0);
+	}
+
+	@Benchmark
+	public FMatrixRMaj dense() {
+		dense.mult(weights, inputs, outputs);
+		dense.multTransB(deltas, inputs, gradient);
+		return gradient;
+	}
+
+	@Benchmark
+	public FMatrixRMaj sparse() {
+		sparse.compress(inputs, 1f);
+		SparseKernels.mult(weights, sparse, outputs);
+		SparseKernels.multTransB(deltas, sparse, gradient);
+		return gradient;
+	}
+}
@@ -0,0 +1,85 @@
+package neural.network.data;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a synthetic MNIST-like dataset from CSV and from the binary cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageReaderBenchmark {
+
+	@Param({"1000", "10000"})
+	public int count;
+
+	private File csv;
+	private File cache;
+	private URL csvUrl;
+
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(5);
+		csv = File.createTempFile("mnist-bench", ".csv");
+		Writer writer = new FileWriter(csv);
+		try {
+			for(int n = 0; n < count; n++) {
+				writer.write(Integer.toString(random.nextInt(10)));
+				for(int i = 0; i < Image.SIZE; i++) {
+					writer.write(',');
+					writer.write(Integer.toString(random.nextInt(5) == 0 ? random.nextInt(256) : 0));
+				}
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		csvUrl = csv.toURI().toURL();
+		cache = File.createTempFile("mnist-bench", ".bin");
+		ImageCache.write(ImageReader.readDataset(csvUrl), cache);
+	}
+
+	@TearDown
+	public void tearDown() {
+		csv.delete();
+		cache.delete();
+	}
+
+	@Benchmark
+	public List<Image> read() throws IOException {
+		return ImageReader.read(csvUrl);
+	}
+
+	@Benchmark
+	public Dataset readDataset() throws IOException {
+		return ImageReader.readDataset(csvUrl);
+	}
+
+	@Benchmark
+	public Dataset readCache() throws IOException {
+		return ImageCache.read(cache);
+	}
+}
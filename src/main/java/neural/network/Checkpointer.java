@@ -0,0 +1,82 @@
+package neural.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+/**
+ * Periodically saves a network during training and resumes it afterwards.
+ *
+ * Every "interval" epochs (and after the last one) the network is written
+ * to the checkpoint file together with the number of epochs completed, so
+ * an interrupted run can pick up where it stopped instead of retraining
+ * from scratch.
+ */
+public class Checkpointer {
+
+	private final File file;
+	private final int interval;
+	private int epochsCompleted;
+
+	/**
+	 * Checkpoint to "file" every "interval" epochs.
+	 */
+	public Checkpointer(final File file, final int interval) {
+		if(interval <= 0) {
+			throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+		}
+		this.file = file;
+		this.interval = interval;
+	}
+
+	/**
+	 * Return the network saved in the checkpoint file, or a new randomly
+	 * initialized network of the given shape if there is no checkpoint yet.
+	 * A resumed network keeps its count of completed epochs.
+	 *
+	 * @throws IOException if the checkpoint exists but cannot be read
+	 * @throws IllegalStateException if the checkpoint has a different shape
+	 */
+	public Network resume(final List<Integer> sizeOfLayers) throws IOException, NetworkTooSmallException, LayerTooSmallException {
+		if(!file.isFile()) {
+			epochsCompleted = 0;
+			return new Network(sizeOfLayers);
+		}
+		Network network = ModelFile.load(file);
+		if(!network.getSizeOfLayers().equals(sizeOfLayers)) {
+			throw new IllegalStateException("Checkpoint " + file + " has layers " + network.getSizeOfLayers() + ", expected " + sizeOfLayers);
+		}
+		epochsCompleted = ModelFile.readEpochs(file);
+		return network;
+	}
+
+	/**
+	 * Record that "epoch" epochs have been completed, saving the network if
+	 * the interval has elapsed or training is over.
+	 *
+	 * @throws IOException
+	 * @throws LayerDoesNotExistException
+	 */
+	public void epochCompleted(final Network network, final int epoch, final int epochs) throws IOException, LayerDoesNotExistException {
+		epochsCompleted = epoch;
+		if(epoch % interval == 0 || epoch == epochs) {
+			ModelFile.save(network, epoch, file);
+		}
+	}
+
+	/**
+	 * Return the number of epochs already completed, i.e. the epoch training
+	 * should resume from.
+	 */
+	public int getEpochsCompleted() {
+		return epochsCompleted;
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
@@ -0,0 +1,146 @@
+package neural.network;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import neural.network.data.Dataset;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.metrics.Evaluation;
+
+/**
+ * Parallel evaluation of a network on a labelled dataset.
+ *
+ * The samples are run through a {@link Predictor}, which packs them into
+ * batches and splits them across the threads of a ForkJoinPool, and the
+ * predicted labels are then counted into an {@link Evaluation} in a single
+ * pass. The prediction buffer is kept from call to call, so evaluating the
+ * same test set after every epoch allocates nothing once it has been sized.
+ *
+ * The network is read, not copied: an evaluator created before training
+ * always evaluates the current weights. It must not be used while another
+ * thread is updating them. An evaluator built on a shared {@link Predictor}
+ * is not bound to a network and is passed one on every call, so it can
+ * evaluate many networks with the same scratch buffers. An evaluator keeps
+ * one prediction buffer, so it serves one thread at a time.
+ */
+public class Evaluator {
+
+	private final Network network;
+	private final Predictor predictor;
+	private Predictions predictions = new Predictions(0, 1);
+
+	/**
+	 * Create an evaluator that runs on the common ForkJoinPool.
+	 */
+	public Evaluator(final Network network) {
+		this(network, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create an evaluator that runs on a shared pool.
+	 */
+	public Evaluator(final Network network, final ForkJoinPool pool) {
+		this.network = network;
+		this.predictor = new Predictor(network, pool, Predictor.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create an evaluator that is not bound to a network and runs through
+	 * "predictor", sharing its scratch buffers.
+	 */
+	public Evaluator(final Predictor predictor) {
+		this.network = predictor.getNetwork();
+		this.predictor = predictor;
+	}
+
+	/**
+	 * Evaluate the network on every sample of "data".
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public Evaluation evaluate(final Dataset data) throws LayerDoesNotExistException {
+		return evaluate(boundNetwork(), data);
+	}
+
+	/**
+	 * Evaluate "network" on every sample of "data".
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public Evaluation evaluate(final Network network, final Dataset data) throws LayerDoesNotExistException {
+		Evaluation result = new Evaluation(network.getSizeOfLayers().get(network.getNumberOfLayers() - 1));
+		evaluate(network, data, result);
+		return result;
+	}
+
+	/**
+	 * Evaluate the network on every sample of "data" into "result", which is
+	 * cleared first.
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public void evaluate(final Dataset data, final Evaluation result) throws LayerDoesNotExistException {
+		evaluate(boundNetwork(), data, result);
+	}
+
+	/**
+	 * Evaluate "network" on every sample of "data" into "result", which is
+	 * cleared first.
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public void evaluate(final Network network, final Dataset data, final Evaluation result) throws LayerDoesNotExistException {
+		final int classes = network.getSizeOfLayers().get(network.getNumberOfLayers() - 1);
+		if(result.getClasses() != classes) {
+			throw new IllegalArgumentException("Evaluation of " + result.getClasses() + " classes for a network with " + classes + " outputs");
+		}
+		result.clear();
+		if(data.size() == 0) {
+			return;
+		}
+		if(predictions.getCapacity() < data.size() || predictions.getNumberOfOutputs() != classes) {
+			predictions = new Predictions(data.size(), classes);
+		}
+		predictor.predictBatch(network, data, predictions);
+		final int[] labels = predictions.labels();
+		for(int n = 0; n < data.size(); n++) {
+			result.record(data.getLabel(n), labels[n]);
+		}
+	}
+
+	/**
+	 * Evaluate the network on "sampleSize" consecutive samples of "data"
+	 * starting at a random position, into "result". The data is left in its
+	 * order, so it should already be shuffled for the sample to be
+	 * representative; the whole set is evaluated if it is not larger than
+	 * the sample.
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public void evaluateSample(final Dataset data, final int sampleSize, final Random random, final Evaluation result)
+			throws LayerDoesNotExistException {
+		if(sampleSize <= 0) {
+			throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+		}
+		if(sampleSize >= data.size()) {
+			evaluate(data, result);
+		} else {
+			evaluate(data.view(random.nextInt(data.size() - sampleSize + 1), sampleSize), result);
+		}
+	}
+
+	/**
+	 * Return the network this evaluator is bound to, or null if the network
+	 * is passed to every call.
+	 */
+	public Network getNetwork() {
+		return network;
+	}
+
+	private Network boundNetwork() {
+		if(network == null) {
+			throw new IllegalStateException("Evaluator is not bound to a network");
+		}
+		return network;
+	}
+}
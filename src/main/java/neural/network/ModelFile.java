@@ -0,0 +1,253 @@
+package neural.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Normalization;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+/**
+ * Versioned binary format for trained networks.
+ *
+ * Everything is little endian. The header holds the magic "MNNM", the format
+ * version, the number of epochs the network was trained for, the number of
+ * layers and the size of every layer. Version 2 follows this with a flag
+ * that is 1 if the network has a {@link Normalization}, in which case its
+ * offsets and then its scales come next, one float per input. Version 3
+ * then records the {@link Cost} and the {@link Activation} of every layer
+ * after the input, as ordinals. Then, for each layer after the input, come
+ * the weights as a row-major float array followed by the biases. Loading
+ * maps the file and copies each block in bulk straight into the backing
+ * arrays of the matrices. Older files still load: version 1 files have no
+ * normalization, and networks from either have sigmoid layers and the
+ * quadratic cost.
+ */
+public class ModelFile {
+
+	static final int MAGIC = 0x4D4E4E4D; //"MNNM" in little endian
+	static final int VERSION = 3;
+	static final int VERSION_WITHOUT_ACTIVATIONS = 2;
+	static final int VERSION_WITHOUT_NORMALIZATION = 1;
+
+	//Disallow instantiation of this class
+	private ModelFile() {}
+
+	/**
+	 * Save a network, replacing any existing file.
+	 *
+	 * @throws IOException
+	 * @throws LayerDoesNotExistException
+	 */
+	public static void save(final Network network, final File file) throws IOException, LayerDoesNotExistException {
+		save(network, 0, file);
+	}
+
+	/**
+	 * Save a network along with the number of epochs it has been trained for.
+	 * The file is written next to its destination and then moved over it,
+	 * so a crash never leaves a half written model behind.
+	 *
+	 * @throws IOException
+	 * @throws LayerDoesNotExistException
+	 */
+	public static void save(final Network network, final int epochs, final File file) throws IOException, LayerDoesNotExistException {
+		final int layers = network.getNumberOfLayers();
+		final Normalization normalization = network.getNormalization();
+		long size = 16 + 4L * layers + 4 + 4 + 4L * (layers-1);
+		if(normalization != null) {
+			size += 8L * normalization.getSize();
+		}
+		size += 4L * network.getNumberOfParameters();
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("Network too large to save: " + size + " bytes");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(epochs).putInt(layers);
+		for(int i = 0; i < layers; i++) {
+			buffer.putInt(network.getSizeOfLayers().get(i));
+		}
+		buffer.putInt(normalization == null ? 0 : 1);
+		if(normalization != null) {
+			FloatBuffer transform = buffer.asFloatBuffer();
+			transform.put(normalization.getOffsets());
+			transform.put(normalization.getScales());
+			buffer.position(buffer.position() + 8 * normalization.getSize());
+		}
+		buffer.putInt(network.getCost().ordinal());
+		for(int i = 0; i < layers-1; i++) {
+			buffer.putInt(network.getActivation(i).ordinal());
+		}
+		network.copyParameters(buffer.asFloatBuffer());
+		buffer.rewind(); //The float view does not move the byte buffer's position
+
+		File target = file.getAbsoluteFile();
+		File parent = target.getParentFile();
+		if(parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create directory " + parent);
+		}
+		File temp = new File(parent, target.getName() + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		} finally {
+			raf.close();
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load a network saved by {@link #save}.
+	 *
+	 * @throws IOException if the file is not a model of a supported version
+	 */
+	public static Network load(final File file) throws IOException {
+		MappedByteBuffer buffer = map(file);
+		final int version = buffer.getInt(4);
+		final int layers = buffer.getInt();
+		if(layers <= 1 || layers > buffer.remaining() / 4) {
+			throw new IOException("Corrupt model file: " + file);
+		}
+		List<Integer> sizes = new ArrayList<Integer>(layers);
+		for(int i = 0; i < layers; i++) {
+			sizes.add(buffer.getInt());
+		}
+		Normalization normalization = null;
+		if(version != VERSION_WITHOUT_NORMALIZATION) {
+			if(buffer.remaining() < 4) {
+				throw new IOException("Corrupt model file: " + file);
+			}
+			final int normalized = buffer.getInt();
+			if(normalized == 1) {
+				final int inputs = sizes.get(0);
+				if(inputs <= 0 || buffer.remaining() / 8 < inputs) {
+					throw new IOException("Corrupt model file: " + file);
+				}
+				float[] offsets = new float[inputs];
+				float[] scales = new float[inputs];
+				FloatBuffer floats = buffer.asFloatBuffer();
+				floats.get(offsets);
+				floats.get(scales);
+				buffer.position(buffer.position() + 8 * inputs);
+				try {
+					normalization = new Normalization(offsets, scales);
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Corrupt model file: " + file, e);
+				}
+			} else if(normalized != 0) {
+				throw new IOException("Corrupt model file: " + file);
+			}
+		}
+		Cost cost = Cost.QUADRATIC;
+		Activation[] activations = new Activation[layers-1];
+		Arrays.fill(activations, Activation.SIGMOID);
+		if(version == VERSION) {
+			if(buffer.remaining() / 4 < layers) {
+				throw new IOException("Corrupt model file: " + file);
+			}
+			cost = ordinal(Cost.values(), buffer.getInt(), file);
+			for(int i = 0; i < layers-1; i++) {
+				activations[i] = ordinal(Activation.values(), buffer.getInt(), file);
+			}
+		}
+		long expected = 0;
+		for(int i = 0; i < layers-1; i++) {
+			expected += 4L * ((long) sizes.get(i+1) * sizes.get(i) + sizes.get(i+1));
+		}
+		if(buffer.remaining() != expected) {
+			throw new IOException("Corrupt model file: " + file);
+		}
+
+		List<FMatrixRMaj> weights = new ArrayList<FMatrixRMaj>(layers-1);
+		List<FMatrixRMaj> biases = new ArrayList<FMatrixRMaj>(layers-1);
+		for(int i = 0; i < layers-1; i++) {
+			weights.add(new FMatrixRMaj(sizes.get(i+1), sizes.get(i)));
+			biases.add(new FMatrixRMaj(sizes.get(i+1), 1));
+		}
+		try {
+			Network network = new Network(sizes, weights, biases);
+			network.setParameters(buffer.asFloatBuffer());
+			network.setNormalization(normalization);
+			for(int i = 0; i < layers-1; i++) {
+				network.setActivation(i, activations[i]);
+			}
+			network.setCost(cost);
+			return network;
+		} catch (NetworkTooSmallException e) {
+			throw new IOException("Corrupt model file: " + file, e);
+		} catch (LayerTooSmallException e) {
+			throw new IOException("Corrupt model file: " + file, e);
+		} catch (InvalidInputException e) {
+			throw new IOException("Corrupt model file: " + file, e);
+		} catch (LayerDoesNotExistException e) {
+			throw new IOException("Corrupt model file: " + file, e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt model file: " + file, e);
+		}
+	}
+
+	private static <T> T ordinal(final T[] values, final int ordinal, final File file) throws IOException {
+		if(ordinal < 0 || ordinal >= values.length) {
+			throw new IOException("Corrupt model file: " + file);
+		}
+		return values[ordinal];
+	}
+
+	/**
+	 * Return the number of epochs recorded in a saved network.
+	 *
+	 * @throws IOException if the file is not a model of a supported version
+	 */
+	public static int readEpochs(final File file) throws IOException {
+		MappedByteBuffer buffer = map(file);
+		return buffer.getInt(8);
+	}
+
+	/**
+	 * Map a model file and check its header, leaving the buffer positioned
+	 * at the layer count.
+	 */
+	private static MappedByteBuffer map(final File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer;
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if(buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a model file: " + file);
+		}
+		int version = buffer.getInt();
+		if(version != VERSION && version != VERSION_WITHOUT_ACTIVATIONS && version != VERSION_WITHOUT_NORMALIZATION) {
+			throw new IOException("Unsupported model file version " + version + ": " + file);
+		}
+		buffer.getInt(); //Epochs
+		return buffer;
+	}
+}
@@ -0,0 +1,79 @@
+package neural.network;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The current {@link ModelSnapshot} of a model that may be retrained while
+ * it is in use.
+ *
+ * Readers call {@link #get} and use the snapshot it returns for as long as
+ * they like, for instance for one batch of requests; they never block and
+ * never see a half-updated model. Writers publish a fresh copy of the
+ * network they train, which replaces the current snapshot atomically.
+ * Snapshots nobody holds any more are garbage collected.
+ */
+public class ModelHolder {
+
+	private final AtomicReference<ModelSnapshot> current;
+
+	/**
+	 * Hold a snapshot of "network" as version 0.
+	 */
+	public ModelHolder(final Network network) {
+		this(ModelSnapshot.of(network));
+	}
+
+	public ModelHolder(final ModelSnapshot snapshot) {
+		if(snapshot == null) {
+			throw new IllegalArgumentException("Snapshot must not be null");
+		}
+		this.current = new AtomicReference<ModelSnapshot>(snapshot);
+	}
+
+	/**
+	 * Return the latest published snapshot.
+	 */
+	public ModelSnapshot get() {
+		return current.get();
+	}
+
+	/**
+	 * Copy the current weights and biases of "network" into a new snapshot
+	 * and make it the current one. The network must not be updated while it
+	 * is being copied, so call this from the thread that trains it.
+	 *
+	 * @return the snapshot published
+	 * @throws IllegalArgumentException if the network has another shape
+	 */
+	public ModelSnapshot publish(final Network network) {
+		final Network copy = network.copy();
+		ModelSnapshot previous;
+		ModelSnapshot next;
+		do {
+			previous = current.get();
+			checkShape(previous, copy);
+			next = new ModelSnapshot(copy, previous.getVersion() + 1);
+		} while(!current.compareAndSet(previous, next));
+		return next;
+	}
+
+	/**
+	 * Return the version of the current snapshot.
+	 */
+	public long getVersion() {
+		return current.get().getVersion();
+	}
+
+	private static void checkShape(final ModelSnapshot snapshot, final Network network) {
+		final int[] sizes = snapshot.getSizeOfLayers();
+		boolean same = sizes.length == network.getNumberOfLayers();
+		for(int i = 0; same && i < sizes.length; i++) {
+			same = sizes[i] == network.getSizeOfLayers().get(i);
+		}
+		if(!same) {
+			throw new IllegalArgumentException("Cannot publish a " + network.getSizeOfLayers() + " network in place of a "
+					+ Arrays.toString(sizes) + " one");
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package neural.network;
+
+import java.io.File;
+import java.io.IOException;
+
+import neural.network.data.Dataset;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.metrics.Evaluation;
+
+/**
+ * An immutable copy of a network's weights and biases, safe to read from
+ * any number of threads without locking.
+ *
+ * The snapshot owns a private deep copy of the network that nothing can
+ * reach or modify, so a thread holding a snapshot always sees one
+ * consistent model however the original network is trained afterwards.
+ * Snapshots are published to readers through a {@link ModelHolder}.
+ *
+ * A snapshot holds no scratch buffers of its own, so publishing one costs
+ * only the copy. Inference runs the copy through a caller's long-lived,
+ * unbound {@link Predictor} or {@link Evaluator}, whose buffers then serve
+ * every snapshot in turn, or through {@link Predictor#common} otherwise.
+ */
+public final class ModelSnapshot {
+
+	private final Network network;
+	private final long version;
+	private final int[] sizeOfLayers;
+
+	/**
+	 * Take a snapshot of the current weights and biases of "network", with
+	 * version 0. The network must not be updated while it is being copied.
+	 */
+	public static ModelSnapshot of(final Network network) {
+		return new ModelSnapshot(network.copy(), 0);
+	}
+
+	/**
+	 * Wrap a private copy of a network. The caller must not keep a
+	 * reference to "copy".
+	 */
+	ModelSnapshot(final Network copy, final long version) {
+		this.network = copy;
+		this.version = version;
+		this.sizeOfLayers = new int[copy.getNumberOfLayers()];
+		for(int i = 0; i < sizeOfLayers.length; i++) {
+			sizeOfLayers[i] = copy.getSizeOfLayers().get(i);
+		}
+	}
+
+	/**
+	 * Return the version given by the {@link ModelHolder} that published
+	 * this snapshot; later snapshots have higher versions.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public int[] getSizeOfLayers() {
+		return sizeOfLayers.clone();
+	}
+
+	public int getInputSize() {
+		return sizeOfLayers[0];
+	}
+
+	public int getOutputSize() {
+		return sizeOfLayers[sizeOfLayers.length - 1];
+	}
+
+	/**
+	 * Predict every row of "samples".
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 */
+	public Predictions predictBatch(final float[][] samples) throws InvalidInputException {
+		final Predictions predictions = new Predictions(samples.length, getOutputSize());
+		predictBatch(samples, samples.length, predictions);
+		return predictions;
+	}
+
+	/**
+	 * Predict the first "count" rows of "samples" into an existing result.
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 */
+	public void predictBatch(final float[][] samples, final int count, final Predictions predictions) throws InvalidInputException {
+		predictBatch(Predictor.common(), samples, count, predictions);
+	}
+
+	/**
+	 * Predict the first "count" rows of "samples" into an existing result
+	 * with an unbound predictor, using its scratch buffers.
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 */
+	public void predictBatch(final Predictor predictor, final float[][] samples, final int count, final Predictions predictions)
+			throws InvalidInputException {
+		try {
+			predictor.predictBatch(network, samples, count, predictions);
+		} catch (LayerDoesNotExistException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Predict every sample of "data" into an existing result.
+	 */
+	public void predictBatch(final Dataset data, final Predictions predictions) {
+		try {
+			Predictor.common().predictBatch(network, data, predictions);
+		} catch (LayerDoesNotExistException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Evaluate this snapshot on every sample of "data".
+	 */
+	public Evaluation evaluate(final Dataset data) {
+		final Evaluation result = new Evaluation(getOutputSize());
+		evaluate(new Evaluator(Predictor.common()), data, result);
+		return result;
+	}
+
+	/**
+	 * Evaluate this snapshot on every sample of "data" into "result" with an
+	 * unbound evaluator, reusing its buffers.
+	 */
+	public void evaluate(final Evaluator evaluator, final Dataset data, final Evaluation result) {
+		try {
+			evaluator.evaluate(network, data, result);
+		} catch (LayerDoesNotExistException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return a new, mutable network with the weights and biases of this
+	 * snapshot, for instance to fine-tune it.
+	 */
+	public Network toNetwork() {
+		return network.copy();
+	}
+
+	/**
+	 * Save this snapshot in the {@link ModelFile} format.
+	 *
+	 * @throws IOException
+	 */
+	public void save(final File file) throws IOException {
+		try {
+			ModelFile.save(network, file);
+		} catch (LayerDoesNotExistException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
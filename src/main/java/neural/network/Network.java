@@ -1,17 +1,38 @@
 package neural.network;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.math3.random.RandomDataGenerator;
 import org.ejml.data.FMatrixRMaj;
 
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Normalization;
 import neural.network.exceptions.InvalidInputException;
 import neural.network.exceptions.LayerDoesNotExistException;
 import neural.network.exceptions.LayerTooSmallException;
 import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.linalg.Backends;
 
+/**
+ * A fully connected network whose weights and biases are updated in place by
+ * training. It is not thread-safe: to read a network from other
+ * threads while it trains, publish {@link ModelSnapshot}s through a
+ * {@link ModelHolder}.
+ *
+ * A network may carry the {@link Normalization} its inputs were transformed
+ * with during training. Inference on raw pixels applies it first, and it is
+ * saved and copied along with the weights.
+ *
+ * Every layer after the input has an {@link Activation}, and the network is
+ * trained against a {@link Cost}. A new network is all {@link Activation#SIGMOID}
+ * with the {@link Cost#QUADRATIC} cost; rectified hidden layers with a
+ * softmax output and the cross-entropy cost learn much faster.
+ */
 public class Network {
 
 	private static final RandomDataGenerator GAUSSIAN_GENERATOR = new RandomDataGenerator();
@@ -19,6 +40,9 @@ public class Network {
 	private final List<Integer> sizeOfLayers;
 	private final List<FMatrixRMaj> biases;
 	private final List<FMatrixRMaj> weights;
+	private final Activation[] activations;
+	private Cost cost = Cost.QUADRATIC;
+	private Normalization normalization;
 	
 	/**
 	 * Initialize the neural network with randomly chosen weights and biases from a given
@@ -28,16 +52,77 @@ public class Network {
 	 * @throws LayerTooSmallException 
 	 */
 	public Network(final List<Integer> sizeOfLayers) throws NetworkTooSmallException, LayerTooSmallException {
+		this(sizeOfLayers, GAUSSIAN_GENERATOR);
+	}
+	
+	/**
+	 * Initialize the neural network with weights and biases drawn from a
+	 * Gaussian generator seeded with "seed", so that the same seed always
+	 * produces the same network.
+	 * @throws LayerTooSmallException 
+	 */
+	public Network(final List<Integer> sizeOfLayers, final long seed) throws NetworkTooSmallException, LayerTooSmallException {
+		this(sizeOfLayers, seededGenerator(seed));
+	}
+	
+	private Network(final List<Integer> sizeOfLayers, final RandomDataGenerator generator) throws NetworkTooSmallException, LayerTooSmallException {
 		this.numberOfLayers = sizeOfLayers.size();
 		if(numberOfLayers<=1){
 			throw new NetworkTooSmallException();
 		}
 		this.sizeOfLayers = sizeOfLayers;
-		this.biases = generateBiases();
-		this.weights = getWeights();
+		this.biases = generateBiases(generator);
+		this.weights = getWeights(generator);
+		this.activations = sigmoidLayers(numberOfLayers);
+	}
+	
+	/**
+	 * Initialize the neural network with the given weights and biases, for
+	 * example ones loaded from a saved model. The matrices are used as they
+	 * are, not copied.
+	 * 
+	 * @throws InvalidInputException if a matrix does not match the layer sizes
+	 */
+	public Network(final List<Integer> sizeOfLayers, final List<FMatrixRMaj> weights, final List<FMatrixRMaj> biases) throws NetworkTooSmallException, LayerTooSmallException, InvalidInputException {
+		this.numberOfLayers = sizeOfLayers.size();
+		if(numberOfLayers<=1){
+			throw new NetworkTooSmallException();
+		}
+		for(int i = 0; i < numberOfLayers; i++) {
+			if(sizeOfLayers.get(i)<=0){
+				throw new LayerTooSmallException();
+			}
+		}
+		if(weights.size() != numberOfLayers-1 || biases.size() != numberOfLayers-1) {
+			throw new IllegalArgumentException("Expected " + (numberOfLayers-1) + " weight and bias matrices");
+		}
+		for(int i = 0; i < numberOfLayers-1; i++) {
+			if(weights.get(i).getNumRows() != sizeOfLayers.get(i+1) || weights.get(i).getNumCols() != sizeOfLayers.get(i)) {
+				throw new InvalidInputException(weights.get(i));
+			}
+			if(biases.get(i).getNumRows() != sizeOfLayers.get(i+1) || biases.get(i).getNumCols() != 1) {
+				throw new InvalidInputException(biases.get(i));
+			}
+		}
+		this.sizeOfLayers = sizeOfLayers;
+		this.weights = new ArrayList<FMatrixRMaj>(weights);
+		this.biases = new ArrayList<FMatrixRMaj>(biases);
+		this.activations = sigmoidLayers(numberOfLayers);
+	}
+	
+	private static Activation[] sigmoidLayers(final int numberOfLayers) {
+		final Activation[] activations = new Activation[numberOfLayers-1];
+		Arrays.fill(activations, Activation.SIGMOID);
+		return activations;
+	}
+	
+	private static RandomDataGenerator seededGenerator(final long seed) {
+		final RandomDataGenerator generator = new RandomDataGenerator();
+		generator.reSeed(seed);
+		return generator;
 	}
 
-	private List<FMatrixRMaj> generateBiases() throws LayerTooSmallException {
+	private List<FMatrixRMaj> generateBiases(final RandomDataGenerator generator) throws LayerTooSmallException {
 		final List<FMatrixRMaj> biases = new ArrayList<FMatrixRMaj>();
 		for(int i = 1; i < numberOfLayers; i++) {
 			if(sizeOfLayers.get(i)<=0){
@@ -45,14 +130,14 @@ public class Network {
 			}
 			final FMatrixRMaj layerBias = new FMatrixRMaj(sizeOfLayers.get(i), 1);
 			for(int j = 0; j < layerBias.getNumRows(); j++){
-				layerBias.set(j, 0, (float) GAUSSIAN_GENERATOR.nextGaussian(0, 1));
+				layerBias.set(j, 0, (float) generator.nextGaussian(0, 1));
 			}
 			biases.add(layerBias);
 		}
 		return biases;
 	}
 	
-	private List<FMatrixRMaj> getWeights() throws LayerTooSmallException {
+	private List<FMatrixRMaj> getWeights(final RandomDataGenerator generator) throws LayerTooSmallException {
 		final List<FMatrixRMaj> weights = new ArrayList<FMatrixRMaj>();
 		for(int i = 0; i < numberOfLayers-1; i++) {
 			if(sizeOfLayers.get(i)<=0){
@@ -61,7 +146,7 @@ public class Network {
 			final FMatrixRMaj layerWeights = new FMatrixRMaj(sizeOfLayers.get(i+1), sizeOfLayers.get(i));
 			for(int j = 0; j < layerWeights.getNumRows(); j++){
 				for(int k = 0; k < layerWeights.getNumCols(); k++) {
-					layerWeights.set(j, k, (float) GAUSSIAN_GENERATOR.nextGaussian(0, 1));
+					layerWeights.set(j, k, (float) generator.nextGaussian(0, 1));
 				}
 			}
 			weights.add(layerWeights);
@@ -119,6 +204,219 @@ public class Network {
 		this.weights.set(layer, weights);
 	}
 	
+	/**
+	 * Return the transform applied to raw inputs before the first layer, or
+	 * null if the network takes raw pixel intensities.
+	 */
+	public Normalization getNormalization() {
+		return normalization;
+	}
+
+	/**
+	 * Set the transform applied to raw inputs before the first layer; null
+	 * for none.
+	 */
+	public void setNormalization(final Normalization normalization) {
+		if(normalization != null && normalization.getSize() != sizeOfLayers.get(0)) {
+			throw new IllegalArgumentException("Normalization of " + normalization.getSize() + " inputs for an input layer of " + sizeOfLayers.get(0));
+		}
+		this.normalization = normalization;
+	}
+
+	/**
+	 * Return the activation of the layer fed by weight matrix "layer".
+	 * 
+	 * @throws LayerDoesNotExistException
+	 */
+	public Activation getActivation(final int layer) throws LayerDoesNotExistException {
+		checkParameterLayer(layer);
+		return activations[layer];
+	}
+
+	/**
+	 * Set the activation of the layer fed by weight matrix "layer".
+	 * 
+	 * @throws LayerDoesNotExistException
+	 * @throws IllegalArgumentException if the cost does not support it on the output layer
+	 */
+	public void setActivation(final int layer, final Activation activation) throws LayerDoesNotExistException {
+		checkParameterLayer(layer);
+		if(layer == numberOfLayers-2 && !cost.supports(activation)) {
+			throw new IllegalArgumentException(cost + " cost on a " + activation + " output layer");
+		}
+		activations[layer] = activation;
+	}
+
+	public Cost getCost() {
+		return cost;
+	}
+
+	/**
+	 * Set the cost the network is trained against.
+	 * 
+	 * @throws IllegalArgumentException if it does not support the output layer's activation
+	 */
+	public void setCost(final Cost cost) {
+		if(!cost.supports(activations[numberOfLayers-2])) {
+			throw new IllegalArgumentException(cost + " cost on a " + activations[numberOfLayers-2] + " output layer");
+		}
+		this.cost = cost;
+	}
+
+	/**
+	 * Scale every layer's weights by 1 / sqrt(fan-in), or sqrt(2 / fan-in)
+	 * for rectified layers, which only pass on half their inputs. Weights
+	 * drawn from a unit Gaussian then give weighted inputs of roughly unit
+	 * variance in every layer instead of ones that grow with the layer
+	 * width and saturate the activations; call it on a freshly initialized
+	 * network, after setting the activations.
+	 */
+	public void scaleWeightsByFanIn() {
+		for(int i = 0; i < numberOfLayers-1; i++) {
+			final boolean rectified = activations[i] == Activation.RELU || activations[i] == Activation.LEAKY_RELU;
+			final float scale = (float) Math.sqrt((rectified ? 2.0 : 1.0) / sizeOfLayers.get(i));
+			final FMatrixRMaj layerWeights = weights.get(i);
+			for(int j = 0; j < layerWeights.getNumElements(); j++) {
+				layerWeights.data[j] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * Add "alpha" times "gradient" to the weights of a layer, in place.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException if the gradient does not match the weights
+	 */
+	public void axpyWeights(final int layer, final float alpha, final FMatrixRMaj gradient) throws LayerDoesNotExistException, InvalidInputException {
+		checkParameterLayer(layer);
+		final FMatrixRMaj layerWeights = weights.get(layer);
+		if(gradient.getNumRows() != layerWeights.getNumRows() || gradient.getNumCols() != layerWeights.getNumCols()) {
+			throw new InvalidInputException(gradient);
+		}
+		Backends.current().axpy(alpha, gradient, layerWeights);
+	}
+	
+	/**
+	 * Add "alpha" times "gradient" to the biases of a layer, in place.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException if the gradient does not match the biases
+	 */
+	public void axpyBiases(final int layer, final float alpha, final FMatrixRMaj gradient) throws LayerDoesNotExistException, InvalidInputException {
+		checkParameterLayer(layer);
+		final FMatrixRMaj layerBiases = biases.get(layer);
+		if(gradient.getNumRows() != layerBiases.getNumRows() || gradient.getNumCols() != 1) {
+			throw new InvalidInputException(gradient);
+		}
+		Backends.current().axpy(alpha, gradient, layerBiases);
+	}
+	
+	/**
+	 * Return the total number of weights and biases.
+	 */
+	public int getNumberOfParameters() {
+		int count = 0;
+		for(int i = 0; i < numberOfLayers-1; i++) {
+			count += weights.get(i).getNumElements() + biases.get(i).getNumElements();
+		}
+		return count;
+	}
+	
+	/**
+	 * Copy every parameter into "destination" in the flat layout: for each
+	 * layer, the weights in row-major order followed by the biases. This is
+	 * also the layout of {@link ModelFile} and of the parameters and
+	 * gradients exchanged in distributed training.
+	 */
+	public void copyParameters(final float[] destination) {
+		checkParameterCount(destination.length);
+		copyParameters(FloatBuffer.wrap(destination));
+	}
+	
+	/**
+	 * Put every parameter into "destination" in the flat layout of
+	 * {@link #copyParameters(float[])}, advancing its position. This lets a
+	 * view of a file or socket buffer be filled straight from the layers.
+	 * 
+	 * @throws IllegalArgumentException if "destination" has too little room left
+	 */
+	public void copyParameters(final FloatBuffer destination) {
+		checkRemaining(destination);
+		for(int i = 0; i < numberOfLayers-1; i++) {
+			destination.put(weights.get(i).data, 0, weights.get(i).getNumElements());
+			destination.put(biases.get(i).data, 0, biases.get(i).getNumElements());
+		}
+	}
+	
+	/**
+	 * Overwrite every parameter, in place, from "source" in the flat layout
+	 * of {@link #copyParameters(float[])}.
+	 */
+	public void setParameters(final float[] source) {
+		checkParameterCount(source.length);
+		setParameters(FloatBuffer.wrap(source));
+	}
+	
+	/**
+	 * Overwrite every parameter, in place, from the next floats of "source"
+	 * in the flat layout of {@link #copyParameters(float[])}, advancing its
+	 * position.
+	 * 
+	 * @throws IllegalArgumentException if "source" has too few floats left
+	 */
+	public void setParameters(final FloatBuffer source) {
+		checkRemaining(source);
+		for(int i = 0; i < numberOfLayers-1; i++) {
+			source.get(weights.get(i).data, 0, weights.get(i).getNumElements());
+			source.get(biases.get(i).data, 0, biases.get(i).getNumElements());
+		}
+	}
+	
+	/**
+	 * Return an independent deep copy of this network, with the same
+	 * activations and cost. The normalization, being immutable, is shared.
+	 */
+	public Network copy() {
+		final List<FMatrixRMaj> weightsCopy = new ArrayList<FMatrixRMaj>(numberOfLayers-1);
+		final List<FMatrixRMaj> biasesCopy = new ArrayList<FMatrixRMaj>(numberOfLayers-1);
+		for(int i = 0; i < numberOfLayers-1; i++) {
+			weightsCopy.add(weights.get(i).copy());
+			biasesCopy.add(biases.get(i).copy());
+		}
+		try {
+			Network copy = new Network(new ArrayList<Integer>(sizeOfLayers), weightsCopy, biasesCopy);
+			System.arraycopy(activations, 0, copy.activations, 0, activations.length);
+			copy.cost = cost;
+			copy.normalization = normalization;
+			return copy;
+		} catch (NetworkTooSmallException e) {
+			throw new IllegalStateException(e);
+		} catch (LayerTooSmallException e) {
+			throw new IllegalStateException(e);
+		} catch (InvalidInputException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private void checkParameterLayer(final int layer) throws LayerDoesNotExistException {
+		if(layer < 0 || layer >= numberOfLayers.intValue()-1) {
+			throw new LayerDoesNotExistException(layer);
+		}
+	}
+	
+	private void checkParameterCount(final int count) {
+		if(count != getNumberOfParameters()) {
+			throw new IllegalArgumentException("Expected " + getNumberOfParameters() + " parameters, got " + count);
+		}
+	}
+	
+	private void checkRemaining(final FloatBuffer buffer) {
+		if(buffer.remaining() < getNumberOfParameters()) {
+			throw new IllegalArgumentException("Expected room for " + getNumberOfParameters() + " parameters, got " + buffer.remaining());
+		}
+	}
+	
 	@Override
 	public String toString() {
 		try {
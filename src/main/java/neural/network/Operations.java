@@ -2,18 +2,33 @@ package neural.network;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
-import org.apache.commons.math3.analysis.function.Sigmoid;
 import org.ejml.data.FMatrixRMaj;
 import org.ejml.dense.row.CommonOps_FDRM;
 
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Augmentation;
+import neural.network.data.BatchPipeline;
+import neural.network.data.BatchSource;
+import neural.network.data.Dataset;
+import neural.network.data.DatasetSource;
 import neural.network.data.Image;
 import neural.network.data.ImageReader;
+import neural.network.data.Normalization;
 import neural.network.exceptions.InvalidInputException;
 import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.linalg.Backend;
+import neural.network.linalg.Backends;
+import neural.network.linalg.SparseColumns;
+import neural.network.linalg.SparseKernels;
+import neural.network.metrics.Evaluation;
+import neural.network.metrics.TrainingMonitor;
+import neural.network.optimizers.Optimizer;
+import neural.network.optimizers.Sgd;
 
 public class Operations {
 
@@ -25,12 +40,7 @@ public class Operations {
 	 */
 	public static FMatrixRMaj sigmoid(final FMatrixRMaj input) {
 		final FMatrixRMaj output = input.copy();
-		Sigmoid sigmoid = new Sigmoid();
-		for (int i = 0; i < output.getNumRows(); i++) {
-			for (int j = 0; j < output.getNumCols(); j++) {
-				output.unsafe_set(i, j, (float) sigmoid.value(output.unsafe_get(i, j)));
-			}
-		}
+		SigmoidKernels.sigmoid(output.data, output.getNumElements());
 		return output;
 	}
 
@@ -38,14 +48,9 @@ public class Operations {
 	 * Compute the derivative of sigmoid elementwise on a vector or matrix.
 	 */
 	public static FMatrixRMaj sigmoid_prime(final FMatrixRMaj input) {
-		final FMatrixRMaj temp = sigmoid(input).copy();
-		for (int i = 0; i < temp.getNumRows(); i++) {
-			for (int j = 0; j < temp.getNumCols(); j++) {
-				temp.set(i, j, 1f - temp.get(i, j));
-			}
-		}
-		CommonOps_FDRM.elementMult(sigmoid(input), temp, temp);
-		return temp;
+		final FMatrixRMaj output = new FMatrixRMaj(input.getNumRows(), input.getNumCols());
+		SigmoidKernels.sigmoidPrime(input.data, output.data, input.getNumElements());
+		return output;
 	}
 
 	/**
@@ -59,25 +64,85 @@ public class Operations {
 		if (input.getNumRows() != network.getSizeOfLayers().get(0).intValue() || input.getNumCols() != 1) {
 			throw new InvalidInputException(input);
 		}
+		final Backend backend = Backends.current();
 		FMatrixRMaj output = null;
 		for (int i = 0; i < network.getNumberOfLayers() - 1; i++) {
 			output = new FMatrixRMaj(network.getSizeOfLayers().get(i + 1), 1);
-			CommonOps_FDRM.mult(network.getWeightsInLayer(i), input, output);
-			CommonOps_FDRM.add(output, network.getBiasesInLayer(i), output);
-			output.set(sigmoid(output));
+			backend.mult(network.getWeightsInLayer(i), input, output);
+			backend.axpy(1f, network.getBiasesInLayer(i), output);
+			network.getActivation(i).apply(backend, output);
 			input = output;
 		}
 		return output;
 	}
 
+	/**
+	 * Compute the output of a neural network on a batch of inputs packed one
+	 * per column into "activations[0]". Every later entry of "activations"
+	 * receives the activations of the matching layer, so the output lands in
+	 * the last one. Each buffer must already have as many columns as the
+	 * input; nothing is allocated.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 */
+	static void feedForwardBatch(final Network network, final FMatrixRMaj[] activations) throws LayerDoesNotExistException {
+		feedForwardBatch(network, activations, SigmoidKernels.Mode.EXACT);
+	}
+
+	/**
+	 * Same as {@link #feedForwardBatch(Network, FMatrixRMaj[])} but with a
+	 * choice of kernel for the sigmoid layers.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 */
+	static void feedForwardBatch(final Network network, final FMatrixRMaj[] activations, final SigmoidKernels.Mode mode) throws LayerDoesNotExistException {
+		feedForwardBatch(network, null, activations, mode);
+	}
+
+	/**
+	 * Same as {@link #feedForwardBatch(Network, FMatrixRMaj[], SigmoidKernels.Mode)},
+	 * but if "sparseInputs" is not null the first layer multiplies only the
+	 * non-zero inputs it holds, and "activations[0]" is not read.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 */
+	static void feedForwardBatch(final Network network, final SparseColumns sparseInputs, final FMatrixRMaj[] activations,
+			final SigmoidKernels.Mode mode) throws LayerDoesNotExistException {
+		final Backend backend = Backends.current();
+		for (int i = 0; i < network.getNumberOfLayers() - 1; i++) {
+			if (i == 0 && sparseInputs != null) {
+				SparseKernels.mult(network.getWeightsInLayer(0), sparseInputs, activations[1]);
+			} else {
+				backend.mult(network.getWeightsInLayer(i), activations[i], activations[i + 1]);
+			}
+			backend.addToColumns(activations[i + 1], network.getBiasesInLayer(i));
+			final Activation activation = network.getActivation(i);
+			if (mode == SigmoidKernels.Mode.LOOKUP_TABLE && activation == Activation.SIGMOID) {
+				SigmoidKernels.sigmoidTable(activations[i + 1].data, activations[i + 1].getNumElements());
+			} else {
+				activation.apply(backend, activations[i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Compute the forward pass of the batch held in a workspace. If the
+	 * workspace has a compressed copy of its inputs the first layer only
+	 * multiplies the non-zero ones.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 */
+	static void feedForwardBatch(final Network network, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		feedForwardBatch(network, workspace.sparseInputs, workspace.activations, SigmoidKernels.Mode.EXACT);
+	}
+
 	/**
 	 * Train the neural network using mini-batch stochastic gradient descent.
 	 * 
-	 * The input is a list of image objects, which encapsulates the label and
-	 * the pixel data of the training data. The other non-optional parameters
-	 * are self-explanatory.
+	 * The training data is read from "mnist_train.csv". The other
+	 * non-optional parameters are self-explanatory.
 	 * 
-	 * If "test_data" is provided then the network will be evaluated against the
+	 * If "test" is set then the network will be evaluated against the
 	 * test data after each epoch, and partial progress printed out. This is
 	 * useful for tracking progress, but slows things down substantially.
 	 * 
@@ -89,106 +154,455 @@ public class Operations {
 	public static void stochasticGradientDescent(final Network network, final int epochs, final int mini_batch_size,
 			final float eta, final boolean test) throws IOException, InvalidInputException, LayerDoesNotExistException {
 		// Import trainingData
-		List<Image> trainingData = ImageReader.read("/mnist_train.csv");
+		Dataset trainingData = ImageReader.readDataset("/mnist_train.csv");
 
 		// Import testData if the user wants too
-		List<Image> testData = null;
+		Dataset testData = null;
 		if (test) {
-			testData = ImageReader.read("/mnist_test.csv");
+			testData = ImageReader.readDataset("/mnist_test.csv");
 		}
 
+		stochasticGradientDescent(network, trainingData, testData, epochs, mini_batch_size, eta);
+	}
+
+	/**
+	 * Train the neural network using mini-batch stochastic gradient descent.
+	 * 
+	 * The training data is shuffled in place every epoch and consumed in
+	 * mini batches of consecutive samples. If "testData" is not null the
+	 * network is evaluated against it after each epoch.
+	 * 
+	 * @throws IOException
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 */
+	public static void stochasticGradientDescent(final Network network, final Dataset trainingData, final Dataset testData,
+			final int epochs, final int mini_batch_size, final float eta) throws IOException, InvalidInputException, LayerDoesNotExistException {
+		stochasticGradientDescent(network, trainingData, testData, epochs, mini_batch_size, eta, null);
+	}
+
+	/**
+	 * Train the neural network using mini-batch stochastic gradient descent,
+	 * saving it through "checkpointer" as epochs complete.
+	 * 
+	 * Training starts at the epoch the checkpointer has recorded as completed,
+	 * so a network returned by {@link Checkpointer#resume} carries on where
+	 * the previous run stopped. "checkpointer" may be null.
+	 * 
+	 * @throws IOException if a checkpoint cannot be written
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 */
+	public static void stochasticGradientDescent(final Network network, final Dataset trainingData, final Dataset testData,
+			final int epochs, final int mini_batch_size, final float eta, final Checkpointer checkpointer) throws IOException, InvalidInputException, LayerDoesNotExistException {
+		stochasticGradientDescent(network, DatasetSource.of(trainingData), testData, epochs, mini_batch_size, eta, null, checkpointer);
+	}
+
+	/**
+	 * Train the neural network using mini-batch stochastic gradient descent
+	 * on batches drawn from "trainingData".
+	 * 
+	 * Batches are shuffled, packed and, if "augmentation" is not null,
+	 * augmented on a background {@link BatchPipeline} thread up to
+	 * {@link BatchPipeline#DEFAULT_DEPTH} batches ahead of training.
+	 * "testData", "augmentation" and "checkpointer" may be null.
+	 * Augmentations move raw pixels and fill with black, so a dataset
+	 * normalized in advance can only be augmented if it was scaled by
+	 * {@link Normalization#unitRange}, which keeps both meaningful.
+	 * 
+	 * @throws IOException if the training data cannot be read or a checkpoint cannot be written
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 * @throws IllegalArgumentException if "trainingData" was normalized in a way augmentation cannot work in
+	 */
+	public static void stochasticGradientDescent(final Network network, final BatchSource trainingData, final Dataset testData,
+			final int epochs, final int mini_batch_size, final float eta, final Augmentation augmentation, final Checkpointer checkpointer)
+			throws IOException, InvalidInputException, LayerDoesNotExistException {
+		stochasticGradientDescent(network, trainingData, testData, epochs, mini_batch_size, eta, augmentation, checkpointer, null);
+	}
+
+	/**
+	 * Same as
+	 * {@link #stochasticGradientDescent(Network, BatchSource, Dataset, int, int, float, Augmentation, Checkpointer)}
+	 * but reporting timings, loss and test accuracy to "monitor", which may
+	 * be null. The test set is evaluated in parallel after every epoch, and
+	 * on a random sample every few batches if the monitor asks for it with
+	 * {@link TrainingMonitor#evaluateEvery}.
+	 * 
+	 * @throws IOException if the training data cannot be read or a checkpoint cannot be written
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 */
+	public static void stochasticGradientDescent(final Network network, final BatchSource trainingData, final Dataset testData,
+			final int epochs, final int mini_batch_size, final float eta, final Augmentation augmentation, final Checkpointer checkpointer,
+			final TrainingMonitor monitor) throws IOException, InvalidInputException, LayerDoesNotExistException {
+		stochasticGradientDescent(network, trainingData, testData, epochs, mini_batch_size, new Sgd(eta), augmentation, checkpointer, monitor);
+	}
+
+	/**
+	 * Train the neural network on mini batches drawn from "trainingData",
+	 * updating its weights and biases with "optimizer" after every batch.
+	 * "testData", "augmentation", "checkpointer" and "monitor" may be null.
+	 * 
+	 * @throws IOException if the training data cannot be read or a checkpoint cannot be written
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 */
+	public static void stochasticGradientDescent(final Network network, final BatchSource trainingData, final Dataset testData,
+			final int epochs, final int mini_batch_size, final Optimizer optimizer, final Augmentation augmentation,
+			final Checkpointer checkpointer, final TrainingMonitor monitor) throws IOException, InvalidInputException, LayerDoesNotExistException {
+		stochasticGradientDescent(network, trainingData, testData, epochs, mini_batch_size, optimizer, augmentation, checkpointer, monitor,
+				new Random());
+	}
+
+	/**
+	 * Same as
+	 * {@link #stochasticGradientDescent(Network, BatchSource, Dataset, int, int, Optimizer, Augmentation, Checkpointer, TrainingMonitor)}
+	 * but shuffling, augmenting and sampling the test set with seeds drawn
+	 * from "random", so that a seeded run trains the same way every time.
+	 * 
+	 * This is the general form of the other overloads, which all use plain
+	 * gradient descent with learning rate "eta" or an unseeded random.
+	 * 
+	 * @throws IOException if the training data cannot be read or a checkpoint cannot be written
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 */
+	public static void stochasticGradientDescent(final Network network, final BatchSource trainingData, final Dataset testData,
+			final int epochs, final int mini_batch_size, final Optimizer optimizer, final Augmentation augmentation,
+			final Checkpointer checkpointer, final TrainingMonitor monitor, final Random random)
+			throws IOException, InvalidInputException, LayerDoesNotExistException {
+		// Buffers reused by every mini batch
+		TrainingWorkspace workspace = new TrainingWorkspace(network, mini_batch_size);
+		final int first = checkpointer == null ? 0 : checkpointer.getEpochsCompleted();
+		final int outputs = network.getSizeOfLayers().get(network.getNumberOfLayers() - 1);
+		// Raw batches are normalized the way the network expects, and
+		// mostly-zero ones compressed for the first layer if that beats the
+		// dense backend in use
+		BatchPipeline pipeline = new BatchPipeline(trainingData, mini_batch_size, outputs, BatchPipeline.DEFAULT_DEPTH,
+				Math.max(0, epochs - first), new Random(random.nextLong()), augmentation, pendingNormalization(network, trainingData, augmentation),
+				SparseKernels.densityThreshold(Backends.current()));
+		// Evaluation buffers, also reused from epoch to epoch
+		Evaluator evaluator = testData == null ? null : new Evaluator(network);
+		Evaluation evaluation = new Evaluation(outputs);
+		Evaluation sample = new Evaluation(outputs);
+		// The pipeline draws from its own thread, so the sampling gets a
+		// generator of its own too
+		Random sampling = new Random(random.nextLong());
+
 		// Begin Gradient Descent
-		for (int i = 0; i < epochs; i++) {
-			// Randomize trainingData
-			Collections.shuffle(trainingData);
-
-			// Init mini Batches
-			List<List<Image>> miniBatches = new LinkedList<List<Image>>();
-			int tracker = 0;
-			List<Image> miniBatch = new ArrayList<Image>();
-			for (Image img : trainingData) {
-				miniBatch.add(img);
-				if (++tracker % mini_batch_size == 0) {
-					miniBatches.add(miniBatch);
-					miniBatch = new ArrayList<Image>();
+		try {
+			for (int i = first; i < epochs; i++) {
+				if (monitor != null) {
+					monitor.epochStarted(i);
+				}
+
+				// Descend using the mini batches the pipeline has prepared
+				while (true) {
+					if (monitor != null && monitor.sampleNextBatch()) {
+						long start = System.nanoTime();
+						BatchPipeline.Batch batch = pipeline.next();
+						if (batch == null) {
+							break;
+						}
+						long loaded = System.nanoTime();
+						bind(workspace, batch);
+						feedForwardBatch(network, workspace);
+						long forward = System.nanoTime();
+						backward(network, workspace);
+						long backward = System.nanoTime();
+						applyGradients(network, workspace, optimizer, batch.size());
+						long updated = System.nanoTime();
+						monitor.batchCompleted(batch.size(), loaded - start, forward - loaded, backward - forward, updated - backward,
+								cost(network, workspace));
+						pipeline.release(batch);
+						evaluateSample(evaluator, testData, monitor, sampling, sample);
+					} else {
+						BatchPipeline.Batch batch = pipeline.next();
+						if (batch == null) {
+							break;
+						}
+						updateMiniBatch(network, batch, optimizer, workspace);
+						pipeline.release(batch);
+						if (monitor != null) {
+							monitor.batchCompleted(batch.size());
+							evaluateSample(evaluator, testData, monitor, sampling, sample);
+						}
+					}
+				}
+				if (monitor != null) {
+					monitor.trainingCompleted();
+				}
+
+				// Output status report
+				if (testData != null) {
+					evaluator.evaluate(testData, evaluation);
+					System.out.println("Epoch " + i + ": " + evaluation.getCorrect() + " / " + testData.size());
+					if (monitor != null) {
+						monitor.epochCompleted(evaluation);
+					}
+				} else {
+					System.out.println("Epoch " + i + " complete");
+					if (monitor != null) {
+						monitor.epochCompleted(null);
+					}
 				}
-			}
 
-			// Descend using mini batches
-			for (List<Image> mb : miniBatches) {
-				updateMiniBatch(network, mb, eta);
+				// Save progress
+				if (checkpointer != null) {
+					checkpointer.epochCompleted(network, i + 1, epochs);
+				}
 			}
+		} finally {
+			pipeline.close();
+		}
+	}
 
-			// Output status report
-			if (test) {
-				System.out.println("Epoch " + i + ": " + evaluate(testData, network) + " / " + testData.size());
-			} else {
-				System.out.println("Epoch " + i + " complete");
+	/**
+	 * Return the normalization still to be applied to the batches of
+	 * "source" for "network": none if the source is a dataset that was
+	 * already normalized, which must then match the network's. The pipeline
+	 * normalizes after augmenting, so a dataset normalized in advance is
+	 * augmented in normalized space, which is only the same under the unit
+	 * range: any other transform moves black away from zero, or scales
+	 * pixels differently from the ones they are shifted onto.
+	 */
+	private static Normalization pendingNormalization(final Network network, final BatchSource source, final Augmentation augmentation) {
+		if (source instanceof DatasetSource) {
+			final Normalization normalized = ((DatasetSource) source).getDataset().getNormalization();
+			if (normalized != null) {
+				if (!normalized.equals(network.getNormalization())) {
+					throw new IllegalArgumentException("Training data was normalized differently from the network's inputs");
+				}
+				if (augmentation != null && !normalized.equals(Normalization.unitRange())) {
+					throw new IllegalArgumentException("Cannot augment data normalized other than to the unit range; "
+							+ "train on the raw data and let the network's normalization apply after augmentation");
+				}
+				return null;
 			}
 		}
+		return network.getNormalization();
+	}
+
+	/**
+	 * Evaluate a sample of the test set if the monitor asks for one after the
+	 * batch just recorded.
+	 */
+	private static void evaluateSample(final Evaluator evaluator, final Dataset testData, final TrainingMonitor monitor,
+			final Random random, final Evaluation sample) throws LayerDoesNotExistException {
+		if (evaluator != null && monitor.evaluationDue()) {
+			evaluator.evaluateSample(testData, monitor.getEvaluationSampleSize(), random, sample);
+			monitor.evaluationCompleted(sample);
+		}
 	}
 
 	/**
 	 * Update the network's weights and biases by applying gradient descent
 	 * using backpropagation to a single mini batch.
 	 * 
-	 * The "mini batch" is a list of image objects and "eta" is the learning
-	 * rate.
+	 * The "mini batch" is samples [start, start + length) of "data" and "eta"
+	 * is the learning rate. The whole batch is packed into one matrix (one
+	 * column per image) so that the forward and backward passes are
+	 * matrix-matrix products rather than a matrix-vector product per image.
+	 * All intermediate values live in "workspace" and the weights and biases
+	 * are updated in place.
 	 * @throws LayerDoesNotExistException 
-	 * @throws InvalidInputException 
 	 */
-	private static void updateMiniBatch(final Network network, final List<Image> batch, final float eta) throws LayerDoesNotExistException, InvalidInputException {
-		//Initialize gradient of biases to all zeros
-		List<FMatrixRMaj> nablaB = new ArrayList<FMatrixRMaj>();
-		for(FMatrixRMaj layer : network.getAllBiases()) {
-			FMatrixRMaj entry = layer.copy();
-			entry.zero();
-			nablaB.add(entry);
-		}
-		
-		//Initialize gradient of weights to all zeros
-		List<FMatrixRMaj> nablaW = new ArrayList<FMatrixRMaj>();
-		for(FMatrixRMaj layer : network.getAllWeights()) {
-			FMatrixRMaj entry = layer.copy();
-			entry.zero();
-			nablaW.add(entry);
+	static void updateMiniBatch(final Network network, final Dataset data, final int start, final int length, final float eta, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		pack(data, start, length, workspace);
+		backpropBatch(network, workspace);
+		applyGradients(network, workspace, eta/length);
+	}
+	
+	/**
+	 * Update the network's weights and biases by applying gradient descent
+	 * using backpropagation to a mini batch packed by a {@link BatchPipeline}
+	 * and letting "optimizer" apply the gradient. The batch's matrices are
+	 * trained on in place, without copying.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static void updateMiniBatch(final Network network, final BatchPipeline.Batch batch, final Optimizer optimizer, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		bind(workspace, batch);
+		backpropBatch(network, workspace);
+		applyGradients(network, workspace, optimizer, batch.size());
+	}
+	
+	/**
+	 * Train a workspace on a pipeline batch in place, handing the first
+	 * layer the compressed inputs alone if the batch has them.
+	 */
+	private static void bind(final TrainingWorkspace workspace, final BatchPipeline.Batch batch) {
+		final SparseColumns sparseInputs = batch.getSparseInputs();
+		workspace.bind(sparseInputs == null ? batch.getInputs() : null, batch.getExpected(), sparseInputs);
+	}
+
+	/**
+	 * Copy samples [start, start + length) of "data" into the input and
+	 * expected output buffers of a workspace, one image per column. A
+	 * {@link Dataset#isSparse sparse} dataset is packed straight into the
+	 * workspace's compressed inputs, and only expanded if the batch is too
+	 * dense for the sparse kernels to pay off.
+	 */
+	static void pack(final Dataset data, final int start, final int length, final TrainingWorkspace workspace) {
+		workspace.reshape(length);
+		if (data.isSparse()) {
+			final SparseColumns sparseInputs = workspace.getPackedSparseInputs();
+			data.pack(start, length, sparseInputs, workspace.getExpected());
+			if (sparseInputs.getDensity() <= SparseKernels.densityThreshold(Backends.current())) {
+				workspace.usePackedSparseInputs();
+			} else {
+				sparseInputs.toDense(workspace.getInputs());
+			}
+			return;
 		}
-		
-		//Backpropogate
-		for(Image img : batch) {
-			//Change in nablaB and nablaW (i.e. Deltas)
-			List<List<FMatrixRMaj>> result = backprop(network, img);
-			//add change to nablaB and nablaW
+		data.pack(start, length, workspace.getInputs(), workspace.getExpected());
+	}
+	
+	/**
+	 * Update the network's weights and biases with "optimizer", given the
+	 * gradient summed over "batchSize" samples held in a workspace.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static void applyGradients(final Network network, final TrainingWorkspace workspace, final Optimizer optimizer, final int batchSize) throws LayerDoesNotExistException {
+		optimizer.update(network, workspace.nablaW, workspace.nablaB, batchSize);
+	}
+
+	/**
+	 * Subtract "rate" times the gradient held in a workspace from the
+	 * network's weights and biases, in place.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static void applyGradients(final Network network, final TrainingWorkspace workspace, final float rate) throws LayerDoesNotExistException {
+		try {
 			for(int i = 0; i < network.getNumberOfLayers()-1; i++) {
-				FMatrixRMaj tempNablaB = nablaB.get(i).copy();
-				CommonOps_FDRM.add(tempNablaB, result.get(0).get(i), tempNablaB);
-				nablaB.set(i, tempNablaB);
-				FMatrixRMaj tempNablaW = nablaW.get(i).copy();
-				CommonOps_FDRM.add(tempNablaW, result.get(1).get(i), tempNablaW);
-				nablaW.set(i, tempNablaW);
+				network.axpyBiases(i, -rate, workspace.nablaB[i]);
+				network.axpyWeights(i, -rate, workspace.nablaW[i]);
 			}
+		} catch (InvalidInputException e) {
+			throw new IllegalArgumentException("Workspace does not match the network's shape", e);
+		}
+	}
+	
+	/**
+	 * Return a tuple ``(nabla_b, nabla_w)`` holding the gradient of the cost
+	 * summed over every column of ``inputs``. Column j of ``expected`` is the
+	 * desired output for column j of ``inputs``.
+	 * 
+	 * The result is the same as summing {@link #backprop} over each column,
+	 * but every layer is computed with a single matrix-matrix product.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static List<List<FMatrixRMaj>> backpropBatch(final Network network, final FMatrixRMaj inputs, final FMatrixRMaj expected) throws LayerDoesNotExistException {
+		TrainingWorkspace workspace = new TrainingWorkspace(network, inputs.getNumCols());
+		workspace.getInputs().set(inputs);
+		workspace.getExpected().set(expected);
+		backpropBatch(network, workspace);
+		return Arrays.asList(Arrays.asList(workspace.nablaB), Arrays.asList(workspace.nablaW));
+	}
+	
+	/**
+	 * Backpropagate the batch packed into a workspace, leaving the summed
+	 * gradient of the cost in its ``nablaB`` and ``nablaW`` buffers. Nothing
+	 * is allocated.
+	 * 
+	 * The weighted inputs z are never kept: each layer's derivative f'(z) is
+	 * recovered from the activations of the forward pass, e.g. as a * (1 - a)
+	 * for sigmoid, and the output error comes from the network's
+	 * {@link Cost} in one step.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static void backpropBatch(final Network network, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		feedForwardBatch(network, workspace);
+		backward(network, workspace);
+	}
+	
+	/**
+	 * Train the network for one epoch on the calling thread: shuffle "data"
+	 * in place with "random" and update the network with "optimizer" after
+	 * every mini batch of consecutive samples. Unlike
+	 * {@link #stochasticGradientDescent} nothing runs in the background and
+	 * nothing is printed, so many networks can be trained side by side on a
+	 * shared pool. "data" must already be normalized the way the network
+	 * expects, and "workspace" must hold at least "mini_batch_size" samples.
+	 * Return the mean cost over the epoch's batches.
+	 * @throws LayerDoesNotExistException 
+	 */
+	public static float trainEpoch(final Network network, final Dataset data, final int mini_batch_size, final Optimizer optimizer,
+			final Random random, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		if(data.getNormalization() == null ? network.getNormalization() != null : !data.getNormalization().equals(network.getNormalization())) {
+			throw new IllegalArgumentException("Training data was normalized differently from the network's inputs");
+		}
+		data.shuffle(random);
+		float total = 0;
+		int batches = 0;
+		for(int start = 0; start < data.size(); start += mini_batch_size) {
+			final int length = Math.min(mini_batch_size, data.size() - start);
+			total += computeGradient(network, data, start, length, workspace);
+			applyGradients(network, workspace, optimizer, length);
+			batches++;
 		}
+		return batches == 0 ? 0f : total / batches;
+	}
+
+	/**
+	 * Backpropagate samples [start, start + length) of "data", leaving the
+	 * gradient of the cost summed over them in "workspace", and return their
+	 * mean cost. The network is not updated; this is a worker's share of a
+	 * distributed mini batch.
+	 * @throws LayerDoesNotExistException 
+	 */
+	public static float computeGradient(final Network network, final Dataset data, final int start, final int length, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		pack(data, start, length, workspace);
+		backpropBatch(network, workspace);
+		return cost(network, workspace);
+	}
+	
+	/**
+	 * The backward half of {@link #backpropBatch(Network, TrainingWorkspace)},
+	 * for a workspace whose activations already hold the forward pass.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static void backward(final Network network, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		final int layers = network.getNumberOfLayers()-1;
+		final FMatrixRMaj[] activations = workspace.activations;
+		final FMatrixRMaj[] deltas = workspace.deltas;
+		final Backend backend = Backends.current();
 		
-		//Update weights and biases
-		for(int i = 0; i < network.getNumberOfLayers()-1; i++) {
-			FMatrixRMaj newBiases = nablaB.get(i).copy();
-			CommonOps_FDRM.scale(eta/batch.size(), newBiases);
-			CommonOps_FDRM.subtract(network.getBiasesInLayer(i), newBiases, newBiases);
-			network.setBiasInLayer(i, newBiases);
-			FMatrixRMaj newWeights = nablaW.get(i).copy();
-			CommonOps_FDRM.scale(eta/batch.size(), newWeights);
-			CommonOps_FDRM.subtract(network.getWeightsInLayer(i), newWeights, newWeights);
-			network.setWeightsInLayer(i, newWeights);
+		network.getCost().outputDelta(network.getActivation(layers-1), backend, activations[layers], workspace.expected, deltas[layers-1]);
+		for(int i = layers-1; i >= 0; i--) {
+			if(i < layers-1) {
+				backend.multTransA(network.getWeightsInLayer(i+1), deltas[i+1], deltas[i]);
+				network.getActivation(i).multDerivative(backend, deltas[i], activations[i+1]);
+			}
+			backend.sumRows(deltas[i], workspace.nablaB[i]);
+			if(i == 0 && workspace.sparseInputs != null) {
+				SparseKernels.multTransB(deltas[0], workspace.sparseInputs, workspace.nablaW[0]);
+			} else {
+				backend.multTransB(deltas[i], activations[i], workspace.nablaW[i]);
+			}
 		}
 	}
 	
+	/**
+	 * Return the network's mean cost over the batch whose forward pass is
+	 * held in a workspace.
+	 * @throws LayerDoesNotExistException 
+	 */
+	static float cost(final Network network, final TrainingWorkspace workspace) throws LayerDoesNotExistException {
+		final FMatrixRMaj output = workspace.activations[workspace.activations.length-1];
+		return network.getCost().cost(network.getActivation(network.getNumberOfLayers()-2), output, workspace.expected);
+	}
+	
 	/**
 	 * Return a tuble ``(nabla_b, nabla_w)`` representing the gradient for the cost
 	 * function C_x. ``nabla_b`` and ``nabla_w`` are EJML matrices, similar to
 	 * ``self.biases`` and ``self.weights``.
+	 * 
+	 * This is the single image reference path; training uses
+	 * {@link #backpropBatch}.
 	 * @throws LayerDoesNotExistException 
 	 */
-	private static List<List<FMatrixRMaj>> backprop(final Network network, final Image img) throws LayerDoesNotExistException {
+	static List<List<FMatrixRMaj>> backprop(final Network network, final Image img) throws LayerDoesNotExistException {
 		//Initialize gradient of biases to all zeros
 		List<FMatrixRMaj> nablaB = new ArrayList<FMatrixRMaj>();
 		for(FMatrixRMaj layer : network.getAllBiases()) {
@@ -206,6 +620,7 @@ public class Operations {
 		}
 		
 		//Feedforward
+		final Backend backend = Backends.current();
 		FMatrixRMaj activation = img.getVector();
 		FMatrixRMaj expected = new FMatrixRMaj(network.getSizeOfLayers().get(network.getNumberOfLayers()-1),1);
 		expected.zero();
@@ -214,19 +629,17 @@ public class Operations {
 		List<FMatrixRMaj> activations = new ArrayList<FMatrixRMaj>(); //List to store all the activations, layer by layer
 		activations.add(activation);
 		
-		List<FMatrixRMaj> zs = new ArrayList<FMatrixRMaj>(); //List to store all the z vectors, layer by layer
-		
 		for(int i = 0; i < network.getNumberOfLayers()-1; i++) {
 			FMatrixRMaj z = network.getBiasesInLayer(i).copy();
 			CommonOps_FDRM.multAdd(network.getWeightsInLayer(i), activation, z);
-			zs.add(z);
-			activation = sigmoid(z);
+			activation = z.copy();
+			network.getActivation(i).apply(backend, activation);
 			activations.add(activation);
 		}
 		
 		//Backward pass
 		FMatrixRMaj delta = nablaB.get(nablaB.size()-1).copy();
-		CommonOps_FDRM.elementMult(cost_derivative(activations.get(activations.size()-1), expected), sigmoid_prime(zs.get(zs.size()-1)), delta);
+		network.getCost().outputDelta(network.getActivation(network.getNumberOfLayers()-2), backend, activations.get(activations.size()-1), expected, delta);
 		FMatrixRMaj deltaCopy = delta.copy(); //otherwise the value in the list changes later
 		nablaB.set(nablaB.size()-1, deltaCopy);
 		FMatrixRMaj w1 = network.getWeightsInLayer(network.getNumberOfLayers()-2).copy();
@@ -236,14 +649,14 @@ public class Operations {
 		nablaW.set(nablaW.size()-1, w1);
 		
 		for(int i = 2; i <= nablaB.size(); i++) {
-			FMatrixRMaj sp = sigmoid_prime(zs.get(zs.size()-i)).copy();
 			FMatrixRMaj weightsTransposed = network.getWeightsInLayer(network.getNumberOfLayers()-i).copy();
 			CommonOps_FDRM.transpose(weightsTransposed);
 			FMatrixRMaj newDelta = new FMatrixRMaj(weightsTransposed.getNumRows(), delta.getNumCols());
 			CommonOps_FDRM.mult(weightsTransposed, delta, newDelta);
-			delta.reshape(sp.getNumRows(), newDelta.getNumCols());
-			CommonOps_FDRM.elementMult(newDelta, sp, delta);
-			nablaB.set(nablaB.size()-i, delta);
+			network.getActivation(network.getNumberOfLayers()-i-1).multDerivative(backend, newDelta, activations.get(activations.size()-i));
+			delta.reshape(newDelta.getNumRows(), newDelta.getNumCols());
+			delta.set(newDelta);
+			nablaB.set(nablaB.size()-i, delta.copy());
 			
 			FMatrixRMaj wi = network.getWeightsInLayer(network.getNumberOfLayers()-i-1).copy();
 			FMatrixRMaj aTi = activations.get(activations.size()-i-1).copy();
@@ -270,27 +683,22 @@ public class Operations {
 	 */
 	public static int evaluate(List<Image> testData, final Network network)
 			throws InvalidInputException, LayerDoesNotExistException {
-		List<int[]> testResults = new LinkedList<int[]>();
-		FMatrixRMaj testCase = new FMatrixRMaj(784, 1);
-		//Compute the result of running the test data on the network
-		//Store next to original label
-		for (Image img : testData) {
-			int[] pair = new int[2];
-			for (int i = 0; i < testCase.getNumRows(); i++) {
-				testCase.set(i, 0, img.getData()[i]);
-			}
-			pair[0] = maxIndex(feedForward(testCase, network));
-			pair[1] = img.getLabel();
-			testResults.add(pair);
-		}
-		//Count the number of successful test results
-		int sum = 0;
-		for(int[] tc : testResults) {
-			if(tc[0]==tc[1]){
-				sum++;
-			}
-		}
-		return sum;
+		return evaluate(Dataset.of(testData), network);
+	}
+
+	/**
+	 * Return the number of samples of "testData" for which the neural network
+	 * outputs the correct result. The samples are evaluated in batches by
+	 * {@link Predictor#common}, with its per-thread scratch buffers; use an
+	 * {@link Evaluator} directly to reuse the prediction buffer as well or to
+	 * get the full confusion matrix.
+	 * 
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException
+	 */
+	public static int evaluate(final Dataset testData, final Network network)
+			throws InvalidInputException, LayerDoesNotExistException {
+		return new Evaluator(Predictor.common()).evaluate(network, testData).getCorrect();
 	}
 
 	/**
@@ -308,7 +716,7 @@ public class Operations {
 	 */
 	public static int maxIndex(FMatrixRMaj vector) {
 		assert(vector.getNumCols() == 1);
-		float max = 0.0f;
+		float max = Float.NEGATIVE_INFINITY;
 		int index = -1;
 		for(int i = 0; i < vector.getNumRows(); i++) {
 			float val = vector.get(i,0);
@@ -0,0 +1,239 @@
+package neural.network;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.data.Normalization;
+import neural.network.exceptions.LayerDoesNotExistException;
+
+/**
+ * Mini-batch stochastic gradient descent spread over several threads.
+ *
+ * In {@link Mode#SYNCHRONOUS} mode every mini batch is split into one shard
+ * per thread. Each shard is backpropagated against the current weights in
+ * its own workspace, the shard gradients are summed by a fixed binary tree
+ * and the averaged update is applied once. The shards, the tree and the
+ * shuffle are fixed by the seed and the thread count, so the same seed and
+ * thread count always produce the same network.
+ *
+ * In {@link Mode#HOGWILD} mode the shuffled epoch is split into one shard
+ * per thread and every thread runs its own mini batches, writing updates
+ * straight into the shared weight arrays without locking. This scales
+ * better but the result depends on thread scheduling.
+ */
+public class ParallelTrainer {
+
+	public enum Mode {
+		SYNCHRONOUS,
+		HOGWILD
+	}
+
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final int threads;
+	private final Mode mode;
+	private final Random random;
+
+	/**
+	 * Create a trainer running on its own pool of "threads" threads.
+	 */
+	public ParallelTrainer(final int threads, final Mode mode, final long seed) {
+		this(new ForkJoinPool(threads), true, threads, mode, seed);
+	}
+
+	/**
+	 * Create a trainer running on a shared pool, using "threads" shards per
+	 * mini batch (or per epoch in Hogwild mode).
+	 */
+	public ParallelTrainer(final ForkJoinPool pool, final int threads, final Mode mode, final long seed) {
+		this(pool, false, threads, mode, seed);
+	}
+
+	private ParallelTrainer(final ForkJoinPool pool, final boolean ownsPool, final int threads, final Mode mode, final long seed) {
+		if(threads <= 0) {
+			throw new IllegalArgumentException("Thread count must be positive: " + threads);
+		}
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.threads = threads;
+		this.mode = mode;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Train the network for the given number of epochs. The list of training
+	 * data itself is left untouched; a compact copy is shuffled every epoch.
+	 * @throws LayerDoesNotExistException
+	 */
+	public void train(final Network network, final List<Image> trainingData, final int epochs, final int mini_batch_size,
+			final float eta) throws LayerDoesNotExistException {
+		train(network, Dataset.of(trainingData), epochs, mini_batch_size, eta);
+	}
+
+	/**
+	 * Train the network for the given number of epochs, shuffling the
+	 * training data in place every epoch. If the network has a normalization
+	 * and the data is raw, a normalized copy is made once and shuffled
+	 * instead.
+	 * @throws LayerDoesNotExistException
+	 */
+	public void train(final Network network, final Dataset data, final int epochs, final int mini_batch_size,
+			final float eta) throws LayerDoesNotExistException {
+		final Dataset trainingData = normalized(network, data);
+		final int shardCapacity = mode == Mode.SYNCHRONOUS
+				? (mini_batch_size + threads - 1) / threads
+				: mini_batch_size;
+		final TrainingWorkspace[] workspaces = new TrainingWorkspace[threads];
+		for(int i = 0; i < threads; i++) {
+			workspaces[i] = new TrainingWorkspace(network, shardCapacity);
+		}
+		for(int epoch = 0; epoch < epochs; epoch++) {
+			trainingData.shuffle(random);
+			if(mode == Mode.SYNCHRONOUS) {
+				for(int start = 0; start < trainingData.size(); start += mini_batch_size) {
+					final Dataset batch = trainingData.view(start, Math.min(mini_batch_size, trainingData.size() - start));
+					updateMiniBatch(network, batch, eta, workspaces);
+				}
+			} else {
+				pool.invoke(new HogwildEpoch(network, trainingData, mini_batch_size, eta, workspaces, 0, threads));
+			}
+		}
+	}
+
+	/**
+	 * Return "data" with its inputs normalized the way "network" expects.
+	 */
+	private static Dataset normalized(final Network network, final Dataset data) {
+		final Normalization normalization = network.getNormalization();
+		if(data.getNormalization() == null) {
+			return normalization == null ? data : data.normalize(normalization);
+		}
+		if(!data.getNormalization().equals(normalization)) {
+			throw new IllegalArgumentException("Training data was normalized differently from the network's inputs");
+		}
+		return data;
+	}
+
+	/**
+	 * Update the network using one mini batch, sharding the batch over the
+	 * workspaces and reducing their gradients before the update.
+	 * @throws LayerDoesNotExistException
+	 */
+	void updateMiniBatch(final Network network, final Dataset batch, final float eta, final TrainingWorkspace[] workspaces) throws LayerDoesNotExistException {
+		final int shards = Math.min(threads, batch.size());
+		pool.invoke(new ShardGradient(network, batch, shards, workspaces, 0, shards));
+		Operations.applyGradients(network, workspaces[0], eta/batch.size());
+	}
+
+	/**
+	 * Release the threads of the pool if this trainer created it.
+	 */
+	public void shutdown() {
+		if(ownsPool) {
+			pool.shutdown();
+		}
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Backpropagate shards [from, to) of a mini batch and leave the sum of
+	 * their gradients in workspace "from".
+	 */
+	private static class ShardGradient extends RecursiveAction {
+
+		private static final long serialVersionUID = -2871925302744113461L;
+
+		private final Network network;
+		private final Dataset batch;
+		private final int shards;
+		private final TrainingWorkspace[] workspaces;
+		private final int from;
+		private final int to;
+
+		ShardGradient(final Network network, final Dataset batch, final int shards, final TrainingWorkspace[] workspaces, final int from, final int to) {
+			this.network = network;
+			this.batch = batch;
+			this.shards = shards;
+			this.workspaces = workspaces;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from == 1) {
+				final int start = (int) ((long) batch.size() * from / shards);
+				final int end = (int) ((long) batch.size() * to / shards);
+				Operations.pack(batch, start, end - start, workspaces[from]);
+				try {
+					Operations.backpropBatch(network, workspaces[from]);
+				} catch (LayerDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new ShardGradient(network, batch, shards, workspaces, from, mid),
+					new ShardGradient(network, batch, shards, workspaces, mid, to));
+			workspaces[from].accumulate(workspaces[mid]);
+		}
+	}
+
+	/**
+	 * Train shards [from, to) of an epoch concurrently, each applying its own
+	 * mini batch updates to the shared weights without synchronization.
+	 */
+	private static class HogwildEpoch extends RecursiveAction {
+
+		private static final long serialVersionUID = 6128410650237725871L;
+
+		private final Network network;
+		private final Dataset epoch;
+		private final int mini_batch_size;
+		private final float eta;
+		private final TrainingWorkspace[] workspaces;
+		private final int from;
+		private final int to;
+
+		HogwildEpoch(final Network network, final Dataset epoch, final int mini_batch_size, final float eta, final TrainingWorkspace[] workspaces, final int from, final int to) {
+			this.network = network;
+			this.epoch = epoch;
+			this.mini_batch_size = mini_batch_size;
+			this.eta = eta;
+			this.workspaces = workspaces;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from == 1) {
+				final int shards = workspaces.length;
+				final int start = (int) ((long) epoch.size() * from / shards);
+				final int end = (int) ((long) epoch.size() * to / shards);
+				try {
+					for(int i = start; i < end; i += mini_batch_size) {
+						Operations.updateMiniBatch(network, epoch, i, Math.min(mini_batch_size, end - i), eta, workspaces[from]);
+					}
+				} catch (LayerDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new HogwildEpoch(network, epoch, mini_batch_size, eta, workspaces, from, mid),
+					new HogwildEpoch(network, epoch, mini_batch_size, eta, workspaces, mid, to));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package neural.network;
+
+/**
+ * The result of running a batch of samples through a network: the predicted
+ * label of every sample and the full vector of output activations behind it.
+ *
+ * The arrays are allocated once for a given capacity, so a single instance
+ * can be refilled by {@link Predictor} batch after batch.
+ */
+public class Predictions {
+
+	private final int[] labels;
+	private final float[] outputs;
+	private final int numberOfOutputs;
+	private int size;
+
+	/**
+	 * Allocate room for up to "capacity" samples of a network with
+	 * "numberOfOutputs" output neurons.
+	 */
+	public Predictions(final int capacity, final int numberOfOutputs) {
+		this.labels = new int[capacity];
+		this.outputs = new float[capacity * numberOfOutputs];
+		this.numberOfOutputs = numberOfOutputs;
+	}
+
+	/**
+	 * Return the number of samples held.
+	 */
+	public int size() {
+		return size;
+	}
+
+	void setSize(final int size) {
+		if(size > labels.length) {
+			throw new IllegalArgumentException("Batch of " + size + " exceeds capacity " + labels.length);
+		}
+		this.size = size;
+	}
+
+	public int getCapacity() {
+		return labels.length;
+	}
+
+	public int getNumberOfOutputs() {
+		return numberOfOutputs;
+	}
+
+	/**
+	 * Return the predicted label, i.e. the index of the most active output
+	 * neuron, of sample "index".
+	 */
+	public int getLabel(final int index) {
+		return labels[index];
+	}
+
+	/**
+	 * Return the activation of output neuron "output" for sample "index".
+	 */
+	public float getOutput(final int index, final int output) {
+		return outputs[index * numberOfOutputs + output];
+	}
+
+	/**
+	 * Copy the output activations of sample "index" into "destination".
+	 */
+	public void getOutputs(final int index, final float[] destination) {
+		System.arraycopy(outputs, index * numberOfOutputs, destination, 0, numberOfOutputs);
+	}
+
+	int[] labels() {
+		return labels;
+	}
+
+	float[] outputs() {
+		return outputs;
+	}
+}
@@ -0,0 +1,435 @@
+package neural.network;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.data.Normalization;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.linalg.Backends;
+import neural.network.linalg.SparseColumns;
+import neural.network.linalg.SparseKernels;
+
+/**
+ * Batched inference for a trained network.
+ *
+ * A batch is cut into chunks of up to "chunkSize" samples. Each chunk is
+ * packed one sample per column and pushed through the layers as a single
+ * matrix product, using scratch buffers that belong to the calling thread
+ * and are reused from call to call. Batches larger than one chunk are split
+ * across the threads of a ForkJoinPool.
+ *
+ * A predictor is either bound to one network or shared between several,
+ * which are then passed to every call. The scratch buffers of a thread grow
+ * to fit the largest network it has run and are kept, so one long-lived
+ * predictor serves any number of networks, or successive copies of one,
+ * without allocating. {@link #common} is such a shared predictor.
+ *
+ * Raw inputs are transformed by the network's {@link Normalization}, if it
+ * has one, as they are packed. A dataset that is already normalized must
+ * have been normalized the same way and is packed as it is. A
+ * {@link Dataset#isSparse sparse} dataset that needs no transform is packed
+ * straight into compressed form, and its chunks skip the black pixels in
+ * the first layer unless they are too dense for that to pay off.
+ *
+ * Sigmoid layers may be evaluated exactly or through the lookup table of
+ * {@link SigmoidKernels}, whose error bound is far below what changes a
+ * prediction.
+ */
+public class Predictor {
+
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	private static final Predictor COMMON = new Predictor(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+
+	private final Network network;
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final int chunkSize;
+	private final SigmoidKernels.Mode mode;
+	private final ThreadLocal<FMatrixRMaj[]> scratch = new ThreadLocal<FMatrixRMaj[]>() {
+		@Override
+		protected FMatrixRMaj[] initialValue() {
+			return new FMatrixRMaj[0];
+		}
+	};
+	private final ThreadLocal<SparseColumns> sparseScratch = new ThreadLocal<SparseColumns>() {
+		@Override
+		protected SparseColumns initialValue() {
+			return new SparseColumns(Image.SIZE, chunkSize, 0);
+		}
+	};
+
+	/**
+	 * Create a predictor using every available core.
+	 */
+	public Predictor(final Network network) {
+		this(network, new ForkJoinPool(), true, DEFAULT_CHUNK_SIZE, SigmoidKernels.Mode.EXACT);
+	}
+
+	/**
+	 * Create a predictor that splits batches across a shared pool in chunks
+	 * of "chunkSize" samples.
+	 */
+	public Predictor(final Network network, final ForkJoinPool pool, final int chunkSize) {
+		this(network, pool, false, chunkSize, SigmoidKernels.Mode.EXACT);
+	}
+
+	/**
+	 * Create a predictor that splits batches across a shared pool in chunks
+	 * of "chunkSize" samples and evaluates sigmoid with the given kernel.
+	 */
+	public Predictor(final Network network, final ForkJoinPool pool, final int chunkSize, final SigmoidKernels.Mode mode) {
+		this(network, pool, false, chunkSize, mode);
+	}
+
+	/**
+	 * Create a predictor that is not bound to a network, splitting batches
+	 * across a shared pool in chunks of "chunkSize" samples. The network is
+	 * passed to every call.
+	 */
+	public Predictor(final ForkJoinPool pool, final int chunkSize) {
+		this(null, pool, false, chunkSize, SigmoidKernels.Mode.EXACT);
+	}
+
+	/**
+	 * Create a predictor that is not bound to a network, splitting batches
+	 * across a shared pool in chunks of "chunkSize" samples and evaluating
+	 * sigmoid with the given kernel.
+	 */
+	public Predictor(final ForkJoinPool pool, final int chunkSize, final SigmoidKernels.Mode mode) {
+		this(null, pool, false, chunkSize, mode);
+	}
+
+	private Predictor(final Network network, final ForkJoinPool pool, final boolean ownsPool, final int chunkSize, final SigmoidKernels.Mode mode) {
+		if(chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.network = network;
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.chunkSize = chunkSize;
+		this.mode = mode;
+	}
+
+	/**
+	 * Return a predictor shared by everyone, not bound to a network, that
+	 * runs on the common ForkJoinPool in chunks of {@link #DEFAULT_CHUNK_SIZE}.
+	 */
+	public static Predictor common() {
+		return COMMON;
+	}
+
+	/**
+	 * Predict every row of "samples".
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 * @throws LayerDoesNotExistException
+	 */
+	public Predictions predictBatch(final float[][] samples) throws InvalidInputException, LayerDoesNotExistException {
+		Predictions predictions = new Predictions(samples.length, outputSize(boundNetwork()));
+		predictBatch(samples, predictions);
+		return predictions;
+	}
+
+	/**
+	 * Predict every row of "samples" into an existing result, which must have
+	 * room for all of them.
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 * @throws LayerDoesNotExistException
+	 */
+	public void predictBatch(final float[][] samples, final Predictions predictions) throws InvalidInputException, LayerDoesNotExistException {
+		predictBatch(samples, samples.length, predictions);
+	}
+
+	/**
+	 * Predict the first "count" rows of "samples" into an existing result,
+	 * so that a reused array can carry batches of any size.
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 * @throws LayerDoesNotExistException
+	 */
+	public void predictBatch(final float[][] samples, final int count, final Predictions predictions) throws InvalidInputException, LayerDoesNotExistException {
+		predictBatch(boundNetwork(), samples, count, predictions);
+	}
+
+	/**
+	 * Predict the first "count" rows of "samples" with "network" into an
+	 * existing result.
+	 *
+	 * @throws InvalidInputException if a row does not match the input layer
+	 * @throws LayerDoesNotExistException
+	 */
+	public void predictBatch(final Network network, final float[][] samples, final int count, final Predictions predictions)
+			throws InvalidInputException, LayerDoesNotExistException {
+		if(count < 0 || count > samples.length) {
+			throw new IllegalArgumentException("Cannot predict " + count + " of " + samples.length + " samples");
+		}
+		final int inputSize = network.getSizeOfLayers().get(0);
+		for(int n = 0; n < count; n++) {
+			if(samples[n].length != inputSize) {
+				throw new InvalidInputException(FMatrixRMaj.wrap(samples[n].length, 1, samples[n]));
+			}
+		}
+		run(network, new ArraySource(samples, network.getNormalization()), count, predictions);
+	}
+
+	/**
+	 * Predict every sample of "samples".
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public Predictions predictBatch(final Dataset samples) throws LayerDoesNotExistException {
+		Predictions predictions = new Predictions(samples.size(), outputSize(boundNetwork()));
+		predictBatch(samples, predictions);
+		return predictions;
+	}
+
+	/**
+	 * Predict every sample of "samples" into an existing result, which must
+	 * have room for all of them.
+	 *
+	 * @throws LayerDoesNotExistException
+	 * @throws IllegalArgumentException if the samples were normalized differently from the network's inputs
+	 */
+	public void predictBatch(final Dataset samples, final Predictions predictions) throws LayerDoesNotExistException {
+		predictBatch(boundNetwork(), samples, predictions);
+	}
+
+	/**
+	 * Predict every sample of "samples" with "network" into an existing
+	 * result.
+	 *
+	 * @throws LayerDoesNotExistException
+	 * @throws IllegalArgumentException if the samples were normalized differently from the network's inputs
+	 */
+	public void predictBatch(final Network network, final Dataset samples, final Predictions predictions) throws LayerDoesNotExistException {
+		final Normalization normalization = network.getNormalization();
+		if(samples.getNormalization() == null) {
+			run(network, new DatasetSource(samples, normalization), samples.size(), predictions);
+		} else if(samples.getNormalization().equals(normalization)) {
+			run(network, new DatasetSource(samples, null), samples.size(), predictions);
+		} else {
+			throw new IllegalArgumentException("Samples were not normalized the way the network was trained");
+		}
+	}
+
+	/**
+	 * Release the threads of the pool if this predictor created it.
+	 */
+	public void shutdown() {
+		if(ownsPool) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Return the network this predictor is bound to, or null if the network
+	 * is passed to every call.
+	 */
+	public Network getNetwork() {
+		return network;
+	}
+
+	private Network boundNetwork() {
+		if(network == null) {
+			throw new IllegalStateException("Predictor is not bound to a network");
+		}
+		return network;
+	}
+
+	private static int outputSize(final Network network) {
+		return network.getSizeOfLayers().get(network.getNumberOfLayers() - 1);
+	}
+
+	private void run(final Network network, final Source source, final int size, final Predictions predictions) throws LayerDoesNotExistException {
+		final int outputSize = outputSize(network);
+		if(predictions.getNumberOfOutputs() != outputSize) {
+			throw new IllegalArgumentException("Predictions hold " + predictions.getNumberOfOutputs() + " outputs, network has " + outputSize);
+		}
+		predictions.setSize(size);
+		if(size <= chunkSize) {
+			predictChunk(network, source, 0, size, predictions);
+		} else {
+			pool.invoke(new Chunks(network, source, 0, size, predictions));
+		}
+	}
+
+	/**
+	 * Predict samples [start, start + length), where length is at most one
+	 * chunk, with the calling thread's scratch buffers.
+	 */
+	private void predictChunk(final Network network, final Source source, final int start, final int length, final Predictions predictions)
+			throws LayerDoesNotExistException {
+		final FMatrixRMaj[] activations = activations(network, length);
+		final SparseColumns sparseInputs = source.pack(start, length, activations[0], source.isSparse() ? sparseScratch.get() : null);
+		Operations.feedForwardBatch(network, sparseInputs, activations, mode);
+
+		final int outputSize = outputSize(network);
+		final float[] output = activations[activations.length - 1].data;
+		final int[] labels = predictions.labels();
+		final float[] outputs = predictions.outputs();
+		for(int j = 0; j < length; j++) {
+			int best = 0;
+			float max = output[j];
+			for(int k = 0; k < outputSize; k++) {
+				float val = output[k * length + j];
+				outputs[(start + j) * outputSize + k] = val;
+				if(val > max) {
+					max = val;
+					best = k;
+				}
+			}
+			labels[start + j] = best;
+		}
+	}
+
+	/**
+	 * Return the calling thread's scratch buffers shaped for "length" samples
+	 * of "network", growing them if the network is larger than any the
+	 * thread has run before.
+	 */
+	private FMatrixRMaj[] activations(final Network network, final int length) {
+		FMatrixRMaj[] activations = scratch.get();
+		if(activations.length != network.getNumberOfLayers()) {
+			final FMatrixRMaj[] resized = new FMatrixRMaj[network.getNumberOfLayers()];
+			for(int i = 0; i < resized.length; i++) {
+				resized[i] = i < activations.length ? activations[i] : new FMatrixRMaj(network.getSizeOfLayers().get(i), chunkSize);
+			}
+			activations = resized;
+			scratch.set(activations);
+		}
+		for(int i = 0; i < activations.length; i++) {
+			activations[i].reshape(network.getSizeOfLayers().get(i), length, false);
+		}
+		return activations;
+	}
+
+	/**
+	 * Somewhere to pack a range of samples from, ready for the first layer.
+	 */
+	private interface Source {
+
+		/**
+		 * Return true if the samples can be packed in compressed form.
+		 */
+		boolean isSparse();
+
+		/**
+		 * Pack samples [start, start + length) into "inputs", or into
+		 * "sparseInputs" alone if that pays off. Return the compressed
+		 * inputs the first layer should read, or null if it should read
+		 * "inputs".
+		 */
+		SparseColumns pack(int start, int length, FMatrixRMaj inputs, SparseColumns sparseInputs);
+	}
+
+	private static class ArraySource implements Source {
+
+		private final float[][] samples;
+		private final Normalization normalization;
+
+		ArraySource(final float[][] samples, final Normalization normalization) {
+			this.samples = samples;
+			this.normalization = normalization;
+		}
+
+		@Override
+		public boolean isSparse() {
+			return false;
+		}
+
+		@Override
+		public SparseColumns pack(final int start, final int length, final FMatrixRMaj inputs, final SparseColumns sparseInputs) {
+			final float[] in = inputs.data;
+			for(int j = 0; j < length; j++) {
+				final float[] sample = samples[start + j];
+				for(int i = 0, index = j; i < sample.length; i++, index += length) {
+					in[index] = sample[i];
+				}
+			}
+			if(normalization != null) {
+				normalization.applyToColumns(inputs);
+			}
+			return null;
+		}
+	}
+
+	private static class DatasetSource implements Source {
+
+		private final Dataset samples;
+		private final Normalization normalization;
+		private final float sparseThreshold; //0 if the samples are packed dense
+
+		DatasetSource(final Dataset samples, final Normalization normalization) {
+			this.samples = samples;
+			this.normalization = normalization;
+			this.sparseThreshold = normalization == null && samples.isSparse() ? SparseKernels.densityThreshold(Backends.current()) : 0f;
+		}
+
+		@Override
+		public boolean isSparse() {
+			return sparseThreshold > 0f;
+		}
+
+		@Override
+		public SparseColumns pack(final int start, final int length, final FMatrixRMaj inputs, final SparseColumns sparseInputs) {
+			if(isSparse()) {
+				samples.pack(start, length, sparseInputs, null);
+				if(sparseInputs.getDensity() <= sparseThreshold) {
+					return sparseInputs;
+				}
+				sparseInputs.toDense(inputs);
+				return null;
+			}
+			samples.pack(start, length, inputs, null);
+			if(normalization != null) {
+				normalization.applyToColumns(inputs);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Split samples [from, to) into chunks and predict them in parallel.
+	 */
+	private class Chunks extends RecursiveAction {
+
+		private static final long serialVersionUID = 4418240934529113830L;
+
+		private final Network network;
+		private final Source source;
+		private final int from;
+		private final int to;
+		private final Predictions predictions;
+
+		Chunks(final Network network, final Source source, final int from, final int to, final Predictions predictions) {
+			this.network = network;
+			this.source = source;
+			this.from = from;
+			this.to = to;
+			this.predictions = predictions;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= chunkSize) {
+				try {
+					predictChunk(network, source, from, to - from, predictions);
+				} catch (LayerDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+				return;
+			}
+			//Split on a chunk boundary so every leaf but the last is full
+			final int chunks = (to - from + chunkSize - 1) / chunkSize;
+			final int mid = from + (chunks / 2) * chunkSize;
+			invokeAll(new Chunks(network, source, from, mid, predictions), new Chunks(network, source, mid, to, predictions));
+		}
+	}
+}
@@ -1,23 +1,57 @@
 package neural.network;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
 
-import neural.network.data.Image;
+import javax.management.JMException;
+
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Dataset;
+import neural.network.data.DatasetSource;
 import neural.network.data.ImageReader;
+import neural.network.data.Normalization;
 import neural.network.exceptions.InvalidInputException;
 import neural.network.exceptions.LayerDoesNotExistException;
 import neural.network.exceptions.LayerTooSmallException;
 import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.metrics.TrainingMonitor;
+import neural.network.metrics.TrainingStats;
 
 public class Run {
 
-	public static void main(String[] args) throws NetworkTooSmallException, LayerTooSmallException, IOException, InvalidInputException, LayerDoesNotExistException {
-		Network network = new Network(Arrays.asList(new Integer(784), new Integer(30), new Integer(10)));
-		List<Image> testData = ImageReader.read("/mnist_test.csv");
-		Operations.evaluate(testData, network);
-		System.out.println("Initial evaluation: " + Operations.evaluate(testData, network) + " / " + testData.size());
-		Operations.stochasticGradientDescent(network, 30, 10, 3.0f, true);
+	public static void main(String[] args) throws NetworkTooSmallException, LayerTooSmallException, IOException, InvalidInputException, LayerDoesNotExistException, JMException {
+		//Resume from the last checkpoint, if any, and save one every 5 epochs
+		Checkpointer checkpointer = new Checkpointer(new File("mnist-network.model"), 5);
+		Network network = checkpointer.resume(Arrays.asList(new Integer(784), new Integer(100), new Integer(100), new Integer(10)));
+		//Train on pixels scaled to [0, 1], with ReLU hidden layers and a softmax output under the
+		//cross-entropy cost; a resumed network keeps the configuration it was saved with
+		if(checkpointer.getEpochsCompleted() == 0) {
+			network.setNormalization(Normalization.unitRange());
+			for(int i = 0; i < network.getNumberOfLayers()-2; i++) {
+				network.setActivation(i, Activation.RELU);
+			}
+			network.setActivation(network.getNumberOfLayers()-2, Activation.SOFTMAX);
+			network.setCost(Cost.CROSS_ENTROPY);
+			network.scaleWeightsByFanIn();
+		}
+		//Only the lit pixels are kept, about a fifth of them; unit range keeps black pixels at zero, so
+		//normalizing caches the transformed values of the lit pixels alone
+		Dataset trainingData = ImageReader.readDataset("/mnist_train.csv").compress();
+		Dataset testData = ImageReader.readDataset("/mnist_test.csv");
+		if(network.getNormalization() != null) {
+			trainingData = trainingData.normalize(network.getNormalization());
+			testData = testData.normalize(network.getNormalization());
+		}
+		Evaluator evaluator = new Evaluator(network);
+		System.out.println("Initial evaluation after " + checkpointer.getEpochsCompleted() + " epochs: " + evaluator.evaluate(testData).getCorrect() + " / " + testData.size());
+		//Publish metrics over JMX under neural.network:type=Training,name="mnist"
+		TrainingMonitor monitor = new TrainingMonitor();
+		TrainingStats stats = new TrainingStats();
+		stats.register("mnist");
+		monitor.addListener(stats);
+		Operations.stochasticGradientDescent(network, DatasetSource.of(trainingData), testData, 10, 10, 0.1f, null, checkpointer, monitor);
+		System.out.println(evaluator.evaluate(testData));
 	}
 }
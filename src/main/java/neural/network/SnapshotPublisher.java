@@ -0,0 +1,63 @@
+package neural.network;
+
+import neural.network.metrics.BatchMetrics;
+import neural.network.metrics.EpochMetrics;
+import neural.network.metrics.TrainingListener;
+
+/**
+ * A {@link TrainingListener} that publishes snapshots of the network being
+ * trained to a {@link ModelHolder}, so that readers of the holder follow
+ * training without ever seeing a model mid-update.
+ *
+ * A snapshot is published after every epoch and, if "batchInterval" is
+ * positive, during the epoch once at least that many batches have been
+ * trained since the last one. Mid-epoch publication happens on sampled
+ * batches only, so its granularity is the monitor's sample interval.
+ * Listeners run on the training thread between updates, which is what
+ * makes the copy consistent.
+ */
+public class SnapshotPublisher implements TrainingListener {
+
+	private final Network network;
+	private final ModelHolder holder;
+	private final int batchInterval;
+	private int lastBatch;
+
+	/**
+	 * Publish "network" to "holder" after every epoch.
+	 */
+	public SnapshotPublisher(final Network network, final ModelHolder holder) {
+		this(network, holder, 0);
+	}
+
+	/**
+	 * Publish "network" to "holder" after every epoch and every
+	 * "batchInterval" batches; 0 publishes after epochs only.
+	 */
+	public SnapshotPublisher(final Network network, final ModelHolder holder, final int batchInterval) {
+		if(batchInterval < 0) {
+			throw new IllegalArgumentException("Batch interval must not be negative: " + batchInterval);
+		}
+		this.network = network;
+		this.holder = holder;
+		this.batchInterval = batchInterval;
+	}
+
+	@Override
+	public void batchCompleted(final BatchMetrics batch) {
+		if(batch.getBatch() < lastBatch) {
+			//A new epoch has started
+			lastBatch = 0;
+		}
+		if(batchInterval > 0 && batch.getBatch() + 1 - lastBatch >= batchInterval) {
+			holder.publish(network);
+			lastBatch = batch.getBatch() + 1;
+		}
+	}
+
+	@Override
+	public void epochCompleted(final EpochMetrics epoch) {
+		holder.publish(network);
+		lastBatch = 0;
+	}
+}
@@ -0,0 +1,220 @@
+package neural.network;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.linalg.Backend;
+import neural.network.linalg.Backends;
+import neural.network.linalg.SparseColumns;
+
+/**
+ * Reusable buffers for training a network of a fixed shape.
+ *
+ * Every activation, delta and gradient matrix needed to backpropagate a
+ * mini batch of up to "capacity" images is allocated once here. Smaller
+ * batches reshape the buffers in place, so steady-state training allocates
+ * nothing. A workspace is not thread-safe; give each training thread its own.
+ */
+public class TrainingWorkspace {
+
+	private final int[] sizeOfLayers;
+	private final int capacity;
+	private int batchSize;
+
+	private final FMatrixRMaj packedInputs;
+	private final FMatrixRMaj packedExpected;
+	private SparseColumns packedSparseInputs; //allocated on first use
+	private boolean denseInputsStale; //only the compressed inputs were packed
+
+	FMatrixRMaj expected;
+	final FMatrixRMaj[] activations; //activations[0] holds the input batch
+	SparseColumns sparseInputs; //the same batch compressed, or null
+	final FMatrixRMaj[] deltas;
+	final FMatrixRMaj[] nablaB;
+	final FMatrixRMaj[] nablaW;
+
+	/**
+	 * Allocate a workspace for the shape of the given network and mini batches
+	 * of at most "capacity" images.
+	 */
+	public TrainingWorkspace(final Network network, final int capacity) {
+		final int layers = network.getNumberOfLayers()-1;
+		this.sizeOfLayers = new int[layers+1];
+		for(int i = 0; i <= layers; i++) {
+			sizeOfLayers[i] = network.getSizeOfLayers().get(i);
+		}
+		this.capacity = capacity;
+		this.batchSize = capacity;
+		this.packedExpected = new FMatrixRMaj(sizeOfLayers[layers], capacity);
+		this.packedInputs = new FMatrixRMaj(sizeOfLayers[0], capacity);
+		this.expected = packedExpected;
+		this.activations = new FMatrixRMaj[layers+1];
+		this.deltas = new FMatrixRMaj[layers];
+		this.nablaB = new FMatrixRMaj[layers];
+		this.nablaW = new FMatrixRMaj[layers];
+		activations[0] = packedInputs;
+		for(int i = 0; i < layers; i++) {
+			activations[i+1] = new FMatrixRMaj(sizeOfLayers[i+1], capacity);
+			deltas[i] = new FMatrixRMaj(sizeOfLayers[i+1], capacity);
+			nablaB[i] = new FMatrixRMaj(sizeOfLayers[i+1], 1);
+			nablaW[i] = new FMatrixRMaj(sizeOfLayers[i+1], sizeOfLayers[i]);
+		}
+	}
+
+	/**
+	 * Resize every per-image buffer to hold "batchSize" columns. This never
+	 * reallocates because the batch size is bounded by the capacity.
+	 */
+	void reshape(final int batchSize) {
+		activations[0] = packedInputs;
+		sparseInputs = null;
+		denseInputsStale = false;
+		expected = packedExpected;
+		resize(batchSize);
+		packedExpected.reshape(sizeOfLayers[sizeOfLayers.length-1], batchSize, false);
+		packedInputs.reshape(sizeOfLayers[0], batchSize, false);
+	}
+
+	/**
+	 * Train on a batch packed elsewhere, e.g. by a
+	 * {@link neural.network.data.BatchPipeline}, instead of the workspace's
+	 * own input buffers. The matrices are used in place until the next call
+	 * to {@link #reshape} or {@link #bind}.
+	 */
+	void bind(final FMatrixRMaj inputs, final FMatrixRMaj expected) {
+		bind(inputs, expected, null);
+	}
+
+	/**
+	 * Same as {@link #bind(FMatrixRMaj, FMatrixRMaj)}, but the first layer
+	 * reads the inputs from "sparseInputs", a compressed copy of "inputs",
+	 * unless it is null. "inputs" may be null if "sparseInputs" is not; the
+	 * workspace's own input buffer is then only filled from the compressed
+	 * inputs if {@link #getInputs} asks for them.
+	 */
+	void bind(final FMatrixRMaj inputs, final FMatrixRMaj expected, final SparseColumns sparseInputs) {
+		if(inputs == null) {
+			if(sparseInputs == null) {
+				throw new IllegalArgumentException("A batch needs dense or compressed inputs");
+			}
+			packedInputs.reshape(sizeOfLayers[0], sparseInputs.getNumCols(), false);
+			bind(packedInputs, expected, sparseInputs);
+			denseInputsStale = true;
+			return;
+		}
+		if(inputs.getNumRows() != sizeOfLayers[0] || expected.getNumRows() != sizeOfLayers[sizeOfLayers.length-1]
+				|| expected.getNumCols() != inputs.getNumCols()) {
+			throw new IllegalArgumentException("Batch of " + inputs.getNumRows() + "x" + inputs.getNumCols() + " inputs and "
+				+ expected.getNumRows() + "x" + expected.getNumCols() + " outputs does not fit this workspace");
+		}
+		if(sparseInputs != null && (sparseInputs.getNumRows() != inputs.getNumRows() || sparseInputs.getNumCols() != inputs.getNumCols())) {
+			throw new IllegalArgumentException("Compressed batch of " + sparseInputs.getNumRows() + "x" + sparseInputs.getNumCols()
+				+ " inputs does not match its dense inputs");
+		}
+		resize(inputs.getNumCols());
+		activations[0] = inputs;
+		this.sparseInputs = sparseInputs;
+		this.expected = expected;
+		this.denseInputsStale = false;
+	}
+
+	/**
+	 * Return the workspace's own buffer for compressed inputs, which holds
+	 * up to "capacity" columns.
+	 */
+	SparseColumns getPackedSparseInputs() {
+		if(packedSparseInputs == null) {
+			packedSparseInputs = new SparseColumns(sizeOfLayers[0], capacity, 0);
+		}
+		return packedSparseInputs;
+	}
+
+	/**
+	 * Train the batch just packed, after {@link #reshape}, from
+	 * {@link #getPackedSparseInputs} alone.
+	 */
+	void usePackedSparseInputs() {
+		sparseInputs = packedSparseInputs;
+		denseInputsStale = true;
+	}
+
+	/**
+	 * Resize the activation and delta buffers of the hidden and output layers
+	 * to "batchSize" columns.
+	 */
+	private void resize(final int batchSize) {
+		if(batchSize <= 0 || batchSize > capacity) {
+			throw new IllegalArgumentException("Batch size " + batchSize + " outside of workspace capacity " + capacity);
+		}
+		if(batchSize == this.batchSize) {
+			return;
+		}
+		this.batchSize = batchSize;
+		for(int i = 0; i < deltas.length; i++) {
+			activations[i+1].reshape(sizeOfLayers[i+1], batchSize, false);
+			deltas[i].reshape(sizeOfLayers[i+1], batchSize, false);
+		}
+	}
+
+	/**
+	 * Add the gradients held in another workspace of the same shape to the
+	 * gradients held in this one.
+	 */
+	void accumulate(final TrainingWorkspace other) {
+		final Backend backend = Backends.current();
+		for(int i = 0; i < nablaB.length; i++) {
+			backend.axpy(1f, other.nablaB[i], nablaB[i]);
+			backend.axpy(1f, other.nablaW[i], nablaW[i]);
+		}
+	}
+
+	/**
+	 * Return true if this workspace was allocated for the shape of the given
+	 * network.
+	 */
+	public boolean fits(final Network network) {
+		if(network.getNumberOfLayers() != sizeOfLayers.length) {
+			return false;
+		}
+		for(int i = 0; i < sizeOfLayers.length; i++) {
+			if(network.getSizeOfLayers().get(i) != sizeOfLayers[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * The packed input batch, one image per column. A batch that was only
+	 * packed in compressed form is expanded the first time it is asked for.
+	 */
+	public FMatrixRMaj getInputs() {
+		if(denseInputsStale) {
+			sparseInputs.toDense(activations[0]);
+			denseInputsStale = false;
+		}
+		return activations[0];
+	}
+
+	/**
+	 * The desired outputs for the packed batch, one image per column.
+	 */
+	public FMatrixRMaj getExpected() {
+		return expected;
+	}
+
+	public FMatrixRMaj getNablaB(final int layer) {
+		return nablaB[layer];
+	}
+
+	public FMatrixRMaj getNablaW(final int layer) {
+		return nablaW[layer];
+	}
+}
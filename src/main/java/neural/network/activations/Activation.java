@@ -0,0 +1,175 @@
+package neural.network.activations;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.SigmoidKernels;
+import neural.network.linalg.Backend;
+
+/**
+ * The nonlinearity a layer applies to its weighted inputs.
+ *
+ * Kernels work in place on a layer's buffer, a row-major matrix holding one
+ * sample per column. The weighted inputs z are never kept during training,
+ * so every derivative is computed from the activations a = f(z) of the
+ * forward pass. {@link #SOFTMAX} normalizes each column; the others are
+ * elementwise. Model files save activations by ordinal, so new values must
+ * be added at the end.
+ */
+public enum Activation {
+
+	/** 1 / (1 + e^-z), the original activation, computed by the backend. */
+	SIGMOID {
+		@Override
+		public void apply(final float[] data, final int rows, final int cols) {
+			SigmoidKernels.sigmoid(data, rows * cols);
+		}
+
+		@Override
+		public void apply(final Backend backend, final FMatrixRMaj matrix) {
+			backend.sigmoid(matrix);
+		}
+
+		@Override
+		public void multDerivative(final float[] delta, final float[] a, final int rows, final int cols) {
+			SigmoidKernels.multSigmoidPrimeOfActivation(delta, a, rows * cols);
+		}
+
+		@Override
+		public void multDerivative(final Backend backend, final FMatrixRMaj delta, final FMatrixRMaj activations) {
+			backend.multSigmoidPrimeOfActivation(delta, activations);
+		}
+	},
+
+	/** max(0, z). */
+	RELU {
+		@Override
+		public void apply(final float[] data, final int rows, final int cols) {
+			final int length = rows * cols;
+			for(int i = 0; i < length; i++) {
+				data[i] = Math.max(data[i], 0f);
+			}
+		}
+
+		@Override
+		public void multDerivative(final float[] delta, final float[] a, final int rows, final int cols) {
+			final int length = rows * cols;
+			for(int i = 0; i < length; i++) {
+				delta[i] = a[i] > 0f ? delta[i] : 0f;
+			}
+		}
+	},
+
+	/** z for positive z and {@link #LEAKY_SLOPE} * z otherwise. */
+	LEAKY_RELU {
+		@Override
+		public void apply(final float[] data, final int rows, final int cols) {
+			final int length = rows * cols;
+			for(int i = 0; i < length; i++) {
+				final float z = data[i];
+				data[i] = z > 0f ? z : LEAKY_SLOPE * z;
+			}
+		}
+
+		@Override
+		public void multDerivative(final float[] delta, final float[] a, final int rows, final int cols) {
+			//The slope is positive, so a has the sign of z
+			final int length = rows * cols;
+			for(int i = 0; i < length; i++) {
+				delta[i] = a[i] > 0f ? delta[i] : LEAKY_SLOPE * delta[i];
+			}
+		}
+	},
+
+	/** tanh(z), whose derivative is 1 - a^2. */
+	TANH {
+		@Override
+		public void apply(final float[] data, final int rows, final int cols) {
+			final int length = rows * cols;
+			for(int i = 0; i < length; i++) {
+				data[i] = (float) Math.tanh(data[i]);
+			}
+		}
+
+		@Override
+		public void multDerivative(final float[] delta, final float[] a, final int rows, final int cols) {
+			final int length = rows * cols;
+			for(int i = 0; i < length; i++) {
+				delta[i] *= 1f - a[i] * a[i];
+			}
+		}
+	},
+
+	/**
+	 * e^z_i / sum_k e^z_k over each column. Paired with
+	 * {@link Cost#CROSS_ENTROPY} on the output layer its derivative is never
+	 * needed: the output error is a - y.
+	 */
+	SOFTMAX {
+		@Override
+		public void apply(final float[] data, final int rows, final int cols) {
+			for(int j = 0; j < cols; j++) {
+				//Shifting by the largest input keeps every exponential finite
+				float max = data[j];
+				for(int i = 1, index = cols + j; i < rows; i++, index += cols) {
+					max = Math.max(max, data[index]);
+				}
+				float sum = 0f;
+				for(int i = 0, index = j; i < rows; i++, index += cols) {
+					final float e = (float) Math.exp(data[index] - max);
+					data[index] = e;
+					sum += e;
+				}
+				final float inverse = 1f / sum;
+				for(int i = 0, index = j; i < rows; i++, index += cols) {
+					data[index] *= inverse;
+				}
+			}
+		}
+
+		@Override
+		public void multDerivative(final float[] delta, final float[] a, final int rows, final int cols) {
+			//The Jacobian is diag(a) - a a^T, so delta_i = a_i (delta_i - a . delta)
+			for(int j = 0; j < cols; j++) {
+				float dot = 0f;
+				for(int i = 0, index = j; i < rows; i++, index += cols) {
+					dot += a[index] * delta[index];
+				}
+				for(int i = 0, index = j; i < rows; i++, index += cols) {
+					delta[index] = a[index] * (delta[index] - dot);
+				}
+			}
+		}
+	};
+
+	/** Slope of {@link #LEAKY_RELU} for negative inputs. */
+	public static final float LEAKY_SLOPE = 0.01f;
+
+	/**
+	 * Replace the weighted inputs in the first rows * cols elements of
+	 * "data", one sample per column, by their activations.
+	 */
+	public abstract void apply(float[] data, int rows, int cols);
+
+	/**
+	 * Replace every element of "matrix", one sample per column, by its
+	 * activation, using "backend" where it has a kernel for it.
+	 */
+	public void apply(final Backend backend, final FMatrixRMaj matrix) {
+		apply(matrix.data, matrix.getNumRows(), matrix.getNumCols());
+	}
+
+	/**
+	 * Multiply the first rows * cols elements of "delta" by the derivative of
+	 * this activation, given the matching activations "a". For
+	 * {@link #SOFTMAX} this is the product with the Jacobian of each column.
+	 */
+	public abstract void multDerivative(float[] delta, float[] a, int rows, int cols);
+
+	/**
+	 * Multiply "delta" by the derivative of this activation at the matching
+	 * "activations", using "backend" where it has a kernel for it.
+	 */
+	public void multDerivative(final Backend backend, final FMatrixRMaj delta, final FMatrixRMaj activations) {
+		multDerivative(delta.data, activations.data, delta.getNumRows(), delta.getNumCols());
+	}
+}
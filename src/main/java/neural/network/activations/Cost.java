@@ -0,0 +1,115 @@
+package neural.network.activations;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.linalg.Backend;
+
+/**
+ * The cost a network is trained to minimize, and the error it feeds back
+ * into the output layer.
+ *
+ * Outputs and expected outputs are row-major matrices holding one sample per
+ * column. Model files save costs by ordinal, so new values must be added at
+ * the end.
+ */
+public enum Cost {
+
+	/**
+	 * 1/2 ||a - y||^2, the original cost. Its output error is
+	 * (a - y) * f'(z), which vanishes when a saturated output is wrong, so
+	 * learning slows down exactly where it should be fastest.
+	 */
+	QUADRATIC {
+		@Override
+		public boolean supports(final Activation output) {
+			return true;
+		}
+
+		@Override
+		public float cost(final Activation output, final FMatrixRMaj a, final FMatrixRMaj y) {
+			final float[] actual = a.data;
+			final float[] expected = y.data;
+			final int length = a.getNumElements();
+			double sum = 0.0;
+			for(int i = 0; i < length; i++) {
+				final float d = actual[i] - expected[i];
+				sum += d * d;
+			}
+			return (float) (0.5 * sum / a.getNumCols());
+		}
+
+		@Override
+		public void outputDelta(final Activation output, final Backend backend, final FMatrixRMaj a, final FMatrixRMaj y, final FMatrixRMaj delta) {
+			backend.subtract(a, y, delta);
+			output.multDerivative(backend, delta, a);
+		}
+	},
+
+	/**
+	 * -sum y ln a over a {@link Activation#SOFTMAX} output, or
+	 * -sum [y ln a + (1 - y) ln(1 - a)] over a {@link Activation#SIGMOID} one.
+	 * Either way the derivative of the activation cancels out and the output
+	 * error is a - y, computed in a single pass; no other output activation
+	 * is supported.
+	 */
+	CROSS_ENTROPY {
+		@Override
+		public boolean supports(final Activation output) {
+			return output == Activation.SOFTMAX || output == Activation.SIGMOID;
+		}
+
+		@Override
+		public float cost(final Activation output, final FMatrixRMaj a, final FMatrixRMaj y) {
+			final float[] actual = a.data;
+			final float[] expected = y.data;
+			final int length = a.getNumElements();
+			final boolean softmax = output == Activation.SOFTMAX;
+			double sum = 0.0;
+			for(int i = 0; i < length; i++) {
+				final double p = Math.min(Math.max(actual[i], MIN_PROBABILITY), 1.0 - MIN_PROBABILITY);
+				sum -= expected[i] * Math.log(p);
+				if(!softmax) {
+					sum -= (1.0 - expected[i]) * Math.log(1.0 - p);
+				}
+			}
+			return (float) (sum / a.getNumCols());
+		}
+
+		@Override
+		public void outputDelta(final Activation output, final Backend backend, final FMatrixRMaj a, final FMatrixRMaj y, final FMatrixRMaj delta) {
+			if(!supports(output)) {
+				throw new IllegalArgumentException("Cross-entropy cost on a " + output + " output layer");
+			}
+			backend.subtract(a, y, delta);
+		}
+	};
+
+	/**
+	 * Probabilities are clamped this far inside (0, 1) when taking their
+	 * logarithm, so a confident wrong answer costs a lot rather than
+	 * infinity.
+	 */
+	private static final double MIN_PROBABILITY = 1e-7;
+
+	/**
+	 * Return whether this cost can be used with an output layer of the given
+	 * activation.
+	 */
+	public abstract boolean supports(Activation output);
+
+	/**
+	 * Return the cost of outputs "a" against expected outputs "y", averaged
+	 * over their columns.
+	 */
+	public abstract float cost(Activation output, FMatrixRMaj a, FMatrixRMaj y);
+
+	/**
+	 * Write the error of the output layer, the derivative of the cost with
+	 * respect to its weighted inputs, into "delta" given its activations "a"
+	 * and the expected outputs "y". Summed over columns this is the gradient
+	 * of the output biases.
+	 *
+	 * @throws IllegalArgumentException if the output activation is not supported
+	 */
+	public abstract void outputDelta(Activation output, Backend backend, FMatrixRMaj a, FMatrixRMaj y, FMatrixRMaj delta);
+}
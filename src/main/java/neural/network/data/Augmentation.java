@@ -0,0 +1,18 @@
+package neural.network.data;
+
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * A random transformation applied to training images as they are packed,
+ * so that every epoch sees slightly different samples.
+ */
+public interface Augmentation {
+
+	/**
+	 * Transform, in place, the images packed one per column into "inputs".
+	 * Called from a single thread; implementations need not be thread-safe.
+	 */
+	void apply(FMatrixRMaj inputs, Random random);
+}
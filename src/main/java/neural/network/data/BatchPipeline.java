@@ -0,0 +1,285 @@
+package neural.network.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.linalg.SparseColumns;
+
+/**
+ * Prepares mini batches on a background thread while the current one trains.
+ *
+ * A fixed ring of "depth" batch slots is allocated up front. The producer
+ * thread takes a free slot, shuffles and packs the next samples of a
+ * {@link BatchSource} into it, applies the optional augmentation and hands it
+ * to the training thread, which gives it back with {@link #release} once the
+ * batch has been used. When every slot is full the producer blocks, so it
+ * never runs more than "depth" batches ahead and memory stays bounded.
+ *
+ * Raw batches can be normalized on the producer thread too, after
+ * augmentation, for sources that do not produce normalized inputs
+ * themselves. Batches can also be compressed there, after that,
+ * into a {@link SparseColumns} copy of their inputs for the sparse first
+ * layer kernels. A batch is only compressed if its density is at or below a
+ * threshold; denser ones are handed over dense only. When there is nothing
+ * to augment or normalize and the source is a {@link SparseBatchSource},
+ * batches are packed straight into compressed form instead, and
+ * their dense inputs are only filled if a batch turns out too dense or
+ * someone asks for them.
+ *
+ * The training thread calls {@link #next} until it returns null, once per
+ * epoch. Errors on the producer thread are rethrown from {@link #next}.
+ */
+public class BatchPipeline implements Closeable {
+
+	public static final int DEFAULT_DEPTH = 4;
+
+	//Markers passed through the ready queue in place of batches
+	private static final Batch END_OF_EPOCH = new Batch(null, null);
+	private static final Batch FAILED = new Batch(null, null);
+
+	private final BatchSource source;
+	private final int batchSize;
+	private final int epochs;
+	private final Random random;
+	private final Augmentation augmentation;
+	private final Normalization normalization;
+	private final float sparseThreshold;
+	private final boolean packSparse;
+	private final BlockingQueue<Batch> free;
+	private final BlockingQueue<Batch> ready;
+	private final Thread producer;
+	private volatile Throwable failure;
+	private int epochsDelivered;
+	private long stalls;
+
+	/**
+	 * Start preparing "epochs" epochs of batches of up to "batchSize" samples
+	 * from "source", with "outputs" rows of expected outputs per sample.
+	 * "augmentation" may be null.
+	 */
+	public BatchPipeline(final BatchSource source, final int batchSize, final int outputs, final int depth, final int epochs,
+			final Random random, final Augmentation augmentation) {
+		this(source, batchSize, outputs, depth, epochs, random, augmentation, null, 0f);
+	}
+
+	/**
+	 * Same as above, but also transform every batch by "normalization", if it
+	 * is not null, and compress every batch whose fraction of non-zero inputs
+	 * is then at most "sparseThreshold"; 0 never compresses.
+	 */
+	public BatchPipeline(final BatchSource source, final int batchSize, final int outputs, final int depth, final int epochs,
+			final Random random, final Augmentation augmentation, final Normalization normalization, final float sparseThreshold) {
+		if(batchSize <= 0 || depth <= 0 || epochs < 0) {
+			throw new IllegalArgumentException("Batch size and depth must be positive and epochs non-negative");
+		}
+		this.source = source;
+		this.batchSize = batchSize;
+		this.epochs = epochs;
+		this.random = random;
+		this.augmentation = augmentation;
+		this.normalization = normalization;
+		this.sparseThreshold = sparseThreshold;
+		this.packSparse = sparseThreshold > 0f && augmentation == null && normalization == null && source instanceof SparseBatchSource;
+		this.free = new ArrayBlockingQueue<Batch>(depth);
+		this.ready = new LinkedBlockingQueue<Batch>();
+		for(int i = 0; i < depth; i++) {
+			Batch batch = new Batch(new FMatrixRMaj(Image.SIZE, batchSize), new FMatrixRMaj(outputs, batchSize));
+			if(sparseThreshold > 0f) {
+				batch.sparseInputs = new SparseColumns(Image.SIZE, batchSize, (int) (sparseThreshold * Image.SIZE * batchSize));
+			}
+			free.add(batch);
+		}
+		this.producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				produce();
+			}
+		}, "batch-pipeline");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Return the next batch of the current epoch, waiting for it if it is not
+	 * ready yet, or null once the epoch is over.
+	 *
+	 * @throws IOException if the source failed or the wait was interrupted
+	 */
+	public Batch next() throws IOException {
+		if(epochsDelivered == epochs) {
+			return null;
+		}
+		Batch batch = ready.poll();
+		if(batch == null) {
+			stalls++;
+			try {
+				batch = ready.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for the next batch");
+			}
+		}
+		if(batch == END_OF_EPOCH) {
+			epochsDelivered++;
+			return null;
+		}
+		if(batch == FAILED) {
+			if(failure instanceof IOException) {
+				throw new IOException("Preparing the next batch failed", failure);
+			}
+			throw new IllegalStateException("Preparing the next batch failed", failure);
+		}
+		return batch;
+	}
+
+	/**
+	 * Hand a batch returned by {@link #next} back for reuse.
+	 */
+	public void release(final Batch batch) {
+		free.add(batch);
+	}
+
+	/**
+	 * Return how many times {@link #next} had to wait for the producer.
+	 */
+	public long getStalls() {
+		return stalls;
+	}
+
+	/**
+	 * Return the number of slots waiting for the producer.
+	 */
+	int getFreeSlots() {
+		return free.size();
+	}
+
+	/**
+	 * Return the number of prepared batches and markers waiting for
+	 * {@link #next}.
+	 */
+	int getReadyBatches() {
+		return ready.size();
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public float getSparseThreshold() {
+		return sparseThreshold;
+	}
+
+	/**
+	 * Stop the producer thread.
+	 */
+	@Override
+	public void close() {
+		producer.interrupt();
+		try {
+			producer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void produce() {
+		try {
+			for(int epoch = 0; epoch < epochs; epoch++) {
+				source.rewind(random);
+				while(true) {
+					final Batch batch = free.take();
+					if(packSparse) {
+						batch.size = ((SparseBatchSource) source).fill(batch.sparseInputs, batch.expected, batchSize);
+					} else {
+						batch.size = source.fill(batch.inputs, batch.expected, batchSize);
+					}
+					if(batch.size == 0) {
+						free.add(batch);
+						break;
+					}
+					if(packSparse) {
+						batch.inputs.reshape(Image.SIZE, batch.size, false);
+						batch.compressed = batch.sparseInputs.getDensity() <= sparseThreshold;
+						if(!batch.compressed) {
+							batch.sparseInputs.toDense(batch.inputs);
+						}
+						batch.denseStale = batch.compressed;
+						ready.add(batch);
+						continue;
+					}
+					if(augmentation != null) {
+						augmentation.apply(batch.inputs, random);
+					}
+					if(normalization != null) {
+						normalization.applyToColumns(batch.inputs);
+					}
+					batch.compressed = batch.sparseInputs != null && batch.sparseInputs.compress(batch.inputs, sparseThreshold);
+					batch.denseStale = false;
+					ready.add(batch);
+				}
+				ready.add(END_OF_EPOCH);
+			}
+		} catch (InterruptedException e) {
+			//Closed while waiting for a free slot
+		} catch (Throwable e) {
+			failure = e;
+			ready.add(FAILED);
+		}
+	}
+
+	/**
+	 * One packed mini batch: the inputs one image per column and the one-hot
+	 * expected outputs in the matching columns, and possibly a compressed
+	 * copy of the inputs.
+	 */
+	public static class Batch {
+
+		private final FMatrixRMaj inputs;
+		private final FMatrixRMaj expected;
+		private SparseColumns sparseInputs;
+		private boolean compressed;
+		private boolean denseStale; //packed in compressed form only
+		private int size;
+
+		Batch(final FMatrixRMaj inputs, final FMatrixRMaj expected) {
+			this.inputs = inputs;
+			this.expected = expected;
+		}
+
+		/**
+		 * Return the inputs, one image per column. A batch that was packed
+		 * in compressed form only is expanded the first time they are asked
+		 * for; training reads {@link #getSparseInputs} instead when it can.
+		 */
+		public FMatrixRMaj getInputs() {
+			if(denseStale) {
+				sparseInputs.toDense(inputs);
+				denseStale = false;
+			}
+			return inputs;
+		}
+
+		public FMatrixRMaj getExpected() {
+			return expected;
+		}
+
+		/**
+		 * Return the inputs in compressed form, or null if this batch was
+		 * not compressed.
+		 */
+		public SparseColumns getSparseInputs() {
+			return compressed ? sparseInputs : null;
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+}
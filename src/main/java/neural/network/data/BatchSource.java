@@ -0,0 +1,32 @@
+package neural.network.data;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * Somewhere training mini batches come from, one epoch at a time.
+ *
+ * A source is only ever used by one thread at a time, normally the
+ * producer thread of a {@link BatchPipeline}.
+ */
+public interface BatchSource {
+
+	/**
+	 * Start a new epoch, shuffling the samples with "random".
+	 *
+	 * @throws IOException
+	 */
+	void rewind(Random random) throws IOException;
+
+	/**
+	 * Pack up to "capacity" of the next samples of the epoch into the columns
+	 * of "inputs" and their one-hot labels into the columns of "expected".
+	 * Both matrices are reshaped to the number of samples packed, which is
+	 * returned and is 0 once the epoch is over.
+	 *
+	 * @throws IOException
+	 */
+	int fill(FMatrixRMaj inputs, FMatrixRMaj expected, int capacity) throws IOException;
+}
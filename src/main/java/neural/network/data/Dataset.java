@@ -0,0 +1,439 @@
+package neural.network.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.linalg.SparseColumns;
+
+/**
+ * A compact, column-packable set of labelled images.
+ *
+ * All pixels live in one byte block (784 unsigned bytes per image) and all
+ * labels in a second one. Samples are reached through an index permutation,
+ * so shuffling only reorders integers and a mini batch is a view over a
+ * range of the permutation that shares the same storage.
+ *
+ * A dataset can also be {@link #compress}ed so that only the lit pixels of
+ * each image are stored, as a pixel index and a value. MNIST images are
+ * about 80% black, so this takes less memory and lets batches be packed
+ * straight into a {@link SparseColumns} matrix for the sparse first layer
+ * kernels, without scanning every pixel (see {@link #isSparse}). Training
+ * from a {@link DatasetSource#of} source and batched prediction do so
+ * whenever the batch is sparse enough.
+ *
+ * A dataset can further be {@link #normalize}d: the transformed inputs are
+ * then computed once, cached as floats and packed as they are, instead of
+ * converting every pixel again each epoch. A compressed dataset caches only
+ * the transformed values of its lit pixels, alongside the raw ones, when
+ * the transform keeps black pixels at zero; any other transform would
+ * light up every pixel, so it is applied as the samples are packed
+ * instead. The raw pixels are kept, so {@link #getPx} and {@link #getImage}
+ * still return intensities.
+ */
+public class Dataset {
+
+	private final byte[] labels;
+	private final byte[] pixels; //null once compressed
+	//Compressed storage: the lit pixels of sample s are entries
+	//[starts[s], starts[s+1]) of "indices" and "values"
+	private final int[] starts;
+	private final short[] indices;
+	private final byte[] values;
+	//Normalized inputs, Image.SIZE per sample in storage order, or null
+	private final float[] features;
+	//Normalized values of the lit pixels, parallel to "values", or null
+	private final float[] normalizedValues;
+	private final Normalization normalization;
+	private final int[] order;
+	private final int from;
+	private final int size;
+
+	/**
+	 * Wrap the first "count" labels and images of the given arrays. The
+	 * arrays are not copied.
+	 */
+	public Dataset(final byte[] labels, final byte[] pixels, final int count) {
+		if(labels.length < count || pixels.length < (long) count * Image.SIZE) {
+			throw new IllegalArgumentException("Arrays too short for " + count + " images");
+		}
+		this.labels = labels;
+		this.pixels = pixels;
+		this.starts = null;
+		this.indices = null;
+		this.values = null;
+		this.features = null;
+		this.normalizedValues = null;
+		this.normalization = null;
+		this.order = new int[count];
+		for(int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		this.from = 0;
+		this.size = count;
+	}
+
+	private Dataset(final byte[] labels, final byte[] pixels, final int[] starts, final short[] indices, final byte[] values,
+			final float[] features, final float[] normalizedValues, final Normalization normalization, final int[] order, final int from,
+			final int size) {
+		this.labels = labels;
+		this.pixels = pixels;
+		this.starts = starts;
+		this.indices = indices;
+		this.values = values;
+		this.features = features;
+		this.normalizedValues = normalizedValues;
+		this.normalization = normalization;
+		this.order = order;
+		this.from = from;
+		this.size = size;
+	}
+
+	/**
+	 * Copy a list of images into a new dataset.
+	 */
+	public static Dataset of(final List<Image> images) {
+		final int count = images.size();
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			Image img = images.get(n);
+			labels[n] = (byte) img.getLabel();
+			for(int i = 0; i < Image.SIZE; i++) {
+				pixels[n * Image.SIZE + i] = (byte) img.getPx(i);
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getLabel(final int index) {
+		return labels[order[from + index]] & 0xFF;
+	}
+
+	public int getPx(final int index, final int px) {
+		final int sample = order[from + index];
+		if(pixels != null) {
+			return pixels[sample * Image.SIZE + px] & 0xFF;
+		}
+		final int found = Arrays.binarySearch(indices, starts[sample], starts[sample + 1], (short) px);
+		return found < 0 ? 0 : values[found] & 0xFF;
+	}
+
+	/**
+	 * Return an image backed by this dataset's storage, or a copy of the
+	 * image if the dataset is compressed.
+	 */
+	public Image getImage(final int index) {
+		final int sample = order[from + index];
+		if(pixels != null) {
+			return new Image(labels[sample] & 0xFF, pixels, sample * Image.SIZE);
+		}
+		byte[] image = new byte[Image.SIZE];
+		for(int p = starts[sample]; p < starts[sample + 1]; p++) {
+			image[indices[p]] = values[p];
+		}
+		return new Image(labels[sample] & 0xFF, image, 0);
+	}
+
+	/**
+	 * Return every sample, in the current order, as images backed by this
+	 * dataset's storage.
+	 */
+	public List<Image> toImages() {
+		List<Image> images = new ArrayList<Image>(size);
+		for(int i = 0; i < size; i++) {
+			images.add(getImage(i));
+		}
+		return images;
+	}
+
+	/**
+	 * Return a view of samples [start, start + length) in the current order.
+	 * The view shares storage and ordering with this dataset, so shuffling
+	 * either one reorders the other.
+	 */
+	public Dataset view(final int start, final int length) {
+		if(start < 0 || length < 0 || start + length > size) {
+			throw new IndexOutOfBoundsException("View [" + start + ", " + (start + length) + ") of " + size + " samples");
+		}
+		return new Dataset(labels, pixels, starts, indices, values, features, normalizedValues, normalization, order, from + start, length);
+	}
+
+	/**
+	 * Return the samples of this dataset in their current order, sharing its
+	 * storage but with an order of its own, so that shuffling one leaves the
+	 * other alone. Nothing but the order is copied, which lets concurrent
+	 * trainers each shuffle the same data.
+	 */
+	public Dataset withOwnOrder() {
+		final int[] copy = new int[size];
+		System.arraycopy(order, from, copy, 0, size);
+		return new Dataset(labels, pixels, starts, indices, values, features, normalizedValues, normalization, copy, 0, size);
+	}
+
+	/**
+	 * Shuffle the order of the samples in place.
+	 */
+	public void shuffle(final Random random) {
+		for(int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[from + i];
+			order[from + i] = order[from + j];
+			order[from + j] = tmp;
+		}
+	}
+
+	/**
+	 * Copy samples [start, start + length), normalized if this dataset is,
+	 * into the columns of "inputs" and their one-hot labels into the columns
+	 * of "expected". Both matrices must already have "length" columns;
+	 * "expected" may be null.
+	 */
+	public void pack(final int start, final int length, final FMatrixRMaj inputs, final FMatrixRMaj expected) {
+		if(inputs.getNumRows() != Image.SIZE || inputs.getNumCols() != length) {
+			throw new IllegalArgumentException("Inputs must be " + Image.SIZE + "x" + length);
+		}
+		final float[] in = inputs.data;
+		if(features != null) {
+			for(int j = 0; j < length; j++) {
+				final int base = order[from + start + j] * Image.SIZE;
+				for(int i = 0, index = j; i < Image.SIZE; i++, index += length) {
+					in[index] = features[base + i];
+				}
+			}
+		} else if(pixels == null) {
+			Arrays.fill(in, 0, Image.SIZE * length, 0f);
+			for(int j = 0; j < length; j++) {
+				final int sample = order[from + start + j];
+				if(normalizedValues != null) {
+					for(int p = starts[sample]; p < starts[sample + 1]; p++) {
+						in[indices[p] * length + j] = normalizedValues[p];
+					}
+				} else {
+					for(int p = starts[sample]; p < starts[sample + 1]; p++) {
+						in[indices[p] * length + j] = values[p] & 0xFF;
+					}
+				}
+			}
+			if(normalization != null && normalizedValues == null) {
+				normalization.applyToColumns(inputs);
+			}
+		} else {
+			for(int j = 0; j < length; j++) {
+				final int base = order[from + start + j] * Image.SIZE;
+				for(int i = 0, index = j; i < Image.SIZE; i++, index += length) {
+					in[index] = pixels[base + i] & 0xFF;
+				}
+			}
+		}
+		packExpected(start, length, expected);
+	}
+
+	/**
+	 * Copy the non-zero inputs of samples [start, start + length), normalized
+	 * if this dataset is, into the columns of "inputs", replacing its
+	 * contents, and their one-hot labels into the
+	 * columns of "expected", which must already have "length" columns and
+	 * may be null.
+	 */
+	public void pack(final int start, final int length, final SparseColumns inputs, final FMatrixRMaj expected) {
+		if(inputs.getNumRows() != Image.SIZE) {
+			throw new IllegalArgumentException("Inputs must have " + Image.SIZE + " rows");
+		}
+		inputs.clear();
+		for(int j = 0; j < length; j++) {
+			final int sample = order[from + start + j];
+			if(features != null) {
+				final int base = sample * Image.SIZE;
+				for(int i = 0; i < Image.SIZE; i++) {
+					if(features[base + i] != 0f) {
+						inputs.append(i, features[base + i]);
+					}
+				}
+			} else if(normalizedValues != null) {
+				for(int p = starts[sample]; p < starts[sample + 1]; p++) {
+					inputs.append(indices[p], normalizedValues[p]);
+				}
+			} else if(pixels == null && normalization != null) {
+				//Black pixels are transformed too, so walk every pixel alongside the lit ones
+				for(int i = 0, p = starts[sample]; i < Image.SIZE; i++) {
+					final int value = p < starts[sample + 1] && indices[p] == i ? values[p++] & 0xFF : 0;
+					final float normalized = normalization.apply(i, value);
+					if(normalized != 0f) {
+						inputs.append(i, normalized);
+					}
+				}
+			} else if(pixels == null) {
+				for(int p = starts[sample]; p < starts[sample + 1]; p++) {
+					inputs.append(indices[p], values[p] & 0xFF);
+				}
+			} else {
+				final int base = sample * Image.SIZE;
+				for(int i = 0; i < Image.SIZE; i++) {
+					final int value = pixels[base + i] & 0xFF;
+					if(value != 0) {
+						inputs.append(i, value);
+					}
+				}
+			}
+			inputs.endColumn();
+		}
+		packExpected(start, length, expected);
+	}
+
+	/**
+	 * Copy every sample of this dataset into the columns of "inputs" and
+	 * "expected".
+	 */
+	public void pack(final FMatrixRMaj inputs, final FMatrixRMaj expected) {
+		pack(0, size, inputs, expected);
+	}
+
+	/**
+	 * Return a new dataset holding only the lit pixels of the samples of this
+	 * one, in their current order, normalized the same way. The result shares
+	 * nothing with this dataset; its images are copies rather than views of
+	 * its storage.
+	 */
+	public Dataset compress() {
+		int count = 0;
+		for(int n = 0; n < size; n++) {
+			count += countLit(order[from + n]);
+		}
+		final byte[] compressedLabels = new byte[size];
+		final int[] compressedStarts = new int[size + 1];
+		final short[] compressedIndices = new short[count];
+		final byte[] compressedValues = new byte[count];
+		final int[] identity = new int[size];
+		int p = 0;
+		for(int n = 0; n < size; n++) {
+			final int sample = order[from + n];
+			compressedLabels[n] = labels[sample];
+			identity[n] = n;
+			if(pixels == null) {
+				final int length = starts[sample + 1] - starts[sample];
+				System.arraycopy(indices, starts[sample], compressedIndices, p, length);
+				System.arraycopy(values, starts[sample], compressedValues, p, length);
+				p += length;
+			} else {
+				final int base = sample * Image.SIZE;
+				for(int i = 0; i < Image.SIZE; i++) {
+					if(pixels[base + i] != 0) {
+						compressedIndices[p] = (short) i;
+						compressedValues[p] = pixels[base + i];
+						p++;
+					}
+				}
+			}
+			compressedStarts[n + 1] = p;
+		}
+		final Dataset compressed = new Dataset(compressedLabels, null, compressedStarts, compressedIndices, compressedValues,
+				null, null, null, identity, 0, size);
+		return normalization == null ? compressed : compressed.normalize(normalization);
+	}
+
+	/**
+	 * Return a dataset whose inputs are the pixels of this one transformed by
+	 * "normalization", computed now for every sample of the underlying
+	 * storage and cached. A compressed dataset caches only its lit pixels,
+	 * and only if the transform keeps black pixels at zero; otherwise its
+	 * samples are transformed as they are packed. The result shares the raw
+	 * storage with this dataset but has its own copy of the order.
+	 * Normalizing an already normalized dataset starts again from the raw
+	 * pixels.
+	 */
+	public Dataset normalize(final Normalization normalization) {
+		if(normalization.getSize() != Image.SIZE) {
+			throw new IllegalArgumentException("Normalization of " + normalization.getSize() + " inputs for " + Image.SIZE + " pixels");
+		}
+		if(pixels == null) {
+			float[] normalized = null;
+			if(normalization.keepsZero()) {
+				normalized = new float[values.length];
+				for(int p = 0; p < values.length; p++) {
+					normalized[p] = normalization.apply(indices[p], values[p] & 0xFF);
+				}
+			}
+			return new Dataset(labels, null, starts, indices, values, null, normalized, normalization, order.clone(), from, size);
+		}
+		//Views with an order of their own still index the whole storage
+		final int samples = pixels.length / Image.SIZE;
+		final float[] normalized = new float[samples * Image.SIZE];
+		for(int sample = 0; sample < samples; sample++) {
+			final int base = sample * Image.SIZE;
+			for(int i = 0; i < Image.SIZE; i++) {
+				normalized[base + i] = normalization.apply(i, pixels[base + i] & 0xFF);
+			}
+		}
+		return new Dataset(labels, pixels, null, null, null, normalized, null, normalization, order.clone(), from, size);
+	}
+
+	/**
+	 * Return the transform applied to the packed inputs, or null if they are
+	 * raw pixel intensities.
+	 */
+	public Normalization getNormalization() {
+		return normalization;
+	}
+
+	/**
+	 * Return true if only the lit pixels are stored.
+	 */
+	public boolean isCompressed() {
+		return pixels == null;
+	}
+
+	/**
+	 * Return true if the packed inputs are only the stored lit pixels: the
+	 * dataset is compressed and either not normalized or normalized by a
+	 * transform that keeps black pixels at zero. Packing into a
+	 * {@link SparseColumns} matrix then copies them without a scan.
+	 */
+	public boolean isSparse() {
+		return pixels == null && (normalization == null || normalizedValues != null);
+	}
+
+	/**
+	 * Return the fraction of the raw pixels of this dataset's samples that
+	 * are not zero.
+	 */
+	public float getDensity() {
+		if(size == 0) {
+			return 0f;
+		}
+		long count = 0;
+		for(int n = 0; n < size; n++) {
+			count += countLit(order[from + n]);
+		}
+		return count / ((float) size * Image.SIZE);
+	}
+
+	private int countLit(final int sample) {
+		if(pixels == null) {
+			return starts[sample + 1] - starts[sample];
+		}
+		int count = 0;
+		for(int i = sample * Image.SIZE, end = i + Image.SIZE; i < end; i++) {
+			if(pixels[i] != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void packExpected(final int start, final int length, final FMatrixRMaj expected) {
+		if(expected != null) {
+			expected.zero();
+			for(int j = 0; j < length; j++) {
+				expected.unsafe_set(getLabel(start + j), j, 1.0f);
+			}
+		}
+	}
+}
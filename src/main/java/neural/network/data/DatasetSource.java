@@ -0,0 +1,76 @@
+package neural.network.data;
+
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.linalg.SparseColumns;
+
+/**
+ * Mini batches of an in-memory {@link Dataset}, shuffled in place at the
+ * start of every epoch.
+ */
+public class DatasetSource implements BatchSource {
+
+	private final Dataset dataset;
+	int position; //advanced by the compressed fill too
+
+	public DatasetSource(final Dataset dataset) {
+		this.dataset = dataset;
+		this.position = dataset.size();
+	}
+
+	/**
+	 * Return a source of "dataset" that is a {@link SparseBatchSource} if the
+	 * dataset stores its samples compressed (see {@link Dataset#isSparse}).
+	 */
+	public static DatasetSource of(final Dataset dataset) {
+		return dataset.isSparse() ? new Sparse(dataset) : new DatasetSource(dataset);
+	}
+
+	@Override
+	public void rewind(final Random random) {
+		dataset.shuffle(random);
+		position = 0;
+	}
+
+	@Override
+	public int fill(final FMatrixRMaj inputs, final FMatrixRMaj expected, final int capacity) {
+		final int length = Math.min(capacity, dataset.size() - position);
+		if(length <= 0) {
+			return 0;
+		}
+		inputs.reshape(Image.SIZE, length, false);
+		expected.reshape(expected.getNumRows(), length, false);
+		dataset.pack(position, length, inputs, expected);
+		position += length;
+		return length;
+	}
+
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	/**
+	 * A source of a dataset stored compressed, packing its batches straight
+	 * from the lit pixels.
+	 */
+	private static class Sparse extends DatasetSource implements SparseBatchSource {
+
+		Sparse(final Dataset dataset) {
+			super(dataset);
+		}
+
+		@Override
+		public int fill(final SparseColumns inputs, final FMatrixRMaj expected, final int capacity) {
+			final int length = Math.min(capacity, getDataset().size() - position);
+			if(length <= 0) {
+				return 0;
+			}
+			expected.reshape(expected.getNumRows(), length, false);
+			getDataset().pack(position, length, inputs, expected);
+			position += length;
+			return length;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package neural.network.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the MNIST dataset in its native IDX format (the
+ * "train-images-idx3-ubyte" and "train-labels-idx1-ubyte" files).
+ *
+ * Both files are memory-mapped and their pixels copied in bulk into one
+ * contiguous byte array.
+ */
+public class IdxReader {
+
+	static final int IMAGES_MAGIC = 0x00000803;
+	static final int LABELS_MAGIC = 0x00000801;
+
+	//Disallow instantiation of this class
+	private IdxReader() {}
+
+	/**
+	 * Reads an IDX image file and its matching IDX label file.
+	 *
+	 * @param images
+	 * @param labels
+	 * @return
+	 * @throws IOException if either file is malformed, the images are not
+	 *                     28x28 or the two files disagree on the count
+	 */
+	public static Dataset read(final File images, final File labels) throws IOException {
+		MappedByteBuffer imageBuffer = map(images);
+		MappedByteBuffer labelBuffer = map(labels);
+
+		if(imageBuffer.getInt() != IMAGES_MAGIC) {
+			throw new IOException("Not an IDX image file: " + images);
+		}
+		int count = imageBuffer.getInt();
+		int rows = imageBuffer.getInt();
+		int cols = imageBuffer.getInt();
+		if(rows * cols != Image.SIZE) {
+			throw new IOException("Expected 28x28 images but found " + rows + "x" + cols + " in " + images);
+		}
+		if(labelBuffer.getInt() != LABELS_MAGIC) {
+			throw new IOException("Not an IDX label file: " + labels);
+		}
+		if(labelBuffer.getInt() != count) {
+			throw new IOException("Image and label counts differ: " + images + ", " + labels);
+		}
+		if(imageBuffer.remaining() < (long) count * Image.SIZE || labelBuffer.remaining() < count) {
+			throw new IOException("Truncated IDX file: " + images + ", " + labels);
+		}
+
+		byte[] pixelData = new byte[count * Image.SIZE];
+		imageBuffer.get(pixelData);
+		byte[] labelData = new byte[count];
+		labelBuffer.get(labelData);
+		return new Dataset(labelData, pixelData, count);
+	}
+
+	/**
+	 * Memory-map a whole file read-only with big endian byte order.
+	 */
+	static MappedByteBuffer map(final File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			return buffer;
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -2,34 +2,64 @@ package neural.network.data;
 
 import org.ejml.data.FMatrixRMaj;
 
+/**
+ * A labelled 28x28 grey scale image.
+ *
+ * Pixels are unsigned bytes (0-255) held in a byte array that may be shared
+ * with many other images, so that a whole dataset lives in one contiguous
+ * block rather than one array per image.
+ */
 public class Image {
 
+	public static final int SIZE = 784;
+
 	private final int label;
-	private final int[] data;
-	
+	private final byte[] pixels;
+	private final int offset;
+
 	public Image(final int label) {
+		this(label, new byte[SIZE], 0);
+	}
+
+	/**
+	 * Create an image whose pixels are bytes [offset, offset + 784) of a
+	 * shared array. The array is not copied.
+	 */
+	public Image(final int label, final byte[] pixels, final int offset) {
 		this.label = label;
-		this.data = new int[784];
+		this.pixels = pixels;
+		this.offset = offset;
 	}
-	
+
 	public void setPx(final int index, final int value) {
-		this.data[index] = value;
+		this.pixels[offset + index] = (byte) value;
+	}
+
+	public int getPx(final int index) {
+		return pixels[offset + index] & 0xFF;
 	}
-	
+
 	public int getLabel() {
 		return label;
 	}
-	
+
+	/**
+	 * Returns a copy of the pixels as integers.
+	 */
 	public int[] getData() {
+		int[] data = new int[SIZE];
+		for(int i = 0; i < SIZE; i++) {
+			data[i] = getPx(i);
+		}
 		return data;
 	}
-	
+
 	public FMatrixRMaj getVector() {
-		FMatrixRMaj v = new FMatrixRMaj(data.length, 1);
-		for(int i = 0; i < data.length; i++) {
-			v.set(i, 0, data[i]);
+		FMatrixRMaj v = new FMatrixRMaj(SIZE, 1);
+		for(int i = 0; i < SIZE; i++) {
+			v.data[i] = getPx(i);
 		}
 		return v;
 	}
-	
+
 }
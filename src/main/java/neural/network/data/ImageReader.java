@@ -1,45 +1,156 @@
 package neural.network.data;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ImageReader {
 
 	/**
 	 * Reads in the MNIST dataset.
-	 * 
+	 *
 	 * Use absolute filepath (i.e. use '/' at front of parameter 'filepath').
-	 * 
+	 *
 	 * @param filepath
 	 * @return
 	 * @throws IOException
 	 */
 	public static List<Image> read(final String filepath) throws IOException {
-		List<Image> dataset = new ArrayList<Image>();
-		
+		return readDataset(filepath).toImages();
+	}
+
+	/**
+	 * Reads in the MNIST dataset as a compact {@link Dataset}.
+	 *
+	 * Use absolute filepath (i.e. use '/' at front of parameter 'filepath').
+	 *
+	 * @param filepath
+	 * @return
+	 * @throws IOException
+	 */
+	public static Dataset readDataset(final String filepath) throws IOException {
 		URL resource = ImageReader.class.getResource(filepath);
-		
-		BufferedReader in = new BufferedReader(new InputStreamReader(resource.openStream()));
-
-        String inputLine;
-        
-        while ((inputLine = in.readLine()) != null) {
-        	String[] splitLine = inputLine.split(",");
-        	Image img = new Image(Integer.parseInt(splitLine[0]));
-        	for(int i = 1; i < splitLine.length; i++) {
-        		img.setPx(i-1, Integer.parseInt(splitLine[i]));
-        	}
-        	dataset.add(img);
-        }
-            
-        in.close();
-        
-		
-		
+		if(resource == null) {
+			throw new IOException("No such resource: " + filepath);
+		}
+		return readDataset(resource);
+	}
+
+	/**
+	 * Reads in an MNIST dataset in CSV form (label followed by 784 pixels per
+	 * line) from any URL.
+	 *
+	 * All pixels end up in one contiguous byte array shared by the returned
+	 * images.
+	 *
+	 * @param resource
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<Image> read(final URL resource) throws IOException {
+		return readDataset(resource).toImages();
+	}
+
+	/**
+	 * Reads in an MNIST dataset in CSV form from any URL as a compact
+	 * {@link Dataset}.
+	 *
+	 * @param resource
+	 * @return
+	 * @throws IOException if a line holds anything but a label from 0 to 9
+	 * and 784 pixels from 0 to 255, separated by commas
+	 */
+	public static Dataset readDataset(final URL resource) throws IOException {
+		byte[] labels = new byte[1024];
+		byte[] pixels = new byte[1024 * Image.SIZE];
+		int count = 0;
+
+		InputStream in = new BufferedInputStream(resource.openStream(), 1 << 16);
+		try {
+			int line = 1;
+			int c = in.read();
+			while(c != -1) {
+				//Skip blank lines
+				if(c == '\n' || c == '\r') {
+					if(c == '\n') {
+						line++;
+					}
+					c = in.read();
+					continue;
+				}
+				if(count == labels.length) {
+					labels = Arrays.copyOf(labels, count * 2);
+					pixels = Arrays.copyOf(pixels, count * 2 * Image.SIZE);
+				}
+				//Parse the comma separated fields of one line
+				int field = 0;
+				int value = 0;
+				int digits = 0;
+				while(true) {
+					if(c >= '0' && c <= '9') {
+						value = value * 10 + (c - '0');
+						digits++;
+						if(field == 0 && value > 9) {
+							throw new IOException("Label out of range 0-9 on line " + line + " of " + resource);
+						}
+						if(value > 255) {
+							throw new IOException("Pixel above 255 in field " + (field + 1) + " on line " + line + " of " + resource);
+						}
+					} else if(c == ',' || c == '\n' || c == '\r' || c == -1) {
+						if(digits == 0) {
+							throw new IOException("Empty field " + (field + 1) + " on line " + line + " of " + resource);
+						}
+						if(field == 0) {
+							labels[count] = (byte) value;
+						} else if(field <= Image.SIZE) {
+							pixels[count * Image.SIZE + field - 1] = (byte) value;
+						}
+						field++;
+						value = 0;
+						digits = 0;
+						if(c != ',') {
+							break;
+						}
+					} else {
+						throw new IOException("Unexpected character '" + (char) c + "' on line " + line + " of " + resource);
+					}
+					c = in.read();
+				}
+				if(field != Image.SIZE + 1) {
+					throw new IOException("Expected " + (Image.SIZE + 1) + " fields but found " + field + " on line " + line + " of " + resource);
+				}
+				count++;
+			}
+		} finally {
+			in.close();
+		}
+		if(pixels.length > count * Image.SIZE) {
+			pixels = Arrays.copyOf(pixels, count * Image.SIZE);
+		}
+
+		return new Dataset(labels, pixels, count);
+	}
+
+	/**
+	 * Reads in the MNIST dataset from the binary cache file if it exists.
+	 * Otherwise the CSV resource at "filepath" is parsed and the cache is
+	 * written, so that only the first run pays for parsing the text.
+	 *
+	 * @param filepath
+	 * @param cache
+	 * @return
+	 * @throws IOException
+	 */
+	public static Dataset readCached(final String filepath, final File cache) throws IOException {
+		if(cache.isFile()) {
+			return ImageCache.read(cache);
+		}
+		Dataset dataset = readDataset(filepath);
+		ImageCache.write(dataset, cache);
 		return dataset;
 	}
 }
@@ -0,0 +1,178 @@
+package neural.network.data;
+
+import java.util.Arrays;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * A per-input affine transform applied to raw pixel intensities before they
+ * reach a network: x' = (x - offset) * scale.
+ *
+ * Raw intensities run from 0 to 255, which drives a sigmoid first layer
+ * deep into saturation. {@link #unitRange} maps them to [0, 1] and keeps
+ * black pixels at zero, so batches stay sparse; {@link #standardize} fits a
+ * per-pixel mean and standard deviation to a training set. A fitted
+ * transform is saved with the network it was trained with, so that
+ * inference applies the same one. Instances are immutable.
+ */
+public final class Normalization {
+
+	/**
+	 * Smallest standard deviation {@link #standardize} divides by, a tenth of
+	 * the pixel range, so that pixels which barely vary in the training set
+	 * cannot blow up by orders of magnitude when they do at inference.
+	 */
+	public static final float MIN_DEVIATION = 25.5f;
+
+	private static final int CHUNK = 256;
+
+	private final float[] offsets;
+	private final float[] scales;
+
+	/**
+	 * Create a transform from its offsets and scales, which are copied.
+	 */
+	public Normalization(final float[] offsets, final float[] scales) {
+		if(offsets.length == 0 || offsets.length != scales.length) {
+			throw new IllegalArgumentException(offsets.length + " offsets and " + scales.length + " scales");
+		}
+		for(int i = 0; i < offsets.length; i++) {
+			if(Float.isNaN(offsets[i]) || Float.isInfinite(offsets[i]) || Float.isNaN(scales[i]) || Float.isInfinite(scales[i])) {
+				throw new IllegalArgumentException("Offset " + offsets[i] + " and scale " + scales[i] + " of input " + i);
+			}
+		}
+		this.offsets = offsets.clone();
+		this.scales = scales.clone();
+	}
+
+	/**
+	 * Return the transform mapping the pixel range [0, 255] to [0, 1].
+	 */
+	public static Normalization unitRange() {
+		final float[] offsets = new float[Image.SIZE];
+		final float[] scales = new float[Image.SIZE];
+		Arrays.fill(scales, 1f / 255);
+		return new Normalization(offsets, scales);
+	}
+
+	/**
+	 * Fit a transform giving every pixel of "data" zero mean and unit
+	 * standard deviation, or a deviation below one for pixels whose standard
+	 * deviation is under {@link #MIN_DEVIATION}.
+	 *
+	 * @throws IllegalArgumentException if "data" is empty or already normalized
+	 */
+	public static Normalization standardize(final Dataset data) {
+		if(data.size() == 0) {
+			throw new IllegalArgumentException("Cannot fit a normalization to an empty dataset");
+		}
+		if(data.getNormalization() != null) {
+			throw new IllegalArgumentException("Cannot fit a normalization to normalized samples");
+		}
+		final double[] sums = new double[Image.SIZE];
+		final double[] squares = new double[Image.SIZE];
+		final FMatrixRMaj chunk = new FMatrixRMaj(Image.SIZE, CHUNK);
+		for(int start = 0; start < data.size(); start += CHUNK) {
+			final int length = Math.min(CHUNK, data.size() - start);
+			chunk.reshape(Image.SIZE, length, false);
+			data.pack(start, length, chunk, null);
+			for(int i = 0, index = 0; i < Image.SIZE; i++) {
+				for(int j = 0; j < length; j++, index++) {
+					final double value = chunk.data[index];
+					sums[i] += value;
+					squares[i] += value * value;
+				}
+			}
+		}
+		final float[] offsets = new float[Image.SIZE];
+		final float[] scales = new float[Image.SIZE];
+		for(int i = 0; i < Image.SIZE; i++) {
+			final double mean = sums[i] / data.size();
+			final double variance = Math.max(0.0, squares[i] / data.size() - mean * mean);
+			offsets[i] = (float) mean;
+			scales[i] = (float) (1.0 / Math.max(Math.sqrt(variance), MIN_DEVIATION));
+		}
+		return new Normalization(offsets, scales);
+	}
+
+	/**
+	 * Return the number of inputs this transform applies to.
+	 */
+	public int getSize() {
+		return offsets.length;
+	}
+
+	/**
+	 * Return the transformed value of input "index".
+	 */
+	public float apply(final int index, final float value) {
+		return (value - offsets[index]) * scales[index];
+	}
+
+	/**
+	 * Return true if black pixels stay at zero, as under {@link #unitRange},
+	 * so that sparse inputs stay sparse once transformed.
+	 */
+	public boolean keepsZero() {
+		for(float offset : offsets) {
+			if(offset != 0f) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Transform one sample in place.
+	 */
+	public void apply(final float[] sample) {
+		if(sample.length != offsets.length) {
+			throw new IllegalArgumentException("Expected " + offsets.length + " inputs, got " + sample.length);
+		}
+		for(int i = 0; i < sample.length; i++) {
+			sample[i] = (sample[i] - offsets[i]) * scales[i];
+		}
+	}
+
+	/**
+	 * Transform, in place, a batch packed one sample per column.
+	 */
+	public void applyToColumns(final FMatrixRMaj batch) {
+		if(batch.getNumRows() != offsets.length) {
+			throw new IllegalArgumentException("Expected " + offsets.length + " rows, got " + batch.getNumRows());
+		}
+		final float[] data = batch.data;
+		final int n = batch.getNumCols();
+		for(int i = 0, index = 0; i < offsets.length; i++) {
+			final float offset = offsets[i];
+			final float scale = scales[i];
+			for(int j = 0; j < n; j++, index++) {
+				data[index] = (data[index] - offset) * scale;
+			}
+		}
+	}
+
+	public float[] getOffsets() {
+		return offsets.clone();
+	}
+
+	public float[] getScales() {
+		return scales.clone();
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+		if(this == other) {
+			return true;
+		}
+		if(!(other instanceof Normalization)) {
+			return false;
+		}
+		return Arrays.equals(offsets, ((Normalization) other).offsets) && Arrays.equals(scales, ((Normalization) other).scales);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(offsets) + Arrays.hashCode(scales);
+	}
+}
@@ -0,0 +1,54 @@
+package neural.network.data;
+
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * Translate every image by up to "maxShift" pixels horizontally and
+ * vertically, filling the uncovered border with background. Background is
+ * zero, so the images must be raw pixels or pixels scaled to the unit
+ * range.
+ */
+public class RandomShift implements Augmentation {
+
+	private static final int SIDE = 28;
+
+	private final int maxShift;
+	private final float[] scratch = new float[Image.SIZE];
+
+	public RandomShift(final int maxShift) {
+		if(maxShift < 0 || maxShift >= SIDE) {
+			throw new IllegalArgumentException("Shift must be in [0, " + SIDE + "): " + maxShift);
+		}
+		this.maxShift = maxShift;
+	}
+
+	@Override
+	public void apply(final FMatrixRMaj inputs, final Random random) {
+		final int columns = inputs.getNumCols();
+		final float[] data = inputs.data;
+		for(int j = 0; j < columns; j++) {
+			final int dx = random.nextInt(2 * maxShift + 1) - maxShift;
+			final int dy = random.nextInt(2 * maxShift + 1) - maxShift;
+			if(dx == 0 && dy == 0) {
+				continue;
+			}
+			for(int i = 0, index = j; i < Image.SIZE; i++, index += columns) {
+				scratch[i] = data[index];
+			}
+			for(int y = 0; y < SIDE; y++) {
+				final int sy = y - dy;
+				for(int x = 0; x < SIDE; x++) {
+					final int sx = x - dx;
+					final boolean inside = sx >= 0 && sx < SIDE && sy >= 0 && sy < SIDE;
+					data[(y * SIDE + x) * columns + j] = inside ? scratch[sy * SIDE + sx] : 0f;
+				}
+			}
+		}
+	}
+
+	public int getMaxShift() {
+		return maxShift;
+	}
+}
@@ -0,0 +1,219 @@
+package neural.network.data;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * Training batches streamed from image cache shards on disk, for datasets
+ * too large to hold in memory.
+ *
+ * Every epoch visits the shards in a random order and reads each one
+ * sequentially through its FileChannel, "chunkSize" images at a time. Images
+ * pass through a shuffle buffer of "bufferSize" samples: each batch column
+ * takes a random sample out of the buffer and the next image read from disk
+ * takes its place. Memory use is therefore fixed by the buffer and chunk
+ * sizes, whatever the size of the dataset. The larger the buffer relative to
+ * a shard, the closer the order is to a full shuffle.
+ */
+public class ShardStream implements BatchSource, Closeable {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	private final List<File> shards;
+	private final int[] counts;
+	private final long total;
+
+	//Shuffle buffer
+	private final byte[] bufferLabels;
+	private final byte[] bufferPixels;
+	private int buffered;
+
+	//Current read position
+	private final ByteBuffer chunkLabels;
+	private final ByteBuffer chunkPixels;
+	private final int[] shardOrder;
+	private int shard;
+	private RandomAccessFile file;
+	private int shardPosition;
+	private int chunkPosition;
+	private int chunkLength;
+
+	private Random random;
+	private long emitted;
+
+	/**
+	 * Stream the given shards through a shuffle buffer of "bufferSize" images.
+	 *
+	 * @throws IOException if a shard is not an image cache
+	 */
+	public ShardStream(final List<File> shards, final int bufferSize) throws IOException {
+		this(shards, bufferSize, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Stream the given shards through a shuffle buffer of "bufferSize" images,
+	 * reading "chunkSize" images from disk at a time.
+	 *
+	 * @throws IOException if a shard is not an image cache
+	 */
+	public ShardStream(final List<File> shards, final int bufferSize, final int chunkSize) throws IOException {
+		if(bufferSize <= 0 || chunkSize <= 0) {
+			throw new IllegalArgumentException("Buffer and chunk sizes must be positive");
+		}
+		this.shards = new ArrayList<File>(shards);
+		this.counts = new int[shards.size()];
+		long total = 0;
+		for(int i = 0; i < counts.length; i++) {
+			RandomAccessFile raf = new RandomAccessFile(this.shards.get(i), "r");
+			try {
+				counts[i] = ImageCache.readCount(raf.getChannel(), this.shards.get(i));
+			} finally {
+				raf.close();
+			}
+			total += counts[i];
+		}
+		this.total = total;
+		this.bufferLabels = new byte[bufferSize];
+		this.bufferPixels = new byte[bufferSize * Image.SIZE];
+		this.chunkLabels = ByteBuffer.allocate(chunkSize);
+		this.chunkPixels = ByteBuffer.allocate(chunkSize * Image.SIZE);
+		this.shardOrder = new int[counts.length];
+		this.shard = counts.length;
+		this.emitted = total;
+	}
+
+	@Override
+	public void rewind(final Random random) throws IOException {
+		closeShard();
+		this.random = random;
+		for(int i = 0; i < shardOrder.length; i++) {
+			shardOrder[i] = i;
+		}
+		for(int i = shardOrder.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = shardOrder[i];
+			shardOrder[i] = shardOrder[j];
+			shardOrder[j] = tmp;
+		}
+		shard = -1;
+		shardPosition = 0;
+		chunkPosition = 0;
+		chunkLength = 0;
+		emitted = 0;
+		buffered = 0;
+		while(buffered < bufferLabels.length && readSample(buffered)) {
+			buffered++;
+		}
+	}
+
+	@Override
+	public int fill(final FMatrixRMaj inputs, final FMatrixRMaj expected, final int capacity) throws IOException {
+		final int length = (int) Math.min(capacity, total - emitted);
+		if(length <= 0) {
+			return 0;
+		}
+		inputs.reshape(Image.SIZE, length, false);
+		expected.reshape(expected.getNumRows(), length, false);
+		expected.zero();
+		final float[] in = inputs.data;
+		for(int j = 0; j < length; j++) {
+			if(buffered == 0) {
+				throw new EOFException("Shards ended before the " + total + " images their headers promise");
+			}
+			final int slot = random.nextInt(buffered);
+			final int base = slot * Image.SIZE;
+			for(int i = 0, index = j; i < Image.SIZE; i++, index += length) {
+				in[index] = bufferPixels[base + i] & 0xFF;
+			}
+			expected.unsafe_set(bufferLabels[slot] & 0xFF, j, 1.0f);
+			//Refill the slot from disk, or shrink the buffer once the stream is dry
+			if(!readSample(slot)) {
+				buffered--;
+				bufferLabels[slot] = bufferLabels[buffered];
+				System.arraycopy(bufferPixels, buffered * Image.SIZE, bufferPixels, base, Image.SIZE);
+			}
+		}
+		emitted += length;
+		return length;
+	}
+
+	/**
+	 * Return the total number of images in all shards.
+	 */
+	public long size() {
+		return total;
+	}
+
+	/**
+	 * Close the shard being read, if any.
+	 */
+	@Override
+	public void close() throws IOException {
+		closeShard();
+	}
+
+	/**
+	 * Read the next image of the epoch into buffer slot "slot", returning
+	 * false if every shard has been read.
+	 */
+	private boolean readSample(final int slot) throws IOException {
+		if(chunkPosition == chunkLength && !readChunk()) {
+			return false;
+		}
+		bufferLabels[slot] = chunkLabels.get(chunkPosition);
+		System.arraycopy(chunkPixels.array(), chunkPosition * Image.SIZE, bufferPixels, slot * Image.SIZE, Image.SIZE);
+		chunkPosition++;
+		return true;
+	}
+
+	/**
+	 * Read the next chunk of images, moving on to the next shard when the
+	 * current one is exhausted.
+	 */
+	private boolean readChunk() throws IOException {
+		while(file == null || shardPosition == counts[shardOrder[shard]]) {
+			closeShard();
+			if(++shard >= shardOrder.length) {
+				return false;
+			}
+			file = new RandomAccessFile(shards.get(shardOrder[shard]), "r");
+			shardPosition = 0;
+		}
+		final int count = counts[shardOrder[shard]];
+		final int length = Math.min(chunkLabels.capacity(), count - shardPosition);
+		final FileChannel channel = file.getChannel();
+		readFully(channel, chunkLabels, length, ImageCache.HEADER_SIZE + (long) shardPosition);
+		readFully(channel, chunkPixels, length * Image.SIZE, ImageCache.HEADER_SIZE + count + (long) shardPosition * Image.SIZE);
+		shardPosition += length;
+		chunkPosition = 0;
+		chunkLength = length;
+		return true;
+	}
+
+	private void readFully(final FileChannel channel, final ByteBuffer buffer, final int length, final long position) throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Truncated shard: " + shards.get(shardOrder[shard]));
+			}
+		}
+	}
+
+	private void closeShard() throws IOException {
+		if(file != null) {
+			file.close();
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package neural.network.data;
+
+import java.io.IOException;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.linalg.SparseColumns;
+
+/**
+ * A {@link BatchSource} that stores only the non-zero inputs of its
+ * samples, so that it can pack them in compressed form without scanning
+ * every pixel.
+ */
+public interface SparseBatchSource extends BatchSource {
+
+	/**
+	 * Same as {@link #fill(FMatrixRMaj, FMatrixRMaj, int)}, but pack the
+	 * inputs in compressed form only, replacing the contents of "inputs".
+	 *
+	 * @throws IOException
+	 */
+	int fill(SparseColumns inputs, FMatrixRMaj expected, int capacity) throws IOException;
+}
@@ -0,0 +1,112 @@
+package neural.network.distributed;
+
+import java.util.Locale;
+
+/**
+ * What a distributed training run took, as seen by its
+ * {@link ParameterServer}: the training time from the moment every worker
+ * had connected, the samples and updates, how stale the applied gradients
+ * were and how the workers split their time between computing gradients
+ * and waiting for parameters.
+ */
+public class DistributedRun {
+
+	private final int workers;
+	private final int staleness;
+	private final long trainingNanos;
+	private final long samples;
+	private final long updates;
+	private final long gradients;
+	private final long maxStaleness;
+	private final double meanStaleness;
+	private final long staleGradients;
+	private final long computeNanos;
+	private final long waitNanos;
+
+	DistributedRun(final int workers, final int staleness, final long trainingNanos, final long samples, final long updates,
+			final long gradients, final long maxStaleness, final double meanStaleness, final long staleGradients,
+			final long computeNanos, final long waitNanos) {
+		this.workers = workers;
+		this.staleness = staleness;
+		this.trainingNanos = trainingNanos;
+		this.samples = samples;
+		this.updates = updates;
+		this.gradients = gradients;
+		this.maxStaleness = maxStaleness;
+		this.meanStaleness = meanStaleness;
+		this.staleGradients = staleGradients;
+		this.computeNanos = computeNanos;
+		this.waitNanos = waitNanos;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Return the staleness bound, 0 for synchronous training.
+	 */
+	public int getStaleness() {
+		return staleness;
+	}
+
+	public long getTrainingNanos() {
+		return trainingNanos;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Return the number of updates applied to the parameters: one per round
+	 * when synchronous, one per gradient otherwise.
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	public long getGradients() {
+		return gradients;
+	}
+
+	/**
+	 * Return the largest number of updates applied between the version a
+	 * gradient was computed against and its arrival.
+	 */
+	public long getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	public double getMeanStaleness() {
+		return meanStaleness;
+	}
+
+	/**
+	 * Return the number of gradients computed against parameters that had
+	 * been updated since.
+	 */
+	public long getStaleGradients() {
+		return staleGradients;
+	}
+
+	public double getSamplesPerSecond() {
+		return trainingNanos == 0 ? 0.0 : samples * 1e9 / trainingNanos;
+	}
+
+	/**
+	 * Return the share of the workers' time spent computing gradients rather
+	 * than exchanging them and waiting for parameters.
+	 */
+	public double getComputeFraction() {
+		final long total = computeNanos + waitNanos;
+		return total == 0 ? 0.0 : computeNanos / (double) total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%d workers, %s: %.2fs, %d samples (%.0f/s), %d updates, staleness max %d mean %.2f, "
+				+ "%.0f%% of worker time computing", workers, staleness == 0 ? "synchronous" : "staleness " + staleness,
+				trainingNanos / 1e9, samples, getSamplesPerSecond(), updates, maxStaleness, meanStaleness, 100 * getComputeFraction());
+	}
+}
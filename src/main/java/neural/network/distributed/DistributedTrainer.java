@@ -0,0 +1,224 @@
+package neural.network.distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import neural.network.ModelFile;
+import neural.network.Network;
+import neural.network.data.Dataset;
+import neural.network.data.ImageCache;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.optimizers.Optimizer;
+
+/**
+ * Data-parallel training over several {@link DistributedWorker}s and a
+ * {@link ParameterServer}, all on this machine and talking over loopback
+ * TCP.
+ *
+ * The data is split, in its current order, into one contiguous shard per
+ * worker, and every mini batch into one share per worker: a synchronous
+ * round therefore applies the same number of samples whatever the worker
+ * count. Workers run either as separate JVMs, each loading its shard and
+ * the network from files written to a temporary directory, or as threads of
+ * this JVM sharing the data, which is cheaper to start and convenient for
+ * tests; the protocol is the same. Worker processes get the
+ * jdk.incubator.vector module and the neural.network.* system properties of
+ * this JVM, so they use the same backend.
+ */
+public class DistributedTrainer {
+
+	public enum Launch {
+		/** One JVM per worker. */
+		PROCESS,
+		/** One thread of this JVM per worker. */
+		THREAD
+	}
+
+	private final int workers;
+	private final int staleness;
+	private final Launch launch;
+	private final long seed;
+
+	/**
+	 * Train with "workers" workers under the given staleness bound, 0 for
+	 * synchronous training (see {@link ParameterServer}).
+	 */
+	public DistributedTrainer(final int workers, final int staleness, final Launch launch, final long seed) {
+		if(workers <= 0) {
+			throw new IllegalArgumentException("Worker count must be positive: " + workers);
+		}
+		if(staleness < 0) {
+			throw new IllegalArgumentException("Staleness bound must not be negative: " + staleness);
+		}
+		this.workers = workers;
+		this.staleness = staleness;
+		this.launch = launch;
+		this.seed = seed;
+	}
+
+	/**
+	 * Train "network" in place for the given number of epochs, updating it
+	 * with "optimizer" on mini batches of about "mini_batch_size" samples
+	 * split evenly across the workers.
+	 *
+	 * @throws IOException if a worker cannot be started or fails
+	 * @throws LayerDoesNotExistException
+	 * @throws InterruptedException
+	 */
+	public DistributedRun train(final Network network, final Dataset data, final int epochs, final int mini_batch_size,
+			final Optimizer optimizer) throws IOException, LayerDoesNotExistException, InterruptedException {
+		if(data.getNormalization() != null && !data.getNormalization().equals(network.getNormalization())) {
+			throw new IllegalArgumentException("Training data was normalized differently from the network's inputs");
+		}
+		final int share = Math.max(1, (mini_batch_size + workers - 1) / workers);
+		final ParameterServer server = new ParameterServer(network, optimizer, workers, staleness);
+		try {
+			if(launch == Launch.THREAD) {
+				return trainInThreads(server, network, data, epochs, share);
+			}
+			return trainInProcesses(server, network, data, epochs, share);
+		} finally {
+			server.close();
+		}
+	}
+
+	private DistributedRun trainInThreads(final ParameterServer server, final Network network, final Dataset data, final int epochs,
+			final int share) throws IOException, InterruptedException {
+		//Normalize once rather than once per worker
+		final Dataset normalized = DistributedWorker.normalized(network, data);
+		final Thread[] threads = new Thread[workers];
+		for(int i = 0; i < workers; i++) {
+			final int worker = i;
+			final DistributedWorker task = new DistributedWorker(server.getPort(), worker, network.copy(), shard(normalized, worker),
+					epochs, share, seed);
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} catch (IOException | LayerDoesNotExistException | RuntimeException e) {
+						server.fail(new IOException("Worker " + worker + " failed", e));
+					}
+				}
+			}, "distributed-worker-" + worker);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		try {
+			return server.awaitCompletion();
+		} finally {
+			server.close();
+			for(Thread thread : threads) {
+				thread.join();
+			}
+		}
+	}
+
+	private DistributedRun trainInProcesses(final ParameterServer server, final Network network, final Dataset data, final int epochs,
+			final int share) throws IOException, LayerDoesNotExistException, InterruptedException {
+		final File directory = Files.createTempDirectory("distributed").toFile();
+		final List<File> files = new ArrayList<File>();
+		final List<Process> processes = new ArrayList<Process>();
+		try {
+			final File model = new File(directory, "network.model");
+			files.add(model);
+			ModelFile.save(network, model);
+			for(int i = 0; i < workers; i++) {
+				final File shard = new File(directory, "shard-" + i + ".bin");
+				files.add(shard);
+				ImageCache.write(shard(data, i), shard);
+			}
+			for(int i = 0; i < workers; i++) {
+				final List<String> command = javaCommand();
+				command.add(DistributedWorker.class.getName());
+				command.add(Integer.toString(server.getPort()));
+				command.add(Integer.toString(i));
+				command.add(model.getPath());
+				command.add(files.get(i + 1).getPath());
+				command.add(Integer.toString(epochs));
+				command.add(Integer.toString(share));
+				command.add(Long.toString(seed));
+				final Process process = new ProcessBuilder(command).inheritIO().start();
+				processes.add(process);
+				watch(server, process, i);
+			}
+			final DistributedRun run = server.awaitCompletion();
+			for(Process process : processes) {
+				process.waitFor();
+			}
+			return run;
+		} finally {
+			server.close();
+			for(Process process : processes) {
+				process.destroy();
+			}
+			for(File file : files) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Fail training if "process" exits abnormally, for example before it
+	 * could connect.
+	 */
+	private static void watch(final ParameterServer server, final Process process, final int worker) {
+		final Thread watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final int code = process.waitFor();
+					if(code != 0) {
+						server.fail(new IOException("Worker " + worker + " exited with code " + code));
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "distributed-watcher-" + worker);
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Return the command line starting a JVM like this one.
+	 */
+	private static List<String> javaCommand() {
+		final List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		for(String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if(argument.startsWith("--add-modules") || argument.startsWith("-Dneural.network.")) {
+				command.add(argument);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		return command;
+	}
+
+	/**
+	 * Return the contiguous share of "data" trained on by worker "worker".
+	 */
+	private Dataset shard(final Dataset data, final int worker) {
+		final int start = (int) ((long) data.size() * worker / workers);
+		final int end = (int) ((long) data.size() * (worker + 1) / workers);
+		return data.view(start, end - start);
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public int getStaleness() {
+		return staleness;
+	}
+
+	public Launch getLaunch() {
+		return launch;
+	}
+}
@@ -0,0 +1,151 @@
+package neural.network.distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+
+import neural.network.ModelFile;
+import neural.network.Network;
+import neural.network.Operations;
+import neural.network.TrainingWorkspace;
+import neural.network.data.Dataset;
+import neural.network.data.ImageCache;
+import neural.network.data.Normalization;
+import neural.network.exceptions.LayerDoesNotExistException;
+
+/**
+ * One worker of a distributed training run. It trains on its own shard of
+ * the data: every mini batch is backpropagated against the parameters last
+ * received from the {@link ParameterServer}, the gradient is pushed to the
+ * server and the worker continues from the parameters it sends back. The
+ * shard is reshuffled every epoch with a seed derived from the run's seed
+ * and the worker's index.
+ *
+ * {@link #main} runs a worker in a process of its own, which is how
+ * {@link DistributedTrainer} starts them.
+ */
+public class DistributedWorker {
+
+	private final int port;
+	private final int worker;
+	private final Network network;
+	private final Dataset shard;
+	private final int epochs;
+	private final int miniBatchSize;
+	private final long seed;
+
+	/**
+	 * Train worker number "worker" on "shard" with the server listening on
+	 * loopback port "port". "network" must have the server's shape and is
+	 * overwritten with the parameters it sends; if it has a normalization
+	 * and the shard is raw, a normalized copy of the shard is trained on.
+	 */
+	public DistributedWorker(final int port, final int worker, final Network network, final Dataset shard, final int epochs,
+			final int miniBatchSize, final long seed) {
+		if(miniBatchSize <= 0) {
+			throw new IllegalArgumentException("Mini batch size must be positive: " + miniBatchSize);
+		}
+		this.port = port;
+		this.worker = worker;
+		this.network = network;
+		this.shard = shard;
+		this.epochs = epochs;
+		this.miniBatchSize = miniBatchSize;
+		this.seed = seed;
+	}
+
+	/**
+	 * Connect to the server and train until every epoch of the shard is
+	 * done.
+	 *
+	 * @throws IOException if the connection fails or the server aborts training
+	 * @throws LayerDoesNotExistException
+	 */
+	public void run() throws IOException, LayerDoesNotExistException {
+		final Dataset data = normalized(network, shard);
+		final int count = network.getNumberOfParameters();
+		final ByteBuffer buffer = Protocol.allocate(count);
+		final TrainingWorkspace workspace = new TrainingWorkspace(network, miniBatchSize);
+		final Random random = new Random(seed + worker);
+		long computeNanos = 0;
+		long waitNanos = 0;
+		final SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		try {
+			channel.socket().setTcpNoDelay(true);
+			buffer.clear();
+			buffer.putInt(Protocol.HELLO).putInt(worker).putInt(count).flip();
+			Protocol.write(channel, buffer);
+			long version = receive(channel, buffer);
+			for(int epoch = 0; epoch < epochs; epoch++) {
+				data.shuffle(random);
+				for(int start = 0; start < data.size(); start += miniBatchSize) {
+					final int length = Math.min(miniBatchSize, data.size() - start);
+					final long started = System.nanoTime();
+					Operations.computeGradient(network, data, start, length, workspace);
+					final long computed = System.nanoTime();
+					Protocol.putGradient(buffer, version, length, workspace, network.getNumberOfLayers() - 1);
+					Protocol.write(channel, buffer);
+					version = receive(channel, buffer);
+					computeNanos += computed - started;
+					waitNanos += System.nanoTime() - computed;
+				}
+			}
+			buffer.clear();
+			buffer.putInt(Protocol.DONE).putLong(computeNanos).putLong(waitNanos).flip();
+			Protocol.write(channel, buffer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read a PARAMETERS message into the network and return its version.
+	 */
+	private long receive(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+		Protocol.read(channel, buffer, Protocol.PARAMETERS_HEADER);
+		final int type = buffer.getInt();
+		if(type != Protocol.PARAMETERS) {
+			throw new IOException("Expected parameters, got message " + type);
+		}
+		final long version = buffer.getLong();
+		Protocol.readParameters(channel, buffer, network);
+		return version;
+	}
+
+	/**
+	 * Return "data" with its inputs normalized the way "network" expects.
+	 */
+	static Dataset normalized(final Network network, final Dataset data) {
+		final Normalization normalization = network.getNormalization();
+		if(data.getNormalization() == null) {
+			return normalization == null ? data : data.normalize(normalization);
+		}
+		if(!data.getNormalization().equals(normalization)) {
+			throw new IllegalArgumentException("Training data was normalized differently from the network's inputs");
+		}
+		return data;
+	}
+
+	/**
+	 * Run a worker process.
+	 *
+	 * Usage: DistributedWorker &lt;port&gt; &lt;worker&gt; &lt;model&gt; &lt;shard.bin&gt; &lt;epochs&gt; &lt;mini batch size&gt; &lt;seed&gt;
+	 *
+	 * The model file gives the network's shape, activations and
+	 * normalization; its parameters are replaced by the server's.
+	 */
+	public static void main(String[] args) throws IOException, LayerDoesNotExistException {
+		if(args.length != 7) {
+			System.err.println("Usage: DistributedWorker <port> <worker> <model> <shard.bin> <epochs> <mini batch size> <seed>");
+			System.exit(1);
+		}
+		Network network = ModelFile.load(new File(args[2]));
+		Dataset shard = ImageCache.read(new File(args[3]));
+		new DistributedWorker(Integer.parseInt(args[0]), Integer.parseInt(args[1]), network, shard, Integer.parseInt(args[4]),
+				Integer.parseInt(args[5]), Long.parseLong(args[6])).run();
+	}
+}
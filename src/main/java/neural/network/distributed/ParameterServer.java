@@ -0,0 +1,409 @@
+package neural.network.distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.linalg.Backends;
+import neural.network.optimizers.Optimizer;
+
+/**
+ * Holds the master copy of a network's parameters for a set of
+ * {@link DistributedWorker}s, applies the gradients they push with an
+ * {@link Optimizer} and sends the updated parameters back. It listens on the
+ * loopback interface only, with one thread per worker connection.
+ *
+ * With a staleness bound of 0 training is synchronous: every worker pushes
+ * the gradient of its share of a round, the gradients are summed in worker
+ * order and applied as one update, and every worker continues from the same
+ * parameters. With the same seeds this gives the same network every time.
+ *
+ * With a bound s above 0 every gradient is applied as soon as it arrives and
+ * a worker only waits when it has pushed more than s gradients more than the
+ * slowest worker still training (stale synchronous parallel). Fast workers
+ * no longer wait for slow ones at every step, at the cost of gradients
+ * computed against parameters up to (workers - 1) * (2s + 1) updates old:
+ * while a worker computes, every other one may go from s gradients behind
+ * it to s + 1 ahead.
+ *
+ * Training starts once every worker has connected, which is also when the
+ * training time starts to count, and ends when every worker has said it is
+ * done. The network passed in is updated in place: gradients are read off
+ * the wire straight into matrices the optimizer takes, and parameters are
+ * sent straight from the network's own.
+ */
+public class ParameterServer implements Closeable {
+
+	private final Network network;
+	private final Optimizer optimizer;
+	private final int workers;
+	private final int staleness;
+	private final int parameters;
+	private final ServerSocketChannel server;
+	private final Thread acceptor;
+	private final List<Thread> handlers = new ArrayList<Thread>();
+
+	//Everything below is guarded by "this"
+	private final FMatrixRMaj[][] pendingWeights; //a waiting worker's own gradient buffers
+	private final FMatrixRMaj[][] pendingBiases;
+	private final int[] pendingBatch;
+	private final boolean[] connected;
+	private final boolean[] active;
+	private final long[] clocks;
+	private int connections;
+	private int activeWorkers;
+	private int pushed;
+	private long round;
+	private long version;
+	private IOException failure;
+	private boolean closed;
+	private long startNanos;
+	private long endNanos;
+	private long updates;
+	private long gradients;
+	private long staleGradients;
+	private long maxStaleness;
+	private long totalStaleness;
+	private long samples;
+	private long computeNanos;
+	private long waitNanos;
+
+	/**
+	 * Serve "network" to "workers" workers on any free loopback port,
+	 * applying their gradients with "optimizer" under the given staleness
+	 * bound, 0 for synchronous training.
+	 *
+	 * @throws IOException if no port can be bound
+	 */
+	public ParameterServer(final Network network, final Optimizer optimizer, final int workers, final int staleness) throws IOException {
+		if(workers <= 0) {
+			throw new IllegalArgumentException("Worker count must be positive: " + workers);
+		}
+		if(staleness < 0) {
+			throw new IllegalArgumentException("Staleness bound must not be negative: " + staleness);
+		}
+		this.network = network;
+		this.optimizer = optimizer;
+		this.workers = workers;
+		this.staleness = staleness;
+		this.parameters = network.getNumberOfParameters();
+		this.pendingWeights = new FMatrixRMaj[workers][];
+		this.pendingBiases = new FMatrixRMaj[workers][];
+		this.pendingBatch = new int[workers];
+		this.connected = new boolean[workers];
+		this.active = new boolean[workers];
+		this.clocks = new long[workers];
+		this.server = ServerSocketChannel.open();
+		try {
+			server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), workers);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		this.acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "parameter-server-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public int getStaleness() {
+		return staleness;
+	}
+
+	/**
+	 * Wait until every worker has finished, and return what training took.
+	 *
+	 * @throws IOException if a worker disconnected or broke the protocol
+	 */
+	public synchronized DistributedRun awaitCompletion() throws IOException, InterruptedException {
+		while(failure == null && (connections < workers || activeWorkers > 0)) {
+			wait();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+		return new DistributedRun(workers, staleness, endNanos - startNanos, samples, updates, gradients, maxStaleness,
+				gradients == 0 ? 0.0 : totalStaleness / (double) gradients, staleGradients, computeNanos, waitNanos);
+	}
+
+	/**
+	 * Fail training with "cause", which {@link #awaitCompletion} then throws,
+	 * and release every worker waiting on the server.
+	 */
+	synchronized void fail(final IOException cause) {
+		if(failure == null && !closed) {
+			failure = cause;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Stop listening and disconnect every worker.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			closed = true;
+			if(failure == null && activeWorkers > 0) {
+				failure = new IOException("Parameter server closed");
+			}
+			notifyAll();
+		}
+		server.close();
+		acceptor.interrupt();
+		final List<Thread> threads;
+		synchronized(handlers) {
+			threads = new ArrayList<Thread>(handlers);
+		}
+		for(Thread thread : threads) {
+			thread.interrupt();
+		}
+	}
+
+	private void accept() {
+		try {
+			for(int i = 0; i < workers; i++) {
+				final SocketChannel channel = server.accept();
+				channel.socket().setTcpNoDelay(true);
+				final Thread handler = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						serve(channel);
+					}
+				}, "parameter-server-" + i);
+				handler.setDaemon(true);
+				synchronized(handlers) {
+					handlers.add(handler);
+				}
+				handler.start();
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Talk to one worker until it is done or the connection fails.
+	 */
+	private void serve(final SocketChannel channel) {
+		final ByteBuffer buffer = Protocol.allocate(parameters);
+		final int layers = network.getNumberOfLayers() - 1;
+		final FMatrixRMaj[] weightGradient = new FMatrixRMaj[layers];
+		final FMatrixRMaj[] biasGradient = new FMatrixRMaj[layers];
+		for(int i = 0; i < layers; i++) {
+			weightGradient[i] = new FMatrixRMaj(network.getSizeOfLayers().get(i + 1), network.getSizeOfLayers().get(i));
+			biasGradient[i] = new FMatrixRMaj(network.getSizeOfLayers().get(i + 1), 1);
+		}
+		final List<FMatrixRMaj> weightLayers = Arrays.asList(weightGradient);
+		final List<FMatrixRMaj> biasLayers = Arrays.asList(biasGradient);
+		int worker = -1;
+		try {
+			try {
+				Protocol.read(channel, buffer, Protocol.HELLO_SIZE);
+				if(buffer.getInt() != Protocol.HELLO) {
+					throw new IOException("Expected a hello message");
+				}
+				worker = register(buffer.getInt(), buffer.getInt());
+				awaitStart(buffer);
+				Protocol.write(channel, buffer);
+				while(true) {
+					final int type = Protocol.readType(channel, buffer);
+					if(type == Protocol.GRADIENT) {
+						Protocol.read(channel, buffer, Protocol.GRADIENT_HEADER - 4);
+						final long computedAt = buffer.getLong();
+						final int batchSize = buffer.getInt();
+						Protocol.readLayers(channel, buffer, weightLayers, biasLayers, parameters);
+						push(worker, computedAt, batchSize, weightGradient, biasGradient, buffer);
+						Protocol.write(channel, buffer);
+					} else if(type == Protocol.DONE) {
+						Protocol.read(channel, buffer, Protocol.DONE_SIZE - 4);
+						finish(worker, buffer.getLong(), buffer.getLong());
+						return;
+					} else {
+						throw new IOException("Unexpected message " + type + " from worker " + worker);
+					}
+				}
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			fail(new IOException("Worker " + worker + " failed", e));
+		} catch (InterruptedException e) {
+			fail(new IOException("Worker " + worker + " interrupted", e));
+		}
+	}
+
+	private synchronized int register(final int worker, final int count) throws IOException {
+		if(worker < 0 || worker >= workers || connected[worker]) {
+			throw new IOException("Unexpected worker index " + worker);
+		}
+		if(count != parameters) {
+			throw new IOException("Worker " + worker + " has " + count + " parameters, expected " + parameters);
+		}
+		connected[worker] = true;
+		active[worker] = true;
+		activeWorkers++;
+		connections++;
+		if(connections == workers) {
+			startNanos = System.nanoTime();
+		}
+		notifyAll();
+		return worker;
+	}
+
+	/**
+	 * Wait for every worker to connect and fill "buffer" with the initial
+	 * parameters.
+	 */
+	private synchronized void awaitStart(final ByteBuffer buffer) throws IOException, InterruptedException {
+		while(connections < workers) {
+			checkFailure();
+			wait();
+		}
+		Protocol.putParameters(buffer, version, network);
+	}
+
+	/**
+	 * Take one worker's gradient and fill "buffer" with the parameters it is
+	 * to continue from, once the mode allows it to continue.
+	 */
+	private synchronized void push(final int worker, final long computedAt, final int batchSize, final FMatrixRMaj[] weightGradient,
+			final FMatrixRMaj[] biasGradient, final ByteBuffer buffer) throws IOException, InterruptedException {
+		checkFailure();
+		final long lag = version - computedAt;
+		gradients++;
+		totalStaleness += lag;
+		maxStaleness = Math.max(maxStaleness, lag);
+		if(lag > 0) {
+			staleGradients++;
+		}
+		samples += batchSize;
+		clocks[worker]++;
+		if(staleness == 0) {
+			//The worker's buffers stay untouched until the round completes
+			pendingWeights[worker] = weightGradient;
+			pendingBiases[worker] = biasGradient;
+			pendingBatch[worker] = batchSize;
+			pushed++;
+			final long waitingFor = round;
+			if(pushed == activeWorkers) {
+				completeRound();
+			}
+			while(round == waitingFor) {
+				checkFailure();
+				wait();
+			}
+		} else {
+			update(weightGradient, biasGradient, batchSize);
+			notifyAll();
+			while(clocks[worker] > slowestClock() + staleness) {
+				checkFailure();
+				wait();
+			}
+		}
+		Protocol.putParameters(buffer, version, network);
+	}
+
+	/**
+	 * Apply the summed gradients of a synchronous round, in worker order.
+	 * They are summed into the first waiting worker's buffers.
+	 */
+	private void completeRound() {
+		int batchSize = 0;
+		int first = -1;
+		for(int w = 0; w < workers; w++) {
+			if(pendingBatch[w] == 0) {
+				continue;
+			}
+			if(first < 0) {
+				first = w;
+			} else {
+				for(int i = 0; i < pendingWeights[w].length; i++) {
+					Backends.current().axpy(1f, pendingWeights[w][i], pendingWeights[first][i]);
+					Backends.current().axpy(1f, pendingBiases[w][i], pendingBiases[first][i]);
+				}
+			}
+			batchSize += pendingBatch[w];
+			pendingBatch[w] = 0;
+		}
+		if(batchSize > 0) {
+			update(pendingWeights[first], pendingBiases[first], batchSize);
+		}
+		Arrays.fill(pendingWeights, null);
+		Arrays.fill(pendingBiases, null);
+		pushed = 0;
+		round++;
+		notifyAll();
+	}
+
+	/**
+	 * Apply a gradient summed over "batchSize" samples to the network in
+	 * place, making it the next version.
+	 */
+	private void update(final FMatrixRMaj[] weightGradient, final FMatrixRMaj[] biasGradient, final int batchSize) {
+		try {
+			optimizer.update(network, weightGradient, biasGradient, batchSize);
+		} catch (LayerDoesNotExistException e) {
+			throw new IllegalStateException(e);
+		}
+		version++;
+		updates++;
+	}
+
+	private synchronized void finish(final int worker, final long compute, final long waiting) {
+		active[worker] = false;
+		activeWorkers--;
+		computeNanos += compute;
+		waitNanos += waiting;
+		//A synchronous round no longer waits for a worker that has stopped
+		if(staleness == 0 && pushed > 0 && pushed == activeWorkers) {
+			completeRound();
+		}
+		if(activeWorkers == 0) {
+			endNanos = System.nanoTime();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Return the clock of the slowest worker still training.
+	 */
+	private long slowestClock() {
+		long slowest = Long.MAX_VALUE;
+		for(int w = 0; w < workers; w++) {
+			if(active[w]) {
+				slowest = Math.min(slowest, clocks[w]);
+			}
+		}
+		return slowest;
+	}
+
+	private void checkFailure() throws IOException {
+		if(failure != null) {
+			throw new IOException("Training aborted", failure);
+		}
+	}
+}
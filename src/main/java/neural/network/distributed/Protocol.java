@@ -0,0 +1,144 @@
+package neural.network.distributed;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.TrainingWorkspace;
+
+/**
+ * The messages a {@link DistributedWorker} and a {@link ParameterServer}
+ * exchange over a blocking NIO socket. Everything is little endian and every
+ * message starts with its type:
+ *
+ * HELLO, worker to server: worker index, parameter count.
+ * PARAMETERS, server to worker: version, then every parameter as a float in
+ * the flat layout of {@link neural.network.Network#copyParameters}. Both
+ * sides read and write these straight from and into their layer matrices.
+ * GRADIENT, worker to server: version the gradient was computed against,
+ * batch size, then the gradient summed over the batch in the same flat
+ * layout.
+ * DONE, worker to server: nanoseconds spent computing gradients and
+ * nanoseconds spent waiting for parameters.
+ */
+final class Protocol {
+
+	static final int HELLO = 1;
+	static final int PARAMETERS = 2;
+	static final int GRADIENT = 3;
+	static final int DONE = 4;
+
+	static final int HELLO_SIZE = 12;
+	static final int PARAMETERS_HEADER = 12;
+	static final int GRADIENT_HEADER = 16;
+	static final int DONE_SIZE = 20;
+
+	//Disallow instantiation of this class
+	private Protocol() {}
+
+	/**
+	 * Allocate a buffer large enough for any message carrying "parameters"
+	 * floats.
+	 */
+	static ByteBuffer allocate(final int parameters) {
+		return ByteBuffer.allocateDirect(GRADIENT_HEADER + 4 * parameters).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Fill "buffer" with the next "length" bytes from "channel", leaving it
+	 * flipped for reading.
+	 *
+	 * @throws EOFException if the other side closes the connection first
+	 */
+	static void read(final SocketChannel channel, final ByteBuffer buffer, final int length) throws IOException {
+		buffer.clear().limit(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("Connection closed after " + buffer.position() + " of " + length + " bytes");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Write what remains of a flipped "buffer" to "channel".
+	 */
+	static void write(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Read the type of the next message.
+	 */
+	static int readType(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+		read(channel, buffer, 4);
+		return buffer.getInt();
+	}
+
+	/**
+	 * Read the parameters of a PARAMETERS message straight into "network".
+	 */
+	static void readParameters(final SocketChannel channel, final ByteBuffer buffer, final Network network) throws IOException {
+		read(channel, buffer, 4 * network.getNumberOfParameters());
+		network.setParameters(buffer.asFloatBuffer());
+	}
+
+	/**
+	 * Read a flat gradient straight into the matrices it belongs to: for
+	 * each layer, the weights then the biases.
+	 */
+	static void readLayers(final SocketChannel channel, final ByteBuffer buffer, final List<FMatrixRMaj> weights,
+			final List<FMatrixRMaj> biases, final int count) throws IOException {
+		read(channel, buffer, 4 * count);
+		final FloatBuffer floats = buffer.asFloatBuffer();
+		for(int i = 0; i < weights.size(); i++) {
+			floats.get(weights.get(i).data, 0, weights.get(i).getNumElements());
+			floats.get(biases.get(i).data, 0, biases.get(i).getNumElements());
+		}
+	}
+
+	/**
+	 * Fill "buffer" with a PARAMETERS message holding the parameters of
+	 * "network", ready to be written.
+	 */
+	static void putParameters(final ByteBuffer buffer, final long version, final Network network) {
+		buffer.clear();
+		buffer.putInt(PARAMETERS).putLong(version);
+		network.copyParameters(buffer.asFloatBuffer());
+		buffer.position(buffer.position() + 4 * network.getNumberOfParameters());
+		buffer.flip();
+	}
+
+	/**
+	 * Fill "buffer" with a GRADIENT message holding the gradients of the
+	 * "layers" weight layers in "workspace", summed over "batchSize" images,
+	 * ready to be written.
+	 */
+	static void putGradient(final ByteBuffer buffer, final long version, final int batchSize, final TrainingWorkspace workspace,
+			final int layers) {
+		buffer.clear();
+		buffer.putInt(GRADIENT).putLong(version).putInt(batchSize);
+		for(int i = 0; i < layers; i++) {
+			putFloats(buffer, workspace.getNablaW(i));
+			putFloats(buffer, workspace.getNablaB(i));
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Append the elements of "matrix" to "buffer" in bulk.
+	 */
+	private static void putFloats(final ByteBuffer buffer, final FMatrixRMaj matrix) {
+		buffer.asFloatBuffer().put(matrix.data, 0, matrix.getNumElements());
+		buffer.position(buffer.position() + 4 * matrix.getNumElements());
+	}
+}
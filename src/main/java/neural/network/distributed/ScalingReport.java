@@ -0,0 +1,150 @@
+package neural.network.distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import neural.network.Evaluator;
+import neural.network.ModelFile;
+import neural.network.Network;
+import neural.network.data.Dataset;
+import neural.network.data.ImageCache;
+import neural.network.data.ImageReader;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.optimizers.Sgd;
+
+/**
+ * How distributed training scales with the number of workers: the same
+ * network is trained from the same starting parameters once per worker
+ * count, and each run's throughput is compared with the first one's. The
+ * efficiency of a run is its speedup divided by the ratio of its worker
+ * count to the first run's, 1.0 being linear scaling.
+ */
+public class ScalingReport {
+
+	/**
+	 * One training run of the report.
+	 */
+	public static class Row {
+
+		private final DistributedRun run;
+		private final double speedup;
+		private final double efficiency;
+		private final double accuracy;
+
+		Row(final DistributedRun run, final double speedup, final double efficiency, final double accuracy) {
+			this.run = run;
+			this.speedup = speedup;
+			this.efficiency = efficiency;
+			this.accuracy = accuracy;
+		}
+
+		public DistributedRun getRun() {
+			return run;
+		}
+
+		public double getSpeedup() {
+			return speedup;
+		}
+
+		public double getEfficiency() {
+			return efficiency;
+		}
+
+		/**
+		 * Return the accuracy of the trained network on the test data.
+		 */
+		public double getAccuracy() {
+			return accuracy;
+		}
+	}
+
+	private final List<Row> rows;
+
+	private ScalingReport(final List<Row> rows) {
+		this.rows = Collections.unmodifiableList(rows);
+	}
+
+	/**
+	 * Train a copy of "network" on "train" with every worker count in
+	 * "workerCounts", in order, using plain SGD with learning rate "eta", and
+	 * evaluate each on "test". "network" itself is left untouched.
+	 *
+	 * @throws IOException if a worker cannot be started or fails
+	 * @throws LayerDoesNotExistException
+	 * @throws InterruptedException
+	 */
+	public static ScalingReport measure(final Network network, final Dataset train, final Dataset test, final int[] workerCounts,
+			final int staleness, final DistributedTrainer.Launch launch, final int epochs, final int mini_batch_size, final float eta,
+			final long seed) throws IOException, LayerDoesNotExistException, InterruptedException {
+		if(workerCounts.length == 0) {
+			throw new IllegalArgumentException("No worker counts to measure");
+		}
+		final List<Row> rows = new ArrayList<Row>();
+		DistributedRun first = null;
+		for(int workers : workerCounts) {
+			final Network copy = network.copy();
+			final DistributedRun run = new DistributedTrainer(workers, staleness, launch, seed).train(copy, train, epochs,
+					mini_batch_size, new Sgd(eta));
+			if(first == null) {
+				first = run;
+			}
+			final double speedup = first.getSamplesPerSecond() == 0 ? 0.0 : run.getSamplesPerSecond() / first.getSamplesPerSecond();
+			rows.add(new Row(run, speedup, speedup * first.getWorkers() / workers, new Evaluator(copy).evaluate(test).getAccuracy()));
+		}
+		return new ScalingReport(rows);
+	}
+
+	public List<Row> getRows() {
+		return rows;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(String.format(Locale.ROOT, "%7s %9s %10s %8s %10s %9s %8s %9s%n", "workers", "seconds", "samples/s", "speedup",
+				"efficiency", "staleness", "compute", "accuracy"));
+		for(Row row : rows) {
+			final DistributedRun run = row.getRun();
+			builder.append(String.format(Locale.ROOT, "%7d %9.2f %10.0f %8.2f %10.2f %9.2f %7.0f%% %9.4f%n", run.getWorkers(),
+					run.getTrainingNanos() / 1e9, run.getSamplesPerSecond(), row.getSpeedup(), row.getEfficiency(),
+					run.getMeanStaleness(), 100 * run.getComputeFraction(), row.getAccuracy()));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Measure scaling of a saved model's shape with worker processes, given
+	 * training and test sets as MNIST CSV files or {@link ImageCache}s (.bin).
+	 * The model's parameters are the starting point of every run.
+	 *
+	 * Usage: ScalingReport &lt;model&gt; &lt;train.csv|train.bin&gt; &lt;test.csv|test.bin&gt; [workers...]
+	 */
+	public static void main(String[] args) throws IOException, LayerDoesNotExistException, InterruptedException {
+		if(args.length < 3) {
+			System.err.println("Usage: ScalingReport <model> <train.csv|train.bin> <test.csv|test.bin> [workers...]");
+			System.exit(1);
+		}
+		Network network = ModelFile.load(new File(args[0]));
+		Dataset train = read(new File(args[1]));
+		Dataset test = read(new File(args[2]));
+		int[] workerCounts = {1, 2, 4};
+		if(args.length > 3) {
+			workerCounts = new int[args.length - 3];
+			for(int i = 0; i < workerCounts.length; i++) {
+				workerCounts[i] = Integer.parseInt(args[i + 3]);
+			}
+		}
+		System.out.println("Synchronous:");
+		System.out.print(measure(network, train, test, workerCounts, 0, DistributedTrainer.Launch.PROCESS, 1, 64, 0.1f, 1L));
+		System.out.println("Staleness 2:");
+		System.out.print(measure(network, train, test, workerCounts, 2, DistributedTrainer.Launch.PROCESS, 1, 64, 0.1f, 1L));
+	}
+
+	private static Dataset read(final File file) throws IOException {
+		return file.getName().endsWith(".bin") ? ImageCache.read(file) : ImageReader.readDataset(file.toURI().toURL());
+	}
+}
@@ -0,0 +1,70 @@
+package neural.network.linalg;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * The dense float operations the network needs, so that the engine doing
+ * the arithmetic can be chosen at runtime.
+ *
+ * All matrices are row-major and every output must already have the right
+ * shape; implementations never allocate.
+ */
+public interface Backend {
+
+	/**
+	 * Name used to select this backend, e.g. through the
+	 * "neural.network.backend" system property.
+	 */
+	String getName();
+
+	/**
+	 * c = a * b. When b is a single column this is a matrix-vector product.
+	 */
+	void mult(FMatrixRMaj a, FMatrixRMaj b, FMatrixRMaj c);
+
+	/**
+	 * c = a^T * b, without forming a^T.
+	 */
+	void multTransA(FMatrixRMaj a, FMatrixRMaj b, FMatrixRMaj c);
+
+	/**
+	 * c = a * b^T, without forming b^T.
+	 */
+	void multTransB(FMatrixRMaj a, FMatrixRMaj b, FMatrixRMaj c);
+
+	/**
+	 * y = y + alpha * x.
+	 */
+	void axpy(float alpha, FMatrixRMaj x, FMatrixRMaj y);
+
+	/**
+	 * c = a - b, elementwise.
+	 */
+	void subtract(FMatrixRMaj a, FMatrixRMaj b, FMatrixRMaj c);
+
+	/**
+	 * a = a .* b, elementwise.
+	 */
+	void elementMult(FMatrixRMaj a, FMatrixRMaj b);
+
+	/**
+	 * Add the column vector "column" to every column of "matrix".
+	 */
+	void addToColumns(FMatrixRMaj matrix, FMatrixRMaj column);
+
+	/**
+	 * Write the sum of every row of "matrix" into the column vector "sums".
+	 */
+	void sumRows(FMatrixRMaj matrix, FMatrixRMaj sums);
+
+	/**
+	 * Replace every element of "matrix" by its sigmoid.
+	 */
+	void sigmoid(FMatrixRMaj matrix);
+
+	/**
+	 * Multiply every element of "delta" by the derivative of sigmoid, given
+	 * the matching sigmoid activations: a * (1 - a).
+	 */
+	void multSigmoidPrimeOfActivation(FMatrixRMaj delta, FMatrixRMaj activations);
+}
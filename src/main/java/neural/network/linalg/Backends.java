@@ -0,0 +1,86 @@
+package neural.network.linalg;
+
+/**
+ * Holds the backend used by the network operations.
+ *
+ * The initial backend is named by the "neural.network.backend" system
+ * property ("ejml", "blocked" or "vector") and defaults to EJML. It can be
+ * swapped at any time with {@link #use}; operations already running finish
+ * on the backend they started with.
+ *
+ * The "vector" backend uses the incubating Vector API. It is only built on
+ * JDK 17 and newer and only loads when the JVM runs with
+ * "--add-modules jdk.incubator.vector"; otherwise asking for it yields the
+ * scalar {@link BlockedBackend}, which has the same loop structure.
+ */
+public final class Backends {
+
+	public static final String PROPERTY = "neural.network.backend";
+
+	static final String VECTOR_NAME = "vector";
+	private static final String VECTOR_CLASS = "neural.network.linalg.VectorBackend";
+
+	private static volatile Backend current = forName(System.getProperty(PROPERTY, EjmlBackend.NAME));
+
+	//Disallow instantiation of this class
+	private Backends() {}
+
+	/**
+	 * Return the backend currently in use.
+	 */
+	public static Backend current() {
+		return current;
+	}
+
+	/**
+	 * Make "backend" the backend used from now on.
+	 */
+	public static void use(final Backend backend) {
+		if(backend == null) {
+			throw new IllegalArgumentException("Backend must not be null");
+		}
+		current = backend;
+	}
+
+	/**
+	 * Return a new backend by name. "vector" falls back to "blocked" when the
+	 * Vector API is not available.
+	 *
+	 * @throws IllegalArgumentException if no backend has that name
+	 */
+	public static Backend forName(final String name) {
+		if(EjmlBackend.NAME.equalsIgnoreCase(name)) {
+			return new EjmlBackend();
+		}
+		if(BlockedBackend.NAME.equalsIgnoreCase(name)) {
+			return new BlockedBackend();
+		}
+		if(VECTOR_NAME.equalsIgnoreCase(name)) {
+			Backend vector = loadVector();
+			return vector != null ? vector : new BlockedBackend();
+		}
+		throw new IllegalArgumentException("Unknown backend: " + name);
+	}
+
+	/**
+	 * Return true if the Vector API backend can be used in this JVM.
+	 */
+	public static boolean isVectorAvailable() {
+		return loadVector() != null;
+	}
+
+	/**
+	 * Instantiate the Vector API backend, or return null if it was not built
+	 * or the jdk.incubator.vector module is not present at runtime.
+	 */
+	private static Backend loadVector() {
+		try {
+			return (Backend) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} catch (LinkageError e) {
+			//Missing module or a class file newer than this JVM
+			return null;
+		}
+	}
+}
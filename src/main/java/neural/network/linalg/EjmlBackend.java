@@ -0,0 +1,76 @@
+package neural.network.linalg;
+
+import org.ejml.data.FMatrixRMaj;
+import org.ejml.dense.row.CommonOps_FDRM;
+
+import neural.network.SigmoidKernels;
+
+/**
+ * The default backend, delegating to EJML's row-major float operations.
+ */
+public class EjmlBackend implements Backend {
+
+	public static final String NAME = "ejml";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public void mult(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		CommonOps_FDRM.mult(a, b, c);
+	}
+
+	@Override
+	public void multTransA(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		CommonOps_FDRM.multTransA(a, b, c);
+	}
+
+	@Override
+	public void multTransB(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		CommonOps_FDRM.multTransB(a, b, c);
+	}
+
+	@Override
+	public void axpy(final float alpha, final FMatrixRMaj x, final FMatrixRMaj y) {
+		CommonOps_FDRM.addEquals(y, alpha, x);
+	}
+
+	@Override
+	public void subtract(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		CommonOps_FDRM.subtract(a, b, c);
+	}
+
+	@Override
+	public void elementMult(final FMatrixRMaj a, final FMatrixRMaj b) {
+		CommonOps_FDRM.elementMult(a, b);
+	}
+
+	@Override
+	public void addToColumns(final FMatrixRMaj matrix, final FMatrixRMaj column) {
+		final int rows = matrix.getNumRows();
+		final int cols = matrix.getNumCols();
+		for(int i = 0, index = 0; i < rows; i++) {
+			final float b = column.data[i];
+			for(int j = 0; j < cols; j++) {
+				matrix.data[index++] += b;
+			}
+		}
+	}
+
+	@Override
+	public void sumRows(final FMatrixRMaj matrix, final FMatrixRMaj sums) {
+		CommonOps_FDRM.sumRows(matrix, sums);
+	}
+
+	@Override
+	public void sigmoid(final FMatrixRMaj matrix) {
+		SigmoidKernels.sigmoid(matrix.data, matrix.getNumElements());
+	}
+
+	@Override
+	public void multSigmoidPrimeOfActivation(final FMatrixRMaj delta, final FMatrixRMaj activations) {
+		SigmoidKernels.multSigmoidPrimeOfActivation(delta.data, activations.data, delta.getNumElements());
+	}
+}
@@ -0,0 +1,189 @@
+package neural.network.linalg;
+
+import java.util.Arrays;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * A matrix stored by column in compressed sparse form: only the non-zero
+ * entries are kept, as a row index and a value, column after column.
+ *
+ * This is the shape of a mini batch of mostly black images packed one per
+ * column, where a product with the batch only needs to touch the lit
+ * pixels. The index and value arrays grow as needed and are kept between
+ * batches, so refilling an instance allocates nothing once it has seen its
+ * densest batch. An instance is not thread-safe.
+ */
+public class SparseColumns {
+
+	private final int rows;
+	private int cols;
+	//Entries appended to the column being built
+	private int pending;
+	private int[] columnStarts;
+	private int[] rowIndices;
+	private float[] values;
+
+	/**
+	 * Create an empty matrix of "rows" rows with room for "columnCapacity"
+	 * columns and "nonZeroCapacity" entries before it has to grow.
+	 */
+	public SparseColumns(final int rows, final int columnCapacity, final int nonZeroCapacity) {
+		if(rows <= 0 || columnCapacity < 0 || nonZeroCapacity < 0) {
+			throw new IllegalArgumentException("Cannot hold " + columnCapacity + " columns of " + rows + " rows");
+		}
+		this.rows = rows;
+		this.columnStarts = new int[columnCapacity + 1];
+		this.rowIndices = new int[nonZeroCapacity];
+		this.values = new float[nonZeroCapacity];
+	}
+
+	/**
+	 * Empty the matrix, ready for columns to be appended with
+	 * {@link #append} and {@link #endColumn}.
+	 */
+	public void clear() {
+		cols = 0;
+		pending = 0;
+	}
+
+	/**
+	 * Add entry ("row", "value") to the column being built. Rows must be
+	 * appended in increasing order and zero values should be left out.
+	 */
+	public void append(final int row, final float value) {
+		final int count = columnStarts[cols] + pending;
+		if(count == values.length) {
+			grow(count + 1);
+		}
+		rowIndices[count] = row;
+		values[count] = value;
+		pending++;
+	}
+
+	/**
+	 * Close the column being built and start the next one.
+	 */
+	public void endColumn() {
+		if(cols + 2 > columnStarts.length) {
+			columnStarts = Arrays.copyOf(columnStarts, Math.max(cols + 2, 2 * columnStarts.length));
+		}
+		columnStarts[cols + 1] = columnStarts[cols] + pending;
+		cols++;
+		pending = 0;
+	}
+
+	/**
+	 * Replace the contents of this matrix with the non-zero entries of
+	 * "dense", which must have as many rows, unless the fraction of non-zero
+	 * entries exceeds "maxDensity". Return true if the matrix was filled and
+	 * false if it was left empty because "dense" is too dense to be worth
+	 * compressing; counting stops as soon as that is known.
+	 */
+	public boolean compress(final FMatrixRMaj dense, final float maxDensity) {
+		if(dense.getNumRows() != rows) {
+			throw new IllegalArgumentException("Expected " + rows + " rows, got " + dense.getNumRows());
+		}
+		final int n = dense.getNumCols();
+		final float[] data = dense.data;
+		final long limit = (long) (maxDensity * (double) rows * n);
+		if(columnStarts.length < n + 1) {
+			columnStarts = new int[n + 1];
+		}
+		clear();
+		//Count the entries of each column, row by row so memory is read in order
+		Arrays.fill(columnStarts, 0, n + 1, 0);
+		int total = 0;
+		for(int i = 0, index = 0; i < rows; i++) {
+			for(int j = 1; j <= n; j++, index++) {
+				if(data[index] != 0f) {
+					columnStarts[j]++;
+					total++;
+				}
+			}
+			if(total > limit) {
+				return false;
+			}
+		}
+		for(int j = 1; j <= n; j++) {
+			columnStarts[j] += columnStarts[j - 1];
+		}
+		if(total > values.length) {
+			grow(total);
+		}
+		//Scatter the entries, which leaves the rows of every column sorted
+		for(int i = 0, index = 0; i < rows; i++) {
+			for(int j = 0; j < n; j++, index++) {
+				final float v = data[index];
+				if(v != 0f) {
+					final int p = columnStarts[j]++;
+					rowIndices[p] = i;
+					values[p] = v;
+				}
+			}
+		}
+		//Each start was advanced to the next column's, shift them back
+		for(int j = n; j > 0; j--) {
+			columnStarts[j] = columnStarts[j - 1];
+		}
+		columnStarts[0] = 0;
+		cols = n;
+		return true;
+	}
+
+	/**
+	 * Write this matrix into "dense", which must have the same shape.
+	 */
+	public void toDense(final FMatrixRMaj dense) {
+		if(dense.getNumRows() != rows || dense.getNumCols() != cols) {
+			throw new IllegalArgumentException("Expected a " + rows + "x" + cols + " matrix");
+		}
+		dense.zero();
+		for(int j = 0; j < cols; j++) {
+			for(int p = columnStarts[j]; p < columnStarts[j + 1]; p++) {
+				dense.data[rowIndices[p] * cols + j] = values[p];
+			}
+		}
+	}
+
+	public int getNumRows() {
+		return rows;
+	}
+
+	public int getNumCols() {
+		return cols;
+	}
+
+	public int getNonZeros() {
+		return columnStarts[cols];
+	}
+
+	/**
+	 * Return the fraction of entries that are stored.
+	 */
+	public float getDensity() {
+		return cols == 0 ? 0f : getNonZeros() / ((float) rows * cols);
+	}
+
+	/**
+	 * Column j's entries are at positions [columnStarts[j], columnStarts[j+1])
+	 * of {@link #rowIndices} and {@link #values}.
+	 */
+	int[] columnStarts() {
+		return columnStarts;
+	}
+
+	int[] rowIndices() {
+		return rowIndices;
+	}
+
+	float[] values() {
+		return values;
+	}
+
+	private void grow(final int minimum) {
+		final int capacity = Math.max(minimum, 2 * values.length);
+		rowIndices = Arrays.copyOf(rowIndices, capacity);
+		values = Arrays.copyOf(values, capacity);
+	}
+}
@@ -0,0 +1,154 @@
+package neural.network.linalg;
+
+import java.util.Arrays;
+
+import org.ejml.data.FMatrixRMaj;
+
+/**
+ * Products of a dense matrix with a {@link SparseColumns} batch, which only
+ * touch the stored entries of the batch.
+ *
+ * They cost one multiply-add per stored entry and output row instead of one
+ * per entry, but each one is an indexed load or store where the dense
+ * backends stream contiguous memory several lanes at a time, so they only
+ * pay off on batches that are mostly zeros. Where the crossover lies depends
+ * on the backend they replace; {@link #densityThreshold} returns it.
+ */
+public final class SparseKernels {
+
+	/**
+	 * System property overriding the threshold of every backend; 0 turns the
+	 * sparse path off.
+	 */
+	public static final String PROPERTY = "neural.network.sparse.threshold";
+
+	/**
+	 * Crossover against the scalar backends on the first layer of a 784-input
+	 * network, measured with the SparseBenchmark: MNIST batches, about 19%
+	 * non-zero, run about twice as fast compressed.
+	 */
+	public static final float SCALAR_DENSITY_THRESHOLD = 0.3f;
+
+	/**
+	 * Crossover against the Vector API backend, which is faster than the
+	 * sparse kernels on MNIST batches and only loses on much sparser inputs.
+	 */
+	public static final float VECTOR_DENSITY_THRESHOLD = 0.1f;
+
+	//Disallow instantiation of this class
+	private SparseKernels() {}
+
+	/**
+	 * Return the density at or below which a batch should be compressed and
+	 * multiplied through this class rather than by "backend".
+	 */
+	public static float densityThreshold(final Backend backend) {
+		final String override = System.getProperty(PROPERTY);
+		if(override != null) {
+			return Float.parseFloat(override);
+		}
+		return Backends.VECTOR_NAME.equalsIgnoreCase(backend.getName()) ? VECTOR_DENSITY_THRESHOLD : SCALAR_DENSITY_THRESHOLD;
+	}
+
+	/**
+	 * c = a * b, for a dense "a" and a sparse "b".
+	 */
+	public static void mult(final FMatrixRMaj a, final SparseColumns b, final FMatrixRMaj c) {
+		final int m = a.numRows;
+		final int k = a.numCols;
+		final int n = b.getNumCols();
+		if(b.getNumRows() != k || c.numRows != m || c.numCols != n) {
+			throw new IllegalArgumentException("Cannot multiply " + m + "x" + k + " by " + b.getNumRows() + "x" + n
+				+ " into " + c.numRows + "x" + c.numCols);
+		}
+		final float[] w = a.data;
+		final float[] out = c.data;
+		final int[] starts = b.columnStarts();
+		final int[] rows = b.rowIndices();
+		final float[] values = b.values();
+		//Four rows of "a" stay in L1 while every column of "b" gathers from
+		//them, so each index loaded feeds four multiply-adds
+		int i = 0;
+		for(; i + 4 <= m; i += 4) {
+			final int base = i * k;
+			final int outBase = i * n;
+			for(int j = 0; j < n; j++) {
+				float sum0 = 0f, sum1 = 0f, sum2 = 0f, sum3 = 0f;
+				for(int p = starts[j], end = starts[j + 1]; p < end; p++) {
+					final int at = base + rows[p];
+					final float v = values[p];
+					sum0 += w[at] * v;
+					sum1 += w[at + k] * v;
+					sum2 += w[at + 2 * k] * v;
+					sum3 += w[at + 3 * k] * v;
+				}
+				out[outBase + j] = sum0;
+				out[outBase + n + j] = sum1;
+				out[outBase + 2 * n + j] = sum2;
+				out[outBase + 3 * n + j] = sum3;
+			}
+		}
+		for(; i < m; i++) {
+			final int base = i * k;
+			final int outBase = i * n;
+			for(int j = 0; j < n; j++) {
+				float sum = 0f;
+				for(int p = starts[j], end = starts[j + 1]; p < end; p++) {
+					sum += w[base + rows[p]] * values[p];
+				}
+				out[outBase + j] = sum;
+			}
+		}
+	}
+
+	/**
+	 * c = a * b^T, for a dense "a" and a sparse "b". This is the weight
+	 * gradient of a layer whose input batch is "b".
+	 */
+	public static void multTransB(final FMatrixRMaj a, final SparseColumns b, final FMatrixRMaj c) {
+		final int m = a.numRows;
+		final int n = a.numCols;
+		final int k = b.getNumRows();
+		if(b.getNumCols() != n || c.numRows != m || c.numCols != k) {
+			throw new IllegalArgumentException("Cannot multiply " + m + "x" + n + " by the transpose of " + k + "x"
+				+ b.getNumCols() + " into " + c.numRows + "x" + c.numCols);
+		}
+		final float[] d = a.data;
+		final float[] out = c.data;
+		final int[] starts = b.columnStarts();
+		final int[] rows = b.rowIndices();
+		final float[] values = b.values();
+		Arrays.fill(out, 0, m * k, 0f);
+		//Every column of "b" scatters into four rows of "c" at once, which
+		//stay in L1
+		int i = 0;
+		for(; i + 4 <= m; i += 4) {
+			final int base = i * n;
+			final int outBase = i * k;
+			for(int j = 0; j < n; j++) {
+				final float d0 = d[base + j];
+				final float d1 = d[base + n + j];
+				final float d2 = d[base + 2 * n + j];
+				final float d3 = d[base + 3 * n + j];
+				for(int p = starts[j], end = starts[j + 1]; p < end; p++) {
+					final int at = outBase + rows[p];
+					final float v = values[p];
+					out[at] += d0 * v;
+					out[at + k] += d1 * v;
+					out[at + 2 * k] += d2 * v;
+					out[at + 3 * k] += d3 * v;
+				}
+			}
+		}
+		for(; i < m; i++) {
+			final int base = i * n;
+			final int outBase = i * k;
+			for(int j = 0; j < n; j++) {
+				final float scale = d[base + j];
+				for(int p = starts[j], end = starts[j + 1]; p < end; p++) {
+					out[outBase + rows[p]] += scale * values[p];
+				}
+			}
+		}
+	}
+}
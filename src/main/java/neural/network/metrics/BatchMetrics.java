@@ -0,0 +1,60 @@
+package neural.network.metrics;
+
+/**
+ * Timings and loss of one sampled mini batch. Times are in nanoseconds.
+ */
+public class BatchMetrics {
+
+	int epoch;
+	int batch;
+	int samples;
+	long waitNanos;
+	long forwardNanos;
+	long backwardNanos;
+	long updateNanos;
+	float loss;
+
+	public int getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Return the index of the batch within its epoch.
+	 */
+	public int getBatch() {
+		return batch;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Return the time spent waiting for the data pipeline to deliver the batch.
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	public long getForwardNanos() {
+		return forwardNanos;
+	}
+
+	public long getBackwardNanos() {
+		return backwardNanos;
+	}
+
+	/**
+	 * Return the time spent applying the gradient to the parameters.
+	 */
+	public long getUpdateNanos() {
+		return updateNanos;
+	}
+
+	/**
+	 * Return the mean quadratic cost over the batch, before the update.
+	 */
+	public float getLoss() {
+		return loss;
+	}
+}
@@ -0,0 +1,109 @@
+package neural.network.metrics;
+
+/**
+ * Summary of one training epoch. Per batch figures are means over the
+ * sampled batches; times are in nanoseconds unless stated otherwise.
+ */
+public class EpochMetrics {
+
+	int epoch;
+	int batches;
+	long samples;
+	long wallNanos;
+	int sampledBatches;
+	long waitNanos;
+	long forwardNanos;
+	long backwardNanos;
+	long updateNanos;
+	double loss;
+	double testAccuracy;
+	Evaluation evaluation;
+	long allocatedBytes;
+	long gcMillis;
+	long gcCount;
+
+	public int getEpoch() {
+		return epoch;
+	}
+
+	public int getBatches() {
+		return batches;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Return the wall time of the epoch, excluding evaluation.
+	 */
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	public double getSamplesPerSecond() {
+		return wallNanos == 0 ? 0.0 : samples * 1e9 / wallNanos;
+	}
+
+	public int getSampledBatches() {
+		return sampledBatches;
+	}
+
+	public long getMeanWaitNanos() {
+		return sampledBatches == 0 ? 0 : waitNanos / sampledBatches;
+	}
+
+	public long getMeanForwardNanos() {
+		return sampledBatches == 0 ? 0 : forwardNanos / sampledBatches;
+	}
+
+	public long getMeanBackwardNanos() {
+		return sampledBatches == 0 ? 0 : backwardNanos / sampledBatches;
+	}
+
+	public long getMeanUpdateNanos() {
+		return sampledBatches == 0 ? 0 : updateNanos / sampledBatches;
+	}
+
+	/**
+	 * Return the mean loss of the sampled batches, or NaN if none were sampled.
+	 */
+	public double getLoss() {
+		return sampledBatches == 0 ? Double.NaN : loss / sampledBatches;
+	}
+
+	/**
+	 * Return the fraction of the test set classified correctly, or NaN if
+	 * there was no test set.
+	 */
+	public double getTestAccuracy() {
+		return testAccuracy;
+	}
+
+	/**
+	 * Return the confusion matrix of the test set, or null if there was no
+	 * test set or only its accuracy was reported.
+	 */
+	public Evaluation getEvaluation() {
+		return evaluation;
+	}
+
+	/**
+	 * Return the bytes allocated by the training thread during the epoch, or
+	 * -1 if the JVM cannot measure it.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Return the time all garbage collectors spent collecting during the epoch.
+	 */
+	public long getGcMillis() {
+		return gcMillis;
+	}
+
+	public long getGcCount() {
+		return gcCount;
+	}
+}
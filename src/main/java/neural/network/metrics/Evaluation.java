@@ -0,0 +1,126 @@
+package neural.network.metrics;
+
+/**
+ * The result of evaluating a network on labelled samples: a confusion matrix
+ * from which accuracy and per-class precision and recall are derived.
+ *
+ * Rows of the confusion matrix are actual labels and columns predicted ones.
+ * The counts are held in one flat array, so an instance can be cleared and
+ * refilled without allocating.
+ */
+public class Evaluation {
+
+	private final int classes;
+	private final int[] confusion;
+	private int total;
+	private int correct;
+
+	/**
+	 * Create an empty evaluation of a "classes"-way classifier.
+	 */
+	public Evaluation(final int classes) {
+		if(classes <= 0) {
+			throw new IllegalArgumentException("Number of classes must be positive: " + classes);
+		}
+		this.classes = classes;
+		this.confusion = new int[classes * classes];
+	}
+
+	/**
+	 * Count a sample of label "actual" that was classified as "predicted".
+	 */
+	public void record(final int actual, final int predicted) {
+		if(actual < 0 || actual >= classes || predicted < 0 || predicted >= classes) {
+			throw new IndexOutOfBoundsException("Label " + actual + " predicted as " + predicted + " for " + classes + " classes");
+		}
+		confusion[actual * classes + predicted]++;
+		total++;
+		if(actual == predicted) {
+			correct++;
+		}
+	}
+
+	/**
+	 * Reset every count to zero.
+	 */
+	public void clear() {
+		for(int i = 0; i < confusion.length; i++) {
+			confusion[i] = 0;
+		}
+		total = 0;
+		correct = 0;
+	}
+
+	public int getClasses() {
+		return classes;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getCorrect() {
+		return correct;
+	}
+
+	/**
+	 * Return the fraction of samples classified correctly, or NaN if there
+	 * were none.
+	 */
+	public double getAccuracy() {
+		return total == 0 ? Double.NaN : correct / (double) total;
+	}
+
+	/**
+	 * Return the number of samples of label "actual" classified as "predicted".
+	 */
+	public int getCount(final int actual, final int predicted) {
+		return confusion[actual * classes + predicted];
+	}
+
+	/**
+	 * Return the fraction of the samples predicted as "label" that really
+	 * were, or NaN if it was never predicted.
+	 */
+	public double getPrecision(final int label) {
+		int predicted = 0;
+		for(int actual = 0; actual < classes; actual++) {
+			predicted += confusion[actual * classes + label];
+		}
+		return predicted == 0 ? Double.NaN : confusion[label * classes + label] / (double) predicted;
+	}
+
+	/**
+	 * Return the fraction of the samples of "label" predicted as such, or NaN
+	 * if there were none.
+	 */
+	public double getRecall(final int label) {
+		int actual = 0;
+		for(int predicted = 0; predicted < classes; predicted++) {
+			actual += confusion[label * classes + predicted];
+		}
+		return actual == 0 ? Double.NaN : confusion[label * classes + label] / (double) actual;
+	}
+
+	/**
+	 * Format the confusion matrix with the precision and recall of each class.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Accuracy: %d / %d (%.2f%%)%n", correct, total, 100 * getAccuracy()));
+		sb.append("actual\\predicted");
+		for(int predicted = 0; predicted < classes; predicted++) {
+			sb.append(String.format("%7d", predicted));
+		}
+		sb.append(String.format("%11s%9s%n", "precision", "recall"));
+		for(int actual = 0; actual < classes; actual++) {
+			sb.append(String.format("%16d", actual));
+			for(int predicted = 0; predicted < classes; predicted++) {
+				sb.append(String.format("%7d", confusion[actual * classes + predicted]));
+			}
+			sb.append(String.format("%11.4f%9.4f%n", getPrecision(actual), getRecall(actual)));
+		}
+		return sb.toString();
+	}
+}
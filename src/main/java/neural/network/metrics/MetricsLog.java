@@ -0,0 +1,164 @@
+package neural.network.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link TrainingListener} that appends metrics to a CSV or JSON lines
+ * file, one record per epoch and per sampled evaluation, and optionally one
+ * per sampled batch.
+ *
+ * Every record has the same fields; those that do not apply to the record
+ * type are left empty in CSV and omitted in JSON. Records are formatted into
+ * a reused buffer and the file is flushed after every epoch.
+ */
+public class MetricsLog implements TrainingListener, Closeable {
+
+	public enum Format {
+		CSV,
+		JSON_LINES
+	}
+
+	static final String CSV_HEADER = "type,epoch,batch,samples,wall_ns,samples_per_sec,wait_ns,forward_ns,backward_ns,update_ns,"
+			+ "loss,test_accuracy,allocated_bytes,gc_ms";
+
+	private final Writer out;
+	private final Format format;
+	private final boolean batches;
+	private final StringBuilder line = new StringBuilder(256);
+
+	/**
+	 * Write to a new file, replacing any existing one.
+	 *
+	 * @throws IOException
+	 */
+	public MetricsLog(final File file, final Format format, final boolean batches) throws IOException {
+		this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), format, batches);
+	}
+
+	/**
+	 * Write to "out", which is closed with this log. Batch records are only
+	 * written if "batches" is set.
+	 *
+	 * @throws IOException
+	 */
+	public MetricsLog(final Writer out, final Format format, final boolean batches) throws IOException {
+		this.out = new BufferedWriter(out);
+		this.format = format;
+		this.batches = batches;
+		if(format == Format.CSV) {
+			this.out.write(CSV_HEADER);
+			this.out.write('\n');
+		}
+	}
+
+	@Override
+	public void batchCompleted(final BatchMetrics batch) {
+		if(!batches) {
+			return;
+		}
+		line.setLength(0);
+		if(format == Format.CSV) {
+			line.append("batch,").append(batch.getEpoch()).append(',').append(batch.getBatch()).append(',')
+				.append(batch.getSamples()).append(",,,").append(batch.getWaitNanos()).append(',')
+				.append(batch.getForwardNanos()).append(',').append(batch.getBackwardNanos()).append(',')
+				.append(batch.getUpdateNanos()).append(',').append(batch.getLoss()).append(",,,");
+		} else {
+			line.append("{\"type\":\"batch\",\"epoch\":").append(batch.getEpoch())
+				.append(",\"batch\":").append(batch.getBatch())
+				.append(",\"samples\":").append(batch.getSamples())
+				.append(",\"wait_ns\":").append(batch.getWaitNanos())
+				.append(",\"forward_ns\":").append(batch.getForwardNanos())
+				.append(",\"backward_ns\":").append(batch.getBackwardNanos())
+				.append(",\"update_ns\":").append(batch.getUpdateNanos());
+			appendJson("loss", batch.getLoss());
+			line.append('}');
+		}
+		write(false);
+	}
+
+	@Override
+	public void epochCompleted(final EpochMetrics epoch) {
+		line.setLength(0);
+		if(format == Format.CSV) {
+			line.append("epoch,").append(epoch.getEpoch()).append(",,").append(epoch.getSamples()).append(',')
+				.append(epoch.getWallNanos()).append(',').append(epoch.getSamplesPerSecond()).append(',')
+				.append(epoch.getMeanWaitNanos()).append(',').append(epoch.getMeanForwardNanos()).append(',')
+				.append(epoch.getMeanBackwardNanos()).append(',').append(epoch.getMeanUpdateNanos()).append(',');
+			appendCsv(epoch.getLoss());
+			line.append(',');
+			appendCsv(epoch.getTestAccuracy());
+			line.append(',').append(epoch.getAllocatedBytes()).append(',').append(epoch.getGcMillis());
+		} else {
+			line.append("{\"type\":\"epoch\",\"epoch\":").append(epoch.getEpoch())
+				.append(",\"samples\":").append(epoch.getSamples())
+				.append(",\"wall_ns\":").append(epoch.getWallNanos())
+				.append(",\"samples_per_sec\":").append(epoch.getSamplesPerSecond())
+				.append(",\"wait_ns\":").append(epoch.getMeanWaitNanos())
+				.append(",\"forward_ns\":").append(epoch.getMeanForwardNanos())
+				.append(",\"backward_ns\":").append(epoch.getMeanBackwardNanos())
+				.append(",\"update_ns\":").append(epoch.getMeanUpdateNanos());
+			appendJson("loss", epoch.getLoss());
+			appendJson("test_accuracy", epoch.getTestAccuracy());
+			line.append(",\"allocated_bytes\":").append(epoch.getAllocatedBytes())
+				.append(",\"gc_ms\":").append(epoch.getGcMillis())
+				.append('}');
+		}
+		write(true);
+	}
+
+	@Override
+	public void evaluationCompleted(final int epoch, final int batch, final Evaluation evaluation) {
+		line.setLength(0);
+		if(format == Format.CSV) {
+			line.append("evaluation,").append(epoch).append(',').append(batch).append(',')
+				.append(evaluation.getTotal()).append(",,,,,,,,");
+			appendCsv(evaluation.getAccuracy());
+			line.append(",,");
+		} else {
+			line.append("{\"type\":\"evaluation\",\"epoch\":").append(epoch)
+				.append(",\"batch\":").append(batch)
+				.append(",\"samples\":").append(evaluation.getTotal());
+			appendJson("test_accuracy", evaluation.getAccuracy());
+			line.append('}');
+		}
+		write(true);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	//NaN has no JSON representation, so the field is left out
+	private void appendJson(final String field, final double value) {
+		if(!Double.isNaN(value)) {
+			line.append(",\"").append(field).append("\":").append(value);
+		}
+	}
+
+	private void appendCsv(final double value) {
+		if(!Double.isNaN(value)) {
+			line.append(value);
+		}
+	}
+
+	private void write(final boolean flush) {
+		try {
+			line.append('\n');
+			out.append(line);
+			if(flush) {
+				out.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
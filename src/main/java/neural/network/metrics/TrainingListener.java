@@ -0,0 +1,29 @@
+package neural.network.metrics;
+
+/**
+ * Receives training metrics from a {@link TrainingMonitor}.
+ *
+ * Callbacks run on the training thread and the metrics objects are reused
+ * from call to call, so listeners should be quick and must copy anything
+ * they want to keep.
+ */
+public interface TrainingListener {
+
+	/**
+	 * Called after each sampled (timed) mini batch.
+	 */
+	void batchCompleted(BatchMetrics batch);
+
+	/**
+	 * Called after each epoch, once the test set has been evaluated.
+	 */
+	void epochCompleted(EpochMetrics epoch);
+
+	/**
+	 * Called after evaluating a sample of the test set in the middle of an
+	 * epoch, if enabled with {@link TrainingMonitor#evaluateEvery}. "batch"
+	 * is the number of batches trained so far in the epoch. Does nothing by
+	 * default.
+	 */
+	default void evaluationCompleted(int epoch, int batch, Evaluation evaluation) {}
+}
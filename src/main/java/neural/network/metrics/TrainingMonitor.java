@@ -0,0 +1,231 @@
+package neural.network.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Collects training metrics and passes them on to {@link TrainingListener}s.
+ *
+ * Only every "sampleInterval"-th mini batch is timed and has its loss
+ * computed; the others are just counted. Nothing is allocated or boxed per
+ * batch, so a monitor can stay attached to real training runs. Allocation
+ * and GC figures are read once per epoch from the platform MXBeans.
+ *
+ * A monitor belongs to the training thread that drives it.
+ */
+public class TrainingMonitor {
+
+	public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+	private final int sampleInterval;
+	private final BatchMetrics batch = new BatchMetrics();
+	private final EpochMetrics epoch = new EpochMetrics();
+	private final com.sun.management.ThreadMXBean allocation;
+	private final List<GarbageCollectorMXBean> collectors;
+	private volatile TrainingListener[] listeners = new TrainingListener[0];
+	private int evaluationInterval;
+	private int evaluationSampleSize;
+
+	private long epochStart;
+	private long allocationStart;
+	private long gcMillisStart;
+	private long gcCountStart;
+
+	/**
+	 * Time every {@link #DEFAULT_SAMPLE_INTERVAL}-th batch.
+	 */
+	public TrainingMonitor() {
+		this(DEFAULT_SAMPLE_INTERVAL);
+	}
+
+	/**
+	 * Time every "sampleInterval"-th batch; 1 times all of them.
+	 */
+	public TrainingMonitor(final int sampleInterval) {
+		if(sampleInterval <= 0) {
+			throw new IllegalArgumentException("Sample interval must be positive: " + sampleInterval);
+		}
+		this.sampleInterval = sampleInterval;
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = null;
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			allocation = (com.sun.management.ThreadMXBean) threads;
+			if(!allocation.isThreadAllocatedMemorySupported()) {
+				allocation = null;
+			} else if(!allocation.isThreadAllocatedMemoryEnabled()) {
+				allocation.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+		this.allocation = allocation;
+		this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+	}
+
+	public synchronized void addListener(final TrainingListener listener) {
+		TrainingListener[] updated = new TrainingListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, updated, 0, listeners.length);
+		updated[listeners.length] = listener;
+		listeners = updated;
+	}
+
+	public synchronized void removeListener(final TrainingListener listener) {
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] == listener) {
+				TrainingListener[] updated = new TrainingListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, updated, 0, i);
+				System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+				listeners = updated;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Evaluate a random sample of "sampleSize" test samples after every
+	 * "batches"-th batch and pass the result to
+	 * {@link TrainingListener#evaluationCompleted}. A "batches" of 0 turns
+	 * sampled evaluation off, which is the default.
+	 */
+	public void evaluateEvery(final int batches, final int sampleSize) {
+		if(batches < 0 || (batches > 0 && sampleSize <= 0)) {
+			throw new IllegalArgumentException("Cannot evaluate " + sampleSize + " samples every " + batches + " batches");
+		}
+		this.evaluationInterval = batches;
+		this.evaluationSampleSize = sampleSize;
+	}
+
+	/**
+	 * Start recording epoch "index".
+	 */
+	public void epochStarted(final int index) {
+		epoch.epoch = index;
+		epoch.batches = 0;
+		epoch.samples = 0;
+		epoch.sampledBatches = 0;
+		epoch.waitNanos = 0;
+		epoch.forwardNanos = 0;
+		epoch.backwardNanos = 0;
+		epoch.updateNanos = 0;
+		epoch.loss = 0.0;
+		epoch.testAccuracy = Double.NaN;
+		epoch.evaluation = null;
+		allocationStart = allocatedBytes();
+		gcMillisStart = gcMillis();
+		gcCountStart = gcCount();
+		batch.epoch = index;
+		epochStart = System.nanoTime();
+	}
+
+	/**
+	 * Return true if the next batch should be timed with
+	 * {@link #batchCompleted(int, long, long, long, long, float)}.
+	 */
+	public boolean sampleNextBatch() {
+		return epoch.batches % sampleInterval == 0;
+	}
+
+	/**
+	 * Count a batch that was not timed.
+	 */
+	public void batchCompleted(final int samples) {
+		epoch.batches++;
+		epoch.samples += samples;
+	}
+
+	/**
+	 * Record a timed batch and notify the listeners.
+	 */
+	public void batchCompleted(final int samples, final long waitNanos, final long forwardNanos, final long backwardNanos,
+			final long updateNanos, final float loss) {
+		batch.batch = epoch.batches;
+		batch.samples = samples;
+		batch.waitNanos = waitNanos;
+		batch.forwardNanos = forwardNanos;
+		batch.backwardNanos = backwardNanos;
+		batch.updateNanos = updateNanos;
+		batch.loss = loss;
+		epoch.batches++;
+		epoch.samples += samples;
+		epoch.sampledBatches++;
+		epoch.waitNanos += waitNanos;
+		epoch.forwardNanos += forwardNanos;
+		epoch.backwardNanos += backwardNanos;
+		epoch.updateNanos += updateNanos;
+		epoch.loss += loss;
+		for(TrainingListener listener : listeners) {
+			listener.batchCompleted(batch);
+		}
+	}
+
+	/**
+	 * Return true if a sample of the test set should be evaluated now that
+	 * the last batch has been recorded.
+	 */
+	public boolean evaluationDue() {
+		return evaluationInterval > 0 && epoch.batches > 0 && epoch.batches % evaluationInterval == 0;
+	}
+
+	/**
+	 * Pass the evaluation of a test set sample on to the listeners.
+	 */
+	public void evaluationCompleted(final Evaluation evaluation) {
+		for(TrainingListener listener : listeners) {
+			listener.evaluationCompleted(epoch.epoch, epoch.batches, evaluation);
+		}
+	}
+
+	/**
+	 * Stop the epoch clock, before any evaluation.
+	 */
+	public void trainingCompleted() {
+		epoch.wallNanos = System.nanoTime() - epochStart;
+		epoch.allocatedBytes = allocation == null ? -1 : allocatedBytes() - allocationStart;
+		epoch.gcMillis = gcMillis() - gcMillisStart;
+		epoch.gcCount = gcCount() - gcCountStart;
+	}
+
+	/**
+	 * Finish the epoch with the evaluation of the test set and notify the
+	 * listeners. Pass null if there was no evaluation.
+	 */
+	public void epochCompleted(final Evaluation evaluation) {
+		epoch.evaluation = evaluation;
+		epoch.testAccuracy = evaluation == null ? Double.NaN : evaluation.getAccuracy();
+		for(TrainingListener listener : listeners) {
+			listener.epochCompleted(epoch);
+		}
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	public int getEvaluationInterval() {
+		return evaluationInterval;
+	}
+
+	public int getEvaluationSampleSize() {
+		return evaluationSampleSize;
+	}
+
+	private long allocatedBytes() {
+		return allocation == null ? 0 : allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private long gcMillis() {
+		long total = 0;
+		for(int i = 0; i < collectors.size(); i++) {
+			total += Math.max(0, collectors.get(i).getCollectionTime());
+		}
+		return total;
+	}
+
+	private long gcCount() {
+		long total = 0;
+		for(int i = 0; i < collectors.size(); i++) {
+			total += Math.max(0, collectors.get(i).getCollectionCount());
+		}
+		return total;
+	}
+}
@@ -0,0 +1,162 @@
+package neural.network.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link TrainingListener} that keeps the latest metrics and publishes them
+ * as a JMX MBean, so a running training job can be watched from JConsole,
+ * VisualVM or any JMX collector.
+ */
+public class TrainingStats implements TrainingListener, TrainingStatsMBean {
+
+	public static final String DOMAIN = "neural.network";
+
+	private volatile int epoch;
+	private volatile long totalBatches;
+	private volatile long totalSamples;
+	private volatile double samplesPerSecond;
+	private volatile double epochSeconds;
+	private volatile double lastBatchLoss = Double.NaN;
+	private volatile double epochLoss = Double.NaN;
+	private volatile double testAccuracy = Double.NaN;
+	private volatile double sampleAccuracy = Double.NaN;
+	private volatile double forwardMicros;
+	private volatile double backwardMicros;
+	private volatile double updateMicros;
+	private volatile double waitMicros;
+	private volatile long allocatedBytes;
+	private volatile long gcMillis;
+
+	private ObjectName name;
+
+	/**
+	 * Register with the platform MBean server as
+	 * neural.network:type=Training,name=&lt;name&gt;.
+	 *
+	 * @throws JMException if the name is taken or invalid
+	 */
+	public synchronized void register(final String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=Training,name=" + ObjectName.quote(name));
+		server.registerMBean(this, objectName);
+		this.name = objectName;
+	}
+
+	/**
+	 * Remove this MBean from the platform MBean server, if registered.
+	 *
+	 * @throws JMException
+	 */
+	public synchronized void unregister() throws JMException {
+		if(name != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			name = null;
+		}
+	}
+
+	@Override
+	public void batchCompleted(final BatchMetrics batch) {
+		lastBatchLoss = batch.getLoss();
+	}
+
+	@Override
+	public void epochCompleted(final EpochMetrics metrics) {
+		epoch = metrics.getEpoch();
+		totalBatches += metrics.getBatches();
+		totalSamples += metrics.getSamples();
+		samplesPerSecond = metrics.getSamplesPerSecond();
+		epochSeconds = metrics.getWallNanos() / 1e9;
+		epochLoss = metrics.getLoss();
+		testAccuracy = metrics.getTestAccuracy();
+		forwardMicros = metrics.getMeanForwardNanos() / 1e3;
+		backwardMicros = metrics.getMeanBackwardNanos() / 1e3;
+		updateMicros = metrics.getMeanUpdateNanos() / 1e3;
+		waitMicros = metrics.getMeanWaitNanos() / 1e3;
+		allocatedBytes = metrics.getAllocatedBytes();
+		gcMillis = metrics.getGcMillis();
+	}
+
+	@Override
+	public void evaluationCompleted(final int epoch, final int batch, final Evaluation evaluation) {
+		sampleAccuracy = evaluation.getAccuracy();
+	}
+
+	@Override
+	public int getEpoch() {
+		return epoch;
+	}
+
+	@Override
+	public long getTotalBatches() {
+		return totalBatches;
+	}
+
+	@Override
+	public long getTotalSamples() {
+		return totalSamples;
+	}
+
+	@Override
+	public double getSamplesPerSecond() {
+		return samplesPerSecond;
+	}
+
+	@Override
+	public double getEpochSeconds() {
+		return epochSeconds;
+	}
+
+	@Override
+	public double getLastBatchLoss() {
+		return lastBatchLoss;
+	}
+
+	@Override
+	public double getEpochLoss() {
+		return epochLoss;
+	}
+
+	@Override
+	public double getTestAccuracy() {
+		return testAccuracy;
+	}
+
+	@Override
+	public double getSampleAccuracy() {
+		return sampleAccuracy;
+	}
+
+	@Override
+	public double getForwardMicros() {
+		return forwardMicros;
+	}
+
+	@Override
+	public double getBackwardMicros() {
+		return backwardMicros;
+	}
+
+	@Override
+	public double getUpdateMicros() {
+		return updateMicros;
+	}
+
+	@Override
+	public double getWaitMicros() {
+		return waitMicros;
+	}
+
+	@Override
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	@Override
+	public long getGcMillis() {
+		return gcMillis;
+	}
+}
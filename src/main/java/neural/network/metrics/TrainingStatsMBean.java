@@ -0,0 +1,37 @@
+package neural.network.metrics;
+
+/**
+ * JMX view of the latest training metrics.
+ */
+public interface TrainingStatsMBean {
+
+	int getEpoch();
+
+	long getTotalBatches();
+
+	long getTotalSamples();
+
+	double getSamplesPerSecond();
+
+	double getEpochSeconds();
+
+	double getLastBatchLoss();
+
+	double getEpochLoss();
+
+	double getTestAccuracy();
+
+	double getSampleAccuracy();
+
+	double getForwardMicros();
+
+	double getBackwardMicros();
+
+	double getUpdateMicros();
+
+	double getWaitMicros();
+
+	long getAllocatedBytes();
+
+	long getGcMillis();
+}
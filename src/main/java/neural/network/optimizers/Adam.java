@@ -0,0 +1,84 @@
+package neural.network.optimizers;
+
+/**
+ * Adam: RMSProp on a running mean of the gradient rather than the gradient
+ * itself, with both averages corrected for their bias towards zero early in
+ * training.
+ *
+ * m = beta1 * m + (1 - beta1) * g
+ * v = beta2 * v + (1 - beta2) * g^2
+ * p = p - rate_t * m / (sqrt(v) + epsilon)
+ *
+ * where rate_t = rate * sqrt(1 - beta2^t) / (1 - beta1^t) folds the bias
+ * correction of step t into a single scalar per update.
+ */
+public class Adam extends StatefulOptimizer {
+
+	public static final float DEFAULT_RATE = 0.001f;
+	public static final float DEFAULT_BETA1 = 0.9f;
+	public static final float DEFAULT_BETA2 = 0.999f;
+	public static final float DEFAULT_EPSILON = 1e-7f;
+
+	private final float rate;
+	private final float beta1;
+	private final float beta2;
+	private final float epsilon;
+	private long steps;
+	private float stepRate;
+
+	public Adam() {
+		this(DEFAULT_RATE);
+	}
+
+	public Adam(final float rate) {
+		this(rate, DEFAULT_BETA1, DEFAULT_BETA2, DEFAULT_EPSILON);
+	}
+
+	public Adam(final float rate, final float beta1, final float beta2, final float epsilon) {
+		super(2);
+		if(beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) {
+			throw new IllegalArgumentException("Betas must be in [0, 1): " + beta1 + ", " + beta2);
+		}
+		this.rate = rate;
+		this.beta1 = beta1;
+		this.beta2 = beta2;
+		this.epsilon = epsilon;
+	}
+
+	@Override
+	protected void startStep() {
+		steps++;
+		stepRate = (float) (rate * Math.sqrt(1 - Math.pow(beta2, steps)) / (1 - Math.pow(beta1, steps)));
+	}
+
+	@Override
+	protected void step(final float[] parameters, final float[] gradient, final int length, final float scale, final float[][] state) {
+		final float[] mean = state[0];
+		final float[] meanSquare = state[1];
+		final float keep1 = 1 - beta1;
+		final float keep2 = 1 - beta2;
+		for(int i = 0; i < length; i++) {
+			final float g = gradient[i] * scale;
+			final float m = beta1 * mean[i] + keep1 * g;
+			final float v = beta2 * meanSquare[i] + keep2 * g * g;
+			mean[i] = m;
+			meanSquare[i] = v;
+			parameters[i] -= stepRate * m / ((float) Math.sqrt(v) + epsilon);
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		steps = 0;
+	}
+
+	public long getSteps() {
+		return steps;
+	}
+
+	@Override
+	public String toString() {
+		return "Adam(rate=" + rate + ", beta1=" + beta1 + ", beta2=" + beta2 + ")";
+	}
+}
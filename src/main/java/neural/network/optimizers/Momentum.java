@@ -0,0 +1,46 @@
+package neural.network.optimizers;
+
+/**
+ * Gradient descent with classical momentum: a velocity accumulates the
+ * gradient step with decay "momentum" and the parameters move by the
+ * velocity.
+ *
+ * v = momentum * v - rate * g
+ * p = p + v
+ */
+public class Momentum extends StatefulOptimizer {
+
+	public static final float DEFAULT_MOMENTUM = 0.9f;
+
+	private final float rate;
+	private final float momentum;
+
+	public Momentum(final float rate) {
+		this(rate, DEFAULT_MOMENTUM);
+	}
+
+	public Momentum(final float rate, final float momentum) {
+		super(1);
+		if(momentum < 0 || momentum >= 1) {
+			throw new IllegalArgumentException("Momentum must be in [0, 1): " + momentum);
+		}
+		this.rate = rate;
+		this.momentum = momentum;
+	}
+
+	@Override
+	protected void step(final float[] parameters, final float[] gradient, final int length, final float scale, final float[][] state) {
+		final float[] velocity = state[0];
+		final float alpha = rate * scale;
+		for(int i = 0; i < length; i++) {
+			final float v = momentum * velocity[i] - alpha * gradient[i];
+			velocity[i] = v;
+			parameters[i] += v;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Momentum(rate=" + rate + ", momentum=" + momentum + ")";
+	}
+}
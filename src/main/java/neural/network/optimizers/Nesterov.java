@@ -0,0 +1,46 @@
+package neural.network.optimizers;
+
+/**
+ * Gradient descent with Nesterov momentum, in the form that only needs the
+ * gradient at the current parameters: the step looks ahead along the new
+ * velocity.
+ *
+ * v' = momentum * v - rate * g
+ * p = p - momentum * v + (1 + momentum) * v'
+ */
+public class Nesterov extends StatefulOptimizer {
+
+	private final float rate;
+	private final float momentum;
+
+	public Nesterov(final float rate) {
+		this(rate, Momentum.DEFAULT_MOMENTUM);
+	}
+
+	public Nesterov(final float rate, final float momentum) {
+		super(1);
+		if(momentum < 0 || momentum >= 1) {
+			throw new IllegalArgumentException("Momentum must be in [0, 1): " + momentum);
+		}
+		this.rate = rate;
+		this.momentum = momentum;
+	}
+
+	@Override
+	protected void step(final float[] parameters, final float[] gradient, final int length, final float scale, final float[][] state) {
+		final float[] velocity = state[0];
+		final float alpha = rate * scale;
+		final float ahead = 1 + momentum;
+		for(int i = 0; i < length; i++) {
+			final float previous = velocity[i];
+			final float v = momentum * previous - alpha * gradient[i];
+			velocity[i] = v;
+			parameters[i] += ahead * v - momentum * previous;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Nesterov(rate=" + rate + ", momentum=" + momentum + ")";
+	}
+}
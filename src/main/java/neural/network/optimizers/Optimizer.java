@@ -0,0 +1,33 @@
+package neural.network.optimizers;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.exceptions.LayerDoesNotExistException;
+
+/**
+ * A rule for updating a network's weights and biases from the gradient of
+ * the cost over a mini batch.
+ *
+ * Updates are made in place. Optimizers that keep state, such as momentum
+ * or running averages of the gradient, size it for the first network they
+ * update and must not be shared between networks or threads.
+ */
+public interface Optimizer {
+
+	/**
+	 * Update the parameters of "network" given the gradient of the cost
+	 * summed over a mini batch of "batchSize" samples. "weightGradients[i]"
+	 * and "biasGradients[i]" hold the gradient for layer i's weights and
+	 * biases.
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	void update(Network network, FMatrixRMaj[] weightGradients, FMatrixRMaj[] biasGradients, int batchSize)
+			throws LayerDoesNotExistException;
+
+	/**
+	 * Forget any state accumulated by previous updates.
+	 */
+	void reset();
+}
@@ -0,0 +1,50 @@
+package neural.network.optimizers;
+
+/**
+ * RMSProp: each parameter's step is divided by a running root mean square
+ * of its gradients, so that steep and shallow directions progress at
+ * similar speeds.
+ *
+ * s = decay * s + (1 - decay) * g^2
+ * p = p - rate * g / (sqrt(s) + epsilon)
+ */
+public class RmsProp extends StatefulOptimizer {
+
+	public static final float DEFAULT_DECAY = 0.9f;
+	public static final float DEFAULT_EPSILON = 1e-7f;
+
+	private final float rate;
+	private final float decay;
+	private final float epsilon;
+
+	public RmsProp(final float rate) {
+		this(rate, DEFAULT_DECAY, DEFAULT_EPSILON);
+	}
+
+	public RmsProp(final float rate, final float decay, final float epsilon) {
+		super(1);
+		if(decay < 0 || decay >= 1) {
+			throw new IllegalArgumentException("Decay must be in [0, 1): " + decay);
+		}
+		this.rate = rate;
+		this.decay = decay;
+		this.epsilon = epsilon;
+	}
+
+	@Override
+	protected void step(final float[] parameters, final float[] gradient, final int length, final float scale, final float[][] state) {
+		final float[] meanSquare = state[0];
+		final float keep = 1 - decay;
+		for(int i = 0; i < length; i++) {
+			final float g = gradient[i] * scale;
+			final float s = decay * meanSquare[i] + keep * g * g;
+			meanSquare[i] = s;
+			parameters[i] -= rate * g / ((float) Math.sqrt(s) + epsilon);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RMSProp(rate=" + rate + ", decay=" + decay + ")";
+	}
+}
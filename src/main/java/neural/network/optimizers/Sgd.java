@@ -0,0 +1,49 @@
+package neural.network.optimizers;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.linalg.Backend;
+
+/**
+ * Plain stochastic gradient descent: every parameter moves by "rate" times
+ * its mean gradient over the mini batch. It has no state, and the update is
+ * a single in-place axpy per parameter matrix on the current {@link Backend}
+ * (see {@link Network#axpyWeights}).
+ */
+public class Sgd implements Optimizer {
+
+	private final float rate;
+
+	public Sgd(final float rate) {
+		this.rate = rate;
+	}
+
+	@Override
+	public void update(final Network network, final FMatrixRMaj[] weightGradients, final FMatrixRMaj[] biasGradients,
+			final int batchSize) throws LayerDoesNotExistException {
+		final float alpha = -rate / batchSize;
+		try {
+			for(int i = 0; i < network.getNumberOfLayers()-1; i++) {
+				network.axpyBiases(i, alpha, biasGradients[i]);
+				network.axpyWeights(i, alpha, weightGradients[i]);
+			}
+		} catch (InvalidInputException e) {
+			throw new IllegalArgumentException("Gradient does not match the network's parameters", e);
+		}
+	}
+
+	@Override
+	public void reset() {}
+
+	public float getRate() {
+		return rate;
+	}
+
+	@Override
+	public String toString() {
+		return "SGD(rate=" + rate + ")";
+	}
+}
@@ -0,0 +1,76 @@
+package neural.network.optimizers;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.exceptions.LayerDoesNotExistException;
+
+/**
+ * Base class of optimizers that keep one or more buffers of state per
+ * parameter, such as a velocity or a running average of squared gradients.
+ *
+ * The buffers are allocated on the first update, one set per weight and
+ * bias matrix. Each update then hands every parameter matrix, its gradient
+ * and its buffers to {@link #step}, which updates all of them in a single
+ * fused pass without temporaries.
+ */
+public abstract class StatefulOptimizer implements Optimizer {
+
+	private final int buffers;
+	private float[][][] state; //state[2 * layer] for weights, state[2 * layer + 1] for biases
+
+	/**
+	 * Keep "buffers" floats of state per parameter.
+	 */
+	protected StatefulOptimizer(final int buffers) {
+		this.buffers = buffers;
+	}
+
+	@Override
+	public final void update(final Network network, final FMatrixRMaj[] weightGradients, final FMatrixRMaj[] biasGradients,
+			final int batchSize) throws LayerDoesNotExistException {
+		final int layers = network.getNumberOfLayers()-1;
+		if(state == null) {
+			state = new float[2 * layers][][];
+			for(int i = 0; i < layers; i++) {
+				state[2 * i] = new float[buffers][network.getWeightsInLayer(i).getNumElements()];
+				state[2 * i + 1] = new float[buffers][network.getBiasesInLayer(i).getNumElements()];
+			}
+		}
+		if(state.length != 2 * layers) {
+			throw new IllegalStateException("Optimizer state is for a network of " + (state.length / 2 + 1) + " layers");
+		}
+		startStep();
+		final float scale = 1.0f / batchSize;
+		for(int i = 0; i < layers; i++) {
+			update(network.getWeightsInLayer(i), weightGradients[i], scale, state[2 * i]);
+			update(network.getBiasesInLayer(i), biasGradients[i], scale, state[2 * i + 1]);
+		}
+	}
+
+	@Override
+	public void reset() {
+		state = null;
+	}
+
+	/**
+	 * Called once per update, before any parameter is stepped.
+	 */
+	protected void startStep() {}
+
+	/**
+	 * Update parameters[0, length) given their summed gradients, which are
+	 * multiplied by "scale" to give the mean over the batch, and the state
+	 * buffers that belong to them.
+	 */
+	protected abstract void step(float[] parameters, float[] gradient, int length, float scale, float[][] state);
+
+	private void update(final FMatrixRMaj parameters, final FMatrixRMaj gradient, final float scale, final float[][] state) {
+		final int length = parameters.getNumElements();
+		if(gradient.getNumElements() != length || state[0].length != length) {
+			throw new IllegalArgumentException("Gradient of " + gradient.getNumElements() + " elements for "
+					+ length + " parameters with state for " + state[0].length);
+		}
+		step(parameters.data, gradient.data, length, scale, state);
+	}
+}
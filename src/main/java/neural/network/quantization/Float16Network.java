@@ -0,0 +1,62 @@
+package neural.network.quantization;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.exceptions.LayerDoesNotExistException;
+
+/**
+ * A network with IEEE half precision weights. Each weight is widened back
+ * to float as it is read and the products are accumulated in float, so the
+ * only loss is the rounding of the weights to 11 significant bits.
+ */
+public class Float16Network extends QuantizedNetwork {
+
+	private final short[][] weights;
+
+	/**
+	 * Round the weights of "network" to half precision.
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public Float16Network(final Network network) throws LayerDoesNotExistException {
+		super(network);
+		this.weights = new short[biases.length][];
+		for(int i = 0; i < biases.length; i++) {
+			final FMatrixRMaj layer = network.getWeightsInLayer(i);
+			weights[i] = new short[layer.getNumElements()];
+			for(int k = 0; k < weights[i].length; k++) {
+				weights[i][k] = Half.fromFloat(layer.data[k]);
+			}
+		}
+	}
+
+	@Override
+	protected void multiply(final int layer, final float[] input, final float[] output, final byte[] quantized) {
+		final int rows = sizeOfLayers[layer + 1];
+		final int cols = sizeOfLayers[layer];
+		final short[] w = weights[layer];
+		final float[] table = Half.table();
+		for(int r = 0, base = 0; r < rows; r++, base += cols) {
+			float sum = 0;
+			for(int c = 0; c < cols; c++) {
+				sum += table[w[base + c] & 0xFFFF] * input[c];
+			}
+			output[r] = sum;
+		}
+	}
+
+	@Override
+	public long getParameterBytes() {
+		long bytes = 0;
+		for(int i = 0; i < biases.length; i++) {
+			bytes += 2L * weights[i].length + 4L * biases[i].length;
+		}
+		return bytes;
+	}
+
+	@Override
+	public Precision getPrecision() {
+		return Precision.FLOAT16;
+	}
+}
@@ -0,0 +1,85 @@
+package neural.network.quantization;
+
+/**
+ * Conversions between float and IEEE 754 half precision (binary16) values
+ * held in a short.
+ *
+ * Floats are rounded to the nearest half, ties to even, overflowing to
+ * infinity and underflowing through the subnormals to zero. Halves are
+ * widened through a table of all 65536 values, so reading one costs a
+ * single array load.
+ */
+public final class Half {
+
+	private static final float[] TO_FLOAT = new float[1 << 16];
+
+	static {
+		for(int i = 0; i < TO_FLOAT.length; i++) {
+			TO_FLOAT[i] = widen(i);
+		}
+	}
+
+	//Disallow instantiation of this class
+	private Half() {}
+
+	/**
+	 * Return the half closest to "value".
+	 */
+	public static short fromFloat(final float value) {
+		final int bits = Float.floatToRawIntBits(value);
+		final int sign = (bits >>> 16) & 0x8000;
+		final int exponent = (bits >>> 23) & 0xFF;
+		int mantissa = bits & 0x7FFFFF;
+		if(exponent == 0xFF) {
+			//Infinity stays infinite and NaN stays a (quiet) NaN
+			return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+		}
+		final int rebased = exponent - 127 + 15;
+		if(rebased >= 0x1F) {
+			return (short) (sign | 0x7C00);
+		}
+		if(rebased <= 0) {
+			if(rebased < -10) {
+				return (short) sign;
+			}
+			//Subnormal: shift the mantissa, implicit bit included, into place
+			mantissa |= 0x800000;
+			final int shift = 14 - rebased;
+			return (short) (sign | round(mantissa >> shift, mantissa & ((1 << shift) - 1), 1 << (shift - 1)));
+		}
+		//A carry out of the mantissa correctly bumps the exponent, up to infinity
+		return (short) (sign | round((rebased << 10) | (mantissa >> 13), mantissa & 0x1FFF, 0x1000));
+	}
+
+	/**
+	 * Return the float value of a half.
+	 */
+	public static float toFloat(final short half) {
+		return TO_FLOAT[half & 0xFFFF];
+	}
+
+	static float[] table() {
+		return TO_FLOAT;
+	}
+
+	private static int round(final int truncated, final int remainder, final int halfway) {
+		if(remainder > halfway || (remainder == halfway && (truncated & 1) != 0)) {
+			return truncated + 1;
+		}
+		return truncated;
+	}
+
+	private static float widen(final int half) {
+		final int sign = (half & 0x8000) << 16;
+		final int exponent = (half >>> 10) & 0x1F;
+		final int mantissa = half & 0x3FF;
+		if(exponent == 0x1F) {
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		}
+		if(exponent == 0) {
+			final float value = mantissa * 0x1p-24f;
+			return sign == 0 ? value : -value;
+		}
+		return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+	}
+}
@@ -0,0 +1,98 @@
+package neural.network.quantization;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.exceptions.LayerDoesNotExistException;
+
+/**
+ * A network with signed 8 bit weights.
+ *
+ * Each row of a weight matrix is scaled by its own factor, max|w| / 127, so
+ * a single large weight only costs precision in its own neuron. At run time
+ * a layer's input is quantized the same way with one scale for the vector,
+ * and each output is an int dot product of two byte vectors, rescaled once
+ * by the product of the row and input scales. With at most 127 * 127 per
+ * term an int cannot overflow below 133000 inputs per neuron.
+ */
+public class Int8Network extends QuantizedNetwork {
+
+	private final byte[][] weights;
+	private final float[][] rowScales;
+
+	/**
+	 * Quantize the weights of "network".
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public Int8Network(final Network network) throws LayerDoesNotExistException {
+		super(network);
+		this.weights = new byte[biases.length][];
+		this.rowScales = new float[biases.length][];
+		for(int i = 0; i < biases.length; i++) {
+			final FMatrixRMaj layer = network.getWeightsInLayer(i);
+			final int rows = layer.getNumRows();
+			final int cols = layer.getNumCols();
+			weights[i] = new byte[rows * cols];
+			rowScales[i] = new float[rows];
+			for(int r = 0; r < rows; r++) {
+				float max = 0;
+				for(int c = 0; c < cols; c++) {
+					max = Math.max(max, Math.abs(layer.data[r * cols + c]));
+				}
+				if(max == 0) {
+					continue;
+				}
+				rowScales[i][r] = max / 127;
+				final float inverse = 127 / max;
+				for(int c = 0; c < cols; c++) {
+					weights[i][r * cols + c] = (byte) Math.round(layer.data[r * cols + c] * inverse);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void multiply(final int layer, final float[] input, final float[] output, final byte[] quantized) {
+		final int rows = sizeOfLayers[layer + 1];
+		final int cols = sizeOfLayers[layer];
+		float max = 0;
+		for(int c = 0; c < cols; c++) {
+			max = Math.max(max, Math.abs(input[c]));
+		}
+		if(max == 0) {
+			for(int r = 0; r < rows; r++) {
+				output[r] = 0;
+			}
+			return;
+		}
+		final float inverse = 127 / max;
+		for(int c = 0; c < cols; c++) {
+			quantized[c] = (byte) Math.round(input[c] * inverse);
+		}
+		final float inputScale = max / 127;
+		final byte[] w = weights[layer];
+		final float[] scales = rowScales[layer];
+		for(int r = 0, base = 0; r < rows; r++, base += cols) {
+			int sum = 0;
+			for(int c = 0; c < cols; c++) {
+				sum += w[base + c] * quantized[c];
+			}
+			output[r] = sum * scales[r] * inputScale;
+		}
+	}
+
+	@Override
+	public long getParameterBytes() {
+		long bytes = 0;
+		for(int i = 0; i < biases.length; i++) {
+			bytes += weights[i].length + 4L * rowScales[i].length + 4L * biases[i].length;
+		}
+		return bytes;
+	}
+
+	@Override
+	public Precision getPrecision() {
+		return Precision.INT8;
+	}
+}
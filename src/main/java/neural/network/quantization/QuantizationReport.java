@@ -0,0 +1,161 @@
+package neural.network.quantization;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import neural.network.ModelFile;
+import neural.network.Network;
+import neural.network.Predictions;
+import neural.network.Predictor;
+import neural.network.data.Dataset;
+import neural.network.data.ImageCache;
+import neural.network.data.ImageReader;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.metrics.Evaluation;
+
+/**
+ * How far a quantized network strays from the float network it was made
+ * from on a labelled dataset: the accuracy of each, how often they predict
+ * the same label, the error in the output activations and the memory each
+ * takes.
+ */
+public class QuantizationReport {
+
+	private final QuantizedNetwork.Precision precision;
+	private final Evaluation reference;
+	private final Evaluation quantized;
+	private final int agreements;
+	private final double maxOutputError;
+	private final double meanOutputError;
+	private final long referenceBytes;
+	private final long quantizedBytes;
+
+	private QuantizationReport(final QuantizedNetwork.Precision precision, final Evaluation reference, final Evaluation quantized,
+			final int agreements, final double maxOutputError, final double meanOutputError, final long referenceBytes,
+			final long quantizedBytes) {
+		this.precision = precision;
+		this.reference = reference;
+		this.quantized = quantized;
+		this.agreements = agreements;
+		this.maxOutputError = maxOutputError;
+		this.meanOutputError = meanOutputError;
+		this.referenceBytes = referenceBytes;
+		this.quantizedBytes = quantizedBytes;
+	}
+
+	/**
+	 * Run every sample of "data" through both networks and compare them.
+	 *
+	 * @throws LayerDoesNotExistException
+	 * @throws InvalidInputException if the networks have different shapes
+	 */
+	public static QuantizationReport compare(final Network network, final QuantizedNetwork model, final Dataset data)
+			throws LayerDoesNotExistException, InvalidInputException {
+		final int outputs = network.getSizeOfLayers().get(network.getNumberOfLayers() - 1);
+		final Predictions predictions = new Predictor(network, ForkJoinPool.commonPool(), Predictor.DEFAULT_CHUNK_SIZE).predictBatch(data);
+		final Evaluation reference = new Evaluation(outputs);
+		final Evaluation quantized = new Evaluation(outputs);
+		final float[] sample = new float[network.getSizeOfLayers().get(0)];
+		final float[] output = new float[outputs];
+		int agreements = 0;
+		double maxError = 0;
+		double totalError = 0;
+		for(int n = 0; n < data.size(); n++) {
+			for(int i = 0; i < sample.length; i++) {
+				sample[i] = data.getPx(n, i);
+			}
+			model.feedForward(sample, output);
+			int best = 0;
+			for(int k = 0; k < outputs; k++) {
+				final double error = Math.abs(output[k] - predictions.getOutput(n, k));
+				maxError = Math.max(maxError, error);
+				totalError += error;
+				if(output[k] > output[best]) {
+					best = k;
+				}
+			}
+			reference.record(data.getLabel(n), predictions.getLabel(n));
+			quantized.record(data.getLabel(n), best);
+			if(best == predictions.getLabel(n)) {
+				agreements++;
+			}
+		}
+		return new QuantizationReport(model.getPrecision(), reference, quantized, agreements, maxError,
+				data.size() == 0 ? 0 : totalError / ((double) data.size() * outputs),
+				4L * network.getNumberOfParameters(), model.getParameterBytes());
+	}
+
+	public QuantizedNetwork.Precision getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Return the evaluation of the float network.
+	 */
+	public Evaluation getReference() {
+		return reference;
+	}
+
+	/**
+	 * Return the evaluation of the quantized network.
+	 */
+	public Evaluation getQuantized() {
+		return quantized;
+	}
+
+	/**
+	 * Return the fraction of samples for which both networks predict the
+	 * same label, or NaN if there were none.
+	 */
+	public double getAgreement() {
+		return reference.getTotal() == 0 ? Double.NaN : agreements / (double) reference.getTotal();
+	}
+
+	/**
+	 * Return the largest difference between an output activation of the two
+	 * networks.
+	 */
+	public double getMaxOutputError() {
+		return maxOutputError;
+	}
+
+	public double getMeanOutputError() {
+		return meanOutputError;
+	}
+
+	public long getReferenceBytes() {
+		return referenceBytes;
+	}
+
+	public long getQuantizedBytes() {
+		return quantizedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: accuracy %.4f (float %.4f), agreement %.4f, output error max %.2e mean %.2e, "
+				+ "parameters %d bytes (float %d, %.1fx smaller)", precision, quantized.getAccuracy(), reference.getAccuracy(),
+				getAgreement(), maxOutputError, meanOutputError, quantizedBytes, referenceBytes, referenceBytes / (double) quantizedBytes);
+	}
+
+	/**
+	 * Compare every precision against a saved model on a test set, given as
+	 * an MNIST CSV file or an {@link ImageCache} (.bin).
+	 *
+	 * Usage: QuantizationReport &lt;model&gt; &lt;test.csv|test.bin&gt;
+	 */
+	public static void main(String[] args) throws IOException, LayerDoesNotExistException, InvalidInputException {
+		if(args.length != 2) {
+			System.err.println("Usage: QuantizationReport <model> <test.csv|test.bin>");
+			System.exit(1);
+		}
+		Network network = ModelFile.load(new File(args[0]));
+		File test = new File(args[1]);
+		Dataset testData = test.getName().endsWith(".bin") ? ImageCache.read(test) : ImageReader.readDataset(test.toURI().toURL());
+		for(QuantizedNetwork.Precision precision : QuantizedNetwork.Precision.values()) {
+			System.out.println(compare(network, QuantizedNetwork.quantize(network, precision), testData));
+		}
+	}
+}
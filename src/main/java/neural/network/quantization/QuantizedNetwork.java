@@ -0,0 +1,210 @@
+package neural.network.quantization;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.Network;
+import neural.network.activations.Activation;
+import neural.network.data.Dataset;
+import neural.network.data.Normalization;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.metrics.Evaluation;
+
+/**
+ * A read-only copy of a trained network with its weights stored at reduced
+ * precision, for high volume inference.
+ *
+ * Only the weight matrices are compressed; biases stay in float, as do the
+ * activations between layers and their activation functions. Every layer is a
+ * matrix-vector product over the compact weights, so the whole model stays
+ * in cache for far larger layers than the float network. Inputs are raw
+ * pixels, transformed by the original network's {@link Normalization} if
+ * it has one. Scratch buffers
+ * belong to the calling thread, so one instance can serve many threads.
+ */
+public abstract class QuantizedNetwork {
+
+	public enum Precision {
+		/** Signed 8 bit weights with one scale per row, 4x smaller than float. */
+		INT8,
+		/** IEEE half precision weights, 2x smaller than float. */
+		FLOAT16
+	}
+
+	protected final int[] sizeOfLayers;
+	protected final float[][] biases;
+	private final Activation[] activations;
+	private final Normalization normalization;
+	private final ThreadLocal<Scratch> scratch;
+
+	/**
+	 * Return a copy of "network" with weights stored at the given precision.
+	 *
+	 * @throws LayerDoesNotExistException
+	 */
+	public static QuantizedNetwork quantize(final Network network, final Precision precision) throws LayerDoesNotExistException {
+		switch(precision) {
+		case INT8:
+			return new Int8Network(network);
+		case FLOAT16:
+			return new Float16Network(network);
+		default:
+			throw new IllegalArgumentException("Unknown precision " + precision);
+		}
+	}
+
+	protected QuantizedNetwork(final Network network) throws LayerDoesNotExistException {
+		final int layers = network.getNumberOfLayers();
+		this.sizeOfLayers = new int[layers];
+		int widest = 0;
+		for(int i = 0; i < layers; i++) {
+			sizeOfLayers[i] = network.getSizeOfLayers().get(i);
+			widest = Math.max(widest, sizeOfLayers[i]);
+		}
+		this.biases = new float[layers - 1][];
+		this.activations = new Activation[layers - 1];
+		for(int i = 0; i < layers - 1; i++) {
+			biases[i] = network.getBiasesInLayer(i).data.clone();
+			activations[i] = network.getActivation(i);
+		}
+		this.normalization = network.getNormalization();
+		final int width = widest;
+		this.scratch = new ThreadLocal<Scratch>() {
+			@Override
+			protected Scratch initialValue() {
+				return new Scratch(width);
+			}
+		};
+	}
+
+	/**
+	 * Compute the output activations for "input" into "output".
+	 *
+	 * @throws InvalidInputException if either array does not match the network
+	 */
+	public void feedForward(final float[] input, final float[] output) throws InvalidInputException {
+		if(input.length != sizeOfLayers[0]) {
+			throw new InvalidInputException(FMatrixRMaj.wrap(input.length, 1, input));
+		}
+		if(output.length != sizeOfLayers[sizeOfLayers.length - 1]) {
+			throw new InvalidInputException(FMatrixRMaj.wrap(output.length, 1, output));
+		}
+		final Scratch buffers = scratch.get();
+		System.arraycopy(feedForward(normalize(input, buffers), buffers), 0, output, 0, output.length);
+	}
+
+	/**
+	 * Return the index of the most active output neuron for "input".
+	 *
+	 * @throws InvalidInputException if the input does not match the network
+	 */
+	public int predict(final float[] input) throws InvalidInputException {
+		if(input.length != sizeOfLayers[0]) {
+			throw new InvalidInputException(FMatrixRMaj.wrap(input.length, 1, input));
+		}
+		final Scratch buffers = scratch.get();
+		return maxIndex(feedForward(normalize(input, buffers), buffers), sizeOfLayers[sizeOfLayers.length - 1]);
+	}
+
+	/**
+	 * Evaluate the network on every sample of "data".
+	 *
+	 * @throws IllegalArgumentException if "data" was normalized differently from the network's inputs
+	 */
+	public Evaluation evaluate(final Dataset data) {
+		final boolean raw = data.getNormalization() == null;
+		if(!raw && !data.getNormalization().equals(normalization)) {
+			throw new IllegalArgumentException("Samples were not normalized the way the network was trained");
+		}
+		final Scratch buffers = scratch.get();
+		final int outputs = sizeOfLayers[sizeOfLayers.length - 1];
+		final Evaluation result = new Evaluation(outputs);
+		for(int n = 0; n < data.size(); n++) {
+			data.pack(n, 1, buffers.sample, null);
+			if(raw && normalization != null) {
+				normalization.apply(buffers.sample.data);
+			}
+			result.record(data.getLabel(n), maxIndex(feedForward(buffers.sample.data, buffers), outputs));
+		}
+		return result;
+	}
+
+	public int[] getSizeOfLayers() {
+		return sizeOfLayers.clone();
+	}
+
+	/**
+	 * Return the memory taken by the weights and biases, in bytes.
+	 */
+	public abstract long getParameterBytes();
+
+	public abstract Precision getPrecision();
+
+	/**
+	 * Compute output[0, rows) = W_layer * input[0, cols), without the bias.
+	 * "quantized" has room for the widest layer.
+	 */
+	protected abstract void multiply(int layer, float[] input, float[] output, byte[] quantized);
+
+	public Normalization getNormalization() {
+		return normalization;
+	}
+
+	/**
+	 * Return "input" transformed by the normalization, in the sample buffer,
+	 * or "input" itself if there is none.
+	 */
+	private float[] normalize(final float[] input, final Scratch buffers) {
+		if(normalization == null) {
+			return input;
+		}
+		final float[] sample = buffers.sample.data;
+		System.arraycopy(input, 0, sample, 0, input.length);
+		normalization.apply(sample);
+		return sample;
+	}
+
+	private float[] feedForward(final float[] input, final Scratch buffers) {
+		float[] in = input;
+		for(int i = 0; i < biases.length; i++) {
+			final float[] out = buffers.activations[i & 1];
+			final int rows = sizeOfLayers[i + 1];
+			multiply(i, in, out, buffers.quantized);
+			final float[] bias = biases[i];
+			for(int r = 0; r < rows; r++) {
+				out[r] += bias[r];
+			}
+			activations[i].apply(out, rows, 1);
+			in = out;
+		}
+		return in;
+	}
+
+	private static int maxIndex(final float[] output, final int length) {
+		int best = 0;
+		for(int k = 1; k < length; k++) {
+			if(output[k] > output[best]) {
+				best = k;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Per-thread buffers: two activation vectors used alternately by the
+	 * layers, the quantized copy of a layer's input and room to unpack a
+	 * sample into.
+	 */
+	private class Scratch {
+
+		final float[][] activations;
+		final byte[] quantized;
+		final FMatrixRMaj sample;
+
+		Scratch(final int width) {
+			this.activations = new float[][] {new float[width], new float[width]};
+			this.quantized = new byte[width];
+			this.sample = new FMatrixRMaj(sizeOfLayers[0], 1);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package neural.network.serving;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, for percentiles.
+ *
+ * Values below 16 have a bucket each; above that every power of two is
+ * split into 16 buckets, so a percentile is reported to within 1/16 (6.25%)
+ * of the true value over the whole range of a long. Recording is a couple
+ * of atomic increments and never allocates, so any number of threads can
+ * record while another reads.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record one latency. Negative values count as zero.
+	 */
+	public void record(final long nanos) {
+		final long value = Math.max(0, nanos);
+		counts.incrementAndGet(index(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current;
+		while(value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			//Retry until this value is recorded or a larger one is
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Return the mean latency, or NaN if nothing was recorded.
+	 */
+	public double getMean() {
+		final long n = count.get();
+		return n == 0 ? Double.NaN : total.get() / (double) n;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Return the latency that "percentile" percent of the recorded values
+	 * do not exceed, rounded up to the top of its bucket, or 0 if nothing
+	 * was recorded.
+	 */
+	public long getPercentile(final double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+		}
+		long seen = 0;
+		long recorded = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			recorded += counts.get(i);
+		}
+		final long target = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+		for(int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if(seen >= target) {
+				return Math.min(highestInBucket(i), max.get());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Forget every recorded value.
+	 */
+	public void reset() {
+		for(int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	static int index(final long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long highestInBucket(final int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		final int shift = index / SUB_BUCKETS - 1;
+		final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,293 @@
+package neural.network.serving;
+
+import java.io.Closeable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ejml.data.FMatrixRMaj;
+
+import neural.network.ModelHolder;
+import neural.network.ModelSnapshot;
+import neural.network.Network;
+import neural.network.Predictions;
+import neural.network.Predictor;
+import neural.network.exceptions.InvalidInputException;
+
+/**
+ * Coalesces concurrent single-sample prediction requests into batched
+ * forward passes.
+ *
+ * Requests are queued and a single dispatcher thread takes them in batches
+ * of up to "maxBatch", running each batch through a {@link Predictor} as one
+ * matrix product with buffers reused from batch to batch. Every batch reads
+ * the current snapshot of a {@link ModelHolder} and passes it to that same
+ * predictor, so the model can be replaced while requests are being served,
+ * a batch is never split between two versions and a new version costs no
+ * new buffers. The wait is adaptive: a request that arrives alone is run at once, but as soon as a
+ * batch finds more than one request queued the dispatcher holds the next
+ * batches open for up to "maxDelayMicros" after their first request, to
+ * gather more, until traffic drops back to single requests.
+ *
+ * The latency of every request, from submission to completion, is recorded
+ * in a {@link LatencyHistogram}.
+ */
+public class MicroBatcher implements Closeable {
+
+	public static final int DEFAULT_MAX_BATCH = 32;
+	public static final long DEFAULT_MAX_DELAY_MICROS = 200;
+
+	private static final Request SHUTDOWN = new Request(null);
+
+	private final ModelHolder model;
+	private final int inputSize;
+	private final int outputSize;
+	private final int maxBatch;
+	private final long maxDelayNanos;
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final Thread dispatcher;
+	private volatile boolean closed;
+
+	//Owned by the dispatcher thread
+	private final Predictor predictor;
+	private final Request[] batch;
+	private final float[][] samples;
+	private final Predictions predictions;
+
+	/**
+	 * Batch requests to a snapshot of "network" with the default limits.
+	 */
+	public MicroBatcher(final Network network) {
+		this(new ModelHolder(network), DEFAULT_MAX_BATCH, DEFAULT_MAX_DELAY_MICROS);
+	}
+
+	/**
+	 * Batch requests to a snapshot of "network" in batches of at most
+	 * "maxBatch", holding a batch open for at most "maxDelayMicros" under
+	 * load. Later changes to the network are not seen.
+	 */
+	public MicroBatcher(final Network network, final int maxBatch, final long maxDelayMicros) {
+		this(new ModelHolder(network), maxBatch, maxDelayMicros);
+	}
+
+	/**
+	 * Batch requests to whichever snapshot "model" holds, in batches of at
+	 * most "maxBatch", holding a batch open for at most "maxDelayMicros"
+	 * under load.
+	 */
+	public MicroBatcher(final ModelHolder model, final int maxBatch, final long maxDelayMicros) {
+		if(maxBatch <= 0 || maxDelayMicros < 0) {
+			throw new IllegalArgumentException("Invalid batch limits: " + maxBatch + " samples, " + maxDelayMicros + " us");
+		}
+		this.model = model;
+		this.inputSize = model.get().getInputSize();
+		this.outputSize = model.get().getOutputSize();
+		this.maxBatch = maxBatch;
+		this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+		//Batches never exceed one chunk, so the predictor runs them on the dispatcher thread
+		this.predictor = new Predictor(ForkJoinPool.commonPool(), maxBatch);
+		this.batch = new Request[maxBatch];
+		this.samples = new float[maxBatch][];
+		this.predictions = new Predictions(maxBatch, outputSize);
+		this.dispatcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				dispatch();
+			}
+		}, "micro-batcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Queue "input" for prediction. The input array must not be modified
+	 * until the result is complete.
+	 *
+	 * @throws InvalidInputException if the input does not match the network
+	 * @throws IllegalStateException if the batcher is closed
+	 */
+	public CompletableFuture<Prediction> submit(final float[] input) throws InvalidInputException {
+		if(input.length != inputSize) {
+			throw new InvalidInputException(FMatrixRMaj.wrap(input.length, 1, input));
+		}
+		final Request request = new Request(input);
+		//Nothing can be queued behind the shutdown marker, so every request is answered
+		synchronized(queue) {
+			if(closed) {
+				throw new IllegalStateException("Micro batcher is closed");
+			}
+			queue.add(request);
+		}
+		return request;
+	}
+
+	/**
+	 * Predict "input", waiting for the batch it joins to complete.
+	 *
+	 * @throws InvalidInputException if the input does not match the network
+	 * @throws InterruptedException
+	 */
+	public Prediction predict(final float[] input) throws InvalidInputException, InterruptedException {
+		try {
+			return submit(input).get();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Return true once {@link #close} has been called.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public ModelHolder getModel() {
+		return model;
+	}
+
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	public int getMaxBatch() {
+		return maxBatch;
+	}
+
+	/**
+	 * Return the latencies of completed requests, from submission to result.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getBatches() {
+		return batches.get();
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Return the mean number of requests per batch.
+	 */
+	public double getMeanBatchSize() {
+		final long n = batches.get();
+		return n == 0 ? 0.0 : requests.get() / (double) n;
+	}
+
+	/**
+	 * Stop the dispatcher. Requests still queued fail with an
+	 * IllegalStateException.
+	 */
+	@Override
+	public void close() {
+		synchronized(queue) {
+			if(!closed) {
+				closed = true;
+				queue.add(SHUTDOWN);
+			}
+		}
+	}
+
+	private void dispatch() {
+		boolean coalesce = false;
+		try {
+			while(true) {
+				final Request first = queue.take();
+				if(first == SHUTDOWN) {
+					break;
+				}
+				int size = 0;
+				batch[size++] = first;
+				final long deadline = first.start + maxDelayNanos;
+				boolean shutdown = false;
+				while(size < maxBatch) {
+					Request next = queue.poll();
+					if(next == null && coalesce) {
+						final long remaining = deadline - System.nanoTime();
+						if(remaining > 0) {
+							next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+						}
+					}
+					if(next == null) {
+						break;
+					}
+					if(next == SHUTDOWN) {
+						shutdown = true;
+						break;
+					}
+					batch[size++] = next;
+				}
+				coalesce = size > 1;
+				run(size);
+				if(shutdown) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Request request;
+		while((request = queue.poll()) != null) {
+			if(request != SHUTDOWN) {
+				request.completeExceptionally(new IllegalStateException("Micro batcher is closed"));
+			}
+		}
+	}
+
+	private void run(final int size) {
+		for(int j = 0; j < size; j++) {
+			samples[j] = batch[j].input;
+		}
+		Exception failure = null;
+		try {
+			final ModelSnapshot snapshot = model.get();
+			snapshot.predictBatch(predictor, samples, size, predictions);
+		} catch (InvalidInputException | RuntimeException e) {
+			failure = e;
+		}
+		//Account for the batch before any caller can see its result
+		final long now = System.nanoTime();
+		for(int j = 0; j < size; j++) {
+			latency.record(now - batch[j].start);
+		}
+		batches.incrementAndGet();
+		requests.addAndGet(size);
+		for(int j = 0; j < size; j++) {
+			if(failure == null) {
+				final float[] outputs = new float[outputSize];
+				predictions.getOutputs(j, outputs);
+				batch[j].complete(new Prediction(predictions.getLabel(j), outputs));
+			} else {
+				batch[j].completeExceptionally(failure);
+			}
+			batch[j] = null;
+			samples[j] = null;
+		}
+	}
+
+	/**
+	 * A queued request, completed by the dispatcher.
+	 */
+	private static class Request extends CompletableFuture<Prediction> {
+
+		final float[] input;
+		final long start = System.nanoTime();
+
+		Request(final float[] input) {
+			this.input = input;
+		}
+	}
+}
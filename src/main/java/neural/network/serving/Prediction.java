@@ -0,0 +1,27 @@
+package neural.network.serving;
+
+/**
+ * The answer to a single prediction request: the predicted label and the
+ * output activations behind it.
+ */
+public class Prediction {
+
+	private final int label;
+	private final float[] outputs;
+
+	public Prediction(final int label, final float[] outputs) {
+		this.label = label;
+		this.outputs = outputs;
+	}
+
+	public int getLabel() {
+		return label;
+	}
+
+	/**
+	 * Return the output activations. The array belongs to this prediction.
+	 */
+	public float[] getOutputs() {
+		return outputs;
+	}
+}
@@ -0,0 +1,299 @@
+package neural.network.serving;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import neural.network.ModelFile;
+import neural.network.ModelHolder;
+import neural.network.Network;
+import neural.network.exceptions.InvalidInputException;
+
+/**
+ * An embeddable HTTP prediction service, bound to the loopback interface
+ * only.
+ *
+ * POST /predict with one sample, either as text (numbers separated by commas
+ * or whitespace) or, with Content-Type application/octet-stream, as little
+ * endian float32 values. The answer is {"label":...,"outputs":[...]}.
+ * Bodies longer than a sample can be in either form are refused with 413.
+ * Concurrent requests are coalesced into batched forward passes by a
+ * {@link MicroBatcher}.
+ *
+ * GET /stats returns the model version, the request count, the mean batch
+ * size and p50/p99/max latency in microseconds, both in the batcher
+ * (queueing and inference) and end to end (parsing and the response
+ * included).
+ *
+ * Each exchange runs on a virtual thread where the JVM has them, and on a
+ * cached thread pool otherwise.
+ */
+public class PredictionServer implements Closeable {
+
+	//Longest text a single number may take, separator included, e.g. "-1.17549435E-38, "
+	private static final int MAX_TEXT_BYTES_PER_NUMBER = 24;
+
+	private final MicroBatcher batcher;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Serve a snapshot of "network" on "port", or on any free port if 0,
+	 * with the default batching limits.
+	 *
+	 * @throws IOException if the port cannot be bound
+	 */
+	public PredictionServer(final Network network, final int port) throws IOException {
+		this(network, port, MicroBatcher.DEFAULT_MAX_BATCH, MicroBatcher.DEFAULT_MAX_DELAY_MICROS);
+	}
+
+	/**
+	 * Serve a snapshot of "network" on "port", or on any free port if 0,
+	 * batching up to "maxBatch" requests for at most "maxDelayMicros".
+	 *
+	 * @throws IOException if the port cannot be bound
+	 */
+	public PredictionServer(final Network network, final int port, final int maxBatch, final long maxDelayMicros) throws IOException {
+		this(new ModelHolder(network), port, maxBatch, maxDelayMicros);
+	}
+
+	/**
+	 * Serve the current snapshot of "model" on "port", or on any free port
+	 * if 0, batching up to "maxBatch" requests for at most "maxDelayMicros".
+	 * Snapshots published to the holder are picked up by the next batch.
+	 *
+	 * @throws IOException if the port cannot be bound
+	 */
+	public PredictionServer(final ModelHolder model, final int port, final int maxBatch, final long maxDelayMicros) throws IOException {
+		this.batcher = new MicroBatcher(model, maxBatch, maxDelayMicros);
+		this.executor = newExecutor();
+		try {
+			this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			batcher.close();
+			executor.shutdown();
+			throw e;
+		}
+		server.createContext("/predict", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				predict(exchange);
+			}
+		});
+		server.createContext("/stats", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				stats(exchange);
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public MicroBatcher getBatcher() {
+		return batcher;
+	}
+
+	/**
+	 * Return the end to end latencies of answered predictions.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Stop accepting requests and release the threads.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		batcher.close();
+		executor.shutdown();
+	}
+
+	private void predict(final HttpExchange exchange) throws IOException {
+		final long start = System.nanoTime();
+		try {
+			if(!"POST".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, "text/plain", "Use POST");
+				return;
+			}
+			final String type = exchange.getRequestHeaders().getFirst("Content-Type");
+			final boolean binary = type != null && type.startsWith("application/octet-stream");
+			final int limit = binary ? 4 * batcher.getInputSize() : MAX_TEXT_BYTES_PER_NUMBER * batcher.getInputSize() + 64;
+			final byte[] body = readAtMost(exchange.getRequestBody(), limit);
+			if(body == null) {
+				send(exchange, 413, "text/plain", "Body longer than " + limit + " bytes");
+				return;
+			}
+			final float[] input = binary ? decode(body) : parse(body);
+			final Prediction prediction = batcher.predict(input);
+			final StringBuilder json = new StringBuilder(32 + 16 * prediction.getOutputs().length);
+			json.append("{\"label\":").append(prediction.getLabel()).append(",\"outputs\":[");
+			for(int k = 0; k < prediction.getOutputs().length; k++) {
+				json.append(k == 0 ? "" : ",").append(prediction.getOutputs()[k]);
+			}
+			json.append("]}");
+			send(exchange, 200, "application/json", json.toString());
+			latency.record(System.nanoTime() - start);
+		} catch (InvalidInputException | NumberFormatException e) {
+			send(exchange, 400, "text/plain", "Expected " + batcher.getInputSize() + " numbers");
+		} catch (RuntimeException e) {
+			//Inference failures are wrapped in the same exception as a closed batcher's refusal
+			if(batcher.isClosed()) {
+				send(exchange, 503, "text/plain", "Shutting down");
+			} else {
+				send(exchange, 500, "text/plain", "Prediction failed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			send(exchange, 503, "text/plain", "Interrupted");
+		}
+	}
+
+	private void stats(final HttpExchange exchange) throws IOException {
+		final LatencyHistogram queued = batcher.getLatency();
+		final String json = String.format(Locale.ROOT, "{\"model_version\":%d,\"requests\":%d,\"batches\":%d,\"mean_batch_size\":%.3f,"
+				+ "\"batcher_p50_us\":%.1f,\"batcher_p99_us\":%.1f,\"batcher_max_us\":%.1f,"
+				+ "\"p50_us\":%.1f,\"p99_us\":%.1f,\"max_us\":%.1f}",
+				batcher.getModel().getVersion(), batcher.getRequests(), batcher.getBatches(), batcher.getMeanBatchSize(),
+				queued.getPercentile(50) / 1e3, queued.getPercentile(99) / 1e3, queued.getMax() / 1e3,
+				latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3, latency.getMax() / 1e3);
+		send(exchange, 200, "application/json", json);
+	}
+
+	private static void send(final HttpExchange exchange, final int status, final String type, final String body) throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(status, bytes.length);
+		final OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read the whole of "in", or return null as soon as it turns out to be
+	 * longer than "limit" bytes.
+	 */
+	private static byte[] readAtMost(final InputStream in, final int limit) throws IOException {
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(limit, 8192));
+			final byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) >= 0) {
+				if(out.size() + read > limit) {
+					return null;
+				}
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static float[] decode(final byte[] body) {
+		if(body.length % 4 != 0) {
+			throw new NumberFormatException("Truncated float32 body");
+		}
+		final float[] input = new float[body.length / 4];
+		ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(input);
+		return input;
+	}
+
+	/**
+	 * Parse numbers separated by commas or whitespace.
+	 */
+	private float[] parse(final byte[] body) {
+		final String text = new String(body, StandardCharsets.US_ASCII);
+		final float[] input = new float[batcher.getInputSize()];
+		int count = 0;
+		int i = 0;
+		while(i < text.length()) {
+			while(i < text.length() && isSeparator(text.charAt(i))) {
+				i++;
+			}
+			final int start = i;
+			while(i < text.length() && !isSeparator(text.charAt(i))) {
+				i++;
+			}
+			if(i > start) {
+				if(count == input.length) {
+					throw new NumberFormatException("More than " + input.length + " numbers");
+				}
+				input[count++] = Float.parseFloat(text.substring(start, i));
+			}
+		}
+		if(count != input.length) {
+			throw new NumberFormatException(count + " numbers instead of " + input.length);
+		}
+		return input;
+	}
+
+	private static boolean isSeparator(final char c) {
+		return c == ',' || Character.isWhitespace(c);
+	}
+
+	/**
+	 * Return a virtual thread per task executor if this JVM has one, and a
+	 * cached pool of daemon threads otherwise.
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			//Before Java 21
+		} catch (IllegalAccessException e) {
+			//Fall back to platform threads
+		} catch (InvocationTargetException e) {
+			//Virtual threads are a preview feature that is not enabled
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(runnable, "prediction-server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Serve a saved model on localhost until the process is killed.
+	 *
+	 * Usage: PredictionServer &lt;model&gt; &lt;port&gt;
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2) {
+			System.err.println("Usage: PredictionServer <model> <port>");
+			System.exit(1);
+		}
+		PredictionServer server = new PredictionServer(ModelFile.load(new File(args[0])), Integer.parseInt(args[1]));
+		System.out.println("Serving " + args[0] + " on http://localhost:" + server.getPort() + "/predict");
+	}
+}
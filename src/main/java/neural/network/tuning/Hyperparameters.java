@@ -0,0 +1,121 @@
+package neural.network.tuning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import neural.network.Network;
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Normalization;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+/**
+ * One configuration tried by a {@link Sweep}: the layer sizes, the hidden
+ * layers' activation, the cost, the mini batch size and the learning rate
+ * of plain gradient descent. The output layer is a softmax under the
+ * cross-entropy cost and a sigmoid under the quadratic cost.
+ */
+public class Hyperparameters {
+
+	private final List<Integer> sizes;
+	private final Activation hidden;
+	private final Cost cost;
+	private final int miniBatchSize;
+	private final float eta;
+
+	public Hyperparameters(final List<Integer> sizes, final Activation hidden, final Cost cost, final int miniBatchSize, final float eta) {
+		if(sizes.size() < 2) {
+			throw new IllegalArgumentException("A network needs at least two layers: " + sizes);
+		}
+		if(hidden == Activation.SOFTMAX) {
+			throw new IllegalArgumentException("Hidden layers cannot be softmax");
+		}
+		if(miniBatchSize <= 0) {
+			throw new IllegalArgumentException("Mini batch size must be positive: " + miniBatchSize);
+		}
+		if(!(eta > 0)) {
+			throw new IllegalArgumentException("Learning rate must be positive: " + eta);
+		}
+		this.sizes = Collections.unmodifiableList(new ArrayList<Integer>(sizes));
+		this.hidden = hidden;
+		this.cost = cost;
+		this.miniBatchSize = miniBatchSize;
+		this.eta = eta;
+	}
+
+	/**
+	 * Return every combination of the given values, layer sizes varying
+	 * slowest and learning rates fastest.
+	 */
+	public static List<Hyperparameters> grid(final List<List<Integer>> sizes, final Activation[] hidden, final Cost cost,
+			final int[] miniBatchSizes, final float[] etas) {
+		final List<Hyperparameters> grid = new ArrayList<Hyperparameters>();
+		for(List<Integer> layers : sizes) {
+			for(Activation activation : hidden) {
+				for(int miniBatchSize : miniBatchSizes) {
+					for(float eta : etas) {
+						grid.add(new Hyperparameters(layers, activation, cost, miniBatchSize, eta));
+					}
+				}
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Create a freshly initialized network of this configuration taking
+	 * inputs normalized by "normalization", which may be null. Its weights
+	 * are scaled by fan-in (see {@link Network#scaleWeightsByFanIn}).
+	 *
+	 * @throws NetworkTooSmallException
+	 * @throws LayerTooSmallException
+	 */
+	public Network createNetwork(final Normalization normalization, final long seed) throws NetworkTooSmallException, LayerTooSmallException {
+		final Network network = new Network(sizes, seed);
+		network.setNormalization(normalization);
+		try {
+			for(int i = 0; i < network.getNumberOfLayers()-2; i++) {
+				network.setActivation(i, hidden);
+			}
+			network.setActivation(network.getNumberOfLayers()-2, cost == Cost.CROSS_ENTROPY ? Activation.SOFTMAX : Activation.SIGMOID);
+		} catch (LayerDoesNotExistException e) {
+			throw new IllegalStateException(e);
+		}
+		network.setCost(cost);
+		network.scaleWeightsByFanIn();
+		return network;
+	}
+
+	public List<Integer> getSizes() {
+		return sizes;
+	}
+
+	public Activation getHidden() {
+		return hidden;
+	}
+
+	public Cost getCost() {
+		return cost;
+	}
+
+	public int getMiniBatchSize() {
+		return miniBatchSize;
+	}
+
+	public float getEta() {
+		return eta;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder layers = new StringBuilder();
+		for(int i = 0; i < sizes.size(); i++) {
+			layers.append(i == 0 ? "" : "-").append(sizes.get(i));
+		}
+		return String.format(Locale.ROOT, "%s %s %s batch %d eta %s", layers, hidden, cost, miniBatchSize, eta);
+	}
+}
@@ -0,0 +1,347 @@
+package neural.network.tuning;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import neural.network.Evaluator;
+import neural.network.Operations;
+import neural.network.Predictor;
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Dataset;
+import neural.network.data.ImageCache;
+import neural.network.data.ImageReader;
+import neural.network.data.Normalization;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+/**
+ * A hyperparameter search that trains many small networks at once on a
+ * shared ForkJoinPool and stops the poor ones early with asynchronous
+ * successive halving (ASHA).
+ *
+ * Training is divided into rungs of minEpochs, minEpochs * reduction,
+ * minEpochs * reduction^2, ... epochs, the last rung being maxEpochs. Every
+ * trial is evaluated on the validation set after each epoch, and its
+ * accuracy at the end of a rung is what it is ranked by there. Whenever a
+ * thread is free it promotes the best trial, from the highest rung down,
+ * that is in the top 1 / reduction of the trials to have finished its rung
+ * and has not been promoted yet, and otherwise starts the next
+ * configuration. No thread ever waits for a rung to fill up, and trials
+ * still waiting for a promotion when nothing is left to run are pruned.
+ *
+ * Every trial reads the same in-memory training set through its own
+ * permutation (see {@link Dataset#withOwnOrder}). Each trial is seeded from
+ * the sweep's seed and its position in the list, so a sweep on a pool of
+ * one thread always runs the same way; with more threads the promotions
+ * depend on which trials finish first.
+ */
+public class Sweep {
+
+	private final List<Hyperparameters> configurations;
+	private final int[] rungEpochs;
+	private final int reduction;
+	private final long seed;
+
+	/**
+	 * Search "configurations" with rungs from "minEpochs" to "maxEpochs"
+	 * epochs, keeping 1 / "reduction" of the trials at each rung.
+	 */
+	public Sweep(final List<Hyperparameters> configurations, final int minEpochs, final int maxEpochs, final int reduction,
+			final long seed) {
+		if(configurations.isEmpty()) {
+			throw new IllegalArgumentException("No configurations to search");
+		}
+		if(minEpochs <= 0 || maxEpochs < minEpochs) {
+			throw new IllegalArgumentException("Epochs must satisfy 0 < minEpochs <= maxEpochs: " + minEpochs + ", " + maxEpochs);
+		}
+		if(reduction < 2) {
+			throw new IllegalArgumentException("Reduction factor must be at least 2: " + reduction);
+		}
+		this.configurations = Collections.unmodifiableList(new ArrayList<Hyperparameters>(configurations));
+		final List<Integer> rungs = new ArrayList<Integer>();
+		for(long epochs = minEpochs; epochs < maxEpochs; epochs *= reduction) {
+			rungs.add((int) epochs);
+		}
+		rungs.add(maxEpochs);
+		this.rungEpochs = new int[rungs.size()];
+		for(int k = 0; k < rungEpochs.length; k++) {
+			rungEpochs[k] = rungs.get(k);
+		}
+		this.reduction = reduction;
+		this.seed = seed;
+	}
+
+	/**
+	 * Run the sweep on a new pool of "parallelism" threads, which is shut
+	 * down afterwards.
+	 *
+	 * @throws LayerDoesNotExistException
+	 * @throws NetworkTooSmallException if a configuration has too few layers
+	 * @throws LayerTooSmallException if a configuration has an empty layer
+	 * @throws InterruptedException
+	 */
+	public SweepReport run(final Dataset trainingData, final Dataset validationData, final int parallelism)
+			throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException, InterruptedException {
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return run(trainingData, validationData, pool);
+		} finally {
+			pool.shutdown();
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Run the sweep on "pool", training up to its parallelism trials at once
+	 * and evaluating them on the same pool. The training set is trained on
+	 * as it is, normalized or not, and the networks are created to expect
+	 * the same inputs; the validation set is normalized on the fly if it is
+	 * raw.
+	 *
+	 * @throws LayerDoesNotExistException
+	 * @throws NetworkTooSmallException if a configuration has too few layers
+	 * @throws LayerTooSmallException if a configuration has an empty layer
+	 * @throws InterruptedException
+	 */
+	public SweepReport run(final Dataset trainingData, final Dataset validationData, final ForkJoinPool pool)
+			throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException, InterruptedException {
+		final Normalization normalization = trainingData.getNormalization();
+		if(validationData.getNormalization() != null && !validationData.getNormalization().equals(normalization)) {
+			throw new IllegalArgumentException("Validation data was normalized differently from the training data");
+		}
+		final Schedule schedule = new Schedule(trainingData, validationData, pool);
+		final long start = System.nanoTime();
+		final List<Trial> trials = schedule.run();
+		return new SweepReport(trials, rungEpochs, reduction, pool.getParallelism(), System.nanoTime() - start);
+	}
+
+	public List<Hyperparameters> getConfigurations() {
+		return configurations;
+	}
+
+	/**
+	 * Return the number of epochs at the end of each rung.
+	 */
+	public int[] getRungEpochs() {
+		return rungEpochs.clone();
+	}
+
+	public int getReduction() {
+		return reduction;
+	}
+
+	/**
+	 * The state of one run of the sweep, guarded by its own lock.
+	 */
+	private class Schedule {
+
+		private final Dataset trainingData;
+		private final Dataset validationData;
+		private final ForkJoinPool pool;
+		//Every trial has an evaluator of its own over this predictor's scratch
+		private final Predictor predictor;
+		private final Trial[] trials = new Trial[configurations.size()];
+		private final boolean[] running = new boolean[configurations.size()];
+		//The trials to have finished each rung, best first
+		private final List<List<Trial>> finished = new ArrayList<List<Trial>>();
+		private int started;
+		private int active;
+		private Exception failure;
+
+		Schedule(final Dataset trainingData, final Dataset validationData, final ForkJoinPool pool) {
+			this.trainingData = trainingData;
+			this.validationData = validationData;
+			this.pool = pool;
+			this.predictor = new Predictor(pool, Predictor.DEFAULT_CHUNK_SIZE);
+			for(int k = 0; k < rungEpochs.length; k++) {
+				finished.add(new ArrayList<Trial>());
+			}
+		}
+
+		List<Trial> run() throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException, InterruptedException {
+			synchronized(this) {
+				schedule();
+				while(failure == null && active > 0) {
+					wait();
+				}
+				if(failure != null) {
+					//Let the jobs still running see the failure and stop
+					while(active > 0) {
+						wait();
+					}
+					rethrow(failure);
+				}
+			}
+			final List<Trial> result = new ArrayList<Trial>(Arrays.asList(trials));
+			for(Trial trial : result) {
+				if(trial.getStatus() == Trial.Status.PAUSED) {
+					trial.setStatus(Trial.Status.PRUNED);
+				}
+				trial.releaseWorkspace();
+			}
+			return result;
+		}
+
+		/**
+		 * Fill every free thread with a promotion or a new trial.
+		 */
+		private void schedule() {
+			while(failure == null && active < pool.getParallelism()) {
+				final Runnable job = nextJob();
+				if(job == null) {
+					return;
+				}
+				active++;
+				pool.execute(job);
+			}
+		}
+
+		private Runnable nextJob() {
+			for(int k = rungEpochs.length - 2; k >= 0; k--) {
+				final List<Trial> rung = finished.get(k);
+				final int promotable = rung.size() / reduction;
+				for(int i = 0; i < promotable; i++) {
+					final Trial trial = rung.get(i);
+					if(trial.getRung() == k && !running[trial.getId()]) {
+						running[trial.getId()] = true;
+						return job(trial.getId(), k + 1);
+					}
+				}
+			}
+			if(started < trials.length) {
+				running[started] = true;
+				return job(started++, 0);
+			}
+			return null;
+		}
+
+		private Runnable job(final int id, final int rung) {
+			return new Runnable() {
+				@Override
+				public void run() {
+					try {
+						train(id, rung);
+					} catch (LayerDoesNotExistException | NetworkTooSmallException | LayerTooSmallException | RuntimeException e) {
+						failed(e);
+					}
+				}
+			};
+		}
+
+		/**
+		 * Train trial "id", creating it first if need be, up to the end of
+		 * rung "rung".
+		 */
+		private void train(final int id, final int rung) throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException {
+			Trial trial;
+			synchronized(this) {
+				trial = trials[id];
+			}
+			if(trial == null) {
+				final Hyperparameters hyperparameters = configurations.get(id);
+				final Random random = new Random(seed + id);
+				trial = new Trial(id, hyperparameters, hyperparameters.createNetwork(trainingData.getNormalization(), random.nextLong()),
+						trainingData.withOwnOrder(), new Evaluator(predictor), random.nextLong(), rungEpochs[rungEpochs.length - 1]);
+			}
+			while(trial.getEpochs() < rungEpochs[rung]) {
+				synchronized(this) {
+					if(failure != null) {
+						active--;
+						notifyAll();
+						return;
+					}
+				}
+				final long start = System.nanoTime();
+				Operations.trainEpoch(trial.getNetwork(), trial.getData(), trial.getHyperparameters().getMiniBatchSize(),
+						trial.getOptimizer(), trial.getRandom(), trial.getWorkspace());
+				trial.recordEpoch((float) trial.getEvaluator().evaluate(trial.getNetwork(), validationData).getAccuracy());
+				trial.addTrainingNanos(System.nanoTime() - start);
+			}
+			completed(trial, rung);
+		}
+
+		private synchronized void completed(final Trial trial, final int rung) {
+			trials[trial.getId()] = trial;
+			running[trial.getId()] = false;
+			trial.setRung(rung);
+			if(rung == rungEpochs.length - 1) {
+				trial.setStatus(Trial.Status.COMPLETED);
+				trial.releaseWorkspace();
+			}
+			final List<Trial> results = finished.get(rung);
+			int i = 0;
+			while(i < results.size() && results.get(i).getAccuracy(rungEpochs[rung] - 1) >= trial.getAccuracy()) {
+				i++;
+			}
+			results.add(i, trial);
+			active--;
+			schedule();
+			notifyAll();
+		}
+
+		private synchronized void failed(final Exception e) {
+			if(failure == null) {
+				failure = e;
+			}
+			active--;
+			notifyAll();
+		}
+	}
+
+	private static void rethrow(final Exception e) throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException {
+		if(e instanceof LayerDoesNotExistException) {
+			throw (LayerDoesNotExistException) e;
+		}
+		if(e instanceof NetworkTooSmallException) {
+			throw (NetworkTooSmallException) e;
+		}
+		if(e instanceof LayerTooSmallException) {
+			throw (LayerTooSmallException) e;
+		}
+		throw (RuntimeException) e;
+	}
+
+	/**
+	 * Search a default grid of layer sizes, hidden activations, mini batch
+	 * sizes and learning rates, given training and validation sets as MNIST
+	 * CSV files or {@link ImageCache}s (.bin), on every available processor,
+	 * and print the ranked results, also writing them to "results" if given.
+	 *
+	 * Usage: Sweep &lt;train.csv|train.bin&gt; &lt;validation.csv|validation.bin&gt; [results]
+	 */
+	public static void main(String[] args) throws IOException, LayerDoesNotExistException, NetworkTooSmallException,
+			LayerTooSmallException, InterruptedException {
+		if(args.length < 2 || args.length > 3) {
+			System.err.println("Usage: Sweep <train.csv|train.bin> <validation.csv|validation.bin> [results]");
+			System.exit(1);
+		}
+		//Only the lit pixels are kept; unit range keeps black pixels at zero, so normalizing caches the
+		//scaled values of the lit pixels alone and both sets stay compressed
+		Dataset trainingData = read(new File(args[0])).compress().normalize(Normalization.unitRange());
+		Dataset validationData = read(new File(args[1])).compress().normalize(Normalization.unitRange());
+		List<List<Integer>> sizes = Arrays.asList(
+				Arrays.asList(new Integer(784), new Integer(30), new Integer(10)),
+				Arrays.asList(new Integer(784), new Integer(100), new Integer(10)),
+				Arrays.asList(new Integer(784), new Integer(100), new Integer(100), new Integer(10)));
+		List<Hyperparameters> grid = Hyperparameters.grid(sizes, new Activation[] {Activation.RELU, Activation.SIGMOID},
+				Cost.CROSS_ENTROPY, new int[] {10, 32}, new float[] {0.01f, 0.03f, 0.1f, 0.3f});
+		SweepReport report = new Sweep(grid, 1, 9, 3, 1L).run(trainingData, validationData, Runtime.getRuntime().availableProcessors());
+		System.out.print(report);
+		if(args.length == 3) {
+			report.write(new File(args[2]));
+		}
+	}
+
+	private static Dataset read(final File file) throws IOException {
+		return file.getName().endsWith(".bin") ? ImageCache.read(file) : ImageReader.readDataset(file.toURI().toURL());
+	}
+}
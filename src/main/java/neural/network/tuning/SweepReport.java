@@ -0,0 +1,115 @@
+package neural.network.tuning;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The outcome of a {@link Sweep}: every trial ranked by the highest rung it
+ * reached and then by its validation accuracy there, along with the epochs
+ * spent compared to training every configuration to the end.
+ */
+public class SweepReport {
+
+	private final List<Trial> ranking;
+	private final int[] rungEpochs;
+	private final int reduction;
+	private final int parallelism;
+	private final long elapsedNanos;
+
+	SweepReport(final List<Trial> trials, final int[] rungEpochs, final int reduction, final int parallelism, final long elapsedNanos) {
+		final List<Trial> ranking = new ArrayList<Trial>(trials);
+		Collections.sort(ranking, new Comparator<Trial>() {
+			@Override
+			public int compare(final Trial a, final Trial b) {
+				if(a.getRung() != b.getRung()) {
+					return Integer.compare(b.getRung(), a.getRung());
+				}
+				if(a.getAccuracy() != b.getAccuracy()) {
+					return Float.compare(b.getAccuracy(), a.getAccuracy());
+				}
+				return Integer.compare(a.getId(), b.getId());
+			}
+		});
+		this.ranking = Collections.unmodifiableList(ranking);
+		this.rungEpochs = rungEpochs.clone();
+		this.reduction = reduction;
+		this.parallelism = parallelism;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Return every trial, best first.
+	 */
+	public List<Trial> getRanking() {
+		return ranking;
+	}
+
+	public Trial getBest() {
+		return ranking.get(0);
+	}
+
+	/**
+	 * Return the number of epochs trained over all trials.
+	 */
+	public long getEpochs() {
+		long epochs = 0;
+		for(Trial trial : ranking) {
+			epochs += trial.getEpochs();
+		}
+		return epochs;
+	}
+
+	/**
+	 * Return the number of epochs training every configuration to the end
+	 * would have taken.
+	 */
+	public long getFullEpochs() {
+		return (long) ranking.size() * rungEpochs[rungEpochs.length - 1];
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		final StringBuilder rungs = new StringBuilder();
+		for(int k = 0; k < rungEpochs.length; k++) {
+			rungs.append(k == 0 ? "" : ", ").append(rungEpochs[k]);
+		}
+		builder.append(String.format(Locale.ROOT, "%d trials, rungs at %s epochs, reduction %d, %d threads: %.1fs, %d of %d epochs trained%n",
+				ranking.size(), rungs, reduction, parallelism, elapsedNanos / 1e9, getEpochs(), getFullEpochs()));
+		builder.append(String.format(Locale.ROOT, "%4s %4s %-48s %6s %9s %8s %8s%n", "rank", "id", "configuration", "epochs", "status",
+				"accuracy", "seconds"));
+		for(int i = 0; i < ranking.size(); i++) {
+			final Trial trial = ranking.get(i);
+			builder.append(String.format(Locale.ROOT, "%4d %4d %-48s %6d %9s %8.4f %8.2f%n", i + 1, trial.getId(),
+					trial.getHyperparameters(), trial.getEpochs(), trial.getStatus(), trial.getAccuracy(), trial.getTrainingNanos() / 1e9));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Write the ranked table to "file", replacing it.
+	 *
+	 * @throws IOException
+	 */
+	public void write(final File file) throws IOException {
+		final Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try {
+			out.write(toString());
+		} finally {
+			out.close();
+		}
+	}
+}
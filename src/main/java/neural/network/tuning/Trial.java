@@ -0,0 +1,168 @@
+package neural.network.tuning;
+
+import java.util.Random;
+
+import neural.network.Evaluator;
+import neural.network.Network;
+import neural.network.TrainingWorkspace;
+import neural.network.data.Dataset;
+import neural.network.optimizers.Sgd;
+
+/**
+ * One configuration being trained by a {@link Sweep}: its network, the
+ * state needed to carry on training it when it is promoted and the
+ * validation accuracy it reached after every epoch.
+ *
+ * A trial is only trained by one thread at a time, and the sweep hands it
+ * over between threads under its own lock, so its fields need no further
+ * synchronization.
+ */
+public class Trial {
+
+	public enum Status {
+		/** Waiting for a promotion that may never come. */
+		PAUSED,
+		/** Stopped at a rung by successive halving. */
+		PRUNED,
+		/** Trained for the sweep's full epoch budget. */
+		COMPLETED
+	}
+
+	private final int id;
+	private final Hyperparameters hyperparameters;
+	private final Network network;
+	private final Dataset data;
+	private final Sgd optimizer;
+	private final Random random;
+	private final float[] accuracies;
+	private TrainingWorkspace workspace;
+	private Evaluator evaluator;
+	private int epochs;
+	private int rung = -1;
+	private Status status = Status.PAUSED;
+	private long trainingNanos;
+
+	Trial(final int id, final Hyperparameters hyperparameters, final Network network, final Dataset data, final Evaluator evaluator,
+			final long seed, final int maxEpochs) {
+		this.id = id;
+		this.hyperparameters = hyperparameters;
+		this.network = network;
+		this.data = data;
+		this.evaluator = evaluator;
+		this.optimizer = new Sgd(hyperparameters.getEta());
+		this.random = new Random(seed);
+		this.accuracies = new float[maxEpochs];
+	}
+
+	/**
+	 * Return the trial's position in the sweep's list of configurations.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public Hyperparameters getHyperparameters() {
+		return hyperparameters;
+	}
+
+	/**
+	 * Return the network as far as it was trained.
+	 */
+	public Network getNetwork() {
+		return network;
+	}
+
+	public int getEpochs() {
+		return epochs;
+	}
+
+	/**
+	 * Return the highest rung the trial reached, -1 if it never finished the
+	 * first one.
+	 */
+	public int getRung() {
+		return rung;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Return the validation accuracy after "epoch" + 1 epochs of training.
+	 */
+	public float getAccuracy(final int epoch) {
+		if(epoch < 0 || epoch >= epochs) {
+			throw new IndexOutOfBoundsException("Epoch " + epoch + " of " + epochs);
+		}
+		return accuracies[epoch];
+	}
+
+	/**
+	 * Return the validation accuracy after the last epoch trained, or NaN if
+	 * there was none.
+	 */
+	public float getAccuracy() {
+		return epochs == 0 ? Float.NaN : accuracies[epochs - 1];
+	}
+
+	/**
+	 * Return the time spent training and evaluating.
+	 */
+	public long getTrainingNanos() {
+		return trainingNanos;
+	}
+
+	Dataset getData() {
+		return data;
+	}
+
+	Sgd getOptimizer() {
+		return optimizer;
+	}
+
+	Random getRandom() {
+		return random;
+	}
+
+	TrainingWorkspace getWorkspace() {
+		if(workspace == null) {
+			workspace = new TrainingWorkspace(network, hyperparameters.getMiniBatchSize());
+		}
+		return workspace;
+	}
+
+	/**
+	 * Return the trial's own evaluator. It is not shared with other trials,
+	 * whose jobs may run on the same thread while this one waits for its
+	 * predictions.
+	 */
+	Evaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Drop the training and evaluation buffers of a trial that will not be
+	 * trained again.
+	 */
+	void releaseWorkspace() {
+		workspace = null;
+		evaluator = null;
+	}
+
+	void recordEpoch(final float accuracy) {
+		accuracies[epochs++] = accuracy;
+	}
+
+	void setRung(final int rung) {
+		this.rung = rung;
+	}
+
+	void setStatus(final Status status) {
+		this.status = status;
+	}
+
+	void addTrainingNanos(final long nanos) {
+		trainingNanos += nanos;
+	}
+}
@@ -0,0 +1,260 @@
+package neural.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.linalg.Backend;
+import neural.network.linalg.Backends;
+import neural.network.linalg.BlockedBackend;
+import neural.network.linalg.SparseColumns;
+import neural.network.linalg.SparseKernels;
+
+public class BackpropTest {
+
+	private Network network;
+	private Image[] batch;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		//Initialize a deep network and a batch of random images
+		network = new Network(Arrays.asList(new Integer(784), new Integer(12), new Integer(8), new Integer(10)));
+		Random random = new Random(42);
+		batch = new Image[7];
+		for(int j = 0; j < batch.length; j++) {
+			batch[j] = new Image(random.nextInt(10));
+			for(int i = 0; i < 784; i++) {
+				batch[j].setPx(i, random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+			}
+		}
+	}
+	
+	@Test
+	public void testBatchMatchesPerImage() throws LayerDoesNotExistException {
+		System.out.println("Testing batched backpropagation...\n");
+		assertBatchMatchesPerImage();
+	}
+	
+	@Test
+	public void testBatchMatchesPerImageWithOtherActivations() throws LayerDoesNotExistException {
+		System.out.println("Testing batched backpropagation with rectified layers and a softmax output...\n");
+		network.setActivation(0, Activation.RELU);
+		network.setActivation(1, Activation.LEAKY_RELU);
+		network.setActivation(2, Activation.SOFTMAX);
+		network.setCost(Cost.CROSS_ENTROPY);
+		network.scaleWeightsByFanIn();
+		assertBatchMatchesPerImage();
+	}
+	
+	@Test
+	public void testGradientsMatchFiniteDifferences() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		System.out.println("Testing gradients of every activation and cost...\n");
+		Activation[] outputs = {Activation.SIGMOID, Activation.SOFTMAX, Activation.SIGMOID, Activation.SOFTMAX, Activation.TANH};
+		Cost[] costs = {Cost.QUADRATIC, Cost.CROSS_ENTROPY, Cost.CROSS_ENTROPY, Cost.QUADRATIC, Cost.QUADRATIC};
+		Random random = new Random(7);
+		FMatrixRMaj inputs = new FMatrixRMaj(6, 5);
+		FMatrixRMaj expected = new FMatrixRMaj(4, 5);
+		for(int i = 0; i < inputs.data.length; i++) {
+			inputs.data[i] = random.nextFloat() * 2 - 1;
+		}
+		for(int j = 0; j < 5; j++) {
+			expected.set(random.nextInt(4), j, 1f);
+		}
+		for(Activation hidden : Activation.values()) {
+			for(int c = 0; c < costs.length; c++) {
+				Network small = new Network(Arrays.asList(new Integer(6), new Integer(5), new Integer(4)), 13L);
+				small.setActivation(0, hidden);
+				small.setActivation(1, outputs[c]);
+				small.setCost(costs[c]);
+				small.scaleWeightsByFanIn();
+				List<List<FMatrixRMaj>> gradient = Operations.backpropBatch(small, inputs, expected);
+				for(int layer = 0; layer < 2; layer++) {
+					FMatrixRMaj weights = small.getWeightsInLayer(layer);
+					for(int i = 0; i < weights.getNumElements(); i++) {
+						float saved = weights.data[i];
+						weights.data[i] = saved + 0.005f;
+						double plus = totalCost(small, inputs, expected);
+						weights.data[i] = saved - 0.005f;
+						double minus = totalCost(small, inputs, expected);
+						weights.data[i] = saved;
+						double numeric = (plus - minus) / 0.01;
+						assertEquals(hidden + ", " + outputs[c] + ", " + costs[c], numeric, gradient.get(1).get(layer).data[i],
+								0.01 + 0.02 * Math.abs(numeric));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Return the cost summed over the columns of "inputs".
+	 */
+	private static double totalCost(final Network network, final FMatrixRMaj inputs, final FMatrixRMaj expected) throws LayerDoesNotExistException {
+		FMatrixRMaj[] activations = new FMatrixRMaj[network.getNumberOfLayers()];
+		activations[0] = inputs;
+		for(int i = 1; i < activations.length; i++) {
+			activations[i] = new FMatrixRMaj(network.getSizeOfLayers().get(i), inputs.getNumCols());
+		}
+		Operations.feedForwardBatch(network, activations);
+		FMatrixRMaj output = activations[activations.length-1];
+		return network.getCost().cost(network.getActivation(activations.length-2), output, expected) * (double) inputs.getNumCols();
+	}
+	
+	private void assertBatchMatchesPerImage() throws LayerDoesNotExistException {
+		FMatrixRMaj inputs = new FMatrixRMaj(784, batch.length);
+		FMatrixRMaj expected = new FMatrixRMaj(10, batch.length);
+		for(int j = 0; j < batch.length; j++) {
+			for(int i = 0; i < 784; i++) {
+				inputs.set(i, j, batch[j].getPx(i));
+			}
+			expected.set(batch[j].getLabel(), j, 1.0f);
+		}
+		List<List<FMatrixRMaj>> batched = Operations.backpropBatch(network, inputs, expected);
+		
+		for(int layer = 0; layer < network.getNumberOfLayers()-1; layer++) {
+			FMatrixRMaj sumB = new FMatrixRMaj(network.getBiasesInLayer(layer).getNumRows(), 1);
+			FMatrixRMaj sumW = new FMatrixRMaj(network.getWeightsInLayer(layer).getNumRows(), network.getWeightsInLayer(layer).getNumCols());
+			for(Image img : batch) {
+				List<List<FMatrixRMaj>> single = Operations.backprop(network, img);
+				for(int i = 0; i < sumB.getNumElements(); i++) {
+					sumB.data[i] += single.get(0).get(layer).data[i];
+				}
+				for(int i = 0; i < sumW.getNumElements(); i++) {
+					sumW.data[i] += single.get(1).get(layer).data[i];
+				}
+			}
+			for(int i = 0; i < sumB.getNumElements(); i++) {
+				assertEquals(sumB.data[i], batched.get(0).get(layer).data[i], 0.0001);
+			}
+			for(int i = 0; i < sumW.getNumElements(); i++) {
+				assertEquals(sumW.data[i], batched.get(1).get(layer).data[i], 0.001);
+			}
+		}
+	}
+	
+	@Test
+	public void testWorkspaceReuse() throws LayerDoesNotExistException {
+		System.out.println("Testing training workspace reuse...\n");
+		TrainingWorkspace workspace = new TrainingWorkspace(network, batch.length);
+		//Fill the workspace with a full batch before reusing it for a smaller one
+		Dataset data = Dataset.of(Arrays.asList(batch));
+		Operations.pack(data, 0, batch.length, workspace);
+		Operations.backpropBatch(network, workspace);
+		Operations.pack(data, 2, 3, workspace);
+		Operations.backpropBatch(network, workspace);
+		
+		TrainingWorkspace fresh = new TrainingWorkspace(network, 3);
+		Operations.pack(Dataset.of(Arrays.asList(batch).subList(2, 5)), 0, 3, fresh);
+		Operations.backpropBatch(network, fresh);
+		for(int layer = 0; layer < network.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(fresh.getNablaB(layer).data, workspace.getNablaB(layer).data, 0.0f);
+			assertArrayEquals(fresh.getNablaW(layer).data, workspace.getNablaW(layer).data, 0.0f);
+		}
+	}
+	
+	@Test
+	public void testBlockedBackendMatchesDefault() throws LayerDoesNotExistException {
+		System.out.println("Testing batched backpropagation on the blocked backend...\n");
+		Dataset data = Dataset.of(Arrays.asList(batch));
+		TrainingWorkspace expected = new TrainingWorkspace(network, batch.length);
+		Operations.pack(data, 0, batch.length, expected);
+		Operations.backpropBatch(network, expected);
+		
+		TrainingWorkspace actual = new TrainingWorkspace(network, batch.length);
+		Operations.pack(data, 0, batch.length, actual);
+		Backend previous = Backends.current();
+		try {
+			Backends.use(new BlockedBackend());
+			Operations.backpropBatch(network, actual);
+		} finally {
+			Backends.use(previous);
+		}
+		for(int layer = 0; layer < network.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(expected.getNablaB(layer).data, actual.getNablaB(layer).data, 0.0001f);
+			assertArrayEquals(expected.getNablaW(layer).data, actual.getNablaW(layer).data, 0.001f);
+		}
+	}
+	
+	@Test
+	public void testBoundBatchMatchesPacked() throws LayerDoesNotExistException {
+		System.out.println("Testing training on a pipeline batch in place...\n");
+		Dataset data = Dataset.of(Arrays.asList(batch));
+		TrainingWorkspace packed = new TrainingWorkspace(network, batch.length);
+		Operations.pack(data, 0, 4, packed);
+		Operations.backpropBatch(network, packed);
+		
+		FMatrixRMaj inputs = new FMatrixRMaj(784, 4);
+		FMatrixRMaj expected = new FMatrixRMaj(10, 4);
+		data.pack(0, 4, inputs, expected);
+		TrainingWorkspace bound = new TrainingWorkspace(network, batch.length);
+		bound.bind(inputs, expected);
+		Operations.backpropBatch(network, bound);
+		for(int layer = 0; layer < network.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(packed.getNablaB(layer).data, bound.getNablaB(layer).data, 0.0f);
+			assertArrayEquals(packed.getNablaW(layer).data, bound.getNablaW(layer).data, 0.0f);
+		}
+		
+		//Packing again must go back to the workspace's own buffers
+		Operations.pack(data, 0, 4, bound);
+		assertTrue(bound.getInputs() != inputs);
+	}
+	
+	@Test
+	public void testSparseFirstLayerMatchesDense() throws LayerDoesNotExistException {
+		System.out.println("Testing batched backpropagation on compressed inputs...\n");
+		Dataset data = Dataset.of(Arrays.asList(batch));
+		TrainingWorkspace dense = new TrainingWorkspace(network, batch.length);
+		Operations.pack(data, 0, batch.length, dense);
+		Operations.backpropBatch(network, dense);
+		
+		FMatrixRMaj inputs = new FMatrixRMaj(784, batch.length);
+		FMatrixRMaj expected = new FMatrixRMaj(10, batch.length);
+		data.pack(0, batch.length, inputs, expected);
+		SparseColumns compressed = new SparseColumns(784, batch.length, 0);
+		assertTrue(compressed.compress(inputs, 1f));
+		TrainingWorkspace sparse = new TrainingWorkspace(network, batch.length);
+		sparse.bind(inputs, expected, compressed);
+		Operations.backpropBatch(network, sparse);
+		for(int layer = 0; layer < network.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(dense.getNablaB(layer).data, sparse.getNablaB(layer).data, 0.0001f);
+			assertArrayEquals(dense.getNablaW(layer).data, sparse.getNablaW(layer).data, 0.001f);
+		}
+	}
+	
+	@Test
+	public void testCompressedDatasetPacksSparse() throws LayerDoesNotExistException {
+		System.out.println("Testing batched backpropagation on a compressed dataset...\n");
+		Dataset data = Dataset.of(Arrays.asList(batch));
+		TrainingWorkspace dense = new TrainingWorkspace(network, batch.length);
+		Operations.pack(data, 0, batch.length, dense);
+		Operations.backpropBatch(network, dense);
+		
+		//Packed straight into compressed form if the batch is sparse enough for the backend in use
+		Dataset compressed = data.compress();
+		TrainingWorkspace sparse = new TrainingWorkspace(network, batch.length);
+		Operations.pack(compressed, 0, batch.length, sparse);
+		assertEquals(data.getDensity() <= SparseKernels.densityThreshold(Backends.current()), sparse.sparseInputs != null);
+		Operations.backpropBatch(network, sparse);
+		for(int layer = 0; layer < network.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(dense.getNablaB(layer).data, sparse.getNablaB(layer).data, 0.0001f);
+			assertArrayEquals(dense.getNablaW(layer).data, sparse.getNablaW(layer).data, 0.001f);
+		}
+		//The dense inputs are still there when asked for
+		assertArrayEquals(dense.getInputs().data, sparse.getInputs().data, 0f);
+	}
+}
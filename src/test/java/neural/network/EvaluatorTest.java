@@ -0,0 +1,113 @@
+package neural.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.metrics.Evaluation;
+
+public class EvaluatorTest {
+
+	private Network network;
+	private ForkJoinPool pool;
+	private Dataset data;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		network = new Network(Arrays.asList(new Integer(784), new Integer(20), new Integer(10)), 3L);
+		pool = new ForkJoinPool(4);
+		//More than one Predictor chunk, so that the evaluation is split across threads
+		data = randomDataset(3 * Predictor.DEFAULT_CHUNK_SIZE + 17, new Random(5));
+	}
+	
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+	
+	@Test
+	public void testMatchesSequential() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing parallel evaluation against feedForward...\n");
+		//Build the expected confusion matrix one image at a time
+		int[][] expected = new int[10][10];
+		FMatrixRMaj input = new FMatrixRMaj(Image.SIZE, 1);
+		for(int n = 0; n < data.size(); n++) {
+			data.pack(n, 1, input, null);
+			expected[data.getLabel(n)][Operations.maxIndex(Operations.feedForward(input, network))]++;
+		}
+		
+		Evaluation evaluation = new Evaluator(network, pool).evaluate(data);
+		int correct = 0;
+		for(int actual = 0; actual < 10; actual++) {
+			correct += expected[actual][actual];
+			for(int predicted = 0; predicted < 10; predicted++) {
+				assertEquals(expected[actual][predicted], evaluation.getCount(actual, predicted));
+			}
+		}
+		assertEquals(data.size(), evaluation.getTotal());
+		assertEquals(correct, evaluation.getCorrect());
+		assertEquals(correct, Operations.evaluate(data, network));
+	}
+	
+	@Test
+	public void testPrecisionAndRecall() {
+		System.out.println("Testing precision and recall...\n");
+		Evaluation evaluation = new Evaluation(3);
+		evaluation.record(0, 0);
+		evaluation.record(0, 0);
+		evaluation.record(0, 1);
+		evaluation.record(1, 1);
+		evaluation.record(1, 0);
+		evaluation.record(1, 1);
+		assertEquals(4 / 6.0, evaluation.getAccuracy(), 1e-12);
+		assertEquals(2 / 3.0, evaluation.getPrecision(0), 1e-12);
+		assertEquals(2 / 3.0, evaluation.getRecall(0), 1e-12);
+		assertEquals(2 / 3.0, evaluation.getPrecision(1), 1e-12);
+		assertEquals(2 / 3.0, evaluation.getRecall(1), 1e-12);
+		//Never predicted nor seen
+		assertEquals(Double.NaN, evaluation.getPrecision(2), 0.0);
+		assertEquals(Double.NaN, evaluation.getRecall(2), 0.0);
+		System.out.println(evaluation);
+		evaluation.clear();
+		assertEquals(0, evaluation.getTotal());
+		assertEquals(0, evaluation.getCount(0, 0));
+	}
+	
+	@Test
+	public void testSampleAndReuse() throws LayerDoesNotExistException {
+		System.out.println("Testing sampled evaluation...\n");
+		Evaluator evaluator = new Evaluator(network, pool);
+		Evaluation result = new Evaluation(10);
+		evaluator.evaluateSample(data, 100, new Random(1), result);
+		assertEquals(100, result.getTotal());
+		//A sample larger than the dataset evaluates all of it
+		evaluator.evaluateSample(data, data.size() + 1, new Random(1), result);
+		assertEquals(data.size(), result.getTotal());
+		assertEquals(evaluator.evaluate(data).getCorrect(), result.getCorrect());
+	}
+	
+	private static Dataset randomDataset(final int count, final Random random) {
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			labels[n] = (byte) random.nextInt(10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				pixels[n * Image.SIZE + i] = (byte) random.nextInt(256);
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+}
@@ -0,0 +1,155 @@
+package neural.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.data.Normalization;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class ModelFileTest {
+	
+	private static final List<Integer> SIZES = Arrays.asList(new Integer(784), new Integer(12), new Integer(7), new Integer(10));
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testSaveAndLoad() throws NetworkTooSmallException, LayerTooSmallException, IOException, LayerDoesNotExistException {
+		System.out.println("Testing model save and load...\n");
+		Network network = new Network(SIZES, 21L);
+		File file = new File(folder.getRoot(), "models/network.model");
+		ModelFile.save(network, 4, file);
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+		
+		Network loaded = ModelFile.load(file);
+		assertEquals(4, ModelFile.readEpochs(file));
+		assertEquals(SIZES, loaded.getSizeOfLayers());
+		for(int layer = 0; layer < SIZES.size()-1; layer++) {
+			assertArrayEquals(network.getWeightsInLayer(layer).data, loaded.getWeightsInLayer(layer).data, 0.0f);
+			assertArrayEquals(network.getBiasesInLayer(layer).data, loaded.getBiasesInLayer(layer).data, 0.0f);
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testNotAModel() throws IOException {
+		System.out.println("Testing model load on a malformed file...\n");
+		File file = folder.newFile("bogus.model");
+		FileWriter writer = new FileWriter(file);
+		writer.write("not a model at all");
+		writer.close();
+		ModelFile.load(file);
+	}
+	
+	@Test
+	public void testCheckpointAndResume() throws NetworkTooSmallException, LayerTooSmallException, IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing checkpoint and resume...\n");
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < 30; n++) {
+			Image img = new Image(n % 10);
+			img.setPx(n, 1);
+			images.add(img);
+		}
+		Dataset trainingData = Dataset.of(images);
+		File file = new File(folder.getRoot(), "checkpoint.model");
+		
+		//Stop after 3 of 5 epochs, checkpointing every 2 and at the end of the run
+		Checkpointer checkpointer = new Checkpointer(file, 2);
+		Network network = checkpointer.resume(SIZES);
+		assertEquals(0, checkpointer.getEpochsCompleted());
+		Operations.stochasticGradientDescent(network, trainingData, null, 3, 10, 1.0f, checkpointer);
+		assertEquals(3, ModelFile.readEpochs(file));
+		
+		Checkpointer resumed = new Checkpointer(file, 2);
+		Network restored = resumed.resume(SIZES);
+		assertEquals(3, resumed.getEpochsCompleted());
+		assertArrayEquals(network.getWeightsInLayer(0).data, restored.getWeightsInLayer(0).data, 0.0f);
+		Operations.stochasticGradientDescent(restored, trainingData, null, 5, 10, 1.0f, resumed);
+		assertEquals(5, ModelFile.readEpochs(file));
+	}
+	
+	@Test
+	public void testNormalizationIsSaved() throws NetworkTooSmallException, LayerTooSmallException, IOException, LayerDoesNotExistException {
+		System.out.println("Testing model save and load with a normalization...\n");
+		Network network = new Network(SIZES, 22L);
+		float[] offsets = new float[784];
+		float[] scales = new float[784];
+		for(int i = 0; i < 784; i++) {
+			offsets[i] = i * 0.1f;
+			scales[i] = 1f / (i + 1);
+		}
+		network.setNormalization(new Normalization(offsets, scales));
+		File file = new File(folder.getRoot(), "normalized.model");
+		ModelFile.save(network, 2, file);
+		Network loaded = ModelFile.load(file);
+		assertEquals(network.getNormalization(), loaded.getNormalization());
+		assertEquals(2, ModelFile.readEpochs(file));
+		assertArrayEquals(network.getWeightsInLayer(2).data, loaded.getWeightsInLayer(2).data, 0.0f);
+		assertEquals(network.getNormalization(), loaded.copy().getNormalization());
+	}
+	
+	@Test
+	public void testActivationsAreSaved() throws NetworkTooSmallException, LayerTooSmallException, IOException, LayerDoesNotExistException {
+		System.out.println("Testing model save and load with activations and a cost...\n");
+		Network network = new Network(Arrays.asList(new Integer(784), new Integer(16), new Integer(12), new Integer(10)), 24L);
+		network.setActivation(0, Activation.LEAKY_RELU);
+		network.setActivation(1, Activation.TANH);
+		network.setActivation(2, Activation.SOFTMAX);
+		network.setCost(Cost.CROSS_ENTROPY);
+		File file = new File(folder.getRoot(), "activations.model");
+		ModelFile.save(network, file);
+		Network loaded = ModelFile.load(file);
+		for(int i = 0; i < 3; i++) {
+			assertEquals(network.getActivation(i), loaded.getActivation(i));
+			assertArrayEquals(network.getWeightsInLayer(i).data, loaded.getWeightsInLayer(i).data, 0.0f);
+		}
+		assertEquals(Cost.CROSS_ENTROPY, loaded.getCost());
+		assertEquals(Cost.CROSS_ENTROPY, loaded.copy().getCost());
+		assertEquals(Activation.TANH, loaded.copy().getActivation(1));
+	}
+	
+	@Test
+	public void testLoadVersion1() throws NetworkTooSmallException, LayerTooSmallException, IOException, LayerDoesNotExistException {
+		System.out.println("Testing model load of the original format...\n");
+		Network network = new Network(Arrays.asList(new Integer(3), new Integer(2)), 23L);
+		ByteBuffer buffer = ByteBuffer.allocate(16 + 8 + 4 * 8).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(ModelFile.MAGIC).putInt(ModelFile.VERSION_WITHOUT_NORMALIZATION).putInt(7).putInt(2).putInt(3).putInt(2);
+		for(float weight : network.getWeightsInLayer(0).data) {
+			buffer.putFloat(weight);
+		}
+		for(float bias : network.getBiasesInLayer(0).data) {
+			buffer.putFloat(bias);
+		}
+		File file = folder.newFile("version1.model");
+		Files.write(file.toPath(), buffer.array());
+		Network loaded = ModelFile.load(file);
+		assertEquals(7, ModelFile.readEpochs(file));
+		assertNull(loaded.getNormalization());
+		assertEquals(Activation.SIGMOID, loaded.getActivation(0));
+		assertEquals(Cost.QUADRATIC, loaded.getCost());
+		assertArrayEquals(network.getWeightsInLayer(0).data, loaded.getWeightsInLayer(0).data, 0.0f);
+		assertArrayEquals(network.getBiasesInLayer(0).data, loaded.getBiasesInLayer(0).data, 0.0f);
+	}
+}
@@ -0,0 +1,178 @@
+package neural.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import neural.network.data.Dataset;
+import neural.network.data.DatasetSource;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.metrics.Evaluation;
+import neural.network.metrics.TrainingMonitor;
+
+public class ModelSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private Network network;
+	private float[][] samples;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		network = new Network(Arrays.asList(new Integer(784), new Integer(12), new Integer(10)), 3L);
+		Random random = new Random(1);
+		samples = new float[16][784];
+		for(float[] sample : samples) {
+			for(int i = 0; i < sample.length; i++) {
+				sample[i] = random.nextFloat();
+			}
+		}
+	}
+	
+	@Test
+	public void testSnapshotIsIsolated() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing snapshot isolation...\n");
+		ModelSnapshot snapshot = ModelSnapshot.of(network);
+		float[] before = outputs(snapshot.predictBatch(samples));
+		//Changing the network, or a network taken from the snapshot, leaves the snapshot alone
+		network.axpyWeights(0, 10f, network.getWeightsInLayer(0).copy());
+		Network copy = snapshot.toNetwork();
+		copy.axpyBiases(1, 10f, new FMatrixRMaj(10, 1, true, new float[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1}));
+		assertArrayEquals(before, outputs(snapshot.predictBatch(samples)), 0f);
+		assertTrue(!Arrays.equals(before, outputs(ModelSnapshot.of(network).predictBatch(samples))));
+	}
+	
+	@Test
+	public void testPublish() throws NetworkTooSmallException, LayerTooSmallException {
+		System.out.println("Testing snapshot publication...\n");
+		ModelHolder holder = new ModelHolder(network);
+		assertEquals(0, holder.getVersion());
+		ModelSnapshot first = holder.get();
+		assertEquals(1, holder.publish(network).getVersion());
+		assertEquals(2, holder.publish(network).getVersion());
+		assertEquals(0, first.getVersion());
+		try {
+			holder.publish(new Network(Arrays.asList(new Integer(784), new Integer(11), new Integer(10))));
+			throw new AssertionError("Published a network of another shape");
+		} catch (IllegalArgumentException e) {
+			assertEquals(2, holder.getVersion());
+		}
+	}
+	
+	@Test
+	public void testServeWhileTraining() throws Exception {
+		System.out.println("Testing reads during training...\n");
+		final ModelHolder holder = new ModelHolder(network);
+		final AtomicBoolean training = new AtomicBoolean(true);
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		final long[] versionsSeen = new long[1];
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					long last = -1;
+					while(training.get()) {
+						//Two passes over one snapshot must agree exactly however training moves on
+						ModelSnapshot snapshot = holder.get();
+						assertTrue(snapshot.getVersion() >= last);
+						last = snapshot.getVersion();
+						assertArrayEquals(outputs(snapshot.predictBatch(samples)), outputs(snapshot.predictBatch(samples)), 0f);
+						versionsSeen[0] = last;
+					}
+				} catch (Throwable e) {
+					synchronized(failures) {
+						failures.add(e);
+					}
+				}
+			}
+		});
+		reader.start();
+		TrainingMonitor monitor = new TrainingMonitor(1);
+		monitor.addListener(new SnapshotPublisher(network, holder, 2));
+		try {
+			Operations.stochasticGradientDescent(network, new DatasetSource(randomDataset(60, new Random(2))), null, 3, 10, 1f, null,
+					null, monitor);
+		} finally {
+			training.set(false);
+			reader.join();
+		}
+		assertEquals(Arrays.asList(), failures);
+		//Six batches per epoch: three publications during it and one at its end
+		assertEquals(3 * 4, holder.getVersion());
+		assertArrayEquals(outputs(ModelSnapshot.of(network).predictBatch(samples)), outputs(holder.get().predictBatch(samples)), 0f);
+	}
+	
+	@Test
+	public void testSaveAndEvaluate() throws IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing snapshot save and evaluation...\n");
+		ModelSnapshot snapshot = ModelSnapshot.of(network);
+		File file = folder.newFile("snapshot.model");
+		snapshot.save(file);
+		Network loaded = ModelFile.load(file);
+		assertArrayEquals(outputs(snapshot.predictBatch(samples)), outputs(ModelSnapshot.of(loaded).predictBatch(samples)), 0f);
+		Dataset data = randomDataset(30, new Random(4));
+		assertEquals(Operations.evaluate(data, network), snapshot.evaluate(data).getCorrect());
+	}
+	
+	@Test
+	public void testLongLivedPredictorServesEverySnapshot() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing one predictor and evaluator across published snapshots...\n");
+		ModelHolder holder = new ModelHolder(network);
+		Predictor predictor = new Predictor(ForkJoinPool.commonPool(), 8);
+		Evaluator evaluator = new Evaluator(predictor);
+		Dataset data = randomDataset(30, new Random(5));
+		Evaluation evaluation = new Evaluation(10);
+		for(int version = 0; version < 3; version++) {
+			ModelSnapshot snapshot = holder.get();
+			Predictions predictions = new Predictions(samples.length, 10);
+			snapshot.predictBatch(predictor, samples, samples.length, predictions);
+			assertArrayEquals(outputs(snapshot.predictBatch(samples)), outputs(predictions), 0f);
+			snapshot.evaluate(evaluator, data, evaluation);
+			assertEquals(snapshot.evaluate(data).getCorrect(), evaluation.getCorrect());
+			network.axpyWeights(0, 1f, network.getWeightsInLayer(0).copy());
+			holder.publish(network);
+		}
+	}
+	
+	private static float[] outputs(final Predictions predictions) {
+		float[] outputs = new float[predictions.size() * predictions.getNumberOfOutputs()];
+		float[] row = new float[predictions.getNumberOfOutputs()];
+		for(int n = 0; n < predictions.size(); n++) {
+			predictions.getOutputs(n, row);
+			System.arraycopy(row, 0, outputs, n * row.length, row.length);
+		}
+		return outputs;
+	}
+	
+	private static Dataset randomDataset(final int count, final Random random) {
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			labels[n] = (byte) random.nextInt(10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				pixels[n * Image.SIZE + i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+}
@@ -2,7 +2,10 @@ package neural.network;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -62,6 +65,62 @@ public class NetworkTests {
 		assertEquals(updatedWeights.get(0), network.getWeightsInLayer(0).get(0,0), 0.0);
 	}
 	
+	@Test
+	public void testAxpyInPlace() throws NetworkTooSmallException, LayerDoesNotExistException, LayerTooSmallException, InvalidInputException {
+		System.out.println("Testing in-place parameter updates...\n");
+		Network network = new Network(Arrays.asList(new Integer(3), new Integer(2)), 5L);
+		FMatrixRMaj weights = network.getWeightsInLayer(0);
+		FMatrixRMaj before = weights.copy();
+		FMatrixRMaj gradient = new FMatrixRMaj(2, 3);
+		Arrays.fill(gradient.data, 2f);
+		network.axpyWeights(0, -0.5f, gradient);
+		assertSame(weights, network.getWeightsInLayer(0));
+		assertEquals(before.get(1, 2) - 1f, weights.get(1, 2), 1e-6);
+		
+		FMatrixRMaj biases = network.getBiasesInLayer(0).copy();
+		FMatrixRMaj biasGradient = new FMatrixRMaj(2, 1);
+		Arrays.fill(biasGradient.data, 1f);
+		network.axpyBiases(0, 3f, biasGradient);
+		assertEquals(biases.get(0) + 3f, network.getBiasesInLayer(0).get(0), 1e-6);
+	}
+	
+	@Test(expected = InvalidInputException.class)
+	public void testAxpyWrongShape() throws NetworkTooSmallException, LayerDoesNotExistException, LayerTooSmallException, InvalidInputException {
+		System.out.println("Testing in-place update shape checks...\n");
+		Network network = new Network(Arrays.asList(new Integer(3), new Integer(2)));
+		network.axpyWeights(0, 1f, new FMatrixRMaj(3, 2));
+	}
+	
+	@Test
+	public void testFlatParameters() throws NetworkTooSmallException, LayerDoesNotExistException, LayerTooSmallException {
+		System.out.println("Testing flat parameter copies...\n");
+		Network network = new Network(Arrays.asList(new Integer(4), new Integer(3), new Integer(2)), 9L);
+		assertEquals(4*3 + 3 + 3*2 + 2, network.getNumberOfParameters());
+		float[] parameters = new float[network.getNumberOfParameters()];
+		network.copyParameters(parameters);
+		assertEquals(network.getWeightsInLayer(0).get(1, 2), parameters[1*4 + 2], 0.0);
+		assertEquals(network.getBiasesInLayer(0).get(2), parameters[12 + 2], 0.0);
+		assertEquals(network.getWeightsInLayer(1).get(1, 0), parameters[15 + 3], 0.0);
+		assertEquals(network.getBiasesInLayer(1).get(1), parameters[21 + 1], 0.0);
+		
+		Network snapshot = network.copy();
+		parameters[0] = 42f;
+		network.setParameters(parameters);
+		assertEquals(42f, network.getWeightsInLayer(0).get(0, 0), 0.0);
+		assertNotEquals(42f, snapshot.getWeightsInLayer(0).get(0, 0), 0.0);
+		assertNotSame(network.getBiasesInLayer(1), snapshot.getBiasesInLayer(1));
+		
+		//Buffers are read and written from their position on
+		FloatBuffer buffer = FloatBuffer.allocate(network.getNumberOfParameters() + 2);
+		buffer.put(-1f);
+		network.copyParameters(buffer);
+		assertEquals(1 + network.getNumberOfParameters(), buffer.position());
+		buffer.position(1);
+		snapshot.setParameters(buffer);
+		assertEquals(42f, snapshot.getWeightsInLayer(0).get(0, 0), 0.0);
+		assertEquals(network.getBiasesInLayer(1).get(1), snapshot.getBiasesInLayer(1).get(1), 0.0);
+	}
+	
 	@Test(expected = LayerDoesNotExistException.class)
 	public void testLayerDoesNotExist() throws NetworkTooSmallException, LayerDoesNotExistException, LayerTooSmallException {
 		List<Integer> sizes = Arrays.asList(new Integer(3), new Integer(2));
@@ -0,0 +1,71 @@
+package neural.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.ParallelTrainer.Mode;
+import neural.network.data.Image;
+import neural.network.data.Stripes;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class ParallelTrainerTest {
+
+	private static final List<Integer> SIZES = Arrays.asList(new Integer(784), new Integer(16), new Integer(10));
+	private List<Image> trainingData;
+	
+	@Before
+	public void setUp() {
+		trainingData = Stripes.images(200, 7L);
+	}
+	
+	@Test
+	public void testSynchronousIsDeterministic() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		System.out.println("Testing synchronous parallel training is deterministic...\n");
+		Network first = train(Mode.SYNCHRONOUS, 4);
+		Network second = train(Mode.SYNCHRONOUS, 4);
+		for(int layer = 0; layer < first.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(first.getWeightsInLayer(layer).data, second.getWeightsInLayer(layer).data, 0.0f);
+			assertArrayEquals(first.getBiasesInLayer(layer).data, second.getBiasesInLayer(layer).data, 0.0f);
+		}
+	}
+	
+	@Test
+	public void testSynchronousMatchesSingleThread() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		System.out.println("Testing synchronous parallel training against one thread...\n");
+		Network parallel = train(Mode.SYNCHRONOUS, 3);
+		Network single = train(Mode.SYNCHRONOUS, 1);
+		for(int layer = 0; layer < parallel.getNumberOfLayers()-1; layer++) {
+			assertArrayEquals(single.getWeightsInLayer(layer).data, parallel.getWeightsInLayer(layer).data, 0.001f);
+			assertArrayEquals(single.getBiasesInLayer(layer).data, parallel.getBiasesInLayer(layer).data, 0.001f);
+		}
+	}
+	
+	@Test
+	public void testHogwildLearns() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException, InvalidInputException {
+		System.out.println("Testing Hogwild parallel training...\n");
+		Network network = train(Mode.HOGWILD, 4);
+		int correct = Operations.evaluate(trainingData, network);
+		System.out.println("Result: " + correct + " / " + trainingData.size() + "\n");
+		assertTrue(correct > trainingData.size() / 2);
+	}
+	
+	private Network train(final Mode mode, final int threads) throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		Network network = new Network(SIZES, 11L);
+		ParallelTrainer trainer = new ParallelTrainer(threads, mode, 5L);
+		try {
+			trainer.train(network, trainingData, 10, 10, 3.0f);
+		} finally {
+			trainer.shutdown();
+		}
+		return network;
+	}
+}
@@ -0,0 +1,160 @@
+package neural.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.data.Dataset;
+import neural.network.data.Image;
+import neural.network.data.Normalization;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class PredictorTest {
+
+	private Network network;
+	private ForkJoinPool pool;
+	private Predictor predictor;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		network = new Network(Arrays.asList(new Integer(784), new Integer(20), new Integer(10)), 3L);
+		pool = new ForkJoinPool(4);
+		//Small chunks so that the batches below are split across threads
+		predictor = new Predictor(network, pool, 16);
+	}
+	
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+	
+	@Test
+	public void testArrayBatchMatchesFeedForward() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing batched prediction on arrays...\n");
+		Random random = new Random(9);
+		float[][] samples = new float[100][784];
+		for(float[] sample : samples) {
+			for(int i = 0; i < sample.length; i++) {
+				sample[i] = random.nextFloat() * 0.1f - 0.05f;
+			}
+		}
+		Predictions predictions = predictor.predictBatch(samples);
+		assertEquals(samples.length, predictions.size());
+		for(int n = 0; n < samples.length; n++) {
+			FMatrixRMaj expected = Operations.feedForward(new FMatrixRMaj(784, 1, true, samples[n]), network);
+			assertEquals(Operations.maxIndex(expected), predictions.getLabel(n));
+			for(int k = 0; k < 10; k++) {
+				assertEquals(expected.get(k, 0), predictions.getOutput(n, k), 0.00001);
+			}
+		}
+	}
+	
+	@Test
+	public void testDatasetBatchMatchesFeedForward() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing batched prediction on a dataset...\n");
+		Random random = new Random(10);
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < 50; n++) {
+			Image img = new Image(n % 10);
+			for(int i = 0; i < 784; i++) {
+				img.setPx(i, random.nextInt(2));
+			}
+			images.add(img);
+		}
+		Dataset dataset = Dataset.of(images);
+		Predictions predictions = new Predictions(64, 10);
+		predictor.predictBatch(dataset, predictions);
+		assertEquals(50, predictions.size());
+		for(int n = 0; n < images.size(); n++) {
+			FMatrixRMaj expected = Operations.feedForward(images.get(n).getVector(), network);
+			assertEquals(Operations.maxIndex(expected), predictions.getLabel(n));
+			assertEquals(expected.get(3, 0), predictions.getOutput(n, 3), 0.00001);
+		}
+	}
+	
+	@Test
+	public void testNetworkNormalization() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing batched prediction through a normalization...\n");
+		Random random = new Random(11);
+		List<Image> images = new ArrayList<Image>();
+		float[][] samples = new float[40][784];
+		for(int n = 0; n < 40; n++) {
+			Image img = new Image(n % 10);
+			for(int i = 0; i < 784; i++) {
+				img.setPx(i, random.nextInt(3) == 0 ? random.nextInt(256) : 0);
+				samples[n][i] = img.getPx(i);
+			}
+			images.add(img);
+		}
+		Dataset raw = Dataset.of(images);
+		network.setNormalization(Normalization.unitRange());
+		Predictions fromRaw = predictor.predictBatch(raw);
+		Predictions fromNormalized = predictor.predictBatch(raw.normalize(Normalization.unitRange()));
+		Predictions fromCompressed = predictor.predictBatch(raw.compress().normalize(Normalization.unitRange()));
+		Predictions fromArrays = predictor.predictBatch(samples);
+		for(int n = 0; n < images.size(); n++) {
+			FMatrixRMaj input = images.get(n).getVector();
+			for(int i = 0; i < 784; i++) {
+				input.data[i] /= 255f;
+			}
+			FMatrixRMaj expected = Operations.feedForward(input, network);
+			for(int k = 0; k < 10; k++) {
+				assertEquals(expected.get(k, 0), fromRaw.getOutput(n, k), 0.00001);
+				assertEquals(expected.get(k, 0), fromNormalized.getOutput(n, k), 0.00001);
+				assertEquals(expected.get(k, 0), fromCompressed.getOutput(n, k), 0.00001);
+				assertEquals(expected.get(k, 0), fromArrays.getOutput(n, k), 0.00001);
+			}
+		}
+	}
+	
+	@Test
+	public void testSharedPredictorRunsAnyNetwork() throws InvalidInputException, LayerDoesNotExistException, NetworkTooSmallException,
+			LayerTooSmallException {
+		System.out.println("Testing one unbound predictor on networks of different shapes...\n");
+		Network deeper = new Network(Arrays.asList(new Integer(784), new Integer(64), new Integer(32), new Integer(10)), 4L);
+		Predictor shared = new Predictor(pool, 16);
+		Random random = new Random(12);
+		float[][] samples = new float[40][784];
+		for(float[] sample : samples) {
+			for(int i = 0; i < sample.length; i++) {
+				sample[i] = random.nextFloat() * 0.1f - 0.05f;
+			}
+		}
+		//Alternate so every thread's scratch is reshaped between the two networks
+		for(int round = 0; round < 2; round++) {
+			for(Network model : Arrays.asList(network, deeper)) {
+				Predictions predictions = new Predictions(samples.length, 10);
+				shared.predictBatch(model, samples, samples.length, predictions);
+				for(int n = 0; n < samples.length; n++) {
+					FMatrixRMaj expected = Operations.feedForward(new FMatrixRMaj(784, 1, true, samples[n]), model);
+					assertEquals(expected.get(7, 0), predictions.getOutput(n, 7), 0.00001);
+				}
+			}
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedNormalization() throws LayerDoesNotExistException {
+		System.out.println("Testing batched prediction on differently normalized data...\n");
+		Dataset data = Dataset.of(Arrays.asList(new Image(1), new Image(2)));
+		predictor.predictBatch(data.normalize(Normalization.unitRange()));
+	}
+	
+	@Test(expected = InvalidInputException.class)
+	public void testWrongInputSize() throws InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing batched prediction on a malformed input...\n");
+		predictor.predictBatch(new float[][] {new float[784], new float[783]});
+	}
+}
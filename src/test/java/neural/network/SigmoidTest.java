@@ -1,6 +1,7 @@
 package neural.network;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.ejml.data.FMatrixRMaj;
 import org.junit.Test;
@@ -42,4 +43,31 @@ public class SigmoidTest {
 		assertEquals(0.25, output.get(5,0), 0.000001);
 		assertEquals(0.196612, output.get(6,0), 0.000001);
 	}
+	
+	@Test
+	public void testSigmoidPrimeOfActivation() {
+		System.out.println("Testing Sigmoid Prime from activations...\n");
+		float z[] = {4.0f, 1.0f, 0.25f, 0.0f, -0.5f, -3.0f};
+		float a[] = z.clone();
+		SigmoidKernels.sigmoid(a, a.length);
+		float expected[] = new float[z.length];
+		SigmoidKernels.sigmoidPrime(z, expected, z.length);
+		float delta[] = {1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f};
+		SigmoidKernels.multSigmoidPrimeOfActivation(delta, a, delta.length);
+		for (int i = 0; i < z.length; i++) {
+			assertEquals(expected[i], delta[i], 0.000001);
+		}
+	}
+	
+	@Test
+	public void testSigmoidTableErrorBound() {
+		System.out.println("Testing Sigmoid lookup table...\n");
+		float worst = 0f;
+		for (float x = -40f; x <= 40f; x += 0.0007f) {
+			float exact = (float) (1.0 / (1.0 + Math.exp(-x)));
+			worst = Math.max(worst, Math.abs(exact - SigmoidKernels.sigmoidTable(x)));
+		}
+		System.out.println("Largest error: " + worst + "\n");
+		assertTrue(worst <= SigmoidKernels.TABLE_ERROR_BOUND);
+	}
 }
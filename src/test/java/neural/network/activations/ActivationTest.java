@@ -0,0 +1,99 @@
+package neural.network.activations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Test;
+
+import neural.network.Network;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.linalg.Backends;
+
+public class ActivationTest {
+
+	@Test
+	public void testElementwise() {
+		System.out.println("Testing elementwise activations...\n");
+		float[] data = {-2f, 0f, 3f};
+		Activation.RELU.apply(data, 3, 1);
+		assertArrayEquals(new float[] {0f, 0f, 3f}, data, 0f);
+		data = new float[] {-2f, 0f, 3f};
+		Activation.LEAKY_RELU.apply(data, 3, 1);
+		assertArrayEquals(new float[] {-2f * Activation.LEAKY_SLOPE, 0f, 3f}, data, 1e-7f);
+		data = new float[] {-2f, 0f, 3f};
+		Activation.TANH.apply(data, 3, 1);
+		assertArrayEquals(new float[] {(float) Math.tanh(-2), 0f, (float) Math.tanh(3)}, data, 1e-7f);
+		data = new float[] {-2f, 0f, 3f};
+		FMatrixRMaj matrix = new FMatrixRMaj(3, 1, true, data);
+		Activation.SIGMOID.apply(Backends.current(), matrix);
+		assertEquals(0.5f, matrix.get(1, 0), 1e-7f);
+		assertEquals(1 / (1 + Math.exp(-3)), matrix.get(2, 0), 1e-6);
+
+		//Derivatives are taken at the activations
+		float[] delta = {1f, 1f, 1f};
+		Activation.RELU.multDerivative(delta, new float[] {0f, 0f, 3f}, 3, 1);
+		assertArrayEquals(new float[] {0f, 0f, 1f}, delta, 0f);
+		delta = new float[] {1f, 1f, 1f};
+		Activation.LEAKY_RELU.multDerivative(delta, new float[] {-0.02f, 0f, 3f}, 3, 1);
+		assertArrayEquals(new float[] {Activation.LEAKY_SLOPE, Activation.LEAKY_SLOPE, 1f}, delta, 0f);
+		delta = new float[] {1f, 2f};
+		Activation.TANH.multDerivative(delta, new float[] {0.5f, 0f}, 2, 1);
+		assertArrayEquals(new float[] {0.75f, 2f}, delta, 1e-7f);
+	}
+
+	@Test
+	public void testSoftmaxColumns() {
+		System.out.println("Testing softmax over the columns of a batch...\n");
+		//Two samples, the second with inputs large enough to overflow a naive exponential
+		FMatrixRMaj batch = new FMatrixRMaj(3, 2, true, 1f, 1000f, 2f, 1001f, 3f, 1002f);
+		Activation.SOFTMAX.apply(Backends.current(), batch);
+		double total = Math.exp(1) + Math.exp(2) + Math.exp(3);
+		for(int i = 0; i < 3; i++) {
+			assertEquals(Math.exp(i + 1) / total, batch.get(i, 0), 1e-6);
+			assertEquals(batch.get(i, 0), batch.get(i, 1), 1e-6f);
+			assertFalse(Float.isNaN(batch.get(i, 1)));
+		}
+
+		//The product with the Jacobian of a column: a_i (delta_i - a . delta)
+		float[] a = {0.2f, 0.3f, 0.5f};
+		float[] delta = {1f, 0f, 2f};
+		Activation.SOFTMAX.multDerivative(delta, a, 3, 1);
+		assertArrayEquals(new float[] {0.2f * (1f - 1.2f), 0.3f * -1.2f, 0.5f * (2f - 1.2f)}, delta, 1e-6f);
+	}
+
+	@Test
+	public void testCrossEntropy() {
+		System.out.println("Testing the cross-entropy cost...\n");
+		FMatrixRMaj a = new FMatrixRMaj(2, 1, true, 0.25f, 0.75f);
+		FMatrixRMaj y = new FMatrixRMaj(2, 1, true, 0f, 1f);
+		assertEquals(-Math.log(0.75), Cost.CROSS_ENTROPY.cost(Activation.SOFTMAX, a, y), 1e-6);
+		assertEquals(-2 * Math.log(0.75), Cost.CROSS_ENTROPY.cost(Activation.SIGMOID, a, y), 1e-6);
+		assertEquals(0.0625, Cost.QUADRATIC.cost(Activation.SOFTMAX, a, y), 1e-6);
+		FMatrixRMaj delta = new FMatrixRMaj(2, 1);
+		Cost.CROSS_ENTROPY.outputDelta(Activation.SOFTMAX, Backends.current(), a, y, delta);
+		assertArrayEquals(new float[] {0.25f, -0.25f}, delta.data, 0f);
+		assertTrue(Cost.CROSS_ENTROPY.supports(Activation.SIGMOID));
+		assertFalse(Cost.CROSS_ENTROPY.supports(Activation.RELU));
+		assertTrue(Cost.QUADRATIC.supports(Activation.RELU));
+
+		//A confident wrong answer is expensive but finite
+		a = new FMatrixRMaj(2, 1, true, 1f, 0f);
+		assertTrue(Cost.CROSS_ENTROPY.cost(Activation.SOFTMAX, a, y) > 10f);
+		assertFalse(Float.isInfinite(Cost.CROSS_ENTROPY.cost(Activation.SOFTMAX, a, y)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCrossEntropyNeedsProbabilities() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		System.out.println("Testing the cross-entropy cost on a rectified output layer...\n");
+		Network network = new Network(Arrays.asList(new Integer(4), new Integer(3)), 1L);
+		network.setCost(Cost.CROSS_ENTROPY);
+		network.setActivation(0, Activation.RELU);
+	}
+}
@@ -0,0 +1,219 @@
+package neural.network.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.linalg.SparseColumns;
+
+public class BatchPipelineTest {
+	
+	private Dataset dataset;
+	
+	@Before
+	public void setUp() {
+		//Image n has label n % 10 and every pixel set to n
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < 23; n++) {
+			Image img = new Image(n % 10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				img.setPx(i, n);
+			}
+			images.add(img);
+		}
+		dataset = Dataset.of(images);
+	}
+	
+	@Test
+	public void testEveryEpochCoversEverySample() throws IOException {
+		System.out.println("Testing batch pipeline epochs...\n");
+		BatchPipeline pipeline = new BatchPipeline(new DatasetSource(dataset), 5, 10, 2, 3, new Random(1), null);
+		try {
+			for(int epoch = 0; epoch < 3; epoch++) {
+				int[] seen = new int[23];
+				int batches = 0;
+				BatchPipeline.Batch batch;
+				while((batch = pipeline.next()) != null) {
+					batches++;
+					assertEquals(batch.size(), batch.getInputs().getNumCols());
+					for(int j = 0; j < batch.size(); j++) {
+						int sample = (int) batch.getInputs().get(0, j);
+						assertEquals(1f, batch.getExpected().get(sample % 10, j), 0f);
+						seen[sample]++;
+					}
+					pipeline.release(batch);
+				}
+				assertEquals(5, batches);
+				int[] once = new int[23];
+				Arrays.fill(once, 1);
+				assertArrayEquals(once, seen);
+			}
+			assertNull(pipeline.next());
+		} finally {
+			pipeline.close();
+		}
+	}
+	
+	@Test
+	public void testProducerStaysWithinDepth() throws IOException, InterruptedException {
+		System.out.println("Testing batch pipeline backpressure...\n");
+		CountingSource source = new CountingSource(new DatasetSource(dataset));
+		BatchPipeline pipeline = new BatchPipeline(source, 1, 10, 3, 1, new Random(1), null);
+		try {
+			//Nothing is released, so the producer must stop after filling every slot:
+			//with no free slot left it cannot start another fill
+			awaitFull(pipeline, 3);
+			assertEquals(3, source.fills);
+			BatchPipeline.Batch batch = pipeline.next();
+			pipeline.release(batch);
+			awaitFull(pipeline, 3);
+			assertEquals(4, source.fills);
+		} finally {
+			pipeline.close();
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testSourceFailure() throws IOException {
+		System.out.println("Testing batch pipeline errors...\n");
+		BatchSource broken = new BatchSource() {
+			@Override
+			public void rewind(final Random random) throws IOException {
+				throw new IOException("Disk on fire");
+			}
+			
+			@Override
+			public int fill(final FMatrixRMaj inputs, final FMatrixRMaj expected, final int capacity) {
+				return 0;
+			}
+		};
+		BatchPipeline pipeline = new BatchPipeline(broken, 5, 10, 2, 1, new Random(1), null);
+		try {
+			pipeline.next();
+		} finally {
+			pipeline.close();
+		}
+	}
+	
+	@Test
+	public void testSparseBatches() throws IOException {
+		System.out.println("Testing compressed pipeline batches...\n");
+		//Every pixel of image n is n, so these batches are far too dense
+		BatchPipeline pipeline = new BatchPipeline(new DatasetSource(dataset), 23, 10, 1, 1, new Random(1), null, null, 0.5f);
+		try {
+			BatchPipeline.Batch batch = pipeline.next();
+			assertNull(batch.getSparseInputs());
+			pipeline.release(batch);
+			assertNull(pipeline.next());
+		} finally {
+			pipeline.close();
+		}
+		
+		//Two black images with a single lit pixel each
+		Image first = new Image(1);
+		first.setPx(10, 200);
+		Image second = new Image(2);
+		second.setPx(700, 3);
+		Dataset sparse = Dataset.of(Arrays.asList(first, second));
+		pipeline = new BatchPipeline(new DatasetSource(sparse), 4, 10, 1, 1, new Random(1), null, null, 0.5f);
+		try {
+			BatchPipeline.Batch batch = pipeline.next();
+			SparseColumns inputs = batch.getSparseInputs();
+			assertEquals(2, inputs.getNumCols());
+			assertEquals(2, inputs.getNonZeros());
+			FMatrixRMaj unpacked = new FMatrixRMaj(Image.SIZE, 2);
+			inputs.toDense(unpacked);
+			assertArrayEquals(Arrays.copyOf(batch.getInputs().data, Image.SIZE * 2), unpacked.data, 0f);
+			pipeline.release(batch);
+		} finally {
+			pipeline.close();
+		}
+		
+		//Only sources of compressed datasets pack compressed batches themselves
+		assertFalse(DatasetSource.of(sparse) instanceof SparseBatchSource);
+		assertTrue(DatasetSource.of(sparse.compress()) instanceof SparseBatchSource);
+		assertFalse(new DatasetSource(sparse.compress()) instanceof SparseBatchSource);
+		
+		//A compressed dataset is packed straight into compressed form, and expanded on demand
+		pipeline = new BatchPipeline(DatasetSource.of(sparse.compress()), 4, 10, 1, 1, new Random(1), null, null, 0.5f);
+		try {
+			BatchPipeline.Batch batch = pipeline.next();
+			SparseColumns inputs = batch.getSparseInputs();
+			assertEquals(2, inputs.getNonZeros());
+			FMatrixRMaj unpacked = new FMatrixRMaj(Image.SIZE, 2);
+			inputs.toDense(unpacked);
+			assertEquals(200f + 3f, unpacked.get(10, 0) + unpacked.get(10, 1) + unpacked.get(700, 0) + unpacked.get(700, 1), 0f);
+			assertArrayEquals(Arrays.copyOf(batch.getInputs().data, Image.SIZE * 2), unpacked.data, 0f);
+			pipeline.release(batch);
+		} finally {
+			pipeline.close();
+		}
+	}
+	
+	@Test
+	public void testRandomShift() {
+		System.out.println("Testing random shift augmentation...\n");
+		//A single lit pixel in the middle of two images
+		FMatrixRMaj inputs = new FMatrixRMaj(Image.SIZE, 2);
+		inputs.set(14 * 28 + 14, 0, 255f);
+		inputs.set(14 * 28 + 14, 1, 255f);
+		new RandomShift(2).apply(inputs, new Random(5));
+		for(int j = 0; j < 2; j++) {
+			int lit = -1;
+			float total = 0f;
+			for(int i = 0; i < Image.SIZE; i++) {
+				total += inputs.get(i, j);
+				if(inputs.get(i, j) > 0f) {
+					lit = i;
+				}
+			}
+			assertEquals(255f, total, 0f);
+			assertTrue(Math.abs(lit / 28 - 14) <= 2 && Math.abs(lit % 28 - 14) <= 2);
+		}
+	}
+	
+	/**
+	 * Wait until "depth" batches are ready and no slot is free, failing
+	 * after a generous deadline.
+	 */
+	private static void awaitFull(final BatchPipeline pipeline, final int depth) throws InterruptedException {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while(pipeline.getFreeSlots() != 0 || pipeline.getReadyBatches() != depth) {
+			assertTrue("Producer did not fill every slot", System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+	
+	private static class CountingSource implements BatchSource {
+		
+		private final BatchSource source;
+		private volatile int fills;
+		
+		CountingSource(final BatchSource source) {
+			this.source = source;
+		}
+		
+		@Override
+		public void rewind(final Random random) throws IOException {
+			source.rewind(random);
+		}
+		
+		@Override
+		public int fill(final FMatrixRMaj inputs, final FMatrixRMaj expected, final int capacity) throws IOException {
+			fills++;
+			return source.fill(inputs, expected, capacity);
+		}
+	}
+}
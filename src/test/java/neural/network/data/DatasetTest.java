@@ -0,0 +1,155 @@
+package neural.network.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.linalg.SparseColumns;
+
+public class DatasetTest {
+	
+	private Dataset dataset;
+	
+	@Before
+	public void setUp() {
+		//Image n has label n % 10 and every pixel set to n
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < 20; n++) {
+			Image img = new Image(n % 10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				img.setPx(i, n);
+			}
+			images.add(img);
+		}
+		dataset = Dataset.of(images);
+	}
+	
+	@Test
+	public void testShuffleIsPermutation() {
+		System.out.println("Testing dataset shuffle...\n");
+		dataset.shuffle(new Random(3));
+		int[] seen = new int[20];
+		for(int n = 0; n < dataset.size(); n++) {
+			int sample = dataset.getPx(n, 0);
+			assertEquals(sample % 10, dataset.getLabel(n));
+			seen[sample]++;
+		}
+		int[] once = new int[20];
+		Arrays.fill(once, 1);
+		assertArrayEquals(once, seen);
+	}
+	
+	@Test
+	public void testOwnOrderIsIndependent() {
+		System.out.println("Testing datasets with their own order...\n");
+		dataset.shuffle(new Random(3));
+		Dataset view = dataset.view(4, 10);
+		Dataset copy = view.withOwnOrder();
+		assertEquals(10, copy.size());
+		for(int n = 0; n < copy.size(); n++) {
+			assertEquals(view.getPx(n, 0), copy.getPx(n, 0));
+		}
+		int[] before = new int[dataset.size()];
+		for(int n = 0; n < dataset.size(); n++) {
+			before[n] = dataset.getPx(n, 0);
+		}
+		copy.shuffle(new Random(5));
+		for(int n = 0; n < dataset.size(); n++) {
+			assertEquals(before[n], dataset.getPx(n, 0));
+		}
+	}
+	
+	@Test
+	public void testNormalizeOwnOrder() {
+		System.out.println("Testing normalizing a dataset with its own order...\n");
+		Dataset copy = dataset.view(12, 5).withOwnOrder();
+		Dataset normalized = copy.normalize(Normalization.unitRange());
+		FMatrixRMaj inputs = new FMatrixRMaj(Image.SIZE, 5);
+		FMatrixRMaj expected = new FMatrixRMaj(10, 5);
+		normalized.pack(inputs, expected);
+		for(int j = 0; j < 5; j++) {
+			assertEquals((12 + j) / 255f, inputs.get(0, j), 1e-6);
+			assertEquals((12 + j) / 255f, inputs.get(Image.SIZE - 1, j), 1e-6);
+			assertEquals(1.0, expected.get((12 + j) % 10, j), 0.0);
+		}
+	}
+	
+	@Test
+	public void testViewAndPack() {
+		System.out.println("Testing dataset views and packing...\n");
+		Dataset view = dataset.view(5, 3);
+		assertEquals(3, view.size());
+		assertEquals(7, view.getPx(2, 100));
+		
+		FMatrixRMaj inputs = new FMatrixRMaj(Image.SIZE, 3);
+		FMatrixRMaj expected = new FMatrixRMaj(10, 3);
+		view.pack(inputs, expected);
+		for(int j = 0; j < 3; j++) {
+			assertEquals(5 + j, inputs.get(0, j), 0.0);
+			assertEquals(5 + j, inputs.get(Image.SIZE - 1, j), 0.0);
+			assertEquals(1.0, expected.get(5 + j, j), 0.0);
+			assertEquals(0.0, expected.get(0, j), 0.0);
+		}
+		
+		//Images share the view's storage
+		Image img = view.getImage(1);
+		assertEquals(6, img.getLabel());
+		img.setPx(0, 200);
+		assertEquals(200, dataset.getPx(6, 0));
+	}
+	
+	@Test
+	public void testCompress() {
+		System.out.println("Testing compressed datasets...\n");
+		//Light up a few pixels of an otherwise black image
+		Image img = new Image(3);
+		img.setPx(0, 9);
+		img.setPx(400, 255);
+		img.setPx(783, 1);
+		List<Image> images = new ArrayList<Image>(dataset.toImages());
+		images.add(img);
+		Dataset dense = Dataset.of(images);
+		dense.shuffle(new Random(2));
+		Dataset view = dense.view(4, 14);
+		Dataset compressed = view.compress();
+		assertTrue(compressed.isCompressed());
+		assertEquals(view.size(), compressed.size());
+		assertEquals(view.getDensity(), compressed.getDensity(), 0f);
+		for(int n = 0; n < view.size(); n++) {
+			assertEquals(view.getLabel(n), compressed.getLabel(n));
+			assertArrayEquals(view.getImage(n).getData(), compressed.getImage(n).getData());
+			for(int i = 0; i < Image.SIZE; i += 97) {
+				assertEquals(view.getPx(n, i), compressed.getPx(n, i));
+			}
+		}
+		
+		//Every way of packing gives the same batch
+		FMatrixRMaj inputs = new FMatrixRMaj(Image.SIZE, 5);
+		FMatrixRMaj expected = new FMatrixRMaj(10, 5);
+		view.pack(3, 5, inputs, expected);
+		FMatrixRMaj unpacked = new FMatrixRMaj(Image.SIZE, 5);
+		FMatrixRMaj unpackedExpected = new FMatrixRMaj(10, 5);
+		compressed.pack(3, 5, unpacked, unpackedExpected);
+		assertArrayEquals(inputs.data, unpacked.data, 0f);
+		assertArrayEquals(expected.data, unpackedExpected.data, 0f);
+		SparseColumns sparse = new SparseColumns(Image.SIZE, 0, 0);
+		for(Dataset data : Arrays.asList(view, compressed)) {
+			data.pack(3, 5, sparse, null);
+			sparse.toDense(unpacked);
+			assertArrayEquals(inputs.data, unpacked.data, 0f);
+		}
+		
+		//Compressed images are copies
+		compressed.getImage(0).setPx(0, 77);
+		assertEquals(view.getPx(0, 0), compressed.getPx(0, 0));
+	}
+}
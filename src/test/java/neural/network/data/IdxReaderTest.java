@@ -0,0 +1,62 @@
+package neural.network.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IdxReaderTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testIdxRead() throws IOException {
+		System.out.println("Testing IDX reader...\n");
+		File images = folder.newFile("images-idx3-ubyte");
+		File labels = folder.newFile("labels-idx1-ubyte");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(images));
+		out.writeInt(IdxReader.IMAGES_MAGIC);
+		out.writeInt(3);
+		out.writeInt(28);
+		out.writeInt(28);
+		for(int n = 0; n < 3; n++) {
+			for(int i = 0; i < Image.SIZE; i++) {
+				out.writeByte((n * 100 + i) % 256);
+			}
+		}
+		out.close();
+		out = new DataOutputStream(new FileOutputStream(labels));
+		out.writeInt(IdxReader.LABELS_MAGIC);
+		out.writeInt(3);
+		out.writeByte(7);
+		out.writeByte(2);
+		out.writeByte(9);
+		out.close();
+		
+		Dataset dataset = IdxReader.read(images, labels);
+		assertEquals(3, dataset.size());
+		assertEquals(7, dataset.getLabel(0));
+		assertEquals(9, dataset.getLabel(2));
+		assertEquals(65, dataset.getPx(0, 65));
+		assertEquals(255, dataset.getPx(0, 255));
+		assertEquals((200 + 783) % 256, dataset.getPx(2, 783));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testWrongMagic() throws IOException {
+		System.out.println("Testing IDX reader on a malformed file...\n");
+		File images = folder.newFile("images");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(images));
+		out.writeInt(IdxReader.LABELS_MAGIC);
+		out.writeInt(0);
+		out.close();
+		IdxReader.read(images, images);
+	}
+}
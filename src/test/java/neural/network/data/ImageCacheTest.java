@@ -0,0 +1,64 @@
+package neural.network.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImageCacheTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testCsvToCache() throws IOException {
+		System.out.println("Testing CSV to binary cache conversion...\n");
+		File csv = folder.newFile("small.csv");
+		FileWriter writer = new FileWriter(csv);
+		for(int n = 0; n < 5; n++) {
+			writer.write(Integer.toString(n));
+			for(int i = 0; i < Image.SIZE; i++) {
+				writer.write("," + (i == n ? 255 : i % 3));
+			}
+			writer.write("\r\n");
+		}
+		writer.close();
+		
+		List<Image> parsed = ImageReader.read(csv.toURI().toURL());
+		assertEquals(5, parsed.size());
+		assertEquals(3, parsed.get(3).getLabel());
+		assertEquals(255, parsed.get(3).getPx(3));
+		assertEquals(2, parsed.get(3).getPx(5));
+		
+		File cache = new File(folder.getRoot(), "cache/small.bin");
+		ImageCache.write(parsed, cache);
+		assertTrue(cache.isFile());
+		assertEquals(ImageCache.HEADER_SIZE + 5 * (Image.SIZE + 1), cache.length());
+		
+		Dataset cached = ImageCache.read(cache);
+		assertEquals(parsed.size(), cached.size());
+		for(int n = 0; n < parsed.size(); n++) {
+			assertEquals(parsed.get(n).getLabel(), cached.getLabel(n));
+			for(int i = 0; i < Image.SIZE; i++) {
+				assertEquals(parsed.get(n).getPx(i), cached.getPx(n, i));
+			}
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testNotACache() throws IOException {
+		System.out.println("Testing binary cache on a malformed file...\n");
+		File file = folder.newFile("bogus.bin");
+		FileWriter writer = new FileWriter(file);
+		writer.write("definitely not a cache");
+		writer.close();
+		ImageCache.read(file);
+	}
+}
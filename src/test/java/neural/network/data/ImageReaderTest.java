@@ -1,14 +1,25 @@
 package neural.network.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ImageReaderTest {
 	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
 	@Test
 	public void testImageRead() throws IOException {
 		System.out.println("Testing Image Reader on mnist_test.csv...\n");
@@ -17,4 +28,61 @@ public class ImageReaderTest {
 		assertEquals(174, dataset.get(47).getData()[66]);
 		assertEquals(2, dataset.get(66).getData()[67]);
 	}
+	
+	@Test
+	public void testCsvRead() throws IOException {
+		System.out.println("Testing Image Reader on a small CSV file...\n");
+		Dataset dataset = read(row("7", "255") + "\r\n\n" + row("0", "3"));
+		assertEquals(2, dataset.size());
+		assertEquals(7, dataset.getLabel(0));
+		assertEquals(255, dataset.getPx(0, 783));
+		assertEquals(0, dataset.getLabel(1));
+		assertEquals(3, dataset.getPx(1, 0));
+	}
+	
+	@Test
+	public void testMalformedCsv() throws IOException {
+		System.out.println("Testing Image Reader on malformed CSV files...\n");
+		String valid = row("1", "0") + "\n";
+		assertRejected(valid + row("2", "1.5"), "line 2");
+		assertRejected(valid + row("2", "-1"), "line 2");
+		assertRejected("label," + row("0", "0").substring(2) + "\n" + valid, "line 1");
+		assertRejected(valid + valid + "3,0,0\n", "line 3");
+		assertRejected(valid + row("4", "0") + ",0", "line 2");
+		assertRejected(valid + row("5", "256"), "line 2");
+		assertRejected(row("10", "0"), "line 1");
+		assertRejected(valid + "6,,0" + row("", "0").substring(2), "line 2");
+	}
+	
+	/**
+	 * Return a CSV line with label "label", "pixel" as its first and last
+	 * pixel and zeros in between.
+	 */
+	private static String row(final String label, final String pixel) {
+		StringBuilder builder = new StringBuilder(label).append(',').append(pixel);
+		for(int i = 1; i < Image.SIZE - 1; i++) {
+			builder.append(",0");
+		}
+		return builder.append(',').append(pixel).toString();
+	}
+	
+	private Dataset read(final String csv) throws IOException {
+		File file = folder.newFile();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(csv.getBytes(StandardCharsets.US_ASCII));
+		} finally {
+			out.close();
+		}
+		return ImageReader.readDataset(file.toURI().toURL());
+	}
+	
+	private void assertRejected(final String csv, final String where) {
+		try {
+			read(csv);
+			fail("Accepted " + csv.substring(0, Math.min(40, csv.length())));
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(where + " "));
+		}
+	}
 }
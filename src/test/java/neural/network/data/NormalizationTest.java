@@ -0,0 +1,172 @@
+package neural.network.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.Network;
+import neural.network.Operations;
+import neural.network.linalg.SparseColumns;
+
+public class NormalizationTest {
+
+	private Dataset dataset;
+
+	@Before
+	public void setUp() {
+		//Pixel 0 is always black, pixel 1 always 100 and the rest random
+		Random random = new Random(4);
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < 40; n++) {
+			Image img = new Image(n % 10);
+			img.setPx(1, 100);
+			for(int i = 2; i < Image.SIZE; i++) {
+				img.setPx(i, random.nextInt(4) == 0 ? random.nextInt(256) : 0);
+			}
+			images.add(img);
+		}
+		dataset = Dataset.of(images);
+	}
+
+	@Test
+	public void testUnitRange() {
+		System.out.println("Testing unit range normalization...\n");
+		Normalization unit = Normalization.unitRange();
+		assertEquals(Image.SIZE, unit.getSize());
+		assertEquals(0f, unit.apply(5, 0f), 0f);
+		assertEquals(1f, unit.apply(5, 255f), 1e-6f);
+		assertEquals(Normalization.unitRange(), unit);
+		assertEquals(Normalization.unitRange().hashCode(), unit.hashCode());
+	}
+
+	@Test
+	public void testStandardize() {
+		System.out.println("Testing per-pixel standardization...\n");
+		Normalization standard = Normalization.standardize(dataset);
+		FMatrixRMaj inputs = new FMatrixRMaj(Image.SIZE, dataset.size());
+		dataset.normalize(standard).pack(inputs, null);
+		for(int i = 2; i < Image.SIZE; i += 61) {
+			double sum = 0;
+			double squares = 0;
+			for(int j = 0; j < dataset.size(); j++) {
+				sum += inputs.get(i, j);
+				squares += inputs.get(i, j) * inputs.get(i, j);
+			}
+			double mean = sum / dataset.size();
+			assertEquals(0.0, mean, 1e-4);
+			assertEquals(1.0, Math.sqrt(squares / dataset.size() - mean * mean), 1e-3);
+		}
+		//Constant pixels are centred but not blown up
+		assertEquals(100f, standard.getOffsets()[1], 1e-4f);
+		assertEquals(1f / Normalization.MIN_DEVIATION, standard.getScales()[0], 0f);
+		assertEquals(0f, inputs.get(1, 0), 1e-5f);
+	}
+
+	@Test
+	public void testNormalizedDataset() {
+		System.out.println("Testing normalized datasets...\n");
+		Normalization unit = Normalization.unitRange();
+		dataset.shuffle(new Random(8));
+		Dataset normalized = dataset.normalize(unit);
+		assertNull(dataset.getNormalization());
+		assertEquals(unit, normalized.getNormalization());
+
+		//Packing applies the cached transform, and raw pixels stay available
+		FMatrixRMaj raw = new FMatrixRMaj(Image.SIZE, 6);
+		FMatrixRMaj packed = new FMatrixRMaj(Image.SIZE, 6);
+		dataset.pack(10, 6, raw, null);
+		normalized.pack(10, 6, packed, null);
+		unit.applyToColumns(raw);
+		assertArrayEquals(raw.data, packed.data, 0f);
+		assertEquals(dataset.getPx(12, 300), normalized.getPx(12, 300));
+
+		//Views, compression and sparse packing keep the normalization
+		Dataset view = normalized.view(10, 6);
+		assertEquals(unit, view.getNormalization());
+		Dataset compressed = normalized.compress();
+		assertTrue(compressed.isCompressed());
+		assertEquals(unit, compressed.getNormalization());
+		FMatrixRMaj unpacked = new FMatrixRMaj(Image.SIZE, 6);
+		view.pack(unpacked, null);
+		assertArrayEquals(packed.data, unpacked.data, 0f);
+		compressed.pack(10, 6, unpacked, null);
+		assertArrayEquals(packed.data, unpacked.data, 0f);
+		SparseColumns sparse = new SparseColumns(Image.SIZE, 6, 0);
+		view.pack(0, 6, sparse, null);
+		sparse.toDense(unpacked);
+		assertArrayEquals(packed.data, unpacked.data, 0f);
+
+		//The normalized copy has an order of its own
+		int[] before = new int[dataset.size()];
+		for(int n = 0; n < before.length; n++) {
+			before[n] = dataset.getPx(n, 300);
+		}
+		normalized.shuffle(new Random(9));
+		for(int n = 0; n < before.length; n++) {
+			assertEquals(before[n], dataset.getPx(n, 300));
+		}
+	}
+
+	@Test
+	public void testNormalizedCompressedDataset() {
+		System.out.println("Testing normalized compressed datasets...\n");
+		dataset.shuffle(new Random(10));
+		Dataset compressed = dataset.compress();
+		//Unit range keeps black pixels black, standardization does not
+		for(Normalization normalization : new Normalization[] {Normalization.unitRange(), Normalization.standardize(dataset)}) {
+			Dataset dense = dataset.normalize(normalization);
+			Dataset sparse = compressed.normalize(normalization);
+			assertTrue(sparse.isCompressed());
+			assertEquals(normalization, sparse.getNormalization());
+			FMatrixRMaj expected = new FMatrixRMaj(Image.SIZE, 7);
+			FMatrixRMaj packed = new FMatrixRMaj(Image.SIZE, 7);
+			dense.pack(5, 7, expected, null);
+			sparse.pack(5, 7, packed, null);
+			assertArrayEquals(expected.data, packed.data, 1e-6f);
+			SparseColumns columns = new SparseColumns(Image.SIZE, 7, 0);
+			sparse.pack(5, 7, columns, null);
+			columns.toDense(packed);
+			assertArrayEquals(expected.data, packed.data, 1e-6f);
+		}
+		assertTrue(Normalization.unitRange().keepsZero());
+		assertTrue(!Normalization.standardize(dataset).keepsZero());
+	}
+
+	@Test
+	public void testAugmentationOfNormalizedData() throws Exception {
+		System.out.println("Testing augmentation of normalized training data...\n");
+		Network network = new Network(Arrays.asList(new Integer(784), new Integer(10)), 5L);
+		//Shifting pixels scaled to the unit range is the same as scaling shifted pixels
+		network.setNormalization(Normalization.unitRange());
+		Operations.stochasticGradientDescent(network, new DatasetSource(dataset.normalize(Normalization.unitRange())), null, 1, 10, 0.1f,
+				new RandomShift(2), null);
+		//Standardized black is not zero, so shifting it in would be wrong
+		Normalization standard = Normalization.standardize(dataset);
+		network.setNormalization(standard);
+		try {
+			Operations.stochasticGradientDescent(network, new DatasetSource(dataset.normalize(standard)), null, 1, 10, 0.1f,
+					new RandomShift(2), null);
+			fail("Augmented standardized data");
+		} catch (IllegalArgumentException e) {
+			//Expected
+		}
+		Operations.stochasticGradientDescent(network, new DatasetSource(dataset), null, 1, 10, 0.1f, new RandomShift(2), null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedLengths() {
+		System.out.println("Testing normalization of mismatched lengths...\n");
+		new Normalization(new float[3], new float[4]);
+	}
+}
@@ -0,0 +1,90 @@
+package neural.network.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardStreamTest {
+	
+	private static final int COUNT = 53;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private List<File> shards;
+	
+	@Before
+	public void setUp() throws IOException {
+		//Image n has label n % 10 and every pixel set to n
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < COUNT; n++) {
+			Image img = new Image(n % 10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				img.setPx(i, n);
+			}
+			images.add(img);
+		}
+		shards = ImageCache.writeShards(Dataset.of(images), folder.newFolder("shards"), 10);
+	}
+	
+	@Test
+	public void testEpochsCoverEverySample() throws IOException {
+		System.out.println("Testing streaming shards through a shuffle buffer...\n");
+		assertEquals(6, shards.size());
+		ShardStream stream = new ShardStream(shards, 8, 4);
+		assertEquals(COUNT, stream.size());
+		FMatrixRMaj inputs = new FMatrixRMaj(Image.SIZE, 7);
+		FMatrixRMaj expected = new FMatrixRMaj(10, 7);
+		Random random = new Random(11);
+		int[][] orders = new int[2][COUNT];
+		try {
+			for(int epoch = 0; epoch < 2; epoch++) {
+				stream.rewind(random);
+				int[] seen = new int[COUNT];
+				int position = 0;
+				int length;
+				while((length = stream.fill(inputs, expected, 7)) > 0) {
+					assertEquals(length, inputs.getNumCols());
+					for(int j = 0; j < length; j++) {
+						int sample = (int) inputs.get(0, j);
+						assertEquals(sample, (int) inputs.get(Image.SIZE - 1, j));
+						assertEquals(1f, expected.get(sample % 10, j), 0f);
+						seen[sample]++;
+						orders[epoch][position++] = sample;
+					}
+				}
+				assertEquals(COUNT, position);
+				int[] once = new int[COUNT];
+				Arrays.fill(once, 1);
+				assertArrayEquals(once, seen);
+			}
+		} finally {
+			stream.close();
+		}
+		assertFalse(Arrays.equals(orders[0], orders[1]));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testNotAShard() throws IOException {
+		System.out.println("Testing streaming from a file that is not a shard...\n");
+		File bogus = folder.newFile("bogus.bin");
+		FileOutputStream out = new FileOutputStream(bogus);
+		out.write(new byte[64]);
+		out.close();
+		new ShardStream(Arrays.asList(bogus), 8);
+	}
+}
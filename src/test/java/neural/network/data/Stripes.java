@@ -0,0 +1,39 @@
+package neural.network.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A toy training set that a small network learns in a few epochs: each
+ * label lights up its own band of pixels with intensity 1.
+ */
+public final class Stripes {
+
+	//Disallow instantiation of this class
+	private Stripes() {}
+
+	/**
+	 * Return "count" images with labels drawn from "seed".
+	 */
+	public static List<Image> images(final int count, final long seed) {
+		Random random = new Random(seed);
+		List<Image> images = new ArrayList<Image>();
+		for(int n = 0; n < count; n++) {
+			int label = random.nextInt(10);
+			Image img = new Image(label);
+			for(int i = 0; i < 28; i++) {
+				img.setPx(label * 78 + i, 1);
+			}
+			images.add(img);
+		}
+		return images;
+	}
+
+	/**
+	 * Return "count" images with labels drawn from "seed" as a dataset.
+	 */
+	public static Dataset dataset(final int count, final long seed) {
+		return Dataset.of(images(count, seed));
+	}
+}
@@ -0,0 +1,124 @@
+package neural.network.distributed;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.Evaluator;
+import neural.network.Network;
+import neural.network.data.Dataset;
+import neural.network.data.Stripes;
+import neural.network.distributed.DistributedTrainer.Launch;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.optimizers.Sgd;
+
+public class DistributedTrainerTest {
+
+	private static final List<Integer> SIZES = Arrays.asList(new Integer(784), new Integer(16), new Integer(10));
+	private Dataset trainingData;
+
+	@Before
+	public void setUp() {
+		trainingData = Stripes.dataset(240, 7L);
+	}
+
+	@Test
+	public void testSynchronousIsDeterministic() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException,
+			IOException, InterruptedException {
+		System.out.println("Testing synchronous distributed training is deterministic...\n");
+		Network first = new Network(SIZES, 11L);
+		Network second = new Network(SIZES, 11L);
+		DistributedRun run = train(first, 3, 0, Launch.THREAD, dataset());
+		train(second, 3, 0, Launch.THREAD, dataset());
+		assertArrayEquals(parameters(first), parameters(second), 0.0f);
+		assertEquals(run.getGradients(), 3 * run.getUpdates());
+		assertEquals(0, run.getMaxStaleness());
+		assertEquals(5L * trainingData.size(), run.getSamples());
+	}
+
+	@Test
+	public void testSynchronousLearns() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException,
+			IOException, InterruptedException {
+		System.out.println("Testing synchronous distributed training learns...\n");
+		Network network = new Network(SIZES, 11L);
+		double before = new Evaluator(network).evaluate(trainingData).getAccuracy();
+		System.out.println(train(network, 2, 0, Launch.THREAD, dataset()) + "\n");
+		double after = new Evaluator(network).evaluate(trainingData).getAccuracy();
+		System.out.println("Accuracy: " + before + " -> " + after + "\n");
+		assertTrue(after > 0.5);
+	}
+
+	@Test
+	public void testStalenessIsBounded() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException,
+			IOException, InterruptedException {
+		System.out.println("Testing bounded staleness distributed training...\n");
+		Network network = new Network(SIZES, 11L);
+		int workers = 3;
+		int staleness = 2;
+		DistributedRun run = train(network, workers, staleness, Launch.THREAD, dataset());
+		System.out.println(run + "\n");
+		//Every gradient is applied on arrival
+		assertEquals(run.getGradients(), run.getUpdates());
+		assertTrue(run.getMaxStaleness() <= (workers - 1) * (2 * staleness + 1));
+		assertTrue(new Evaluator(network).evaluate(trainingData).getAccuracy() > 0.5);
+	}
+
+	@Test
+	public void testProcessesMatchThreads() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException,
+			IOException, InterruptedException {
+		System.out.println("Testing distributed training in worker processes...\n");
+		Network processes = new Network(SIZES, 11L);
+		Network threads = new Network(SIZES, 11L);
+		System.out.println(train(processes, 2, 0, Launch.PROCESS, dataset()) + "\n");
+		train(threads, 2, 0, Launch.THREAD, dataset());
+		assertArrayEquals(parameters(threads), parameters(processes), 0.0f);
+	}
+
+	@Test
+	public void testScalingReport() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException,
+			IOException, InterruptedException {
+		System.out.println("Testing the scaling report...\n");
+		Network network = new Network(SIZES, 11L);
+		float[] before = parameters(network);
+		ScalingReport report = ScalingReport.measure(network, dataset(), trainingData, new int[] {1, 2}, 0, Launch.THREAD, 2, 12, 3.0f, 5L);
+		System.out.println(report);
+		assertEquals(2, report.getRows().size());
+		assertEquals(1.0, report.getRows().get(0).getSpeedup(), 1e-9);
+		assertEquals(1.0, report.getRows().get(0).getEfficiency(), 1e-9);
+		assertEquals(2, report.getRows().get(1).getRun().getWorkers());
+		assertArrayEquals(before, parameters(network), 0.0f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsNoWorkers() {
+		System.out.println("Testing distributed training needs a worker...\n");
+		new DistributedTrainer(0, 0, Launch.THREAD, 5L);
+	}
+
+	private DistributedRun train(final Network network, final int workers, final int staleness, final Launch launch, final Dataset data)
+			throws IOException, LayerDoesNotExistException, InterruptedException {
+		return new DistributedTrainer(workers, staleness, launch, 5L).train(network, data, 5, 12, new Sgd(3.0f));
+	}
+
+	/**
+	 * Return a fresh copy of the training data, as training shuffles it.
+	 */
+	private Dataset dataset() {
+		return Dataset.of(trainingData.toImages());
+	}
+
+	private static float[] parameters(final Network network) {
+		float[] parameters = new float[network.getNumberOfParameters()];
+		network.copyParameters(parameters);
+		return parameters;
+	}
+}
@@ -0,0 +1,191 @@
+package neural.network.linalg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Checks every engine against EJML. The Vector API engine is included when
+ * this JVM can load it.
+ */
+@RunWith(Parameterized.class)
+public class BackendTest {
+
+	//Shapes around the block and tile sizes, including remainders of every kind
+	private static final int[][] SHAPES = {
+		{1, 1, 1}, {3, 5, 2}, {4, 4, 4}, {7, 13, 5}, {30, 784, 10},
+		{10, 30, 1}, {9, 130, 3}, {17, 257, 600}, {8, 3, 513}
+	};
+
+	private final Backend reference = new EjmlBackend();
+	private final Backend blocked;
+	private final Random random = new Random(7);
+
+	public BackendTest(final String name) {
+		this.blocked = Backends.forName(name);
+	}
+
+	@Parameters(name = "{0}")
+	public static List<Object[]> backends() {
+		List<Object[]> backends = new ArrayList<Object[]>();
+		backends.add(new Object[] {BlockedBackend.NAME});
+		if(Backends.isVectorAvailable()) {
+			backends.add(new Object[] {"vector"});
+		}
+		return backends;
+	}
+
+	@Test
+	public void testMult() {
+		System.out.println("Testing " + blocked.getName() + " matrix product against EJML...\n");
+		for(int[] shape : SHAPES) {
+			FMatrixRMaj a = random(shape[0], shape[1]);
+			FMatrixRMaj b = random(shape[1], shape[2]);
+			FMatrixRMaj expected = new FMatrixRMaj(shape[0], shape[2]);
+			FMatrixRMaj actual = filled(shape[0], shape[2]);
+			reference.mult(a, b, expected);
+			blocked.mult(a, b, actual);
+			assertClose(expected, actual, shape[1]);
+		}
+	}
+
+	@Test
+	public void testMultTransA() {
+		System.out.println("Testing " + blocked.getName() + " transposed product (a^T b) against EJML...\n");
+		for(int[] shape : SHAPES) {
+			FMatrixRMaj a = random(shape[1], shape[0]);
+			FMatrixRMaj b = random(shape[1], shape[2]);
+			FMatrixRMaj expected = new FMatrixRMaj(shape[0], shape[2]);
+			FMatrixRMaj actual = filled(shape[0], shape[2]);
+			reference.multTransA(a, b, expected);
+			blocked.multTransA(a, b, actual);
+			assertClose(expected, actual, shape[1]);
+		}
+	}
+
+	@Test
+	public void testMultTransB() {
+		System.out.println("Testing " + blocked.getName() + " transposed product (a b^T) against EJML...\n");
+		for(int[] shape : SHAPES) {
+			FMatrixRMaj a = random(shape[0], shape[1]);
+			FMatrixRMaj b = random(shape[2], shape[1]);
+			FMatrixRMaj expected = new FMatrixRMaj(shape[0], shape[2]);
+			FMatrixRMaj actual = filled(shape[0], shape[2]);
+			reference.multTransB(a, b, expected);
+			blocked.multTransB(a, b, actual);
+			assertClose(expected, actual, shape[1]);
+		}
+	}
+
+	@Test
+	public void testElementwise() {
+		System.out.println("Testing " + blocked.getName() + " elementwise operations against EJML...\n");
+		FMatrixRMaj x = random(13, 7);
+		FMatrixRMaj y = random(13, 7);
+		FMatrixRMaj column = random(13, 1);
+
+		FMatrixRMaj expected = y.copy();
+		FMatrixRMaj actual = y.copy();
+		reference.axpy(-0.3f, x, expected);
+		blocked.axpy(-0.3f, x, actual);
+		assertClose(expected, actual, 1);
+
+		reference.subtract(x, y, expected);
+		blocked.subtract(x, y, actual);
+		assertClose(expected, actual, 1);
+
+		reference.elementMult(expected, x);
+		blocked.elementMult(actual, x);
+		assertClose(expected, actual, 1);
+
+		reference.addToColumns(expected, column);
+		blocked.addToColumns(actual, column);
+		assertClose(expected, actual, 1);
+
+		FMatrixRMaj expectedSums = new FMatrixRMaj(13, 1);
+		FMatrixRMaj actualSums = filled(13, 1);
+		reference.sumRows(expected, expectedSums);
+		blocked.sumRows(actual, actualSums);
+		assertClose(expectedSums, actualSums, 7);
+	}
+
+	@Test
+	public void testSigmoid() {
+		System.out.println("Testing " + blocked.getName() + " sigmoid kernels against EJML...\n");
+		FMatrixRMaj z = random(11, 9);
+		FMatrixRMaj expected = z.copy();
+		FMatrixRMaj actual = z.copy();
+		reference.sigmoid(expected);
+		blocked.sigmoid(actual);
+		assertClose(expected, actual, 1);
+
+		FMatrixRMaj delta = random(11, 9);
+		FMatrixRMaj expectedDelta = delta.copy();
+		FMatrixRMaj actualDelta = delta.copy();
+		reference.multSigmoidPrimeOfActivation(expectedDelta, expected);
+		blocked.multSigmoidPrimeOfActivation(actualDelta, expected);
+		assertClose(expectedDelta, actualDelta, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShapeMismatch() {
+		System.out.println("Testing " + blocked.getName() + " product shape checks...\n");
+		blocked.mult(random(3, 4), random(5, 2), new FMatrixRMaj(3, 2));
+	}
+
+	@Test
+	public void testSelection() {
+		System.out.println("Testing backend selection...\n");
+		assertTrue(Backends.forName("ejml") instanceof EjmlBackend);
+		assertTrue(Backends.forName("BLOCKED") instanceof BlockedBackend);
+		assertEquals(Backends.isVectorAvailable() ? "vector" : BlockedBackend.NAME, Backends.forName("vector").getName());
+		Backend previous = Backends.current();
+		try {
+			Backends.use(blocked);
+			assertEquals(blocked.getName(), Backends.current().getName());
+		} finally {
+			Backends.use(previous);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownBackend() {
+		System.out.println("Testing unknown backend name...\n");
+		Backends.forName("fortran");
+	}
+
+	private FMatrixRMaj random(final int rows, final int cols) {
+		FMatrixRMaj matrix = new FMatrixRMaj(rows, cols);
+		for(int i = 0; i < matrix.getNumElements(); i++) {
+			matrix.data[i] = (float) random.nextGaussian();
+		}
+		return matrix;
+	}
+
+	//Outputs start out dirty so a missing overwrite shows up
+	private static FMatrixRMaj filled(final int rows, final int cols) {
+		FMatrixRMaj matrix = new FMatrixRMaj(rows, cols);
+		Arrays.fill(matrix.data, 99f);
+		return matrix;
+	}
+
+	//Summation order differs between engines, so allow rounding that grows with the inner dimension
+	private static void assertClose(final FMatrixRMaj expected, final FMatrixRMaj actual, final int inner) {
+		assertEquals(expected.getNumRows(), actual.getNumRows());
+		assertEquals(expected.getNumCols(), actual.getNumCols());
+		final float tolerance = 1e-5f * inner + 1e-6f;
+		for(int i = 0; i < expected.getNumElements(); i++) {
+			assertEquals(expected.data[i], actual.data[i], tolerance * Math.max(1f, Math.abs(expected.data[i])));
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package neural.network.linalg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Test;
+
+public class SparseKernelsTest {
+
+	//Output rows around the four row tile, including remainders
+	private static final int[][] SHAPES = {
+		{1, 1, 1}, {3, 5, 2}, {4, 4, 4}, {7, 13, 5}, {30, 784, 10}, {9, 130, 3}
+	};
+
+	private final Backend reference = new EjmlBackend();
+	private final Random random = new Random(11);
+
+	@Test
+	public void testCompressRoundTrip() {
+		System.out.println("Testing sparse batch compression...\n");
+		FMatrixRMaj dense = sparse(13, 6, 0.3f);
+		SparseColumns sparse = new SparseColumns(13, 1, 0);
+		assertTrue(sparse.compress(dense, 1f));
+		assertEquals(6, sparse.getNumCols());
+		int count = 0;
+		for(float value : dense.data) {
+			if(value != 0f) {
+				count++;
+			}
+		}
+		assertEquals(count, sparse.getNonZeros());
+		assertEquals(count / (13f * 6), sparse.getDensity(), 1e-6f);
+		FMatrixRMaj copy = new FMatrixRMaj(13, 6);
+		sparse.toDense(copy);
+		assertArrayEquals(dense.data, copy.data, 0f);
+
+		//Building the same matrix column by column gives the same entries
+		SparseColumns appended = new SparseColumns(13, 0, 0);
+		for(int j = 0; j < 6; j++) {
+			for(int i = 0; i < 13; i++) {
+				if(dense.get(i, j) != 0f) {
+					appended.append(i, dense.get(i, j));
+				}
+			}
+			appended.endColumn();
+		}
+		appended.toDense(copy);
+		assertArrayEquals(dense.data, copy.data, 0f);
+	}
+
+	@Test
+	public void testCompressStopsAboveThreshold() {
+		System.out.println("Testing sparse batch density threshold...\n");
+		FMatrixRMaj dense = sparse(50, 8, 0.5f);
+		SparseColumns sparse = new SparseColumns(50, 8, 0);
+		assertFalse(sparse.compress(dense, 0.2f));
+		assertEquals(0, sparse.getNumCols());
+		assertTrue(sparse.compress(dense, 0.8f));
+		assertEquals(8, sparse.getNumCols());
+	}
+
+	@Test
+	public void testMult() {
+		System.out.println("Testing sparse matrix product...\n");
+		for(int[] shape : SHAPES) {
+			FMatrixRMaj a = dense(shape[0], shape[1]);
+			FMatrixRMaj b = sparse(shape[1], shape[2], 0.2f);
+			SparseColumns compressed = new SparseColumns(shape[1], 0, 0);
+			compressed.compress(b, 1f);
+			FMatrixRMaj expected = new FMatrixRMaj(shape[0], shape[2]);
+			FMatrixRMaj actual = new FMatrixRMaj(shape[0], shape[2]);
+			reference.mult(a, b, expected);
+			SparseKernels.mult(a, compressed, actual);
+			assertArrayEquals(expected.data, actual.data, 1e-3f);
+		}
+	}
+
+	@Test
+	public void testMultTransB() {
+		System.out.println("Testing sparse weight gradient product...\n");
+		for(int[] shape : SHAPES) {
+			FMatrixRMaj a = dense(shape[0], shape[2]);
+			FMatrixRMaj b = sparse(shape[1], shape[2], 0.2f);
+			SparseColumns compressed = new SparseColumns(shape[1], 0, 0);
+			compressed.compress(b, 1f);
+			FMatrixRMaj expected = new FMatrixRMaj(shape[0], shape[1]);
+			FMatrixRMaj actual = new FMatrixRMaj(shape[0], shape[1]);
+			actual.data[0] = 42f; //the output is overwritten, not accumulated
+			reference.multTransB(a, b, expected);
+			SparseKernels.multTransB(a, compressed, actual);
+			assertArrayEquals(expected.data, actual.data, 1e-3f);
+		}
+	}
+
+	@Test
+	public void testThresholdDependsOnBackend() {
+		System.out.println("Testing sparse density threshold per backend...\n");
+		if(System.getProperty(SparseKernels.PROPERTY) == null) {
+			assertEquals(SparseKernels.SCALAR_DENSITY_THRESHOLD, SparseKernels.densityThreshold(new EjmlBackend()), 0f);
+			assertEquals(SparseKernels.SCALAR_DENSITY_THRESHOLD, SparseKernels.densityThreshold(new BlockedBackend()), 0f);
+			if(Backends.isVectorAvailable()) {
+				assertEquals(SparseKernels.VECTOR_DENSITY_THRESHOLD, SparseKernels.densityThreshold(Backends.forName("vector")), 0f);
+			}
+		}
+	}
+
+	private FMatrixRMaj dense(final int rows, final int cols) {
+		FMatrixRMaj m = new FMatrixRMaj(rows, cols);
+		for(int i = 0; i < m.data.length; i++) {
+			m.data[i] = random.nextFloat() * 2 - 1;
+		}
+		return m;
+	}
+
+	private FMatrixRMaj sparse(final int rows, final int cols, final float density) {
+		FMatrixRMaj m = new FMatrixRMaj(rows, cols);
+		for(int i = 0; i < m.data.length; i++) {
+			if(random.nextFloat() < density) {
+				m.data[i] = 1 + random.nextInt(255);
+			}
+		}
+		return m;
+	}
+}
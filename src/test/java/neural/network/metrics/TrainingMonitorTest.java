@@ -0,0 +1,181 @@
+package neural.network.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.Network;
+import neural.network.Operations;
+import neural.network.data.Dataset;
+import neural.network.data.DatasetSource;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class TrainingMonitorTest {
+	
+	private Network network;
+	private Dataset train;
+	private Dataset test;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		network = new Network(Arrays.asList(new Integer(784), new Integer(8), new Integer(10)), 3L);
+		train = randomDataset(40, new Random(1));
+		test = randomDataset(12, new Random(2));
+	}
+	
+	@Test
+	public void testListenerSeesEveryEpoch() throws IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing training metrics...\n");
+		TrainingMonitor monitor = new TrainingMonitor(2);
+		final List<Integer> sampledBatches = new ArrayList<Integer>();
+		final List<Double> accuracies = new ArrayList<Double>();
+		final List<Long> samples = new ArrayList<Long>();
+		monitor.addListener(new TrainingListener() {
+			@Override
+			public void batchCompleted(final BatchMetrics batch) {
+				sampledBatches.add(batch.getBatch());
+				assertTrue(batch.getForwardNanos() > 0 && batch.getBackwardNanos() > 0);
+				assertFalse(Float.isNaN(batch.getLoss()));
+			}
+			
+			@Override
+			public void epochCompleted(final EpochMetrics epoch) {
+				accuracies.add(epoch.getTestAccuracy());
+				samples.add(epoch.getSamples());
+				assertEquals(4, epoch.getBatches());
+				assertEquals(2, epoch.getSampledBatches());
+				assertTrue(epoch.getSamplesPerSecond() > 0);
+				assertTrue(epoch.getLoss() >= 0);
+				assertEquals(12, epoch.getEvaluation().getTotal());
+			}
+			
+			@Override
+			public void evaluationCompleted(final int epoch, final int batch, final Evaluation evaluation) {
+				fail("Sampled evaluation is off by default");
+			}
+		});
+		Operations.stochasticGradientDescent(network, new DatasetSource(train), test, 3, 10, 1f, null, null, monitor);
+		assertEquals(Arrays.asList(0, 2, 0, 2, 0, 2), sampledBatches);
+		assertEquals(Arrays.asList(40L, 40L, 40L), samples);
+		for(double accuracy : accuracies) {
+			assertTrue(accuracy >= 0 && accuracy <= 1);
+		}
+	}
+	
+	@Test
+	public void testLogFormats() throws IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing metrics logs...\n");
+		StringWriter csv = new StringWriter();
+		StringWriter json = new StringWriter();
+		MetricsLog csvLog = new MetricsLog(csv, MetricsLog.Format.CSV, true);
+		MetricsLog jsonLog = new MetricsLog(json, MetricsLog.Format.JSON_LINES, false);
+		TrainingMonitor monitor = new TrainingMonitor(1);
+		monitor.addListener(csvLog);
+		monitor.addListener(jsonLog);
+		Operations.stochasticGradientDescent(network, new DatasetSource(train), null, 2, 20, 1f, null, null, monitor);
+		csvLog.close();
+		jsonLog.close();
+		
+		String[] rows = csv.toString().split("\n");
+		assertEquals(MetricsLog.CSV_HEADER, rows[0]);
+		//Two batches and one epoch record per epoch
+		assertEquals(1 + 2 * 3, rows.length);
+		int columns = MetricsLog.CSV_HEADER.split(",").length;
+		for(String row : rows) {
+			assertEquals(columns, row.split(",", -1).length);
+		}
+		assertTrue(rows[3].startsWith("epoch,0,,40,"));
+		
+		String[] lines = json.toString().split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[1].startsWith("{\"type\":\"epoch\",\"epoch\":1,"));
+		assertTrue(lines[1].contains("\"loss\":"));
+		assertFalse(lines[1].contains("test_accuracy"));
+	}
+	
+	@Test
+	public void testSampledEvaluation() throws IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing sampled evaluation...\n");
+		TrainingMonitor monitor = new TrainingMonitor();
+		monitor.evaluateEvery(2, 5);
+		final List<Integer> batches = new ArrayList<Integer>();
+		StringWriter csv = new StringWriter();
+		MetricsLog log = new MetricsLog(csv, MetricsLog.Format.CSV, false);
+		monitor.addListener(log);
+		monitor.addListener(new TrainingListener() {
+			@Override
+			public void batchCompleted(final BatchMetrics batch) {
+			}
+			
+			@Override
+			public void epochCompleted(final EpochMetrics epoch) {
+			}
+			
+			@Override
+			public void evaluationCompleted(final int epoch, final int batch, final Evaluation evaluation) {
+				batches.add(batch);
+				assertEquals(5, evaluation.getTotal());
+			}
+		});
+		Operations.stochasticGradientDescent(network, new DatasetSource(train), test, 2, 10, 1f, null, null, monitor);
+		log.close();
+		//Four batches per epoch, sampled after the second and the fourth
+		assertEquals(Arrays.asList(2, 4, 2, 4), batches);
+		String[] rows = csv.toString().split("\n");
+		assertEquals(1 + 2 * 3, rows.length);
+		int columns = MetricsLog.CSV_HEADER.split(",").length;
+		for(String row : rows) {
+			assertEquals(columns, row.split(",", -1).length);
+		}
+		assertTrue(rows[1].startsWith("evaluation,0,2,5,"));
+	}
+	
+	@Test
+	public void testMBean() throws JMException, IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing training metrics MBean...\n");
+		TrainingStats stats = new TrainingStats();
+		stats.register("test");
+		try {
+			TrainingMonitor monitor = new TrainingMonitor();
+			monitor.addListener(stats);
+			Operations.stochasticGradientDescent(network, new DatasetSource(train), test, 2, 10, 1f, null, null, monitor);
+			ObjectName name = new ObjectName(TrainingStats.DOMAIN + ":type=Training,name=\"test\"");
+			assertEquals(1, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Epoch"));
+			assertEquals(80L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TotalSamples"));
+			assertEquals(stats.getTestAccuracy(), (Double) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TestAccuracy"), 0.0);
+		} finally {
+			stats.unregister();
+		}
+	}
+	
+	private static Dataset randomDataset(final int count, final Random random) {
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			labels[n] = (byte) random.nextInt(10);
+			for(int i = 0; i < Image.SIZE; i++) {
+				pixels[n * Image.SIZE + i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+}
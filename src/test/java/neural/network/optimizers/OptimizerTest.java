@@ -0,0 +1,193 @@
+package neural.network.optimizers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.ejml.data.FMatrixRMaj;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.Evaluator;
+import neural.network.Network;
+import neural.network.Operations;
+import neural.network.data.Dataset;
+import neural.network.data.DatasetSource;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class OptimizerTest {
+
+	private Network network;
+	private FMatrixRMaj[] weightGradients;
+	private FMatrixRMaj[] biasGradients;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException, LayerDoesNotExistException {
+		network = new Network(Arrays.asList(new Integer(4), new Integer(3), new Integer(2)), 7L);
+		Random random = new Random(11);
+		weightGradients = new FMatrixRMaj[2];
+		biasGradients = new FMatrixRMaj[2];
+		for(int i = 0; i < 2; i++) {
+			weightGradients[i] = randomMatrix(network.getWeightsInLayer(i).getNumRows(), network.getWeightsInLayer(i).getNumCols(), random);
+			biasGradients[i] = randomMatrix(network.getBiasesInLayer(i).getNumRows(), 1, random);
+		}
+	}
+	
+	@Test
+	public void testSgd() throws LayerDoesNotExistException {
+		System.out.println("Testing SGD update...\n");
+		Network before = network.copy();
+		new Sgd(0.5f).update(network, weightGradients, biasGradients, 4);
+		assertStep(before, new Rule() {
+			@Override
+			public float step(final float g, final int t) {
+				return -0.5f * g / 4;
+			}
+		});
+	}
+	
+	@Test
+	public void testMomentum() throws LayerDoesNotExistException {
+		System.out.println("Testing momentum update...\n");
+		Optimizer optimizer = new Momentum(0.5f, 0.9f);
+		Network before = network.copy();
+		optimizer.update(network, weightGradients, biasGradients, 1);
+		optimizer.update(network, weightGradients, biasGradients, 1);
+		//With a constant gradient the velocity is -rate * g after one step and -rate * g * 1.9 after two
+		assertStep(before, new Rule() {
+			@Override
+			public float step(final float g, final int t) {
+				return -0.5f * g * (1 + 1.9f);
+			}
+		});
+	}
+	
+	@Test
+	public void testNesterov() throws LayerDoesNotExistException {
+		System.out.println("Testing Nesterov update...\n");
+		Optimizer optimizer = new Nesterov(0.5f, 0.9f);
+		Network before = network.copy();
+		optimizer.update(network, weightGradients, biasGradients, 1);
+		optimizer.update(network, weightGradients, biasGradients, 1);
+		//Steps of (1 + mu) * v1 and (1 + mu) * v2 - mu * v1 with v1 = -rate * g, v2 = -rate * g * 1.9
+		assertStep(before, new Rule() {
+			@Override
+			public float step(final float g, final int t) {
+				return -0.5f * g * (1.9f + 1.9f * 1.9f - 0.9f);
+			}
+		});
+	}
+	
+	@Test
+	public void testRmsProp() throws LayerDoesNotExistException {
+		System.out.println("Testing RMSProp update...\n");
+		Network before = network.copy();
+		new RmsProp(0.01f, 0.9f, 0f).update(network, weightGradients, biasGradients, 2);
+		//The first step is rate * sign(g) / sqrt(1 - decay), whatever the size of the gradient
+		assertStep(before, new Rule() {
+			@Override
+			public float step(final float g, final int t) {
+				return (float) (-0.01f * Math.signum(g) / Math.sqrt(0.1));
+			}
+		});
+	}
+	
+	@Test
+	public void testAdam() throws LayerDoesNotExistException {
+		System.out.println("Testing Adam update...\n");
+		Adam optimizer = new Adam(0.01f, 0.9f, 0.999f, 0f);
+		Network before = network.copy();
+		optimizer.update(network, weightGradients, biasGradients, 3);
+		optimizer.update(network, weightGradients, biasGradients, 3);
+		//Bias correction makes every step rate * sign(g) while the gradient is constant
+		assertStep(before, new Rule() {
+			@Override
+			public float step(final float g, final int t) {
+				return -0.02f * Math.signum(g);
+			}
+		});
+		assertEquals(2, optimizer.getSteps());
+		optimizer.reset();
+		assertEquals(0, optimizer.getSteps());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testStateBelongsToOneShape() throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException {
+		Optimizer optimizer = new Adam();
+		optimizer.update(network, weightGradients, biasGradients, 1);
+		Network deeper = new Network(Arrays.asList(new Integer(4), new Integer(3), new Integer(3), new Integer(2)), 7L);
+		optimizer.update(deeper, weightGradients, biasGradients, 1);
+	}
+	
+	@Test
+	public void testConvergence() throws NetworkTooSmallException, LayerTooSmallException, IOException, InvalidInputException,
+			LayerDoesNotExistException {
+		System.out.println("Testing optimizers on a separable problem...\n");
+		Dataset data = stripes(500, new Random(3));
+		Optimizer[] optimizers = {new Sgd(3.0f), new Momentum(0.1f), new Nesterov(0.1f), new RmsProp(0.01f), new Adam(0.01f)};
+		//Plain and momentum descent on the sigmoid network merge a few classes within five epochs; the adaptive methods separate them all
+		double[] required = {0.5, 0.5, 0.5, 0.95, 0.95};
+		for(int o = 0; o < optimizers.length; o++) {
+			Optimizer optimizer = optimizers[o];
+			Network model = new Network(Arrays.asList(new Integer(Image.SIZE), new Integer(16), new Integer(10)), 5L);
+			Operations.stochasticGradientDescent(model, new DatasetSource(data), null, 5, 10, optimizer, null, null, null, new Random(11));
+			double accuracy = new Evaluator(model).evaluate(data).getAccuracy();
+			System.out.println(optimizer + ": " + accuracy);
+			assertTrue(optimizer + " reached " + accuracy, accuracy > required[o]);
+		}
+	}
+	
+	private interface Rule {
+		float step(float g, int t);
+	}
+	
+	/**
+	 * Check that every parameter moved from its value in "before" by the
+	 * given function of its gradient.
+	 */
+	private void assertStep(final Network before, final Rule rule) throws LayerDoesNotExistException {
+		for(int i = 0; i < 2; i++) {
+			assertStep(before.getWeightsInLayer(i), network.getWeightsInLayer(i), weightGradients[i], rule);
+			assertStep(before.getBiasesInLayer(i), network.getBiasesInLayer(i), biasGradients[i], rule);
+		}
+	}
+	
+	private static void assertStep(final FMatrixRMaj before, final FMatrixRMaj after, final FMatrixRMaj gradient, final Rule rule) {
+		for(int i = 0; i < before.getNumElements(); i++) {
+			assertEquals(before.data[i] + rule.step(gradient.data[i], i), after.data[i], 1e-5f);
+		}
+	}
+	
+	private static FMatrixRMaj randomMatrix(final int rows, final int cols, final Random random) {
+		FMatrixRMaj matrix = new FMatrixRMaj(rows, cols);
+		for(int i = 0; i < matrix.getNumElements(); i++) {
+			matrix.data[i] = (float) random.nextGaussian();
+		}
+		return matrix;
+	}
+	
+	/**
+	 * Images of a single lit horizontal band whose position is the label.
+	 */
+	private static Dataset stripes(final int count, final Random random) {
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			int label = random.nextInt(10);
+			labels[n] = (byte) label;
+			for(int row = 2 * label + 4; row < 2 * label + 6; row++) {
+				for(int col = 0; col < 28; col++) {
+					pixels[n * Image.SIZE + row * 28 + col] = (byte) (random.nextInt(2) + 1);
+				}
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+}
@@ -0,0 +1,137 @@
+package neural.network.quantization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import neural.network.Network;
+import neural.network.Operations;
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Dataset;
+import neural.network.data.DatasetSource;
+import neural.network.data.Image;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+import neural.network.optimizers.Adam;
+
+public class QuantizationTest {
+
+	private static Network network;
+	private static Dataset data;
+	
+	@BeforeClass
+	public static void setUp() throws NetworkTooSmallException, LayerTooSmallException, IOException, InvalidInputException,
+			LayerDoesNotExistException {
+		//A trained network, so that the comparison is not between two saturated outputs
+		data = stripes(600, new Random(3));
+		network = new Network(Arrays.asList(new Integer(Image.SIZE), new Integer(32), new Integer(10)), 5L);
+		Operations.stochasticGradientDescent(network, new DatasetSource(data), null, 3, 10, new Adam(0.01f), null, null, null);
+	}
+	
+	@Test
+	public void testHalf() {
+		System.out.println("Testing half precision conversion...\n");
+		float[] exact = {0f, -0f, 1f, -2f, 0.5f, 65504f, 0x1p-14f, 0x1p-24f, 1.5f, 1024f};
+		for(float value : exact) {
+			assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Half.toFloat(Half.fromFloat(value))));
+		}
+		assertEquals(0x3C00, Half.fromFloat(1f) & 0xFFFF);
+		assertEquals(0x7BFF, Half.fromFloat(65504f) & 0xFFFF);
+		assertEquals(Float.POSITIVE_INFINITY, Half.toFloat(Half.fromFloat(65520f)), 0f);
+		assertEquals(Float.NEGATIVE_INFINITY, Half.toFloat(Half.fromFloat(Float.NEGATIVE_INFINITY)), 0f);
+		assertTrue(Float.isNaN(Half.toFloat(Half.fromFloat(Float.NaN))));
+		assertEquals(0f, Half.toFloat(Half.fromFloat(0x1p-26f)), 0f);
+		//Ties round to even: 1 + 2^-11 is halfway between 1 and 1 + 2^-10
+		assertEquals(1f, Half.toFloat(Half.fromFloat(1f + 0x1p-11f)), 0f);
+		assertEquals(1f + 0x1p-9f, Half.toFloat(Half.fromFloat(1f + 3 * 0x1p-11f)), 0f);
+		//Everything else is within half a unit in the last place
+		Random random = new Random(1);
+		for(int i = 0; i < 10000; i++) {
+			float value = (float) (random.nextGaussian() * 100);
+			float rounded = Half.toFloat(Half.fromFloat(value));
+			assertEquals(value, rounded, Math.abs(value) * 0x1p-11f + 0x1p-25f);
+		}
+	}
+	
+	@Test
+	public void testInt8() throws LayerDoesNotExistException, InvalidInputException {
+		System.out.println("Testing int8 inference...\n");
+		QuantizationReport report = QuantizationReport.compare(network, QuantizedNetwork.quantize(network, QuantizedNetwork.Precision.INT8), data);
+		System.out.println(report + "\n");
+		assertTrue(report.getAgreement() > 0.98);
+		assertTrue(report.getMaxOutputError() < 0.1);
+		assertTrue(report.getReferenceBytes() > 3.5 * report.getQuantizedBytes());
+	}
+	
+	@Test
+	public void testFloat16() throws LayerDoesNotExistException, InvalidInputException {
+		System.out.println("Testing float16 inference...\n");
+		QuantizedNetwork model = QuantizedNetwork.quantize(network, QuantizedNetwork.Precision.FLOAT16);
+		QuantizationReport report = QuantizationReport.compare(network, model, data);
+		System.out.println(report + "\n");
+		assertEquals(1.0, report.getAgreement(), 0.0);
+		assertTrue(report.getMaxOutputError() < 1e-2);
+		assertTrue(report.getReferenceBytes() > 1.9 * report.getQuantizedBytes());
+		assertEquals(report.getQuantized().getCorrect(), model.evaluate(data).getCorrect());
+	}
+	
+	@Test
+	public void testOtherActivations() throws NetworkTooSmallException, LayerTooSmallException, IOException, InvalidInputException,
+			LayerDoesNotExistException {
+		System.out.println("Testing quantized inference with a rectified layer and a softmax output...\n");
+		Network rectified = new Network(Arrays.asList(new Integer(Image.SIZE), new Integer(32), new Integer(10)), 6L);
+		rectified.setActivation(0, Activation.RELU);
+		rectified.setActivation(1, Activation.SOFTMAX);
+		rectified.setCost(Cost.CROSS_ENTROPY);
+		rectified.scaleWeightsByFanIn();
+		Operations.stochasticGradientDescent(rectified, new DatasetSource(data), null, 2, 10, new Adam(0.001f), null, null, null);
+		QuantizedNetwork model = QuantizedNetwork.quantize(rectified, QuantizedNetwork.Precision.FLOAT16);
+		QuantizationReport report = QuantizationReport.compare(rectified, model, data);
+		System.out.println(report + "\n");
+		assertTrue(report.getAgreement() > 0.99);
+		assertTrue(report.getMaxOutputError() < 1e-2);
+		float[] output = new float[10];
+		float[] sample = new float[Image.SIZE];
+		for(int i = 0; i < Image.SIZE; i++) {
+			sample[i] = data.getPx(0, i);
+		}
+		model.feedForward(sample, output);
+		float sum = 0f;
+		for(float p : output) {
+			sum += p;
+		}
+		assertEquals(1f, sum, 1e-5f);
+	}
+	
+	@Test(expected = InvalidInputException.class)
+	public void testWrongInput() throws LayerDoesNotExistException, InvalidInputException {
+		QuantizedNetwork.quantize(network, QuantizedNetwork.Precision.INT8).predict(new float[10]);
+	}
+	
+	/**
+	 * Images of a single lit horizontal band whose position is the label.
+	 */
+	private static Dataset stripes(final int count, final Random random) {
+		byte[] labels = new byte[count];
+		byte[] pixels = new byte[count * Image.SIZE];
+		for(int n = 0; n < count; n++) {
+			int label = random.nextInt(10);
+			labels[n] = (byte) label;
+			for(int row = 2 * label + 4; row < 2 * label + 6; row++) {
+				for(int col = 0; col < 28; col++) {
+					pixels[n * Image.SIZE + row * 28 + col] = (byte) (random.nextInt(2) + 1);
+				}
+			}
+		}
+		return new Dataset(labels, pixels, count);
+	}
+}
@@ -0,0 +1,123 @@
+package neural.network.serving;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.Network;
+import neural.network.Predictions;
+import neural.network.Predictor;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class MicroBatcherTest {
+
+	private Network network;
+	private MicroBatcher batcher;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException {
+		network = new Network(Arrays.asList(new Integer(784), new Integer(20), new Integer(10)), 3L);
+		batcher = new MicroBatcher(network, 8, 50000);
+	}
+	
+	@After
+	public void tearDown() {
+		batcher.close();
+	}
+	
+	@Test
+	public void testMatchesPredictor() throws InvalidInputException, LayerDoesNotExistException, InterruptedException, ExecutionException {
+		System.out.println("Testing micro batched predictions...\n");
+		float[][] samples = randomSamples(40, new Random(1));
+		Predictor predictor = new Predictor(network);
+		Predictions expected = predictor.predictBatch(samples);
+		predictor.shutdown();
+		
+		//Queue everything at once, so that the dispatcher finds full batches
+		List<CompletableFuture<Prediction>> results = new ArrayList<CompletableFuture<Prediction>>();
+		for(float[] sample : samples) {
+			results.add(batcher.submit(sample));
+		}
+		float[] outputs = new float[10];
+		for(int n = 0; n < samples.length; n++) {
+			Prediction prediction = results.get(n).get();
+			expected.getOutputs(n, outputs);
+			assertEquals(expected.getLabel(n), prediction.getLabel());
+			assertArrayEquals(outputs, prediction.getOutputs(), 1e-6f);
+		}
+		assertEquals(40, batcher.getRequests());
+		assertTrue(batcher.getBatches() < 40);
+		assertTrue(batcher.getMeanBatchSize() <= 8);
+		assertEquals(40, batcher.getLatency().getCount());
+		assertTrue(batcher.getLatency().getPercentile(99) >= batcher.getLatency().getPercentile(50));
+	}
+	
+	@Test
+	public void testLoneRequestDoesNotWait() throws InvalidInputException, InterruptedException {
+		System.out.println("Testing a lone request...\n");
+		//The delay budget is 50ms, but a request with nothing else in flight is run at once
+		float[] sample = randomSamples(1, new Random(2))[0];
+		for(int i = 0; i < 3; i++) {
+			batcher.predict(sample);
+		}
+		assertEquals(3, batcher.getBatches());
+		assertTrue(batcher.getLatency().getMax() < 50000000L);
+	}
+	
+	@Test(expected = InvalidInputException.class)
+	public void testWrongInput() throws InvalidInputException {
+		batcher.submit(new float[3]);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testClosed() throws InvalidInputException {
+		batcher.close();
+		batcher.submit(new float[784]);
+	}
+	
+	@Test
+	public void testHistogram() {
+		System.out.println("Testing latency histogram...\n");
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long value = 1; value <= 1000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500.0, histogram.getMean(), 1e-6);
+		assertEquals(1000000, histogram.getMax());
+		//Within one sub-bucket (1/16) above the exact value
+		assertTrue(histogram.getPercentile(50) >= 500000 && histogram.getPercentile(50) <= 500000 * 17 / 16);
+		assertTrue(histogram.getPercentile(99) >= 990000 && histogram.getPercentile(99) <= 1000000);
+		for(long value : new long[] {0, 1, 15, 16, 17, 1023, 1024, 123456789, Long.MAX_VALUE}) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(value <= LatencyHistogram.highestInBucket(index));
+			assertTrue(index == 0 || value > LatencyHistogram.highestInBucket(index - 1));
+		}
+		histogram.reset();
+		assertEquals(0, histogram.getPercentile(99));
+	}
+	
+	static float[][] randomSamples(final int count, final Random random) {
+		float[][] samples = new float[count][784];
+		for(float[] sample : samples) {
+			for(int i = 0; i < sample.length; i++) {
+				sample[i] = random.nextInt(4) == 0 ? random.nextFloat() : 0f;
+			}
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,206 @@
+package neural.network.serving;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.ModelHolder;
+import neural.network.ModelSnapshot;
+import neural.network.Network;
+import neural.network.Predictions;
+import neural.network.Predictor;
+import neural.network.exceptions.InvalidInputException;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class PredictionServerTest {
+
+	private Network network;
+	private PredictionServer server;
+	
+	@Before
+	public void setUp() throws NetworkTooSmallException, LayerTooSmallException, IOException {
+		network = new Network(Arrays.asList(new Integer(784), new Integer(20), new Integer(10)), 3L);
+		server = new PredictionServer(network, 0, 16, 500);
+	}
+	
+	@After
+	public void tearDown() {
+		server.close();
+	}
+	
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		System.out.println("Testing the prediction server on localhost...\n");
+		final float[][] samples = MicroBatcherTest.randomSamples(64, new Random(1));
+		Predictor predictor = new Predictor(network);
+		Predictions expected = predictor.predictBatch(samples);
+		predictor.shutdown();
+		
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> responses = new ArrayList<Future<String>>();
+			for(int n = 0; n < samples.length; n++) {
+				final int index = n;
+				responses.add(clients.submit(new Callable<String>() {
+					@Override
+					public String call() throws IOException {
+						//Alternate between the text and the binary encoding
+						return index % 2 == 0 ? post(text(samples[index]), "text/plain") : post(binary(samples[index]), "application/octet-stream");
+					}
+				}));
+			}
+			for(int n = 0; n < samples.length; n++) {
+				assertTrue(responses.get(n).get().startsWith("{\"label\":" + expected.getLabel(n) + ",\"outputs\":["));
+			}
+		} finally {
+			clients.shutdown();
+		}
+		
+		String stats = get("/stats");
+		System.out.println(stats + "\n");
+		assertTrue(stats.startsWith("{\"model_version\":0,\"requests\":64,"));
+		assertTrue(stats.contains("\"p99_us\":"));
+		assertEquals(64, server.getLatency().getCount());
+		assertTrue(server.getLatency().getPercentile(99) >= server.getLatency().getPercentile(50));
+	}
+	
+	@Test
+	public void testBadRequests() throws IOException, InvalidInputException, LayerDoesNotExistException {
+		System.out.println("Testing malformed prediction requests...\n");
+		assertEquals(400, status("1,2,3".getBytes(StandardCharsets.US_ASCII), "POST"));
+		assertEquals(400, status("x".getBytes(StandardCharsets.US_ASCII), "POST"));
+		assertEquals(405, status(new byte[0], "GET"));
+	}
+	
+	@Test
+	public void testOversizedRequests() throws IOException {
+		System.out.println("Testing oversized prediction requests...\n");
+		float[] sample = new float[784];
+		assertEquals(200, status(binary(sample), "POST", "application/octet-stream"));
+		assertEquals(413, status(binary(new float[785]), "POST", "application/octet-stream"));
+		assertEquals(200, status(text(sample), "POST", "text/plain"));
+		assertEquals(413, status(new byte[1 << 20], "POST", "text/plain"));
+	}
+	
+	@Test
+	public void testFailures() throws IOException {
+		System.out.println("Testing failed predictions...\n");
+		byte[] sample = binary(new float[784]);
+		final AtomicBoolean broken = new AtomicBoolean();
+		ModelHolder model = new ModelHolder(network) {
+			@Override
+			public ModelSnapshot get() {
+				if(broken.get()) {
+					throw new IllegalStateException("Model store unavailable");
+				}
+				return super.get();
+			}
+		};
+		PredictionServer failing = new PredictionServer(model, 0, 16, 500);
+		try {
+			//A failed inference is not mistaken for the server shutting down
+			broken.set(true);
+			assertEquals(500, status(failing.getPort(), sample, "POST", "application/octet-stream"));
+		} finally {
+			failing.close();
+		}
+		server.getBatcher().close();
+		assertEquals(503, status(sample, "POST", "application/octet-stream"));
+	}
+	
+	private String post(final byte[] body, final String type) throws IOException {
+		HttpURLConnection connection = open("/predict");
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", type);
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write(body);
+		out.close();
+		assertEquals(200, connection.getResponseCode());
+		return read(connection.getInputStream());
+	}
+	
+	private int status(final byte[] body, final String method) throws IOException {
+		return status(body, method, null);
+	}
+	
+	private int status(final byte[] body, final String method, final String type) throws IOException {
+		return status(server.getPort(), body, method, type);
+	}
+	
+	private static int status(final int port, final byte[] body, final String method, final String type) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/predict").openConnection();
+		connection.setRequestMethod(method);
+		if(type != null) {
+			connection.setRequestProperty("Content-Type", type);
+		}
+		if(method.equals("POST")) {
+			connection.setDoOutput(true);
+			OutputStream out = connection.getOutputStream();
+			out.write(body);
+			out.close();
+		}
+		int status = connection.getResponseCode();
+		connection.disconnect();
+		return status;
+	}
+	
+	private String get(final String path) throws IOException {
+		HttpURLConnection connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		return read(connection.getInputStream());
+	}
+	
+	private HttpURLConnection open(final String path) throws IOException {
+		return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+	}
+	
+	private static String read(final InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	private static byte[] text(final float[] sample) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < sample.length; i++) {
+			sb.append(i == 0 ? "" : (i % 28 == 0 ? "\n" : ", ")).append(sample[i]);
+		}
+		return sb.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+	
+	private static byte[] binary(final float[] sample) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 * sample.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asFloatBuffer().put(sample);
+		return buffer.array();
+	}
+}
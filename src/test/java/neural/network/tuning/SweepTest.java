@@ -0,0 +1,109 @@
+package neural.network.tuning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import neural.network.activations.Activation;
+import neural.network.activations.Cost;
+import neural.network.data.Dataset;
+import neural.network.data.Stripes;
+import neural.network.exceptions.LayerDoesNotExistException;
+import neural.network.exceptions.LayerTooSmallException;
+import neural.network.exceptions.NetworkTooSmallException;
+
+public class SweepTest {
+
+	private Dataset trainingData;
+	private Dataset validationData;
+	private List<Hyperparameters> grid;
+
+	@Before
+	public void setUp() {
+		trainingData = Stripes.dataset(200, 7L);
+		validationData = Stripes.dataset(100, 8L);
+		//Learning rates too small to get anywhere in a few epochs, and ones that do
+		List<List<Integer>> sizes = Arrays.asList(Arrays.asList(new Integer(784), new Integer(16), new Integer(10)));
+		grid = Hyperparameters.grid(sizes, new Activation[] {Activation.RELU, Activation.SIGMOID}, Cost.CROSS_ENTROPY,
+				new int[] {10, 20}, new float[] {1e-5f, 0.5f});
+	}
+
+	@Test
+	public void testSuccessiveHalving() throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException,
+			InterruptedException {
+		System.out.println("Testing successive halving on one thread...\n");
+		Sweep sweep = new Sweep(grid, 1, 4, 2, 3L);
+		assertTrue(Arrays.equals(new int[] {1, 2, 4}, sweep.getRungEpochs()));
+		SweepReport report = sweep.run(trainingData, validationData, 1);
+		System.out.println(report);
+		assertConsistent(report, sweep);
+		assertTrue(report.getEpochs() < report.getFullEpochs());
+		int completed = 0;
+		for(Trial trial : report.getRanking()) {
+			if(trial.getStatus() == Trial.Status.COMPLETED) {
+				completed++;
+			}
+		}
+		assertTrue(completed > 0 && completed < grid.size());
+		assertTrue(report.getBest().getHyperparameters().getEta() > 0.1f);
+		assertTrue(report.getBest().getAccuracy() > 0.5f);
+	}
+
+	@Test
+	public void testOneThreadIsDeterministic() throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException,
+			InterruptedException {
+		System.out.println("Testing a sweep on one thread is deterministic...\n");
+		SweepReport first = new Sweep(grid, 1, 4, 2, 3L).run(trainingData, validationData, 1);
+		SweepReport second = new Sweep(grid, 1, 4, 2, 3L).run(trainingData, validationData, 1);
+		for(int i = 0; i < grid.size(); i++) {
+			assertEquals(first.getRanking().get(i).getId(), second.getRanking().get(i).getId());
+			assertEquals(first.getRanking().get(i).getAccuracy(), second.getRanking().get(i).getAccuracy(), 0.0f);
+		}
+	}
+
+	@Test
+	public void testParallelSweep() throws LayerDoesNotExistException, NetworkTooSmallException, LayerTooSmallException,
+			InterruptedException {
+		System.out.println("Testing a sweep on several threads...\n");
+		Sweep sweep = new Sweep(grid, 1, 4, 2, 3L);
+		SweepReport report = sweep.run(trainingData, validationData, 3);
+		System.out.println(report);
+		assertConsistent(report, sweep);
+		assertEquals(Trial.Status.COMPLETED, report.getBest().getStatus());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsSmallReduction() {
+		System.out.println("Testing sweeps need a reduction factor of 2 or more...\n");
+		new Sweep(grid, 1, 4, 1, 3L);
+	}
+
+	/**
+	 * Check that every configuration was tried, every trial stopped at the
+	 * end of a rung and the ranking is ordered.
+	 */
+	private static void assertConsistent(final SweepReport report, final Sweep sweep) {
+		int[] rungs = sweep.getRungEpochs();
+		assertEquals(sweep.getConfigurations().size(), report.getRanking().size());
+		boolean[] seen = new boolean[sweep.getConfigurations().size()];
+		Trial previous = null;
+		for(Trial trial : report.getRanking()) {
+			seen[trial.getId()] = true;
+			assertEquals(rungs[trial.getRung()], trial.getEpochs());
+			assertEquals(trial.getRung() == rungs.length - 1 ? Trial.Status.COMPLETED : Trial.Status.PRUNED, trial.getStatus());
+			if(previous != null) {
+				assertTrue(previous.getRung() > trial.getRung()
+						|| (previous.getRung() == trial.getRung() && previous.getAccuracy() >= trial.getAccuracy()));
+			}
+			previous = trial;
+		}
+		for(boolean tried : seen) {
+			assertTrue(tried);
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package neural.network.linalg;
+
+import java.util.Arrays;
+
+import org.ejml.data.FMatrixRMaj;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The blocked engine with its inner loops written against the incubating
+ * Vector API, so they compile to AVX2/AVX-512 (or NEON) instructions of the
+ * widest width the CPU offers rather than depending on the JIT to
+ * auto-vectorize them.
+ *
+ * This class is compiled only on JDK 17 and newer and needs
+ * "--add-modules jdk.incubator.vector" at runtime. {@link Backends} loads
+ * it by name and falls back to {@link BlockedBackend} when either is
+ * missing, so nothing else refers to it directly.
+ */
+public class VectorBackend implements Backend {
+
+	public static final String NAME = "vector";
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+
+	private static final int K_BLOCK = 128;
+	private static final int N_BLOCK = 512;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public void mult(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		final int m = a.numRows;
+		final int k = a.numCols;
+		final int n = b.numCols;
+		checkShape(b, k, n, "b");
+		checkShape(c, m, n, "c");
+		final float[] A = a.data;
+		final float[] B = b.data;
+		final float[] C = c.data;
+		if(n == 1) {
+			for(int i = 0; i < m; i++) {
+				C[i] = dot(A, i * k, B, 0, k);
+			}
+			return;
+		}
+		Arrays.fill(C, 0, m * n, 0f);
+
+		for(int jj = 0; jj < n; jj += N_BLOCK) {
+			final int jEnd = Math.min(jj + N_BLOCK, n);
+			final int jVector = jj + SPECIES.loopBound(jEnd - jj);
+			for(int pp = 0; pp < k; pp += K_BLOCK) {
+				final int pEnd = Math.min(pp + K_BLOCK, k);
+				int i = 0;
+				for(; i + 4 <= m; i += 4) {
+					final int c0 = i * n;
+					final int c1 = c0 + n;
+					final int c2 = c1 + n;
+					final int c3 = c2 + n;
+					for(int p = pp; p < pEnd; p++) {
+						final float a0 = A[i * k + p];
+						final float a1 = A[(i + 1) * k + p];
+						final float a2 = A[(i + 2) * k + p];
+						final float a3 = A[(i + 3) * k + p];
+						final FloatVector va0 = FloatVector.broadcast(SPECIES, a0);
+						final FloatVector va1 = FloatVector.broadcast(SPECIES, a1);
+						final FloatVector va2 = FloatVector.broadcast(SPECIES, a2);
+						final FloatVector va3 = FloatVector.broadcast(SPECIES, a3);
+						final int bRow = p * n;
+						int j = jj;
+						for(; j < jVector; j += LANES) {
+							final FloatVector bj = FloatVector.fromArray(SPECIES, B, bRow + j);
+							bj.fma(va0, FloatVector.fromArray(SPECIES, C, c0 + j)).intoArray(C, c0 + j);
+							bj.fma(va1, FloatVector.fromArray(SPECIES, C, c1 + j)).intoArray(C, c1 + j);
+							bj.fma(va2, FloatVector.fromArray(SPECIES, C, c2 + j)).intoArray(C, c2 + j);
+							bj.fma(va3, FloatVector.fromArray(SPECIES, C, c3 + j)).intoArray(C, c3 + j);
+						}
+						for(; j < jEnd; j++) {
+							final float bj = B[bRow + j];
+							C[c0 + j] += a0 * bj;
+							C[c1 + j] += a1 * bj;
+							C[c2 + j] += a2 * bj;
+							C[c3 + j] += a3 * bj;
+						}
+					}
+				}
+				for(; i < m; i++) {
+					final int c0 = i * n;
+					for(int p = pp; p < pEnd; p++) {
+						axpy(A[i * k + p], B, p * n + jj, C, c0 + jj, jEnd - jj);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void multTransA(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		final int r = a.numRows;
+		final int m = a.numCols;
+		final int n = b.numCols;
+		checkShape(b, r, n, "b");
+		checkShape(c, m, n, "c");
+		final float[] A = a.data;
+		final float[] B = b.data;
+		final float[] C = c.data;
+		Arrays.fill(C, 0, m * n, 0f);
+
+		for(int jj = 0; jj < n; jj += N_BLOCK) {
+			final int jEnd = Math.min(jj + N_BLOCK, n);
+			final int jVector = jj + SPECIES.loopBound(jEnd - jj);
+			int i = 0;
+			for(; i + 4 <= r; i += 4) {
+				final int b0 = i * n;
+				final int b1 = b0 + n;
+				final int b2 = b1 + n;
+				final int b3 = b2 + n;
+				for(int p = 0; p < m; p++) {
+					final float a0 = A[i * m + p];
+					final float a1 = A[(i + 1) * m + p];
+					final float a2 = A[(i + 2) * m + p];
+					final float a3 = A[(i + 3) * m + p];
+					final FloatVector va0 = FloatVector.broadcast(SPECIES, a0);
+					final FloatVector va1 = FloatVector.broadcast(SPECIES, a1);
+					final FloatVector va2 = FloatVector.broadcast(SPECIES, a2);
+					final FloatVector va3 = FloatVector.broadcast(SPECIES, a3);
+					final int cRow = p * n;
+					int j = jj;
+					for(; j < jVector; j += LANES) {
+						FloatVector sum = FloatVector.fromArray(SPECIES, C, cRow + j);
+						sum = FloatVector.fromArray(SPECIES, B, b0 + j).fma(va0, sum);
+						sum = FloatVector.fromArray(SPECIES, B, b1 + j).fma(va1, sum);
+						sum = FloatVector.fromArray(SPECIES, B, b2 + j).fma(va2, sum);
+						sum = FloatVector.fromArray(SPECIES, B, b3 + j).fma(va3, sum);
+						sum.intoArray(C, cRow + j);
+					}
+					for(; j < jEnd; j++) {
+						C[cRow + j] += a0 * B[b0 + j] + a1 * B[b1 + j] + a2 * B[b2 + j] + a3 * B[b3 + j];
+					}
+				}
+			}
+			for(; i < r; i++) {
+				for(int p = 0; p < m; p++) {
+					axpy(A[i * m + p], B, i * n + jj, C, p * n + jj, jEnd - jj);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void multTransB(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		final int m = a.numRows;
+		final int n = a.numCols;
+		final int k = b.numRows;
+		checkShape(b, k, n, "b");
+		checkShape(c, m, k, "c");
+		final float[] A = a.data;
+		final float[] B = b.data;
+		final float[] C = c.data;
+		final int nVector = SPECIES.loopBound(n);
+
+		for(int i = 0; i < m; i++) {
+			final int aRow = i * n;
+			final int cRow = i * k;
+			int p = 0;
+			for(; p + 4 <= k; p += 4) {
+				final int b0 = p * n;
+				final int b1 = b0 + n;
+				final int b2 = b1 + n;
+				final int b3 = b2 + n;
+				FloatVector v0 = FloatVector.zero(SPECIES);
+				FloatVector v1 = FloatVector.zero(SPECIES);
+				FloatVector v2 = FloatVector.zero(SPECIES);
+				FloatVector v3 = FloatVector.zero(SPECIES);
+				int j = 0;
+				for(; j < nVector; j += LANES) {
+					final FloatVector aj = FloatVector.fromArray(SPECIES, A, aRow + j);
+					v0 = aj.fma(FloatVector.fromArray(SPECIES, B, b0 + j), v0);
+					v1 = aj.fma(FloatVector.fromArray(SPECIES, B, b1 + j), v1);
+					v2 = aj.fma(FloatVector.fromArray(SPECIES, B, b2 + j), v2);
+					v3 = aj.fma(FloatVector.fromArray(SPECIES, B, b3 + j), v3);
+				}
+				float s0 = v0.reduceLanes(VectorOperators.ADD);
+				float s1 = v1.reduceLanes(VectorOperators.ADD);
+				float s2 = v2.reduceLanes(VectorOperators.ADD);
+				float s3 = v3.reduceLanes(VectorOperators.ADD);
+				for(; j < n; j++) {
+					final float aj = A[aRow + j];
+					s0 += aj * B[b0 + j];
+					s1 += aj * B[b1 + j];
+					s2 += aj * B[b2 + j];
+					s3 += aj * B[b3 + j];
+				}
+				C[cRow + p] = s0;
+				C[cRow + p + 1] = s1;
+				C[cRow + p + 2] = s2;
+				C[cRow + p + 3] = s3;
+			}
+			for(; p < k; p++) {
+				C[cRow + p] = dot(A, aRow, B, p * n, n);
+			}
+		}
+	}
+
+	@Override
+	public void axpy(final float alpha, final FMatrixRMaj x, final FMatrixRMaj y) {
+		checkShape(x, y.numRows, y.numCols, "x");
+		axpy(alpha, x.data, 0, y.data, 0, y.getNumElements());
+	}
+
+	@Override
+	public void subtract(final FMatrixRMaj a, final FMatrixRMaj b, final FMatrixRMaj c) {
+		final int length = a.getNumElements();
+		checkShape(b, a.numRows, a.numCols, "b");
+		checkShape(c, a.numRows, a.numCols, "c");
+		final float[] A = a.data;
+		final float[] B = b.data;
+		final float[] C = c.data;
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += LANES) {
+			FloatVector.fromArray(SPECIES, A, i).sub(FloatVector.fromArray(SPECIES, B, i)).intoArray(C, i);
+		}
+		for(; i < length; i++) {
+			C[i] = A[i] - B[i];
+		}
+	}
+
+	@Override
+	public void elementMult(final FMatrixRMaj a, final FMatrixRMaj b) {
+		final int length = a.getNumElements();
+		checkShape(b, a.numRows, a.numCols, "b");
+		final float[] A = a.data;
+		final float[] B = b.data;
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += LANES) {
+			FloatVector.fromArray(SPECIES, A, i).mul(FloatVector.fromArray(SPECIES, B, i)).intoArray(A, i);
+		}
+		for(; i < length; i++) {
+			A[i] *= B[i];
+		}
+	}
+
+	@Override
+	public void addToColumns(final FMatrixRMaj matrix, final FMatrixRMaj column) {
+		final int rows = matrix.numRows;
+		final int cols = matrix.numCols;
+		checkShape(column, rows, 1, "column");
+		final float[] M = matrix.data;
+		final int bound = SPECIES.loopBound(cols);
+		for(int i = 0; i < rows; i++) {
+			final float b = column.data[i];
+			final int row = i * cols;
+			int j = 0;
+			for(; j < bound; j += LANES) {
+				FloatVector.fromArray(SPECIES, M, row + j).add(b).intoArray(M, row + j);
+			}
+			for(; j < cols; j++) {
+				M[row + j] += b;
+			}
+		}
+	}
+
+	@Override
+	public void sumRows(final FMatrixRMaj matrix, final FMatrixRMaj sums) {
+		final int rows = matrix.numRows;
+		final int cols = matrix.numCols;
+		checkShape(sums, rows, 1, "sums");
+		final float[] M = matrix.data;
+		final int bound = SPECIES.loopBound(cols);
+		for(int i = 0; i < rows; i++) {
+			final int row = i * cols;
+			FloatVector sum = FloatVector.zero(SPECIES);
+			int j = 0;
+			for(; j < bound; j += LANES) {
+				sum = sum.add(FloatVector.fromArray(SPECIES, M, row + j));
+			}
+			float s = sum.reduceLanes(VectorOperators.ADD);
+			for(; j < cols; j++) {
+				s += M[row + j];
+			}
+			sums.data[i] = s;
+		}
+	}
+
+	/**
+	 * Exact sigmoid, with e^-x evaluated lane-wise by the vectorized math
+	 * library where the JIT provides one.
+	 */
+	@Override
+	public void sigmoid(final FMatrixRMaj matrix) {
+		final int length = matrix.getNumElements();
+		final float[] data = matrix.data;
+		final FloatVector one = FloatVector.broadcast(SPECIES, 1f);
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += LANES) {
+			final FloatVector exp = FloatVector.fromArray(SPECIES, data, i).neg().lanewise(VectorOperators.EXP);
+			one.div(exp.add(one)).intoArray(data, i);
+		}
+		for(; i < length; i++) {
+			data[i] = (float) (1.0 / (1.0 + Math.exp(-data[i])));
+		}
+	}
+
+	@Override
+	public void multSigmoidPrimeOfActivation(final FMatrixRMaj delta, final FMatrixRMaj activations) {
+		final int length = delta.getNumElements();
+		final float[] D = delta.data;
+		final float[] A = activations.data;
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += LANES) {
+			final FloatVector a = FloatVector.fromArray(SPECIES, A, i);
+			FloatVector.fromArray(SPECIES, D, i).mul(a.mul(a.neg().add(1f))).intoArray(D, i);
+		}
+		for(; i < length; i++) {
+			D[i] *= A[i] * (1f - A[i]);
+		}
+	}
+
+	/**
+	 * y[yOffset..] += alpha * x[xOffset..] over "length" elements.
+	 */
+	private static void axpy(final float alpha, final float[] x, final int xOffset, final float[] y, final int yOffset, final int length) {
+		final FloatVector scale = FloatVector.broadcast(SPECIES, alpha);
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += LANES) {
+			FloatVector.fromArray(SPECIES, x, xOffset + i).fma(scale, FloatVector.fromArray(SPECIES, y, yOffset + i)).intoArray(y, yOffset + i);
+		}
+		for(; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	private static float dot(final float[] x, final int xOffset, final float[] y, final int yOffset, final int length) {
+		final int bound = SPECIES.loopBound(length);
+		FloatVector sum = FloatVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += LANES) {
+			sum = FloatVector.fromArray(SPECIES, x, xOffset + i).fma(FloatVector.fromArray(SPECIES, y, yOffset + i), sum);
+		}
+		float s = sum.reduceLanes(VectorOperators.ADD);
+		for(; i < length; i++) {
+			s += x[xOffset + i] * y[yOffset + i];
+		}
+		return s;
+	}
+
+	private static void checkShape(final FMatrixRMaj matrix, final int rows, final int cols, final String name) {
+		if(matrix.numRows != rows || matrix.numCols != cols) {
+			throw new IllegalArgumentException("Expected " + name + " to be " + rows + "x" + cols + " but it is " + matrix.numRows + "x" + matrix.numCols);
+		}
+	}
+}